@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.commandhandling;
+
+import org.axonframework.common.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+
+/**
+ * Implementation of the CommandBus that hands commands over to a bounded pool of threads, which handle them the way the
+ * {@link SimpleCommandBus} does. The dispatching thread returns as soon as the command has been handed over.
+ * <p/>
+ * The result of command handling is reported to the {@link CommandCallback} passed along with the command, in the
+ * thread that handled it. Use a {@link org.axonframework.commandhandling.callbacks.FutureCallback} to wait for the
+ * result. When no handler is subscribed to the command, the dispatching thread receives a {@link
+ * NoHandlerForCommandException}, just like with the SimpleCommandBus.
+ * <p/>
+ * Commands that cannot be picked up by a thread immediately are queued. The {@link SaturationPolicy} defines what
+ * happens when the queue is full. Commands that are rejected are reported to their callback with a {@link
+ * RejectedExecutionException}. When a command dispatched without callback is rejected, the exception is thrown to the
+ * dispatching thread.
+ * <p/>
+ * Command handlers may dispatch commands on the same bus. When the queue is full and the saturation policy is {@link
+ * SaturationPolicy#BLOCK}, such commands are handled in place by the thread that dispatches them. Waiting for room in
+ * the queue would cause a deadlock, as the threads of the command bus are the ones that make room.
+ * <p/>
+ * Optionally, commands are scheduled with affinity to their target aggregate, as resolved by a {@link
+ * CommandTargetResolver}. In that case, commands for the same aggregate are queued separately and handled one at a
+ * time, in the order in which they were dispatched. They will therefore not have to wait for each other's locks on the
+ * aggregate, and they do not occupy threads while waiting. Commands for different aggregates are handled in parallel.
+ * Commands for which no target can be resolved are handled without affinity.
+ * <p/>
+ * The command bus must be stopped using {@link #stop()} when it is no longer needed.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class AsynchronousCommandBus extends SimpleCommandBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsynchronousCommandBus.class);
+    private static final AtomicInteger BUS_COUNTER = new AtomicInteger();
+
+    private final AsynchronousCommandBusStatistics statistics;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore queueSpace;
+    private final SaturationPolicy saturationPolicy;
+    private final CommandTargetResolver targetResolver;
+    private final Map<Object, AggregateCommandQueue> aggregateQueues = new HashMap<Object, AggregateCommandQueue>();
+
+    /**
+     * Defines what happens to a command that is dispatched while all threads are busy and the queue is full.
+     */
+    public enum SaturationPolicy {
+
+        /**
+         * The dispatching thread waits until there is room in the queue. This slows the dispatching threads down to
+         * the rate at which commands are handled. Commands dispatched by a thread of the command bus itself are
+         * handled by that thread instead, as in {@link #CALLER_RUNS}.
+         */
+        BLOCK,
+
+        /**
+         * The dispatching thread handles the command itself.
+         */
+        CALLER_RUNS,
+
+        /**
+         * The command is rejected.
+         */
+        REJECT
+    }
+
+    /**
+     * Initializes an AsynchronousCommandBus that handles commands using the given number of threads, and queues up to
+     * <code>queueCapacity</code> commands. When the queue is full, dispatching threads wait until there is room in the
+     * queue. The mbeans for management information are registered.
+     *
+     * @param threadCount   The number of threads that handle commands
+     * @param queueCapacity The maximum number of commands waiting to be handled
+     */
+    public AsynchronousCommandBus(int threadCount, int queueCapacity) {
+        this(threadCount, queueCapacity, SaturationPolicy.BLOCK, true);
+    }
+
+    /**
+     * Initializes an AsynchronousCommandBus that handles commands using the given number of threads, and queues up to
+     * <code>queueCapacity</code> commands. The given <code>saturationPolicy</code> defines what happens when the queue
+     * is full.
+     *
+     * @param threadCount      The number of threads that handle commands
+     * @param queueCapacity    The maximum number of commands waiting to be handled
+     * @param saturationPolicy The policy to apply when the queue is full
+     * @param registerMBeans   true to register the mbeans, false for not registering them.
+     */
+    public AsynchronousCommandBus(int threadCount, int queueCapacity, SaturationPolicy saturationPolicy,
+                                  boolean registerMBeans) {
+        this(new AsynchronousCommandBusStatistics(), threadCount, queueCapacity, saturationPolicy, null,
+             registerMBeans);
+    }
+
+    /**
+     * Initializes an AsynchronousCommandBus that schedules commands with affinity to their target aggregate, as
+     * resolved by the given <code>targetResolver</code>. The bus handles commands using the given number of threads,
+     * and queues up to <code>queueCapacity</code> commands in total. The given <code>saturationPolicy</code> defines
+     * what happens when the queue is full.
+     * <p/>
+     * Note that commands handled by the dispatching thread, as with the {@link SaturationPolicy#CALLER_RUNS} policy,
+     * may run concurrently with other commands for the same aggregate.
+     *
+     * @param threadCount      The number of threads that handle commands
+     * @param queueCapacity    The maximum number of commands waiting to be handled
+     * @param saturationPolicy The policy to apply when the queue is full
+     * @param targetResolver   The resolver that provides the aggregate targeted by each command
+     * @param registerMBeans   true to register the mbeans, false for not registering them.
+     */
+    public AsynchronousCommandBus(int threadCount, int queueCapacity, SaturationPolicy saturationPolicy,
+                                  CommandTargetResolver targetResolver, boolean registerMBeans) {
+        this(new AsynchronousCommandBusStatistics(), threadCount, queueCapacity, saturationPolicy,
+             nonNullResolver(targetResolver), registerMBeans);
+    }
+
+    private AsynchronousCommandBus(AsynchronousCommandBusStatistics statistics, int threadCount, int queueCapacity,
+                                   SaturationPolicy saturationPolicy, CommandTargetResolver targetResolver,
+                                   boolean registerMBeans) {
+        super(statistics, registerMBeans);
+        Assert.isTrue(threadCount > 0, "The thread count must be positive");
+        Assert.isTrue(queueCapacity > 0, "The queue capacity must be positive");
+        Assert.notNull(saturationPolicy, "The saturation policy may not be null");
+        this.statistics = statistics;
+        this.saturationPolicy = saturationPolicy;
+        this.targetResolver = targetResolver;
+        this.queueSpace = new Semaphore(queueCapacity);
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                                               new LinkedBlockingQueue<Runnable>(),
+                                               new CommandHandlingThreadFactory());
+    }
+
+    private static CommandTargetResolver nonNullResolver(CommandTargetResolver targetResolver) {
+        Assert.notNull(targetResolver, "The target resolver may not be null");
+        return targetResolver;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Exceptions raised while handling the command are logged. If the command is rejected, a {@link
+     * RejectedExecutionException} is thrown.
+     */
+    @Override
+    public void dispatch(CommandMessage<?> command) {
+        execute(new DispatchCommand<Object>(command, findCommandHandlerFor(command), new LoggingCallback(command)));
+    }
+
+    @Override
+    public <R> void dispatch(CommandMessage<?> command, CommandCallback<R> callback) {
+        DispatchCommand<R> task = new DispatchCommand<R>(command, findCommandHandlerFor(command), callback);
+        try {
+            execute(task);
+        } catch (RejectedExecutionException e) {
+            callback.onFailure(e);
+        }
+    }
+
+    private void execute(DispatchCommand<?> task) {
+        try {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("The command bus has been stopped");
+            }
+            if (!reserveQueueSpace()) {
+                task.handle();
+                return;
+            }
+            statistics.recordQueuedCommand();
+            try {
+                schedule(task);
+            } catch (RejectedExecutionException e) {
+                queueSpace.release();
+                statistics.recordDequeuedCommand();
+                throw e;
+            }
+        } catch (RejectedExecutionException e) {
+            statistics.recordRejectedCommand();
+            throw e;
+        }
+    }
+
+    /**
+     * Reserves room in the queue for a command, applying the saturation policy if the queue is full. Returns
+     * <code>false</code> if the command should be handled by the dispatching thread. Threads of this command bus never
+     * wait for room in the queue, as they are the ones making room.
+     */
+    private boolean reserveQueueSpace() {
+        if (queueSpace.tryAcquire()) {
+            return true;
+        }
+        switch (saturationPolicy) {
+            case BLOCK:
+                if (isCommandHandlingThread()) {
+                    return false;
+                }
+                try {
+                    queueSpace.acquire();
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for room in the queue", e);
+                }
+            case CALLER_RUNS:
+                return false;
+            default:
+                throw new RejectedExecutionException("The command queue is full");
+        }
+    }
+
+    private boolean isCommandHandlingThread() {
+        Thread current = Thread.currentThread();
+        return current instanceof CommandHandlingThread && ((CommandHandlingThread) current).commandBus == this;
+    }
+
+    private void schedule(DispatchCommand<?> task) {
+        Object target = targetOf(task.command);
+        if (target == null) {
+            executor.execute(task);
+            return;
+        }
+        synchronized (aggregateQueues) {
+            AggregateCommandQueue queue = aggregateQueues.get(target);
+            if (queue == null) {
+                queue = new AggregateCommandQueue(target);
+                executor.execute(queue);
+                aggregateQueues.put(target, queue);
+            }
+            queue.commands.add(task);
+        }
+    }
+
+    private Object targetOf(CommandMessage<?> command) {
+        if (targetResolver == null) {
+            return null;
+        }
+        try {
+            return targetResolver.resolveTarget(command).getIdentifier();
+        } catch (IllegalArgumentException e) {
+            // the command does not target a specific aggregate
+            return null;
+        }
+    }
+
+    /**
+     * Stops the command bus. Commands that have already been dispatched are still handled, but new commands are
+     * rejected. This method does not wait for the queued commands to be handled.
+     */
+    public void stop() {
+        executor.shutdown();
+    }
+
+    private final class DispatchCommand<R> implements Runnable {
+
+        private final CommandMessage<?> command;
+        private final CommandHandler handler;
+        private final CommandCallback<R> callback;
+
+        private DispatchCommand(CommandMessage<?> command, CommandHandler handler, CommandCallback<R> callback) {
+            this.command = command;
+            this.handler = handler;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            queueSpace.release();
+            statistics.recordDequeuedCommand();
+            handle();
+        }
+
+        /**
+         * Handles the command and reports the result to the callback. Exceptions thrown by the callback are logged, so
+         * that they do not prevent the thread from handling the next command.
+         */
+        @SuppressWarnings({"unchecked"})
+        private void handle() {
+            try {
+                try {
+                    Object result = doDispatch(command, handler);
+                    callback.onSuccess((R) result);
+                } catch (Throwable throwable) {
+                    callback.onFailure(throwable);
+                }
+            } catch (RuntimeException e) {
+                logger.error(format("The callback of a [%s] threw an exception: ",
+                                    command.getPayloadType().getSimpleName()), e);
+            }
+        }
+    }
+
+    /**
+     * The commands waiting to be handled for a single aggregate. The queue is scheduled for execution when its first
+     * command is added. In each turn, it handles the commands that were queued when the turn started. If more commands
+     * have been queued by then, it is scheduled again, so that it does not occupy a thread at the expense of other
+     * aggregates. The queue is removed when it is empty. This also happens when handling a command fails with an
+     * error, so that the commands queued after it are not stranded. All access to the commands is guarded by the
+     * aggregate queues map.
+     */
+    private final class AggregateCommandQueue implements Runnable {
+
+        private final Object target;
+        private final Queue<DispatchCommand<?>> commands = new LinkedList<DispatchCommand<?>>();
+
+        private AggregateCommandQueue(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public void run() {
+            boolean finished = false;
+            try {
+                do {
+                    handleTurn();
+                } while (!finishTurn());
+                finished = true;
+            } finally {
+                if (!finished) {
+                    finishTurn();
+                }
+            }
+        }
+
+        private void handleTurn() {
+            int turn;
+            synchronized (aggregateQueues) {
+                turn = commands.size();
+            }
+            for (int i = 0; i < turn; i++) {
+                DispatchCommand<?> next;
+                synchronized (aggregateQueues) {
+                    next = commands.poll();
+                }
+                next.run();
+            }
+        }
+
+        /**
+         * Removes this queue if it is empty, or schedules it for another turn otherwise. Returns <code>false</code> if
+         * the queue could not be scheduled because the bus has been stopped, in which case the remaining commands
+         * should be handled by the current thread.
+         */
+        private boolean finishTurn() {
+            synchronized (aggregateQueues) {
+                if (commands.isEmpty()) {
+                    aggregateQueues.remove(target);
+                    return true;
+                }
+            }
+            try {
+                executor.execute(this);
+                return true;
+            } catch (RejectedExecutionException e) {
+                // the bus has been stopped
+                return false;
+            }
+        }
+    }
+
+    private static final class LoggingCallback implements CommandCallback<Object> {
+
+        private final CommandMessage<?> command;
+
+        private LoggingCallback(CommandMessage<?> command) {
+            this.command = command;
+        }
+
+        @Override
+        public void onSuccess(Object result) {
+        }
+
+        @Override
+        public void onFailure(Throwable cause) {
+            logger.error(format("Processing of a [%s] resulted in an exception: ", command.getClass().getSimpleName()),
+                         cause);
+        }
+    }
+
+    private final class CommandHandlingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCounter = new AtomicInteger();
+        private final String prefix = "AsynchronousCommandBus-" + BUS_COUNTER.incrementAndGet() + "-thread-";
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new CommandHandlingThread(AsynchronousCommandBus.this, runnable,
+                                             prefix + threadCounter.incrementAndGet());
+        }
+    }
+
+    private static final class CommandHandlingThread extends Thread {
+
+        private final AsynchronousCommandBus commandBus;
+
+        private CommandHandlingThread(AsynchronousCommandBus commandBus, Runnable runnable, String name) {
+            super(runnable, name);
+            this.commandBus = commandBus;
+        }
+    }
+}
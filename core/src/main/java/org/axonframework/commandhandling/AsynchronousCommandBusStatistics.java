@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.commandhandling;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics object to store information about the internals of the <code>AsynchronousCommandBus</code>. Next to the
+ * information gathered by the {@link SimpleCommandBusStatistics}, it keeps track of the number of commands waiting to
+ * be handled.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class AsynchronousCommandBusStatistics extends SimpleCommandBusStatistics
+        implements AsynchronousCommandBusStatisticsMXBean {
+
+    private final AtomicLong queuedCommandCounter = new AtomicLong(0);
+    private final AtomicLong largestQueuedCommandCounter = new AtomicLong(0);
+    private final AtomicLong rejectedCommandCounter = new AtomicLong(0);
+
+    @Override
+    public long getQueuedCommandCount() {
+        return queuedCommandCounter.get();
+    }
+
+    @Override
+    public long getLargestQueuedCommandCount() {
+        return largestQueuedCommandCounter.get();
+    }
+
+    @Override
+    public long getRejectedCommandCount() {
+        return rejectedCommandCounter.get();
+    }
+
+    @Override
+    public void resetQueueCounters() {
+        largestQueuedCommandCounter.set(queuedCommandCounter.get());
+        rejectedCommandCounter.set(0);
+    }
+
+    /**
+     * Indicate a command has been handed over for handling, and is waiting to be picked up by a thread.
+     */
+    void recordQueuedCommand() {
+        long queued = queuedCommandCounter.incrementAndGet();
+        long largest = largestQueuedCommandCounter.get();
+        while (queued > largest && !largestQueuedCommandCounter.compareAndSet(largest, queued)) {
+            largest = largestQueuedCommandCounter.get();
+        }
+    }
+
+    /**
+     * Indicate a queued command has been picked up by a thread.
+     */
+    void recordDequeuedCommand() {
+        queuedCommandCounter.decrementAndGet();
+    }
+
+    /**
+     * Indicate a command has been rejected.
+     */
+    void recordRejectedCommand() {
+        rejectedCommandCounter.incrementAndGet();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.commandhandling;
+
+/**
+ * Management interface for the AsynchronousCommandBus monitor. Next to the statistics of the {@link
+ * SimpleCommandBusStatisticsMXBean}, it provides information about the commands waiting to be handled.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public interface AsynchronousCommandBusStatisticsMXBean extends SimpleCommandBusStatisticsMXBean {
+
+    /**
+     * Returns the number of commands that have been dispatched, but have not been picked up by a thread yet.
+     *
+     * @return long representing the number of commands waiting to be handled
+     */
+    long getQueuedCommandCount();
+
+    /**
+     * Returns the largest number of commands that have been waiting to be handled at the same time, since the command
+     * bus was started or since the last reset.
+     *
+     * @return long representing the largest number of commands waiting to be handled
+     */
+    long getLargestQueuedCommandCount();
+
+    /**
+     * Returns the number of commands that have been rejected because the command bus was saturated or stopped, since
+     * the command bus was started or since the last reset.
+     *
+     * @return long representing the number of rejected commands
+     */
+    long getRejectedCommandCount();
+
+    /**
+     * Resets the largest number of queued commands and the rejected command counter.
+     */
+    void resetQueueCounters();
+}
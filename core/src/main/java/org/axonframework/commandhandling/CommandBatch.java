@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.commandhandling;
+
+import org.axonframework.common.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of commands that is dispatched in a single Unit of Work, using {@link
+ * SimpleCommandBus#dispatchBatch(CommandBatch)}. This saves the overhead of starting and committing a Unit of Work (and
+ * the transaction attached to it) for each command, which makes a significant difference when large numbers of small
+ * commands are dispatched, for example during an import.
+ * <p/>
+ * Each command reports its result to its own callback, after the Unit of Work has been committed or rolled back. The
+ * {@link FailurePolicy} defines what happens when one of the commands fails.
+ * <p/>
+ * This class is not thread safe. The batch may not be changed while it is being dispatched.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class CommandBatch {
+
+    private final FailurePolicy failurePolicy;
+    private final List<CommandMessage<?>> commands = new ArrayList<CommandMessage<?>>();
+    private final List<CommandCallback<?>> callbacks = new ArrayList<CommandCallback<?>>();
+
+    /**
+     * Defines what happens to a batch when one of its commands fails, or when its Unit of Work fails to commit. A
+     * command fails when it raises an exception that requires a rollback according to the command bus' {@link
+     * RollbackConfiguration}. Exceptions that do not require a rollback are reported to the callback of the command
+     * that raised them, and do not affect the other commands in the batch.
+     */
+    public enum FailurePolicy {
+
+        /**
+         * The whole batch is rolled back. The failing command reports its own exception. All other commands report a
+         * {@link CommandExecutionException} caused by that exception. Use this policy when the commands in the batch
+         * should be applied together or not at all.
+         */
+        ROLLBACK_BATCH,
+
+        /**
+         * The batch is rolled back and split, and the parts are dispatched again as separate batches. The commands
+         * before the failing command form one part, the failing command is dispatched on its own, and the commands
+         * after it form another part. If the Unit of Work failed to commit, the batch is split in half. This repeats
+         * until each command has reported the result it would have had if it had been dispatched individually.
+         * <p/>
+         * Note that commands are handled again when their part is dispatched. Command handlers must not have side
+         * effects that are not rolled back with the Unit of Work.
+         */
+        SPLIT_AND_RETRY
+    }
+
+    /**
+     * Initializes an empty batch that is rolled back entirely when one of its commands fails.
+     */
+    public CommandBatch() {
+        this(FailurePolicy.ROLLBACK_BATCH);
+    }
+
+    /**
+     * Initializes an empty batch that applies the given <code>failurePolicy</code> when one of its commands fails.
+     *
+     * @param failurePolicy The policy to apply when a command fails
+     */
+    public CommandBatch(FailurePolicy failurePolicy) {
+        Assert.notNull(failurePolicy, "The failure policy may not be null");
+        this.failurePolicy = failurePolicy;
+    }
+
+    /**
+     * Adds the given <code>command</code> to the batch. The result of the command is reported to the given
+     * <code>callback</code>.
+     *
+     * @param command  The command to add
+     * @param callback The callback to report the result to
+     * @param <R>      The type of result expected from command execution
+     * @return this batch, for chaining
+     */
+    public <R> CommandBatch add(CommandMessage<?> command, CommandCallback<R> callback) {
+        Assert.notNull(command, "The command may not be null");
+        Assert.notNull(callback, "The callback may not be null");
+        commands.add(command);
+        callbacks.add(callback);
+        return this;
+    }
+
+    /**
+     * Adds the given <code>command</code> to the batch. Exceptions raised while handling the command are logged.
+     *
+     * @param command The command to add
+     * @return this batch, for chaining
+     */
+    public CommandBatch add(CommandMessage<?> command) {
+        Assert.notNull(command, "The command may not be null");
+        commands.add(command);
+        callbacks.add(null);
+        return this;
+    }
+
+    /**
+     * Returns the number of commands in this batch.
+     *
+     * @return the number of commands in this batch
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * Returns the policy to apply when one of the commands in this batch fails.
+     *
+     * @return the policy to apply when one of the commands in this batch fails
+     */
+    public FailurePolicy getFailurePolicy() {
+        return failurePolicy;
+    }
+
+    /**
+     * Returns the command at the given <code>index</code>.
+     *
+     * @param index The index of the command
+     * @return the command at the given index
+     */
+    CommandMessage<?> getCommand(int index) {
+        return commands.get(index);
+    }
+
+    /**
+     * Returns the callback of the command at the given <code>index</code>, or <code>null</code> if the command was
+     * added without callback.
+     *
+     * @param index The index of the command
+     * @return the callback of the command at the given index
+     */
+    @SuppressWarnings({"unchecked"})
+    CommandCallback<Object> getCallback(int index) {
+        return (CommandCallback<Object>) callbacks.get(index);
+    }
+}
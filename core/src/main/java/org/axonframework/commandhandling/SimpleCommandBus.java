@@ -47,7 +47,7 @@ public class SimpleCommandBus implements CommandBus {
     private static final Logger logger = LoggerFactory.getLogger(SimpleCommandBus.class);
 
     private final ConcurrentMap<Class<?>, CommandHandler<?>> subscriptions = new ConcurrentHashMap<Class<?>, CommandHandler<?>>();
-    private final SimpleCommandBusStatistics statistics = new SimpleCommandBusStatistics();
+    private final SimpleCommandBusStatistics statistics;
     private volatile Iterable<? extends CommandHandlerInterceptor> interceptors = Collections.emptyList();
     private UnitOfWorkFactory unitOfWorkFactory = new DefaultUnitOfWorkFactory();
     private RollbackConfiguration rollbackConfiguration = new RollbackOnAllExceptionsConfiguration();
@@ -65,6 +65,18 @@ public class SimpleCommandBus implements CommandBus {
      * @param registerMBeans true to register the mbeans, false for not registering them.
      */
     public SimpleCommandBus(boolean registerMBeans) {
+        this(new SimpleCommandBusStatistics(), registerMBeans);
+    }
+
+    /**
+     * Initiates the SimpleCommandBus that keeps its statistics in the given <code>statistics</code> object, and
+     * optionally registers it as an mbean.
+     *
+     * @param statistics     The object to keep the statistics of this command bus in
+     * @param registerMBeans true to register the mbeans, false for not registering them.
+     */
+    SimpleCommandBus(SimpleCommandBusStatistics statistics, boolean registerMBeans) {
+        this.statistics = statistics;
         if (registerMBeans) {
             JmxConfiguration.getInstance().registerMBean(statistics, getClass());
         }
@@ -96,7 +108,136 @@ public class SimpleCommandBus implements CommandBus {
         }
     }
 
-    private CommandHandler findCommandHandlerFor(CommandMessage<?> command) {
+    /**
+     * Dispatches the commands in the given <code>batch</code> in a single Unit of Work. The commands pass through the
+     * interceptors one by one, in the order in which they were added to the batch. Interceptors that attach a
+     * transaction to the Unit of Work will typically join the transaction started for the first command. The {@link
+     * org.axonframework.commandhandling.interceptors.SpringTransactionalInterceptor}, for example, does so with its
+     * default propagation. The batch is then committed in a single transaction.
+     * <p/>
+     * The result of each command is reported to its callback after the Unit of Work has been committed or rolled
+     * back. The batch's {@link CommandBatch.FailurePolicy} defines what happens when a command fails. Note that the
+     * aggregates loaded by the commands, and their locks, are held until the batch is committed.
+     * <p/>
+     * The batch is handled in the calling thread.
+     *
+     * @param batch The commands to dispatch
+     * @throws NoHandlerForCommandException if no handler is subscribed to one of the commands. In that case, none of
+     *                                      the commands is handled.
+     */
+    public void dispatchBatch(CommandBatch batch) {
+        CommandHandler[] handlers = new CommandHandler[batch.size()];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = findCommandHandlerFor(batch.getCommand(i));
+        }
+        dispatchBatch(batch, handlers, 0, handlers.length);
+    }
+
+    private void dispatchBatch(CommandBatch batch, CommandHandler[] handlers, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        Object[] results = new Object[end - start];
+        Throwable[] exceptions = new Throwable[end - start];
+        UnitOfWork unitOfWork = unitOfWorkFactory.createUnitOfWork();
+        int failedCommand = -1;
+        Throwable failure = null;
+        for (int i = start; i < end && failure == null; i++) {
+            statistics.recordReceivedCommand();
+            InterceptorChain chain = new DefaultInterceptorChain(batch.getCommand(i), unitOfWork, handlers[i],
+                                                                 interceptors);
+            try {
+                results[i - start] = chain.proceed();
+            } catch (Throwable throwable) {
+                if (rollbackConfiguration.rollBackOn(throwable)) {
+                    failedCommand = i;
+                    failure = throwable;
+                } else {
+                    exceptions[i - start] = throwable;
+                }
+            }
+        }
+        if (failure != null) {
+            unitOfWork.rollback(failure);
+        } else {
+            try {
+                unitOfWork.commit();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        if (failure == null) {
+            for (int i = start; i < end; i++) {
+                if (exceptions[i - start] == null) {
+                    reportSuccess(batch, i, results[i - start]);
+                } else {
+                    reportFailure(batch, i, exceptions[i - start]);
+                }
+            }
+        } else if (batch.getFailurePolicy() == CommandBatch.FailurePolicy.SPLIT_AND_RETRY && end - start > 1) {
+            if (failedCommand < 0) {
+                int middle = (start + end) >>> 1;
+                dispatchBatch(batch, handlers, start, middle);
+                dispatchBatch(batch, handlers, middle, end);
+            } else {
+                dispatchBatch(batch, handlers, start, failedCommand);
+                dispatchBatch(batch, handlers, failedCommand, failedCommand + 1);
+                dispatchBatch(batch, handlers, failedCommand + 1, end);
+            }
+        } else {
+            for (int i = start; i < end; i++) {
+                if (exceptions[i - start] != null) {
+                    reportFailure(batch, i, exceptions[i - start]);
+                } else if (i == failedCommand || end - start == 1) {
+                    reportFailure(batch, i, failure);
+                } else {
+                    reportFailure(batch, i, new CommandExecutionException(
+                            "The command was rolled back, because another command in its batch failed", failure));
+                }
+            }
+        }
+    }
+
+    private void reportSuccess(CommandBatch batch, int index, Object result) {
+        CommandCallback<Object> callback = batch.getCallback(index);
+        if (callback != null) {
+            try {
+                callback.onSuccess(result);
+            } catch (RuntimeException e) {
+                logCallbackFailure(batch, index, e);
+            }
+        }
+    }
+
+    private void reportFailure(CommandBatch batch, int index, Throwable cause) {
+        CommandCallback<Object> callback = batch.getCallback(index);
+        if (callback != null) {
+            try {
+                callback.onFailure(cause);
+            } catch (RuntimeException e) {
+                logCallbackFailure(batch, index, e);
+            }
+        } else {
+            logger.error(format("Processing of a [%s] resulted in an exception: ",
+                                batch.getCommand(index).getClass().getSimpleName()), cause);
+        }
+    }
+
+    private void logCallbackFailure(CommandBatch batch, int index, RuntimeException e) {
+        logger.error(format("The callback of a [%s] threw an exception: ",
+                            batch.getCommand(index).getPayloadType().getSimpleName()), e);
+    }
+
+    /**
+     * Returns the handler subscribed to the given <code>command</code>.
+     *
+     * @param command The command to find the handler for
+     * @return the handler subscribed to the command
+     *
+     * @throws NoHandlerForCommandException if no handler is subscribed to the command
+     */
+    CommandHandler findCommandHandlerFor(CommandMessage<?> command) {
         final CommandHandler handler = subscriptions.get(command.getPayloadType());
         if (handler == null) {
             throw new NoHandlerForCommandException(format("No handler was subscribed to commands of type [%s]",
@@ -105,7 +246,17 @@ public class SimpleCommandBus implements CommandBus {
         return handler;
     }
 
-    private Object doDispatch(CommandMessage<?> command, CommandHandler commandHandler) throws Throwable {
+    /**
+     * Handles the given <code>command</code> using the given <code>commandHandler</code>, in a new Unit of Work that
+     * passes the command through the interceptors.
+     *
+     * @param command        The command to handle
+     * @param commandHandler The handler to handle the command with
+     * @return the result of the command handler
+     *
+     * @throws Throwable any exception raised while handling the command
+     */
+    Object doDispatch(CommandMessage<?> command, CommandHandler commandHandler) throws Throwable {
         statistics.recordReceivedCommand();
         UnitOfWork unitOfWork = unitOfWorkFactory.createUnitOfWork();
         InterceptorChain chain = new DefaultInterceptorChain(command, unitOfWork, commandHandler, interceptors);
@@ -19,7 +19,9 @@ package org.axonframework.commandhandling.annotation;
 import org.axonframework.commandhandling.CommandMessage;
 import org.axonframework.commandhandling.CommandTargetResolver;
 import org.axonframework.commandhandling.VersionedAggregateIdentifier;
+import org.axonframework.common.ClassCache;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -39,19 +41,25 @@ import static org.axonframework.common.ReflectionUtils.*;
  * Similarly, the expected aggregate version may be provided by annotating a method (without parameters) or field with
  * {@link TargetAggregateVersion}. The return value of the method or value held in the field is used as the expected
  * version. Note that the method must return a Long value, or a value that may be parsed as a Long.
+ * <p/>
+ * The annotated methods and fields are looked up only once for each type of command payload. The payload types are
+ * not prevented from being unloaded.
  *
  * @author Allard Buijze
  * @since 1.2
  */
 public class AnnotationCommandTargetResolver implements CommandTargetResolver {
 
+    private final ClassCache<TargetAccessors> accessorsPerType = new ClassCache<TargetAccessors>();
+
     @Override
     public VersionedAggregateIdentifier resolveTarget(CommandMessage<?> command) {
+        TargetAccessors accessors = accessorsFor(command.getPayloadType());
         Object aggregateIdentifier;
         Long aggregateVersion;
         try {
-            aggregateIdentifier = findIdentifier(command);
-            aggregateVersion = findVersion(command);
+            aggregateIdentifier = accessors.identifier.getValue(command.getPayload());
+            aggregateVersion = asLong(accessors.version.getValue(command.getPayload()));
         } catch (InvocationTargetException e) {
             throw new IllegalArgumentException("An exception occurred while extracting aggregate "
                                                        + "information form a command", e);
@@ -71,36 +79,33 @@ public class AnnotationCommandTargetResolver implements CommandTargetResolver {
         return new VersionedAggregateIdentifier(aggregateIdentifier, aggregateVersion);
     }
 
-    @SuppressWarnings("unchecked")
-    private <I> I findIdentifier(CommandMessage<?> command)
-            throws InvocationTargetException, IllegalAccessException {
-        for (Method m : methodsOf(command.getPayloadType())) {
-            if (m.isAnnotationPresent(TargetAggregateIdentifier.class)) {
-                ensureAccessible(m);
-                return (I) m.invoke(command.getPayload());
-            }
-        }
-        for (Field f : fieldsOf(command.getPayloadType())) {
-            if (f.isAnnotationPresent(TargetAggregateIdentifier.class)) {
-                return (I) getFieldValue(f, command.getPayload());
+    private TargetAccessors accessorsFor(Class<?> payloadType) {
+        TargetAccessors accessors = accessorsPerType.get(payloadType);
+        if (accessors == null) {
+            accessors = new TargetAccessors(findAccessor(payloadType, TargetAggregateIdentifier.class),
+                                            findAccessor(payloadType, TargetAggregateVersion.class));
+            TargetAccessors existing = accessorsPerType.putIfAbsent(payloadType, accessors);
+            if (existing != null) {
+                accessors = existing;
             }
         }
-        return null;
+        return accessors;
     }
 
-    private Long findVersion(CommandMessage<?> command) throws InvocationTargetException, IllegalAccessException {
-        for (Method m : methodsOf(command.getPayloadType())) {
-            if (m.isAnnotationPresent(TargetAggregateVersion.class)) {
+    private static ValueAccessor findAccessor(Class<?> payloadType, Class<? extends Annotation> annotationType) {
+        for (Method m : methodsOf(payloadType)) {
+            if (m.isAnnotationPresent(annotationType)) {
                 ensureAccessible(m);
-                return asLong(m.invoke(command.getPayload()));
+                return new MethodValueAccessor(m);
             }
         }
-        for (Field f : fieldsOf(command.getPayloadType())) {
-            if (f.isAnnotationPresent(TargetAggregateVersion.class)) {
-                return asLong(getFieldValue(f, command.getPayload()));
+        for (Field f : fieldsOf(payloadType)) {
+            if (f.isAnnotationPresent(annotationType)) {
+                ensureAccessible(f);
+                return new FieldValueAccessor(f);
             }
         }
-        return null;
+        return NoValueAccessor.INSTANCE;
     }
 
     private Long asLong(Object fieldValue) {
@@ -112,4 +117,59 @@ public class AnnotationCommandTargetResolver implements CommandTargetResolver {
             return Long.parseLong(fieldValue.toString());
         }
     }
+
+    private static final class TargetAccessors {
+
+        private final ValueAccessor identifier;
+        private final ValueAccessor version;
+
+        private TargetAccessors(ValueAccessor identifier, ValueAccessor version) {
+            this.identifier = identifier;
+            this.version = version;
+        }
+    }
+
+    private interface ValueAccessor {
+
+        Object getValue(Object payload) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    private static final class MethodValueAccessor implements ValueAccessor {
+
+        private static final Object[] NO_PARAMETERS = new Object[0];
+        private final Method method;
+
+        private MethodValueAccessor(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Object getValue(Object payload) throws InvocationTargetException, IllegalAccessException {
+            return method.invoke(payload, NO_PARAMETERS);
+        }
+    }
+
+    private static final class FieldValueAccessor implements ValueAccessor {
+
+        private final Field field;
+
+        private FieldValueAccessor(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        public Object getValue(Object payload) throws IllegalAccessException {
+            return field.get(payload);
+        }
+    }
+
+    private static final class NoValueAccessor implements ValueAccessor {
+
+        private static final NoValueAccessor INSTANCE = new NoValueAccessor();
+
+        @Override
+        public Object getValue(Object payload) {
+            return null;
+        }
+    }
 }
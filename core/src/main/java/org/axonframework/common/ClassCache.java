@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.axonframework.common;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread safe cache of values computed for a class, such as the result of inspecting its methods or fields. The cache
+ * does not prevent classes from being unloaded, making it safe to keep instances in static fields, even when classes
+ * are loaded by a class loader that may be discarded, like that of a redeployed web application.
+ * <p/>
+ * Classes are referenced weakly. Values are referenced softly, as they typically refer to the class they were computed
+ * for, for example through its <code>Method</code> or <code>Field</code> instances. A value may therefore be
+ * discarded when memory is low, in which case it should be computed again. Entries of classes that have been unloaded
+ * are removed when values are added to the cache.
+ *
+ * @param <V> The type of value cached for each class
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class ClassCache<V> {
+
+    private final ConcurrentMap<String, Entry<V>> entries = new ConcurrentHashMap<String, Entry<V>>();
+    private final ReferenceQueue<Class<?>> unloadedClasses = new ReferenceQueue<Class<?>>();
+
+    /**
+     * Returns the value cached for the given <code>type</code>, or <code>null</code> if no value is cached (anymore).
+     *
+     * @param type The class to return the cached value of
+     * @return the value cached for the given class, or <code>null</code>
+     */
+    public V get(Class<?> type) {
+        Entry<V> entry = entries.get(type.getName());
+        return entry == null ? null : entry.valueFor(type);
+    }
+
+    /**
+     * Caches the given <code>value</code> for the given <code>type</code>, unless a value is already cached for it.
+     * In the latter case, that value is returned.
+     *
+     * @param type  The class to cache the value for
+     * @param value The value to cache
+     * @return the value already cached for the given class, or <code>null</code> if the given value has been cached
+     */
+    public V putIfAbsent(Class<?> type, V value) {
+        removeUnloadedClasses();
+        Entry<V> newEntry = new Entry<V>(type, value, unloadedClasses);
+        while (true) {
+            Entry<V> existing = entries.putIfAbsent(type.getName(), newEntry);
+            if (existing == null) {
+                return null;
+            }
+            V existingValue = existing.valueFor(type);
+            if (existingValue != null) {
+                return existingValue;
+            }
+            // the existing entry is for another class with the same name, or its value has been discarded
+            if (entries.replace(type.getName(), existing, newEntry)) {
+                return null;
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private void removeUnloadedClasses() {
+        Reference<? extends Class<?>> reference = unloadedClasses.poll();
+        while (reference != null) {
+            Entry<V> entry = (Entry<V>) reference;
+            entries.remove(entry.className, entry);
+            reference = unloadedClasses.poll();
+        }
+    }
+
+    private static final class Entry<V> extends WeakReference<Class<?>> {
+
+        private final String className;
+        private final SoftReference<V> value;
+
+        private Entry(Class<?> type, V value, ReferenceQueue<Class<?>> queue) {
+            super(type, queue);
+            this.className = type.getName();
+            this.value = new SoftReference<V>(value);
+        }
+
+        private V valueFor(Class<?> type) {
+            return get() == type ? value.get() : null;
+        }
+    }
+}
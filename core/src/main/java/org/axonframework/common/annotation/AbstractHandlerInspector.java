@@ -16,27 +16,42 @@
 
 package org.axonframework.common.annotation;
 
+import org.axonframework.common.ClassCache;
 import org.axonframework.domain.Message;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.axonframework.common.ReflectionUtils.methodsOf;
 
 /**
  * Abstract utility class that inspects handler methods.
+ * <p/>
+ * The handler methods of a type are inspected only once for each type of annotation. All inspectors for the same
+ * target type and annotation share the result of that inspection. These results are kept in a {@link ClassCache}, so
+ * that they do not prevent the target types from being unloaded.
+ * <p/>
+ * For each concrete payload type, the handlers that accept messages with such a payload are resolved only once. The
+ * resolutions of a target type are kept in a {@link ClassCache} as well, so that they do not prevent payload classes
+ * from being unloaded.
  *
  * @author Allard Buijze
  * @since 0.7
  */
 public abstract class AbstractHandlerInspector {
 
+    private static final ClassCache<ConcurrentMap<Class<? extends Annotation>, InspectedHandlers>> HANDLERS_PER_TYPE =
+            new ClassCache<ConcurrentMap<Class<? extends Annotation>, InspectedHandlers>>();
+
     private final Class<?> targetType;
-    private final SortedSet<MethodMessageHandler> handlers = new TreeSet<MethodMessageHandler>();
+    private final InspectedHandlers handlers;
 
     /**
      * Initialize an AbstractHandlerInspector, where the given <code>annotationType</code> is used to annotate the
@@ -47,6 +62,34 @@ public abstract class AbstractHandlerInspector {
      */
     protected AbstractHandlerInspector(Class<?> targetType, Class<? extends Annotation> annotationType) {
         this.targetType = targetType;
+        this.handlers = handlersOf(targetType, annotationType);
+    }
+
+    private static InspectedHandlers handlersOf(Class<?> targetType, Class<? extends Annotation> annotationType) {
+        ConcurrentMap<Class<? extends Annotation>, InspectedHandlers> handlersPerAnnotation =
+                HANDLERS_PER_TYPE.get(targetType);
+        if (handlersPerAnnotation == null) {
+            handlersPerAnnotation = new ConcurrentHashMap<Class<? extends Annotation>, InspectedHandlers>();
+            ConcurrentMap<Class<? extends Annotation>, InspectedHandlers> existing =
+                    HANDLERS_PER_TYPE.putIfAbsent(targetType, handlersPerAnnotation);
+            if (existing != null) {
+                handlersPerAnnotation = existing;
+            }
+        }
+        InspectedHandlers handlers = handlersPerAnnotation.get(annotationType);
+        if (handlers == null) {
+            handlers = new InspectedHandlers(inspect(targetType, annotationType));
+            InspectedHandlers existing = handlersPerAnnotation.putIfAbsent(annotationType, handlers);
+            if (existing != null) {
+                handlers = existing;
+            }
+        }
+        return handlers;
+    }
+
+    private static SortedSet<MethodMessageHandler> inspect(Class<?> targetType,
+                                                           Class<? extends Annotation> annotationType) {
+        SortedSet<MethodMessageHandler> handlers = new TreeSet<MethodMessageHandler>();
         Iterable<Method> methods = methodsOf(targetType);
         for (Method method : methods) {
             if (method.getAnnotation(annotationType) != null) {
@@ -63,17 +106,30 @@ public abstract class AbstractHandlerInspector {
                 }
             }
         }
+        return handlers;
     }
 
     /**
      * Returns the handler method that handles objects of the given <code>parameterType</code>. Returns
      * <code>null</code> is no such method is found.
+     * <p/>
+     * Only the handlers that accept the payload type of the message are evaluated. These are resolved once for each
+     * payload type. Of these, the most specific handler that matches the message is returned.
      *
      * @param message The message to find a handler for
      * @return the  handler method for the given parameterType
      */
     public MethodMessageHandler findHandlerMethod(final Message message) {
-        for (MethodMessageHandler handler : handlers) {
+        Class<?> payloadType = message.getPayloadType();
+        if (payloadType == null) {
+            for (MethodMessageHandler handler : handlers.all) {
+                if (handler.matches(message)) {
+                    return handler;
+                }
+            }
+            return null;
+        }
+        for (MethodMessageHandler handler : handlers.candidatesFor(payloadType)) {
             if (handler.matches(message)) {
                 return handler;
             }
@@ -81,13 +137,29 @@ public abstract class AbstractHandlerInspector {
         return null;
     }
 
+    /**
+     * Indicates whether the target type declares a handler for messages with the given <code>payloadType</code>. A
+     * handler is found unless its payload parameter cannot accept the given type. Handlers that accept any message,
+     * or whose parameters are all resolved from other parts of the message, such as meta data, are always found.
+     * <p/>
+     * Note that a handler found by this method may still decide not to handle a specific message, for example because
+     * a parameter value cannot be resolved from that message.
+     *
+     * @param payloadType The type of payload to find a handler for
+     * @return <code>true</code> if a handler may exist for messages with given payload type, otherwise
+     *         <code>false</code>
+     */
+    public boolean hasHandlerFor(Class<?> payloadType) {
+        return handlers.candidatesFor(payloadType).length > 0;
+    }
+
     /**
      * Returns the list of handlers found on target type.
      *
      * @return the list of handlers found on target type
      */
     public List<MethodMessageHandler> getHandlers() {
-        return new ArrayList<MethodMessageHandler>(handlers);
+        return new ArrayList<MethodMessageHandler>(handlers.all);
     }
 
     /**
@@ -98,4 +170,41 @@ public abstract class AbstractHandlerInspector {
     public Class<?> getTargetType() {
         return targetType;
     }
+
+    /**
+     * The handlers found on a target type, and the handlers that accept each of the payload types seen so far.
+     */
+    private static final class InspectedHandlers {
+
+        private static final MethodMessageHandler[] NO_HANDLERS = new MethodMessageHandler[0];
+
+        private final SortedSet<MethodMessageHandler> all;
+        private final ClassCache<MethodMessageHandler[]> resolutions = new ClassCache<MethodMessageHandler[]>();
+
+        private InspectedHandlers(SortedSet<MethodMessageHandler> handlers) {
+            this.all = Collections.unmodifiableSortedSet(handlers);
+        }
+
+        private MethodMessageHandler[] candidatesFor(Class<?> payloadType) {
+            MethodMessageHandler[] candidates = resolutions.get(payloadType);
+            if (candidates == null) {
+                candidates = resolve(payloadType);
+                MethodMessageHandler[] existing = resolutions.putIfAbsent(payloadType, candidates);
+                if (existing != null) {
+                    candidates = existing;
+                }
+            }
+            return candidates;
+        }
+
+        private MethodMessageHandler[] resolve(Class<?> payloadType) {
+            List<MethodMessageHandler> candidates = new ArrayList<MethodMessageHandler>();
+            for (MethodMessageHandler handler : all) {
+                if (handler.matchesPayloadType(payloadType)) {
+                    candidates.add(handler);
+                }
+            }
+            return candidates.isEmpty() ? NO_HANDLERS : candidates.toArray(new MethodMessageHandler[candidates.size()]);
+        }
+    }
 }
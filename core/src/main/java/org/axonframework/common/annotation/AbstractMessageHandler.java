@@ -54,6 +54,27 @@ public abstract class AbstractMessageHandler implements Comparable<AbstractMessa
         return true;
     }
 
+    /**
+     * Indicates whether this Handler may be suitable for messages with a payload of the given
+     * <code>payloadType</code>. This is the case unless one of the parameters requires the payload to be of a type
+     * that the given <code>payloadType</code> is not assignable to. When this method returns <code>true</code>, {@link
+     * #matches(org.axonframework.domain.Message)} may still reject a message with that payload type.
+     *
+     * @param payloadType The type of payload of a message
+     * @return <code>false</code> if this handler never matches messages with the given payload type, otherwise
+     *         <code>true</code>
+     */
+    public boolean matchesPayloadType(Class<?> payloadType) {
+        for (ParameterResolver parameterResolver : parameterValueResolvers) {
+            if (parameterResolver instanceof DefaultParameterResolverFactory.PayloadParameterResolver
+                    && !((DefaultParameterResolverFactory.PayloadParameterResolver) parameterResolver)
+                    .matchesPayloadType(payloadType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Invokes this handler for the given <code>target</code> instance, using the given <code>message</code> as
      * source object to provide parameter values.
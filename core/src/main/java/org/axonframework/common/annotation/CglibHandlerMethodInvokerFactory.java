@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.common.annotation;
+
+import net.sf.cglib.asm.ClassWriter;
+import net.sf.cglib.asm.Type;
+import net.sf.cglib.core.Block;
+import net.sf.cglib.core.ClassEmitter;
+import net.sf.cglib.core.CodeEmitter;
+import net.sf.cglib.core.Constants;
+import net.sf.cglib.core.DebuggingClassWriter;
+import net.sf.cglib.core.EmitUtils;
+import net.sf.cglib.core.ReflectUtils;
+import net.sf.cglib.core.Signature;
+import net.sf.cglib.core.TypeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HandlerMethodInvokerFactory that generates a class for each handler method, which invokes that method directly,
+ * instead of through reflection. Invokers of handler methods with a single parameter do not allocate any objects
+ * when they are invoked with {@link HandlerMethodInvoker#invokeWithParameter(Object, Object)}.
+ * <p/>
+ * The generated classes are defined in the class loader and package of the class declaring the handler method. Only
+ * public, non-static methods can be invoked this way. For all other methods, or if a class cannot be generated, this
+ * factory falls back to a reflection based invoker.
+ * <p/>
+ * Where reflection would throw an IllegalArgumentException for a target or parameter of the wrong type, the generated
+ * invokers throw a ClassCastException.
+ * <p/>
+ * To use this factory, create a file called <code>org.axonframework.common.annotation.HandlerMethodInvokerFactory</code>
+ * in the <code>META-INF/services</code> package, containing the fully qualified name of this class. See {@link
+ * HandlerMethodInvokerFactory}.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class CglibHandlerMethodInvokerFactory extends HandlerMethodInvokerFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(CglibHandlerMethodInvokerFactory.class);
+
+    private static final String CLASS_NAME_SUFFIX = "$$HandlerInvokerByAxon$$";
+    private static final Type HANDLER_METHOD_INVOKER = Type.getType(HandlerMethodInvoker.class);
+    private static final Type INVOCATION_TARGET_EXCEPTION = Type.getType(InvocationTargetException.class);
+    private static final Type ILLEGAL_ARGUMENT_EXCEPTION = Type.getType(IllegalArgumentException.class);
+    private static final Type[] EXCEPTIONS = {INVOCATION_TARGET_EXCEPTION,
+            Type.getType(IllegalAccessException.class)};
+    private static final Signature INVOKE = TypeUtils.parseSignature("Object invoke(Object, Object[])");
+    private static final Signature INVOKE_WITH_PARAMETER =
+            TypeUtils.parseSignature("Object invokeWithParameter(Object, Object)");
+    private static final Signature WRAP_EXCEPTION = TypeUtils.parseConstructor("Throwable");
+
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    private final HandlerMethodInvokerFactory fallback = new ReflectionHandlerMethodInvokerFactory();
+
+    @Override
+    public HandlerMethodInvoker createInvoker(Method method) {
+        ClassLoader classLoader = method.getDeclaringClass().getClassLoader();
+        if (classLoader == null || !Modifier.isPublic(method.getModifiers())
+                || Modifier.isStatic(method.getModifiers())) {
+            return fallback.createInvoker(method);
+        }
+        String className = method.getDeclaringClass().getName() + CLASS_NAME_SUFFIX
+                + CLASS_COUNTER.getAndIncrement();
+        try {
+            Class<?> invokerClass = ReflectUtils.defineClass(className, generate(className, method), classLoader);
+            return (HandlerMethodInvoker) invokerClass.newInstance();
+        } catch (Exception e) {
+            logger.warn("Could not generate an invoker for handler method {}. Falling back to reflection.",
+                        method.toGenericString(), e);
+            return fallback.createInvoker(method);
+        }
+    }
+
+    private byte[] generate(String className, Method method) {
+        DebuggingClassWriter classWriter = new DebuggingClassWriter(ClassWriter.COMPUTE_MAXS);
+        ClassEmitter ce = new ClassEmitter(classWriter);
+        ce.begin_class(Constants.V1_2, Constants.ACC_PUBLIC | Constants.ACC_FINAL, className, Constants.TYPE_OBJECT,
+                       new Type[]{HANDLER_METHOD_INVOKER}, Constants.SOURCE_FILE);
+        EmitUtils.null_constructor(ce);
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        CodeEmitter e = ce.begin_method(Constants.ACC_PUBLIC, INVOKE, EXCEPTIONS);
+        e.load_arg(0);
+        e.checkcast(Type.getType(method.getDeclaringClass()));
+        for (int i = 0; i < parameterTypes.length; i++) {
+            e.load_arg(1);
+            e.aaload(i);
+            e.unbox(Type.getType(parameterTypes[i]));
+        }
+        invokeAndReturn(e, method);
+
+        e = ce.begin_method(Constants.ACC_PUBLIC, INVOKE_WITH_PARAMETER, EXCEPTIONS);
+        if (parameterTypes.length == 1) {
+            e.load_arg(0);
+            e.checkcast(Type.getType(method.getDeclaringClass()));
+            e.load_arg(1);
+            e.unbox(Type.getType(parameterTypes[0]));
+            invokeAndReturn(e, method);
+        } else {
+            e.throw_exception(ILLEGAL_ARGUMENT_EXCEPTION, "The handler method does not declare a single parameter");
+            e.end_method();
+        }
+
+        ce.end_class();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Invokes the handler method and returns its (boxed) return value. Any exception thrown by the handler method is
+     * wrapped in an InvocationTargetException, just like reflection does.
+     */
+    private void invokeAndReturn(CodeEmitter e, Method method) {
+        Block block = e.begin_block();
+        e.invoke(ReflectUtils.getMethodInfo(method));
+        Type returnType = Type.getType(method.getReturnType());
+        if (Type.VOID_TYPE.equals(returnType)) {
+            e.aconst_null();
+        } else {
+            e.box(returnType);
+        }
+        e.return_value();
+        block.end();
+        e.catch_exception(block, Constants.TYPE_THROWABLE);
+        e.new_instance(INVOCATION_TARGET_EXCEPTION);
+        e.dup_x1();
+        e.swap();
+        e.invoke_constructor(INVOCATION_TARGET_EXCEPTION, WRAP_EXCEPTION);
+        e.athrow();
+        e.end_method();
+    }
+}
@@ -104,7 +104,12 @@ class DefaultParameterResolverFactory extends ParameterResolverFactory {
         }
     }
 
-    private static class PayloadParameterResolver implements ParameterResolver {
+    /**
+     * ParameterResolver that resolves the payload of a message, if that payload is assignable to the type of the
+     * parameter.
+     */
+    static class PayloadParameterResolver implements ParameterResolver {
+
         private final Class<?> payloadType;
 
         public PayloadParameterResolver(Class<?> payloadType) {
@@ -120,5 +125,15 @@ class DefaultParameterResolverFactory extends ParameterResolverFactory {
         public boolean matches(Message message) {
             return message.getPayloadType() != null && payloadType.isAssignableFrom(message.getPayloadType());
         }
+
+        /**
+         * Indicates whether this resolver matches messages with a payload of given <code>messagePayloadType</code>.
+         *
+         * @param messagePayloadType The type of payload of a message
+         * @return <code>true</code> if the payload is assignable to the parameter, otherwise <code>false</code>
+         */
+        boolean matchesPayloadType(Class<?> messagePayloadType) {
+            return payloadType.isAssignableFrom(messagePayloadType);
+        }
     }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.common.annotation;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Invokes a single handler method on target instances. Implementations are created by a {@link
+ * HandlerMethodInvokerFactory}, and must be thread safe.
+ * <p/>
+ * Exceptions thrown by the handler method are wrapped in an {@link InvocationTargetException}, just like {@link
+ * java.lang.reflect.Method#invoke(Object, Object...)} does.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public interface HandlerMethodInvoker {
+
+    /**
+     * Invokes the handler method on the given <code>target</code>, using the given <code>parameters</code>.
+     *
+     * @param target     The instance to invoke the method on
+     * @param parameters The parameter values to invoke the method with
+     * @return the value returned by the method, or <code>null</code> if the method does not return a value
+     *
+     * @throws InvocationTargetException when the handler method throws an exception
+     * @throws IllegalAccessException    when the handler method is not accessible
+     */
+    Object invoke(Object target, Object[] parameters) throws InvocationTargetException, IllegalAccessException;
+
+    /**
+     * Invokes the handler method on the given <code>target</code>, using the given <code>parameter</code> as its only
+     * parameter. This method may only be used for handler methods that declare exactly one parameter. It allows
+     * implementations to invoke the method without creating a parameter array.
+     *
+     * @param target    The instance to invoke the method on
+     * @param parameter The value of the only parameter of the method
+     * @return the value returned by the method, or <code>null</code> if the method does not return a value
+     *
+     * @throws InvocationTargetException when the handler method throws an exception
+     * @throws IllegalAccessException    when the handler method is not accessible
+     */
+    Object invokeWithParameter(Object target, Object parameter)
+            throws InvocationTargetException, IllegalAccessException;
+}
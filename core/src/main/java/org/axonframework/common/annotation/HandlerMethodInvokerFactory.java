@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.common.annotation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Abstract Factory class that provides access to the HandlerMethodInvokerFactory implementation. This factory creates
+ * the {@link HandlerMethodInvoker} that is used to invoke each of the annotated handler methods, such as those
+ * annotated with {@link org.axonframework.eventhandling.annotation.EventHandler}, {@link
+ * org.axonframework.commandhandling.annotation.CommandHandler} or {@link
+ * org.axonframework.saga.annotation.SagaEventHandler}.
+ * <p/>
+ * This class uses the {@link ServiceLoader} mechanism to find implementations. If none are found, it defaults to the
+ * {@link ReflectionHandlerMethodInvokerFactory}, which invokes handlers using reflection.
+ * <p/>
+ * To use another implementation, such as the {@link CglibHandlerMethodInvokerFactory}, create a file called
+ * <code>org.axonframework.common.annotation.HandlerMethodInvokerFactory</code> in the <code>META-INF/services</code>
+ * package. The file must contain the fully qualified class name of the implementation to use. This implementation
+ * must have a public no-arg constructor and extend HandlerMethodInvokerFactory.
+ * <p/>
+ * This class is thread safe to use.
+ *
+ * @author Allard Buijze
+ * @see ServiceLoader
+ * @since 2.0
+ */
+public abstract class HandlerMethodInvokerFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(HandlerMethodInvokerFactory.class);
+    private static final HandlerMethodInvokerFactory INSTANCE;
+
+    static {
+        HandlerMethodInvokerFactory factory = locateFactory(Thread.currentThread().getContextClassLoader());
+        if (factory == null) {
+            factory = locateFactory(HandlerMethodInvokerFactory.class.getClassLoader());
+        }
+        if (factory == null) {
+            factory = new ReflectionHandlerMethodInvokerFactory();
+            logger.debug("No custom HandlerMethodInvokerFactory implementation found. Using reflection.");
+        } else {
+            logger.info("Found custom HandlerMethodInvokerFactory implementation: {}", factory.getClass().getName());
+        }
+        INSTANCE = factory;
+    }
+
+    private static HandlerMethodInvokerFactory locateFactory(ClassLoader classLoader) {
+        Iterator<HandlerMethodInvokerFactory> services =
+                ServiceLoader.load(HandlerMethodInvokerFactory.class, classLoader).iterator();
+        if (services.hasNext()) {
+            HandlerMethodInvokerFactory found = services.next();
+            if (services.hasNext()) {
+                logger.warn("More than one HandlerMethodInvokerFactory implementation was found. "
+                                    + "Using {}.", found.getClass().getName());
+            }
+            return found;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the HandlerMethodInvokerFactory implementation discovered on the classpath. If none is found, it
+     * returns a factory that creates reflection based invokers.
+     *
+     * @return the HandlerMethodInvokerFactory implementation found on the classpath
+     */
+    public static HandlerMethodInvokerFactory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates an invoker for the given handler <code>method</code>. The method has already been made accessible.
+     *
+     * @param method The handler method to create an invoker for
+     * @return a HandlerMethodInvoker that invokes the given method
+     */
+    public abstract HandlerMethodInvoker createInvoker(Method method);
+}
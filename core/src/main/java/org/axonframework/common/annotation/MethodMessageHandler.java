@@ -29,6 +29,9 @@ import static org.axonframework.common.ReflectionUtils.ensureAccessible;
 
 /**
  * Represents a method recognized as a handler by the handler inspector (see {@link AbstractHandlerInspector}).
+ * <p/>
+ * The method is invoked using a {@link HandlerMethodInvoker} created by the {@link HandlerMethodInvokerFactory}. For
+ * methods with a single parameter, no parameter array is created for each invocation.
  *
  * @author Allard Buijze
  * @since 2.0
@@ -36,6 +39,7 @@ import static org.axonframework.common.ReflectionUtils.ensureAccessible;
 public final class MethodMessageHandler extends AbstractMessageHandler {
 
     private final Method method;
+    private final HandlerMethodInvoker invoker;
 
     /**
      * Creates a MethodMessageHandler for the given <code>method</code>.
@@ -90,6 +94,7 @@ public final class MethodMessageHandler extends AbstractMessageHandler {
     private MethodMessageHandler(Method method, ParameterResolver[] parameterValueResolvers, Class payloadType) {
         super(payloadType, method.getDeclaringClass(), parameterValueResolvers);
         this.method = method;
+        this.invoker = HandlerMethodInvokerFactory.getInstance().createInvoker(method);
     }
 
     @Override
@@ -97,11 +102,15 @@ public final class MethodMessageHandler extends AbstractMessageHandler {
         Assert.isTrue(method.getDeclaringClass().isInstance(target),
                       "Given target is not an instance of the method's owner.");
         Assert.notNull(message, "Event may not be null");
-        Object[] parameterValues = new Object[getParameterValueResolvers().length];
+        ParameterResolver[] resolvers = getParameterValueResolvers();
+        if (resolvers.length == 1) {
+            return invoker.invokeWithParameter(target, resolvers[0].resolveParameterValue(message));
+        }
+        Object[] parameterValues = new Object[resolvers.length];
         for (int i = 0; i < parameterValues.length; i++) {
-            parameterValues[i] = getParameterValueResolvers()[i].resolveParameterValue(message);
+            parameterValues[i] = resolvers[i].resolveParameterValue(message);
         }
-        return method.invoke(target, parameterValues);
+        return invoker.invoke(target, parameterValues);
     }
 
     /**
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.common.annotation;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * HandlerMethodInvokerFactory that creates invokers that use reflection to invoke handler methods. This is the
+ * default factory, which supports handler methods of any visibility.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class ReflectionHandlerMethodInvokerFactory extends HandlerMethodInvokerFactory {
+
+    @Override
+    public HandlerMethodInvoker createInvoker(Method method) {
+        return new ReflectionHandlerMethodInvoker(method);
+    }
+
+    private static final class ReflectionHandlerMethodInvoker implements HandlerMethodInvoker {
+
+        private final Method method;
+
+        private ReflectionHandlerMethodInvoker(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Object invoke(Object target, Object[] parameters)
+                throws InvocationTargetException, IllegalAccessException {
+            return method.invoke(target, parameters);
+        }
+
+        @Override
+        public Object invokeWithParameter(Object target, Object parameter)
+                throws InvocationTargetException, IllegalAccessException {
+            return method.invoke(target, parameter);
+        }
+    }
+}
@@ -16,22 +16,24 @@
 
 package org.axonframework.eventhandling;
 
-import java.util.Collections;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * Abstract {@code Cluster} implementation that keeps track of Cluster members ({@link EventListener EventListeners}).
  * This implementation is thread-safe. The {@link #getMembers()} method returns a read-only runtime view of the members
  * in the cluster.
+ * <p/>
+ * The cluster is {@link PayloadTypeAware}. It handles an event's payload type if any of its members handles it.
+ * Members that are not PayloadTypeAware are considered to handle all payload types. The members interested in each
+ * payload type are resolved only once, and again after a member joins or leaves the cluster.
  *
  * @author Allard Buijze
  * @since 1.2
  */
-public abstract class AbstractCluster implements Cluster {
+public abstract class AbstractCluster implements Cluster, PayloadTypeAware {
 
-    private final Set<EventListener> eventListeners = new CopyOnWriteArraySet<EventListener>();
-    private final Set<EventListener> immutableEventListeners = Collections.unmodifiableSet(eventListeners);
+    private final EventListenerIndex eventListeners = new EventListenerIndex();
     private final ClusterMetaData clusterMetaData = new DefaultClusterMetaData();
 
     @Override
@@ -49,6 +51,29 @@ public abstract class AbstractCluster implements Cluster {
         return clusterMetaData;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * This implementation returns <code>true</code> if at least one of the members handles events with the given
+     * <code>payloadType</code>.
+     */
+    @Override
+    public boolean handlesPayloadType(Class<?> payloadType) {
+        return !eventListeners.getListenersFor(payloadType).isEmpty();
+    }
+
+    /**
+     * Returns the members that need to receive events with the given <code>payloadType</code>. These are the members
+     * that are not {@link PayloadTypeAware}, and the members that declare to handle the payload type. If the payload
+     * type is unknown (<code>null</code>), all members are returned.
+     *
+     * @param payloadType The type of payload of the event, may be <code>null</code>
+     * @return a read-only list of the members interested in events with given payload type
+     */
+    protected List<EventListener> getMembersFor(Class<?> payloadType) {
+        return eventListeners.getListenersFor(payloadType);
+    }
+
     /**
      * {@inheritDoc}
      * <p/>
@@ -59,6 +84,6 @@ public abstract class AbstractCluster implements Cluster {
      */
     @Override
     public Set<EventListener> getMembers() {
-        return immutableEventListeners;
+        return eventListeners.getAll();
     }
 }
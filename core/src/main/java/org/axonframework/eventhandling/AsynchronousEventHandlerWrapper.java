@@ -23,12 +23,14 @@ import java.util.concurrent.Executor;
 /**
  * The AsynchronousEventHandlerWrapper can wrap any event listener to give it asynchronous behavior. The wrapper will
  * schedule all incoming events for processing, making the calling thread return immediately.
+ * <p/>
+ * If the wrapped event listener is {@link PayloadTypeAware}, the wrapper handles the same payload types.
  *
  * @author Allard Buijze
  * @since 0.3
  */
 public class AsynchronousEventHandlerWrapper extends AsynchronousExecutionWrapper<EventMessage<?>>
-        implements EventListenerProxy {
+        implements EventListenerProxy, PayloadTypeAware {
 
     private final EventListener eventListener;
 
@@ -77,6 +79,11 @@ public class AsynchronousEventHandlerWrapper extends AsynchronousExecutionWrappe
         schedule(event);
     }
 
+    @Override
+    public boolean handlesPayloadType(Class<?> payloadType) {
+        return PayloadTypeFilter.accepts(eventListener, payloadType);
+    }
+
     @Override
     public Object getTarget() {
         return eventListener;
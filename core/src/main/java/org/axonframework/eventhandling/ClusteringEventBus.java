@@ -113,8 +113,11 @@ public class ClusteringEventBus implements EventBus {
 
         @Override
         public void publish(EventMessage event) {
+            Class<?> payloadType = event.getPayloadType();
             for (Cluster cluster : clusters) {
-                cluster.publish(event);
+                if (PayloadTypeFilter.accepts(cluster, payloadType)) {
+                    cluster.publish(event);
+                }
             }
         }
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventhandling;
+
+import org.axonframework.common.ClassCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Keeps track of a set of Event Listeners, and of the listeners that need to receive events with each payload type.
+ * Listeners that are {@link PayloadTypeAware} only receive the events with a payload type they handle. Other
+ * listeners receive all events.
+ * <p/>
+ * The listeners interested in a payload type are resolved once, the first time an event with that payload type is
+ * published. These resolutions are discarded each time a listener is added or removed. They are kept in a {@link
+ * ClassCache}, so they do not prevent payload classes from being unloaded.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+final class EventListenerIndex {
+
+    private final Set<EventListener> listeners = new CopyOnWriteArraySet<EventListener>();
+    private final Set<EventListener> immutableListeners = Collections.unmodifiableSet(listeners);
+    private volatile Resolutions resolutions = new Resolutions(listeners);
+
+    /**
+     * Adds the given <code>listener</code> to this index.
+     *
+     * @param listener The listener to add
+     * @return <code>true</code> if the listener was added, <code>false</code> if it was already part of this index
+     */
+    synchronized boolean add(EventListener listener) {
+        if (listeners.add(listener)) {
+            resolutions = new Resolutions(listeners);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the given <code>listener</code> from this index.
+     *
+     * @param listener The listener to remove
+     * @return <code>true</code> if the listener was removed, <code>false</code> if it was not part of this index
+     */
+    synchronized boolean remove(EventListener listener) {
+        if (listeners.remove(listener)) {
+            resolutions = new Resolutions(listeners);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a read-only, real-time view on all the listeners in this index.
+     *
+     * @return a view on all the listeners in this index
+     */
+    Set<EventListener> getAll() {
+        return immutableListeners;
+    }
+
+    /**
+     * Returns the listeners that need to receive events with the given <code>payloadType</code>. If the payload type
+     * is unknown (<code>null</code>), all listeners are returned.
+     *
+     * @param payloadType The payload type of the event, may be <code>null</code>
+     * @return a read-only list of listeners interested in events with given payload type
+     */
+    List<EventListener> getListenersFor(Class<?> payloadType) {
+        Resolutions current = resolutions;
+        if (payloadType == null) {
+            return current.all;
+        }
+        List<EventListener> interested = current.perType.get(payloadType);
+        if (interested == null) {
+            interested = current.resolve(payloadType);
+            List<EventListener> existing = current.perType.putIfAbsent(payloadType, interested);
+            if (existing != null) {
+                interested = existing;
+            }
+        }
+        return interested;
+    }
+
+    /**
+     * The resolutions made for a single version of the set of listeners.
+     */
+    private static final class Resolutions {
+
+        private final List<EventListener> all;
+        private final ClassCache<List<EventListener>> perType = new ClassCache<List<EventListener>>();
+
+        private Resolutions(Set<EventListener> listeners) {
+            this.all = Collections.unmodifiableList(Arrays.asList(listeners.toArray(new EventListener[0])));
+        }
+
+        private List<EventListener> resolve(Class<?> payloadType) {
+            List<EventListener> interested = new ArrayList<EventListener>();
+            for (EventListener listener : all) {
+                if (PayloadTypeFilter.accepts(listener, payloadType)) {
+                    interested.add(listener);
+                }
+            }
+            if (interested.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return interested.size() == all.size() ? all : Collections.unmodifiableList(interested);
+        }
+    }
+}
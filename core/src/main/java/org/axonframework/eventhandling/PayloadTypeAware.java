@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventhandling;
+
+/**
+ * Interface for Event Listeners and Clusters that are able to tell whether they handle events with a certain payload
+ * type. Event Buses and Clusters use this information to skip listeners that would ignore an event anyway. Since the
+ * payload type of an event read from an Event Store is resolved from its serialized type, this allows events to be
+ * dispatched without deserializing the payload or meta data of events that are not handled by any listener.
+ * <p/>
+ * Implementations must be conservative: when in doubt, they must return <code>true</code>. An event is only
+ * withheld from an instance that returns <code>false</code> for its payload type.
+ * <p/>
+ * The {@link SimpleEventBus} and {@link AbstractCluster} remember the answer for each payload type for as long as their
+ * set of listeners does not change. Event Listeners must therefore always give the same answer for the same payload
+ * type.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public interface PayloadTypeAware {
+
+    /**
+     * Indicates whether this instance handles events with the given <code>payloadType</code>. Events of payload types
+     * for which this method returns <code>false</code> do not need to be passed to this instance.
+     *
+     * @param payloadType The type of payload of the event
+     * @return <code>true</code> if events with given payload type may be handled, otherwise <code>false</code>
+     */
+    boolean handlesPayloadType(Class<?> payloadType);
+}
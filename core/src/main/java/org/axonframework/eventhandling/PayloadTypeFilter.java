@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.axonframework.eventhandling;
+
+/**
+ * Utility class that decides whether an event must be passed to an Event Listener or Cluster, based on the payload
+ * type of the event.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+final class PayloadTypeFilter {
+
+    private PayloadTypeFilter() {
+        // utility class
+    }
+
+    /**
+     * Indicates whether events with the given <code>payloadType</code> must be passed to the given
+     * <code>recipient</code>. This is the case when the payload type is unknown (<code>null</code>), when the
+     * recipient is not {@link PayloadTypeAware}, or when it declares to handle the payload type.
+     *
+     * @param recipient   The Event Listener or Cluster to verify
+     * @param payloadType The type of payload of the event, may be <code>null</code>
+     * @return <code>true</code> if the event must be passed to the recipient, otherwise <code>false</code>
+     */
+    static boolean accepts(Object recipient, Class<?> payloadType) {
+        return payloadType == null
+                || !(recipient instanceof PayloadTypeAware)
+                || ((PayloadTypeAware) recipient).handlesPayloadType(payloadType);
+    }
+}
@@ -22,6 +22,8 @@ import org.axonframework.domain.EventMessage;
  * A simple Cluster implementation that invokes each of the members of a cluster when an Event is published. When an
  * Event Listener raises an exception, publication of the Event is aborted and the exception is propagated. No
  * guarantees are given about the order of invocation of Event Listeners.
+ * <p/>
+ * Members that are {@link PayloadTypeAware} are only invoked for events with a payload type they handle.
  *
  * @author ALlard Buijze
  * @since 1.2
@@ -30,7 +32,7 @@ public class SimpleCluster extends AbstractCluster {
 
     @Override
     public void publish(EventMessage event) {
-        for (EventListener eventListener : getMembers()) {
+        for (EventListener eventListener : getMembersFor(event.getPayloadType())) {
             eventListener.handle(event);
         }
     }
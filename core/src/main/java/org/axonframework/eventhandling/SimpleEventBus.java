@@ -21,14 +21,15 @@ import org.axonframework.monitoring.jmx.JmxConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.List;
 
 /**
  * Implementation of the {@link EventBus} that directly forwards all published events (in the callers' thread) to all
  * subscribed listeners.
  * <p/>
- * Listeners are expected to implement asynchronous handling themselves.
+ * Listeners are expected to implement asynchronous handling themselves. Listeners that are {@link PayloadTypeAware}
+ * only receive the events with a payload type they handle. The listeners interested in each payload type are resolved
+ * only once, and again after a listener subscribes or unsubscribes.
  *
  * @author Allard Buijze
  * @see AsynchronousEventHandlerWrapper
@@ -37,7 +38,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
 public class SimpleEventBus implements EventBus {
 
     private static final Logger logger = LoggerFactory.getLogger(SimpleEventBus.class);
-    private final Set<EventListener> listeners = new CopyOnWriteArraySet<EventListener>();
+    private final EventListenerIndex listeners = new EventListenerIndex();
     private volatile SimpleEventBusStatistics statistics = new SimpleEventBusStatistics();
 
     /**
@@ -102,11 +103,14 @@ public class SimpleEventBus implements EventBus {
     @Override
     public void publish(EventMessage event) {
         statistics.recordPublishedEvent();
-        if (listeners != null && !listeners.isEmpty()) {
-            for (EventListener listener : listeners) {
-                logger.debug("Dispatching Event [{}] to EventListener [{}]",
-                             event.getClass().getSimpleName(),
-                             listener.getClass().getSimpleName());
+        List<EventListener> interestedListeners = listeners.getListenersFor(event.getPayloadType());
+        if (!interestedListeners.isEmpty()) {
+            for (EventListener listener : interestedListeners) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Dispatching Event [{}] to EventListener [{}]",
+                                 event.getClass().getSimpleName(),
+                                 listener.getClass().getSimpleName());
+                }
                 listener.handle(event);
             }
         }
@@ -66,6 +66,16 @@ public class AnnotationEventHandlerInvoker {
         }
     }
 
+    /**
+     * Indicates whether the target declares an @EventHandler for events with the given <code>payloadType</code>.
+     *
+     * @param payloadType The type of payload of the event
+     * @return <code>true</code> if the target may handle events with given payload type, otherwise <code>false</code>
+     */
+    public boolean hasHandlerFor(Class<?> payloadType) {
+        return invoker.hasHandlerFor(payloadType);
+    }
+
     /**
      * Returns the target instance containing the @EventHandler annotated methods.
      *
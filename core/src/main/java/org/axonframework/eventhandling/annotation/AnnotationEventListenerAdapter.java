@@ -25,6 +25,7 @@ import org.axonframework.eventhandling.AsynchronousEventHandlerWrapper;
 import org.axonframework.eventhandling.EventBus;
 import org.axonframework.eventhandling.EventListener;
 import org.axonframework.eventhandling.EventListenerProxy;
+import org.axonframework.eventhandling.PayloadTypeAware;
 import org.axonframework.eventhandling.SequencingPolicy;
 import org.axonframework.eventhandling.SequentialPolicy;
 import org.axonframework.eventhandling.TransactionManager;
@@ -45,15 +46,20 @@ import static org.axonframework.common.ReflectionUtils.findAnnotation;
  * <p/>
  * If the event listener has the {@link AsynchronousEventListener} annotation, it is also configured to handle events
  * asynchronously. In that case, event processing is handed over to the given {@link java.util.concurrent.Executor}.
+ * <p/>
+ * The adapter is {@link PayloadTypeAware}: Event Buses and Clusters will not pass it any events for which the
+ * annotated event listener has no handler.
  *
  * @author Allard Buijze
  * @see EventListener
  * @see org.axonframework.eventhandling.AsynchronousEventHandlerWrapper
  * @since 0.1
  */
-public class AnnotationEventListenerAdapter implements Subscribable, EventListenerProxy, TransactionManager {
+public class AnnotationEventListenerAdapter implements Subscribable, EventListenerProxy, TransactionManager,
+                                                       PayloadTypeAware {
 
     private final EventListener targetEventListener;
+    private final AnnotationEventHandlerInvoker eventHandlerInvoker;
     private final Executor executor;
     private final TransactionManager transactionManager;
     private final EventBus eventBus;
@@ -112,7 +118,8 @@ public class AnnotationEventListenerAdapter implements Subscribable, EventListen
      */
     public AnnotationEventListenerAdapter(Object annotatedEventListener, Executor executor, EventBus eventBus) {
         this.annotatedEventListener = annotatedEventListener;
-        EventListener adapter = new TargetEventListener(new AnnotationEventHandlerInvoker(annotatedEventListener));
+        this.eventHandlerInvoker = new AnnotationEventHandlerInvoker(annotatedEventListener);
+        EventListener adapter = new TargetEventListener(eventHandlerInvoker);
         this.transactionManager = createTransactionManagerFor(annotatedEventListener);
         this.executor = executor;
         this.eventBus = eventBus;
@@ -135,6 +142,17 @@ public class AnnotationEventListenerAdapter implements Subscribable, EventListen
         targetEventListener.handle(event);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * This implementation returns <code>true</code> if the annotated event listener has an {@link EventHandler} for
+     * events with the given <code>payloadType</code>.
+     */
+    @Override
+    public boolean handlesPayloadType(Class<?> payloadType) {
+        return eventHandlerInvoker.hasHandlerFor(payloadType);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -17,7 +17,6 @@
 package org.axonframework.eventsourcing;
 
 import org.axonframework.common.Assert;
-import org.axonframework.common.ReflectionUtils;
 import org.axonframework.domain.AbstractAggregateRoot;
 import org.axonframework.domain.DomainEventMessage;
 import org.axonframework.domain.DomainEventStream;
@@ -93,7 +92,9 @@ public abstract class AbstractEventSourcedAggregateRoot extends AbstractAggregat
 
     private void handleRecursively(DomainEventMessage event) {
         handle(event);
-        Collection<AbstractEventSourcedEntity> childEntities = getChildEntities();
+        ChildEntityFields childEntityFields = ChildEntityFields.of(getClass());
+        Collection<AbstractEventSourcedEntity> childEntities = childEntityFields.isGetChildEntitiesOverridden()
+                ? getChildEntities() : childEntityFields.childEntitiesOrNull(this);
         if (childEntities != null) {
             for (AbstractEventSourcedEntity entity : childEntities) {
                 entity.registerAggregateRoot(this);
@@ -114,11 +115,14 @@ public abstract class AbstractEventSourcedAggregateRoot extends AbstractAggregat
      * This method may be overridden by subclasses. A <code>null</code> may be returned if this entity does not have
      * any
      * child entities.
+     * <p/>
+     * The fields that may contain entities are looked up only once for each class. Unless this method is overridden,
+     * events are propagated to child entities without invoking it, so that no collection is created for each event.
      *
      * @return a list of event sourced entities contained in this aggregate
      */
     protected Collection<AbstractEventSourcedEntity> getChildEntities() {
-        return ReflectionUtils.findFieldValuesOfType(this, AbstractEventSourcedEntity.class);
+        return ChildEntityFields.of(getClass()).childEntitiesOf(this);
     }
 
     /**
@@ -16,7 +16,6 @@
 
 package org.axonframework.eventsourcing;
 
-import org.axonframework.common.ReflectionUtils;
 import org.axonframework.domain.DomainEventMessage;
 import org.axonframework.domain.MetaData;
 
@@ -43,11 +42,14 @@ public abstract class AbstractEventSourcedEntity {
      * It will look for them in the following locations: <ul><li> directly referenced in a field;<li> inside fields
      * containing an {@link Iterable};<li>inside both they keys and the values of fields containing a {@link
      * java.util.Map}</ul>
+     * <p/>
+     * The fields that may contain entities are looked up only once for each class. Unless this method is overridden,
+     * events are propagated to child entities without invoking it, so that no collection is created for each event.
      *
      * @return a list of event sourced entities contained in this aggregate
      */
     protected Collection<AbstractEventSourcedEntity> getChildEntities() {
-        return ReflectionUtils.findFieldValuesOfType(this, AbstractEventSourcedEntity.class);
+        return ChildEntityFields.of(getClass()).childEntitiesOf(this);
     }
 
     /**
@@ -75,7 +77,9 @@ public abstract class AbstractEventSourcedEntity {
      */
     void handleRecursively(DomainEventMessage event) {
         handle(event);
-        Collection<AbstractEventSourcedEntity> childEntities = getChildEntities();
+        ChildEntityFields childEntityFields = ChildEntityFields.of(getClass());
+        Collection<AbstractEventSourcedEntity> childEntities = childEntityFields.isGetChildEntitiesOverridden()
+                ? getChildEntities() : childEntityFields.childEntitiesOrNull(this);
         if (childEntities != null) {
             for (AbstractEventSourcedEntity entity : childEntities) {
                 entity.registerAggregateRoot(aggregateRoot);
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventsourcing;
+
+import org.axonframework.common.ClassCache;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.axonframework.common.ReflectionUtils.ensureAccessible;
+import static org.axonframework.common.ReflectionUtils.fieldsOf;
+
+/**
+ * The fields of a type that may contain child entities of an event sourced aggregate. These are fields referencing an
+ * {@link AbstractEventSourcedEntity} directly, and fields containing an {@link Iterable} or a {@link Map}.
+ * <p/>
+ * The fields of each type are inspected only once, and are made accessible at that time. The results are kept in a
+ * {@link ClassCache}, so that they do not prevent the inspected types from being unloaded.
+ * <p/>
+ * The protected <code>getChildEntities</code> methods return a new collection on each invocation. When that method is
+ * not overridden, events are propagated using {@link #childEntitiesOrNull(Object)} instead, so that instances without
+ * child entities handle events without allocating any objects.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+final class ChildEntityFields {
+
+    private static final ClassCache<ChildEntityFields> FIELDS_PER_TYPE = new ClassCache<ChildEntityFields>();
+
+    private final Field[] entityFields;
+    private final Field[] iterableFields;
+    private final Field[] mapFields;
+    private final boolean childEntitiesOverridden;
+
+    /**
+     * Returns the ChildEntityFields of the given <code>type</code>. The type is inspected the first time this method
+     * is invoked for it.
+     *
+     * @param type The type to return the fields for
+     * @return the fields of given type that may contain child entities
+     */
+    static ChildEntityFields of(Class<?> type) {
+        ChildEntityFields fields = FIELDS_PER_TYPE.get(type);
+        if (fields == null) {
+            fields = new ChildEntityFields(type);
+            ChildEntityFields existing = FIELDS_PER_TYPE.putIfAbsent(type, fields);
+            if (existing != null) {
+                fields = existing;
+            }
+        }
+        return fields;
+    }
+
+    private ChildEntityFields(Class<?> type) {
+        List<Field> entities = new ArrayList<Field>();
+        List<Field> iterables = new ArrayList<Field>();
+        List<Field> maps = new ArrayList<Field>();
+        for (Field field : fieldsOf(type)) {
+            if (AbstractEventSourcedEntity.class.isAssignableFrom(field.getType())) {
+                entities.add(field);
+            } else if (Iterable.class.isAssignableFrom(field.getType())) {
+                iterables.add(field);
+            } else if (Map.class.isAssignableFrom(field.getType())) {
+                maps.add(field);
+            } else {
+                continue;
+            }
+            ensureAccessible(field);
+        }
+        this.entityFields = entities.toArray(new Field[entities.size()]);
+        this.iterableFields = iterables.toArray(new Field[iterables.size()]);
+        this.mapFields = maps.toArray(new Field[maps.size()]);
+        this.childEntitiesOverridden = overridesGetChildEntities(type);
+    }
+
+    private static boolean overridesGetChildEntities(Class<?> type) {
+        Class<?> current = type;
+        while (current != null
+                && !AbstractEventSourcedAggregateRoot.class.equals(current)
+                && !AbstractEventSourcedEntity.class.equals(current)) {
+            try {
+                current.getDeclaredMethod("getChildEntities");
+                return true;
+            } catch (NoSuchMethodException e) {
+                current = current.getSuperclass();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether the inspected type overrides the <code>getChildEntities</code> method of {@link
+     * AbstractEventSourcedAggregateRoot} or {@link AbstractEventSourcedEntity}.
+     *
+     * @return <code>true</code> if the type provides its own <code>getChildEntities</code> implementation
+     */
+    boolean isGetChildEntitiesOverridden() {
+        return childEntitiesOverridden;
+    }
+
+    /**
+     * Returns the child entities referenced by the given <code>instance</code>. Entities contained in Iterables, and
+     * in both the keys and values of Maps, are included. Collections inside these collections are not evaluated.
+     *
+     * @param instance The instance to find the child entities of
+     * @return a new, modifiable collection with the child entities of given instance. Never <code>null</code>
+     */
+    Collection<AbstractEventSourcedEntity> childEntitiesOf(Object instance) {
+        Collection<AbstractEventSourcedEntity> children = childEntitiesOrNull(instance);
+        if (children == null) {
+            return new HashSet<AbstractEventSourcedEntity>();
+        }
+        return children;
+    }
+
+    /**
+     * Returns the child entities referenced by the given <code>instance</code>, or <code>null</code> if it does not
+     * reference any. Unlike {@link #childEntitiesOf(Object)}, no objects are allocated when there are no child
+     * entities.
+     *
+     * @param instance The instance to find the child entities of
+     * @return the child entities of given instance, or <code>null</code> if there are none
+     */
+    Collection<AbstractEventSourcedEntity> childEntitiesOrNull(Object instance) {
+        Set<AbstractEventSourcedEntity> children = null;
+        for (Field field : entityFields) {
+            Object entity = valueOf(field, instance);
+            if (entity != null) {
+                children = add(children, entity);
+            }
+        }
+        for (Field field : iterableFields) {
+            Iterable<?> iterable = (Iterable<?>) valueOf(field, instance);
+            if (iterable != null && !isEmptyCollection(iterable)) {
+                children = addEntities(children, iterable);
+            }
+        }
+        for (Field field : mapFields) {
+            Map<?, ?> map = (Map<?, ?>) valueOf(field, instance);
+            if (map != null && !map.isEmpty()) {
+                children = addEntities(children, map.keySet());
+                children = addEntities(children, map.values());
+            }
+        }
+        return children;
+    }
+
+    private static boolean isEmptyCollection(Iterable<?> iterable) {
+        return iterable instanceof Collection && ((Collection) iterable).isEmpty();
+    }
+
+    private static Set<AbstractEventSourcedEntity> addEntities(Set<AbstractEventSourcedEntity> children,
+                                                               Iterable<?> candidates) {
+        Set<AbstractEventSourcedEntity> result = children;
+        for (Object candidate : candidates) {
+            if (candidate instanceof AbstractEventSourcedEntity) {
+                result = add(result, candidate);
+            }
+        }
+        return result;
+    }
+
+    private static Set<AbstractEventSourcedEntity> add(Set<AbstractEventSourcedEntity> children, Object entity) {
+        Set<AbstractEventSourcedEntity> result = children;
+        if (result == null) {
+            result = new HashSet<AbstractEventSourcedEntity>();
+        }
+        result.add((AbstractEventSourcedEntity) entity);
+        return result;
+    }
+
+    private static Object valueOf(Field field, Object instance) {
+        try {
+            return field.get(instance);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Unable to access field.", ex);
+        }
+    }
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore;
+
+import org.axonframework.common.Assert;
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.Serializer;
+import org.axonframework.serializer.XStreamSerializer;
+import org.axonframework.unitofwork.CurrentUnitOfWork;
+import org.axonframework.unitofwork.UnitOfWorkListenerAdapter;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.axonframework.serializer.MessageSerializer.serializeMetaData;
+import static org.axonframework.serializer.MessageSerializer.serializePayload;
+
+/**
+ * SnapshotEventStore implementation that caches the event streams read from another SnapshotEventStore. For each
+ * aggregate, the cache holds the events returned by the last read of that aggregate's events: the latest snapshot
+ * event, followed by the events appended after that snapshot. Events are cached in serialized form, and deserialized
+ * each time they are read from the cache, so that aggregates never share event instances.
+ * <p/>
+ * Streams are added to the cache when they have been read completely from the backing event store. When events are
+ * appended to a cached aggregate, they are added to the end of the cached stream. Appending a snapshot replaces the
+ * events it summarizes in the cached stream. When events or snapshots are appended in a Unit of Work, the cache is
+ * only updated after that Unit of Work has been committed, so that other threads never read uncommitted events from
+ * the cache. The cache is kept within a maximum size (see {@link
+ * #setMaxCacheSize(long)}). When that size is exceeded, the streams of the least recently used aggregates are removed
+ * from the cache.
+ * <p/>
+ * When the events of an aggregate are appended by another process, such as another node in a cluster, the cached
+ * stream of that aggregate is no longer up-to-date. In that case, it must be removed using {@link #invalidate(String,
+ * Object)}. When an append fails, or the Unit of Work in which the events are appended is rolled back, the cached
+ * stream of the aggregate is removed automatically.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class CachingSnapshotEventStore implements SnapshotEventStore {
+
+    /**
+     * The default maximum size of the cache, in bytes (16MB).
+     */
+    public static final long DEFAULT_MAX_CACHE_SIZE = 16L * 1024 * 1024;
+
+    // an estimate of the memory used by a cached event, in addition to its serialized payload and meta data
+    private static final int EVENT_OVERHEAD = 128;
+
+    private final SnapshotEventStore delegate;
+    private final Serializer serializer;
+    private final Object cacheLock = new Object();
+    private final LinkedHashMap<String, CachedStream> cache = new LinkedHashMap<String, CachedStream>(16, 0.75f, true);
+    private final Map<String, Object> pendingFills = new HashMap<String, Object>();
+    private long cacheSize;
+    private volatile long maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+
+    /**
+     * Initializes the cache for the given <code>delegate</code>, serializing the cached events using an {@link
+     * XStreamSerializer}.
+     *
+     * @param delegate The event store to read events from and append events to
+     */
+    public CachingSnapshotEventStore(SnapshotEventStore delegate) {
+        this(delegate, new XStreamSerializer());
+    }
+
+    /**
+     * Initializes the cache for the given <code>delegate</code>, serializing the cached events using the given
+     * <code>serializer</code>. The serializer must be capable of serializing the payload and meta data of all events.
+     *
+     * @param delegate   The event store to read events from and append events to
+     * @param serializer The serializer used to serialize the cached events
+     */
+    public CachingSnapshotEventStore(SnapshotEventStore delegate, Serializer serializer) {
+        Assert.notNull(delegate, "The event store may not be null");
+        Assert.notNull(serializer, "The serializer may not be null");
+        this.delegate = delegate;
+        this.serializer = serializer;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The events are appended to the backing event store. Events that directly follow the cached stream of their
+     * aggregate are added to that stream. If they do not, the cached stream is removed. If a Unit of Work is active,
+     * the cached streams are updated after it has been committed.
+     */
+    @Override
+    public void appendEvents(String type, DomainEventStream events) {
+        final Map<String, List<CachedEvent>> eventsPerKey = new LinkedHashMap<String, List<CachedEvent>>();
+        List<DomainEventMessage> eventList = new ArrayList<DomainEventMessage>();
+        while (events.hasNext()) {
+            DomainEventMessage event = events.next();
+            eventList.add(event);
+            String key = keyFor(type, event.getAggregateIdentifier());
+            List<CachedEvent> keyEvents = eventsPerKey.get(key);
+            if (keyEvents == null) {
+                keyEvents = new ArrayList<CachedEvent>();
+                eventsPerKey.put(key, keyEvents);
+            }
+            keyEvents.add(isCached(key) ? serialize(event) : null);
+        }
+        try {
+            delegate.appendEvents(type, new SimpleDomainEventStream(eventList));
+        } catch (RuntimeException e) {
+            invalidateKeys(eventsPerKey.keySet());
+            throw e;
+        }
+        afterCommit(eventsPerKey.keySet(), new Runnable() {
+            @Override
+            public void run() {
+                appendToCachedStreams(eventsPerKey);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * If the events of the aggregate are cached, they are read from the cache. Otherwise, they are read from the
+     * backing event store. In the latter case, the events are added to the cache when the returned stream has been
+     * read completely.
+     */
+    @Override
+    public DomainEventStream readEvents(String type, Object identifier) {
+        String key = keyFor(type, identifier);
+        Object fillToken = new Object();
+        synchronized (cacheLock) {
+            CachedStream cachedStream = cache.get(key);
+            if (cachedStream != null) {
+                return cachedStream.toEventStream(serializer);
+            }
+            pendingFills.put(key, fillToken);
+        }
+        try {
+            return new CacheFillingEventStream(key, fillToken, delegate.readEvents(type, identifier));
+        } catch (RuntimeException e) {
+            cancelFill(key, fillToken);
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The snapshot is appended to the backing event store. If the events of the aggregate are cached, the events
+     * summarized by the snapshot are replaced with the snapshot in the cached stream. If a Unit of Work is active, the
+     * cached stream is updated after it has been committed.
+     */
+    @Override
+    public void appendSnapshotEvent(String type, DomainEventMessage snapshotEvent) {
+        final String key = keyFor(type, snapshotEvent.getAggregateIdentifier());
+        delegate.appendSnapshotEvent(type, snapshotEvent);
+        if (!isCached(key)) {
+            return;
+        }
+        final CachedEvent serializedSnapshot = serialize(snapshotEvent);
+        afterCommit(Collections.singleton(key), new Runnable() {
+            @Override
+            public void run() {
+                replaceWithSnapshot(key, serializedSnapshot);
+            }
+        });
+    }
+
+    /**
+     * Removes the cached events of the aggregate of given <code>type</code> with given <code>identifier</code>. The
+     * next read of that aggregate's events is done from the backing event store. This method must be called when
+     * events of the aggregate have been appended without using this instance, for example by another node.
+     *
+     * @param type       The type of aggregate
+     * @param identifier The identifier of the aggregate
+     */
+    public void invalidate(String type, Object identifier) {
+        invalidateKeys(Collections.singleton(keyFor(type, identifier)));
+    }
+
+    /**
+     * Removes all cached events.
+     */
+    public void invalidateAll() {
+        synchronized (cacheLock) {
+            pendingFills.clear();
+            cache.clear();
+            cacheSize = 0;
+        }
+    }
+
+    /**
+     * Sets the maximum number of bytes the cached events may occupy. The size of a cached event is estimated based on
+     * the size of its serialized payload and meta data. Defaults to {@link #DEFAULT_MAX_CACHE_SIZE}.
+     *
+     * @param maxCacheSize The maximum size of the cache, in bytes
+     */
+    public void setMaxCacheSize(long maxCacheSize) {
+        Assert.isTrue(maxCacheSize > 0, "The maximum cache size must be a positive number");
+        this.maxCacheSize = maxCacheSize;
+        synchronized (cacheLock) {
+            evictIfNecessary();
+        }
+    }
+
+    /**
+     * Returns the estimated number of bytes occupied by the cached events.
+     *
+     * @return the estimated size of the cache, in bytes
+     */
+    public long getCacheSize() {
+        synchronized (cacheLock) {
+            return cacheSize;
+        }
+    }
+
+    /**
+     * Runs the given <code>cacheUpdate</code> after the current Unit of Work has been committed, or immediately if no
+     * Unit of Work is active. The cached streams of the given <code>keys</code> are removed if the Unit of Work is
+     * rolled back.
+     */
+    private void afterCommit(final Set<String> keys, final Runnable cacheUpdate) {
+        if (CurrentUnitOfWork.isStarted()) {
+            CurrentUnitOfWork.get().registerListener(new UnitOfWorkListenerAdapter() {
+                @Override
+                public void afterCommit() {
+                    cacheUpdate.run();
+                }
+
+                @Override
+                public void onRollback(Throwable failureCause) {
+                    invalidateKeys(keys);
+                }
+            });
+        } else {
+            cacheUpdate.run();
+        }
+    }
+
+    private void appendToCachedStreams(Map<String, List<CachedEvent>> eventsPerKey) {
+        synchronized (cacheLock) {
+            for (Map.Entry<String, List<CachedEvent>> entry : eventsPerKey.entrySet()) {
+                String key = entry.getKey();
+                pendingFills.remove(key);
+                CachedStream cachedStream = cache.get(key);
+                if (cachedStream != null) {
+                    removeFromCache(key);
+                    if (cachedStream.isFollowedBy(entry.getValue())) {
+                        addToCache(key, cachedStream.append(entry.getValue()));
+                    }
+                }
+            }
+        }
+    }
+
+    private void replaceWithSnapshot(String key, CachedEvent serializedSnapshot) {
+        synchronized (cacheLock) {
+            CachedStream cachedStream = cache.get(key);
+            if (cachedStream != null) {
+                removeFromCache(key);
+                if (cachedStream.contains(serializedSnapshot.getSequenceNumber())) {
+                    addToCache(key, cachedStream.withSnapshot(serializedSnapshot));
+                }
+            }
+        }
+    }
+
+    private void invalidateKeys(Set<String> keys) {
+        synchronized (cacheLock) {
+            for (String key : keys) {
+                pendingFills.remove(key);
+                removeFromCache(key);
+            }
+        }
+    }
+
+    private boolean isCached(String key) {
+        synchronized (cacheLock) {
+            return cache.containsKey(key);
+        }
+    }
+
+    private void completeFill(String key, Object fillToken, List<CachedEvent> events) {
+        synchronized (cacheLock) {
+            // the fill is cancelled when the aggregate's events were appended or invalidated in the meantime
+            if (pendingFills.get(key) == fillToken) {
+                pendingFills.remove(key);
+                removeFromCache(key);
+                addToCache(key, new CachedStream(events));
+            }
+        }
+    }
+
+    private void cancelFill(String key, Object fillToken) {
+        synchronized (cacheLock) {
+            if (pendingFills.get(key) == fillToken) {
+                pendingFills.remove(key);
+            }
+        }
+    }
+
+    private void addToCache(String key, CachedStream cachedStream) {
+        if (cachedStream.getSize() <= maxCacheSize) {
+            cache.put(key, cachedStream);
+            cacheSize += cachedStream.getSize();
+            evictIfNecessary();
+        }
+    }
+
+    private void removeFromCache(String key) {
+        CachedStream removed = cache.remove(key);
+        if (removed != null) {
+            cacheSize -= removed.getSize();
+        }
+    }
+
+    private void evictIfNecessary() {
+        Iterator<CachedStream> iterator = cache.values().iterator();
+        while (cacheSize > maxCacheSize && iterator.hasNext()) {
+            cacheSize -= iterator.next().getSize();
+            iterator.remove();
+        }
+    }
+
+    private CachedEvent serialize(DomainEventMessage event) {
+        return new CachedEvent(event, serializePayload(event, serializer), serializeMetaData(event, serializer));
+    }
+
+    private static String keyFor(String type, Object identifier) {
+        return type.length() + ":" + type + identifier;
+    }
+
+    /**
+     * Event stream that reads from the backing event store, and adds the events to the cache when the stream has been
+     * read completely.
+     */
+    private class CacheFillingEventStream implements DomainEventStream {
+
+        private final String key;
+        private final Object fillToken;
+        private final DomainEventStream delegateStream;
+        private final List<CachedEvent> events = new ArrayList<CachedEvent>();
+        private boolean filled;
+
+        public CacheFillingEventStream(String key, Object fillToken, DomainEventStream delegateStream) {
+            this.key = key;
+            this.fillToken = fillToken;
+            this.delegateStream = delegateStream;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = delegateStream.hasNext();
+            if (!hasNext && !filled) {
+                filled = true;
+                completeFill(key, fillToken, events);
+            }
+            return hasNext;
+        }
+
+        @Override
+        public DomainEventMessage next() {
+            DomainEventMessage next = delegateStream.next();
+            events.add(serialize(next));
+            return next;
+        }
+
+        @Override
+        public DomainEventMessage peek() {
+            return delegateStream.peek();
+        }
+    }
+
+    /**
+     * The serialized events of a single aggregate. Instances are immutable.
+     */
+    private static final class CachedStream {
+
+        private final List<CachedEvent> events;
+        private final long size;
+
+        public CachedStream(List<CachedEvent> events) {
+            this(events, sizeOf(events));
+        }
+
+        private CachedStream(List<CachedEvent> events, long size) {
+            this.events = events;
+            this.size = size;
+        }
+
+        /**
+         * Indicates whether the given events directly follow the events in this stream. The given list may contain
+         * <code>null</code> for events that have not been serialized, in which case it does not.
+         */
+        public boolean isFollowedBy(List<CachedEvent> newEvents) {
+            long expectedSequenceNumber = events.isEmpty() ? -1 : events.get(events.size() - 1).getSequenceNumber();
+            for (CachedEvent event : newEvents) {
+                if (event == null || (expectedSequenceNumber >= 0
+                        && event.getSequenceNumber() != expectedSequenceNumber + 1)) {
+                    return false;
+                }
+                expectedSequenceNumber = event.getSequenceNumber();
+            }
+            return true;
+        }
+
+        public boolean contains(long sequenceNumber) {
+            return !events.isEmpty() && events.get(events.size() - 1).getSequenceNumber() >= sequenceNumber;
+        }
+
+        public CachedStream append(List<CachedEvent> newEvents) {
+            List<CachedEvent> allEvents = new ArrayList<CachedEvent>(events.size() + newEvents.size());
+            allEvents.addAll(events);
+            allEvents.addAll(newEvents);
+            return new CachedStream(allEvents, size + sizeOf(newEvents));
+        }
+
+        public CachedStream withSnapshot(CachedEvent snapshot) {
+            List<CachedEvent> newEvents = new ArrayList<CachedEvent>();
+            newEvents.add(snapshot);
+            for (CachedEvent event : events) {
+                if (event.getSequenceNumber() > snapshot.getSequenceNumber()) {
+                    newEvents.add(event);
+                }
+            }
+            return new CachedStream(newEvents);
+        }
+
+        public DomainEventStream toEventStream(Serializer serializer) {
+            List<DomainEventMessage> messages = new ArrayList<DomainEventMessage>(events.size());
+            for (CachedEvent event : events) {
+                messages.add(new SerializedDomainEventMessage<Object>(event, serializer, serializer));
+            }
+            return new SimpleDomainEventStream(messages);
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        private static long sizeOf(List<CachedEvent> events) {
+            long totalSize = 0;
+            for (CachedEvent event : events) {
+                totalSize += event.getSize();
+            }
+            return totalSize;
+        }
+    }
+
+    /**
+     * The serialized form of a cached event.
+     */
+    private static final class CachedEvent implements SerializedDomainEventData {
+
+        private final String eventIdentifier;
+        private final Object aggregateIdentifier;
+        private final long sequenceNumber;
+        private final DateTime timestamp;
+        private final SerializedObject payload;
+        private final SerializedObject metaData;
+
+        public CachedEvent(DomainEventMessage event, SerializedObject payload, SerializedObject metaData) {
+            this.eventIdentifier = event.getIdentifier();
+            this.aggregateIdentifier = event.getAggregateIdentifier();
+            this.sequenceNumber = event.getSequenceNumber();
+            this.timestamp = event.getTimestamp();
+            this.payload = payload;
+            this.metaData = metaData;
+        }
+
+        @Override
+        public String getEventIdentifier() {
+            return eventIdentifier;
+        }
+
+        @Override
+        public Object getAggregateIdentifier() {
+            return aggregateIdentifier;
+        }
+
+        @Override
+        public long getSequenceNumber() {
+            return sequenceNumber;
+        }
+
+        @Override
+        public DateTime getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public SerializedObject getMetaData() {
+            return metaData;
+        }
+
+        @Override
+        public SerializedObject getPayload() {
+            return payload;
+        }
+
+        public long getSize() {
+            return EVENT_OVERHEAD + payload.getData().length + metaData.getData().length;
+        }
+    }
+}
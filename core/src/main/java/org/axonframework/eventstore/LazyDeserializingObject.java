@@ -107,6 +107,26 @@ public class LazyDeserializingObject<T> implements Serializable {
         objectType = deserialized.getClass();
     }
 
+    /**
+     * Returns the serialized form of the object, or <code>null</code> if this instance was created with a
+     * deserialized object.
+     *
+     * @return the serialized form of the object, or <code>null</code>
+     */
+    public SerializedObject getSerializedObject() {
+        return serializedObject;
+    }
+
+    /**
+     * Returns the serializer that (de)serializes the object, or <code>null</code> if this instance was created with a
+     * deserialized object.
+     *
+     * @return the serializer that (de)serializes the object, or <code>null</code>
+     */
+    public Serializer getSerializer() {
+        return payloadSerializer;
+    }
+
     /**
      * Indicates whether this object has already been deserialized. When this method returns <code>true</code>, the
      * {@link #getObject()} method is able to return a value without invoking the serializer.
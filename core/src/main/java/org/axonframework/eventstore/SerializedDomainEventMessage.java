@@ -19,6 +19,9 @@ package org.axonframework.eventstore;
 import org.axonframework.domain.DomainEventMessage;
 import org.axonframework.domain.GenericDomainEventMessage;
 import org.axonframework.domain.MetaData;
+import org.axonframework.serializer.SerializationAware;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.SerializedObjectHolder;
 import org.axonframework.serializer.Serializer;
 import org.joda.time.DateTime;
 
@@ -29,6 +32,9 @@ import java.util.Map;
  * MetaData will only be deserialized when requested. This means that loaded event for which there is no handler will
  * never be deserialized.
  * <p/>
+ * When the payload or meta data is serialized again using the Serializer it was read with, for example to forward the
+ * message or to store it elsewhere, the serialized data it was created with is returned, without deserializing it.
+ * <p/>
  * This implementation is Serializable as per Java specification. Both MetaData and Payload are deserialized prior to
  * being written to the OutputStream.
  *
@@ -36,7 +42,7 @@ import java.util.Map;
  * @author Allard Buijze
  * @since 2.0
  */
-public class SerializedDomainEventMessage<T> implements DomainEventMessage<T> {
+public class SerializedDomainEventMessage<T> implements DomainEventMessage<T>, SerializationAware {
 
     private static final long serialVersionUID = 1946981128830316529L;
 
@@ -46,6 +52,7 @@ public class SerializedDomainEventMessage<T> implements DomainEventMessage<T> {
     private final DateTime timestamp;
     private transient final LazyDeserializingObject<MetaData> serializedMetaData;
     private transient final LazyDeserializingObject<T> serializedPayload;
+    private transient volatile SerializedObjectHolder serializedObjectHolder;
 
     /**
      * Creates a new instance with given serialized <code>data</code>, with data to be deserialized with given
@@ -144,6 +151,29 @@ public class SerializedDomainEventMessage<T> implements DomainEventMessage<T> {
         }
     }
 
+    @Override
+    public SerializedObject serializePayload(Serializer serializer) {
+        if (serializer == serializedPayload.getSerializer()) {
+            return serializedPayload.getSerializedObject();
+        }
+        return serializedObjectHolder().serializePayload(serializer);
+    }
+
+    @Override
+    public SerializedObject serializeMetaData(Serializer serializer) {
+        if (serializer == serializedMetaData.getSerializer()) {
+            return serializedMetaData.getSerializedObject();
+        }
+        return serializedObjectHolder().serializeMetaData(serializer);
+    }
+
+    private SerializedObjectHolder serializedObjectHolder() {
+        if (serializedObjectHolder == null) {
+            serializedObjectHolder = new SerializedObjectHolder(this);
+        }
+        return serializedObjectHolder;
+    }
+
     /**
      * {@inheritDoc}
      * <p/>
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.fs;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the positions of the events and the latest snapshot of a single aggregate in a single segment of the
+ * log written by the {@link SegmentedLogEventStore}. Arrays of primitives are used to keep the memory footprint low
+ * for aggregates with many events.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class AggregateIndex {
+
+    private long[] sequenceNumbers = new long[4];
+    private long[] positions = new long[4];
+    private int[] lengths = new int[4];
+    private int size;
+
+    private long snapshotSequenceNumber = -1;
+    private long snapshotPosition = -1;
+    private int snapshotLength;
+
+    /**
+     * Registers an event with given <code>sequenceNumber</code>, stored at the given global <code>position</code>.
+     * Events must be registered in the order of their sequence numbers.
+     *
+     * @param sequenceNumber The sequence number of the event
+     * @param position       The global position of the entry containing the event
+     * @param length         The length of the entry, in bytes
+     */
+    public synchronized void addEvent(long sequenceNumber, long position, int length) {
+        if (size == positions.length) {
+            int newCapacity = size * 2;
+            sequenceNumbers = Arrays.copyOf(sequenceNumbers, newCapacity);
+            positions = Arrays.copyOf(positions, newCapacity);
+            lengths = Arrays.copyOf(lengths, newCapacity);
+        }
+        sequenceNumbers[size] = sequenceNumber;
+        positions[size] = position;
+        lengths[size] = length;
+        size++;
+    }
+
+    /**
+     * Registers the snapshot event with given <code>sequenceNumber</code>, stored at the given global
+     * <code>position</code>. It replaces any snapshot registered before.
+     *
+     * @param sequenceNumber The sequence number of the snapshot event
+     * @param position       The global position of the entry containing the snapshot event
+     * @param length         The length of the entry, in bytes
+     */
+    public synchronized void setSnapshot(long sequenceNumber, long position, int length) {
+        snapshotSequenceNumber = sequenceNumber;
+        snapshotPosition = position;
+        snapshotLength = length;
+    }
+
+    /**
+     * Returns the number of events registered with this index.
+     *
+     * @return the number of events registered with this index
+     */
+    public synchronized int getEventCount() {
+        return size;
+    }
+
+    /**
+     * Returns the sequence number of the event at the given <code>index</code>, in the order of registration.
+     *
+     * @param index The index of the event
+     * @return the sequence number of the event
+     */
+    public synchronized long getSequenceNumber(int index) {
+        return sequenceNumbers[index];
+    }
+
+    /**
+     * Returns the global position of the event at the given <code>index</code>, in the order of registration.
+     *
+     * @param index The index of the event
+     * @return the global position of the event
+     */
+    public synchronized long getPosition(int index) {
+        return positions[index];
+    }
+
+    /**
+     * Returns the length of the entry of the event at the given <code>index</code>, in the order of registration.
+     *
+     * @param index The index of the event
+     * @return the length of the entry, in bytes
+     */
+    public synchronized int getLength(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * Returns the sequence number of the last registered event, or -1 if no events have been registered.
+     *
+     * @return the sequence number of the last registered event, or -1
+     */
+    public synchronized long getLastEventSequenceNumber() {
+        return size == 0 ? -1 : sequenceNumbers[size - 1];
+    }
+
+    /**
+     * Returns the sequence number of the registered snapshot event, or -1 if no snapshot has been registered.
+     *
+     * @return the sequence number of the registered snapshot event, or -1
+     */
+    public synchronized long getSnapshotSequenceNumber() {
+        return snapshotSequenceNumber;
+    }
+
+    /**
+     * Returns the global position of the registered snapshot event, or -1 if no snapshot has been registered.
+     *
+     * @return the global position of the registered snapshot event, or -1
+     */
+    public synchronized long getSnapshotPosition() {
+        return snapshotPosition;
+    }
+
+    /**
+     * Returns the length of the entry of the registered snapshot event.
+     *
+     * @return the length of the entry of the registered snapshot event, in bytes
+     */
+    public synchronized int getSnapshotLength() {
+        return snapshotLength;
+    }
+
+    /**
+     * Indicates whether this index contains any event with a sequence number lower than or equal to the given
+     * <code>sequenceNumber</code>.
+     *
+     * @param sequenceNumber The sequence number to compare with
+     * @return <code>true</code> if an event with the given or a lower sequence number has been registered
+     */
+    public synchronized boolean containsEventsUpTo(long sequenceNumber) {
+        return size > 0 && sequenceNumbers[0] <= sequenceNumber;
+    }
+
+    /**
+     * Returns the positions and lengths of the registered events with a sequence number higher than the given
+     * <code>sequenceNumber</code>.
+     *
+     * @param sequenceNumber The sequence number the events must follow
+     * @return the positions (at index 0) and lengths (at index 1) of the events
+     */
+    public synchronized long[][] eventsAfter(long sequenceNumber) {
+        int found = Arrays.binarySearch(sequenceNumbers, 0, size, sequenceNumber);
+        int firstEvent = found >= 0 ? found + 1 : -found - 1;
+        long[][] entries = new long[2][size - firstEvent];
+        for (int i = firstEvent; i < size; i++) {
+            entries[0][i - firstEvent] = positions[i];
+            entries[1][i - firstEvent] = lengths[i];
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.fs;
+
+import org.axonframework.common.io.IOUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Sidecar index of the event and snapshot files of a single aggregate, used by the {@link FileSystemEventStore} to
+ * avoid scanning these files when snapshots are written or read.
+ * <p/>
+ * The index file starts with a header containing the position of the last entry in the snapshot file, or
+ * <code>-1</code> if no snapshot has been written. The header is followed by fixed size records, each containing a
+ * sequence number and the position in the event file just after the event with that sequence number. Records are
+ * written at intervals, in ascending order of sequence number, which allows a binary search for the record closest to
+ * any sequence number.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class EventFileIndex {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 16;
+    private static final long NO_SNAPSHOT = -1;
+
+    private final RandomAccessFile file;
+
+    /**
+     * Initializes the index stored in the given <code>file</code>. The header of an empty file is written along with
+     * the first snapshot position or records. Until then, the index has no snapshot and no records, allowing an empty
+     * file to be opened for reading only.
+     *
+     * @param file The file containing the index
+     * @throws IOException when an error occurs reading from or writing to the file
+     */
+    public EventFileIndex(RandomAccessFile file) throws IOException {
+        this.file = file;
+    }
+
+    /**
+     * Returns the position in the snapshot file of the entry of the last snapshot event, or <code>-1</code> if no
+     * snapshot event has been written.
+     *
+     * @return the position of the last snapshot entry, or <code>-1</code> if there is none
+     *
+     * @throws IOException when an error occurs reading from the file
+     */
+    public long getLastSnapshotPosition() throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return NO_SNAPSHOT;
+        }
+        file.seek(0);
+        return file.readLong();
+    }
+
+    /**
+     * Registers the position in the snapshot file of the entry of the last snapshot event.
+     *
+     * @param position the position of the last snapshot entry
+     * @throws IOException when an error occurs writing to the file
+     */
+    public void setLastSnapshotPosition(long position) throws IOException {
+        file.seek(0);
+        file.writeLong(position);
+    }
+
+    /**
+     * Appends records for the given <code>sequenceNumbers</code> and the <code>offsets</code> in the event file just
+     * after each of these events. Sequence numbers must be higher than the ones of records already in the index.
+     *
+     * @param sequenceNumbers The sequence numbers of the events to index
+     * @param offsets         The positions in the event file just after each of the events
+     * @param count           The number of records to append
+     * @throws IOException when an error occurs writing to the file
+     */
+    public void addRecords(long[] sequenceNumbers, long[] offsets, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (file.length() < HEADER_SIZE) {
+            file.seek(0);
+            file.writeLong(NO_SNAPSHOT);
+        }
+        // a record that was written partially is overwritten
+        file.seek(HEADER_SIZE + recordCount() * RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            file.writeLong(sequenceNumbers[i]);
+            file.writeLong(offsets[i]);
+        }
+    }
+
+    /**
+     * Finds the record with the highest sequence number that is equal to or lower than the given
+     * <code>sequenceNumber</code>.
+     *
+     * @param sequenceNumber The sequence number to find the closest record for
+     * @return an array containing the sequence number (at index 0) and offset (at index 1) of the record found, or
+     *         <code>null</code> if there is no record with a sequence number lower than or equal to the given one
+     *
+     * @throws IOException when an error occurs reading from the file
+     */
+    public long[] findClosestRecord(long sequenceNumber) throws IOException {
+        long low = 0;
+        long high = recordCount() - 1;
+        long[] closest = null;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            file.seek(HEADER_SIZE + middle * RECORD_SIZE);
+            long recordSequenceNumber = file.readLong();
+            if (recordSequenceNumber <= sequenceNumber) {
+                closest = new long[]{recordSequenceNumber, file.readLong()};
+                if (recordSequenceNumber == sequenceNumber) {
+                    return closest;
+                }
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Closes the file containing the index.
+     */
+    public void close() {
+        IOUtils.closeQuietly(file);
+    }
+
+    private long recordCount() throws IOException {
+        return Math.max(0, (file.length() - HEADER_SIZE) / RECORD_SIZE);
+    }
+}
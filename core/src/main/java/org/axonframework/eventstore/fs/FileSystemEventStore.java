@@ -17,6 +17,8 @@
 package org.axonframework.eventstore.fs;
 
 import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.axonframework.common.Assert;
 import org.axonframework.common.io.IOUtils;
 import org.axonframework.domain.DomainEventMessage;
 import org.axonframework.domain.DomainEventStream;
@@ -38,8 +40,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.axonframework.eventstore.fs.EventSerializationUtils.*;
+import static org.axonframework.serializer.MessageSerializer.serializeMessage;
 
 /**
  * Implementation of the {@link org.axonframework.eventstore.EventStore} that serializes objects using XStream and
@@ -51,6 +56,13 @@ import static org.axonframework.eventstore.fs.EventSerializationUtils.*;
  * <p/>
  * Note that the resource supplied must point to a folder and should contain a trailing slash. See {@link
  * org.springframework.core.io.FileSystemResource#FileSystemResource(String)}.
+ * <p/>
+ * Optionally, an index file is kept next to the event file of each aggregate. It registers the position of the last
+ * snapshot event and, at intervals of a configurable number of events, the position in the event file just after an
+ * event. This allows snapshot events to be written and read without scanning the entire event and snapshot files.
+ * Indexing is disabled by default, and is enabled by setting an index interval using {@link #setIndexInterval(int)}.
+ * Aggregates whose event file was created without an index file are read and written without using an index. Index
+ * files are only used when the configured EventFileResolver is an {@link IndexedEventFileResolver}.
  *
  * @author Allard Buijze
  * @since 0.5
@@ -61,6 +73,7 @@ public class FileSystemEventStore implements EventStore, SnapshotEventStore {
 
     private final Serializer eventSerializer;
     private EventFileResolver eventFileResolver;
+    private int indexInterval;
 
     /**
      * Basic initialization of the event store. The actual serialization and deserialization is delegated to a {@link
@@ -92,23 +105,54 @@ public class FileSystemEventStore implements EventStore, SnapshotEventStore {
             return;
         }
         OutputStream out = null;
+        EventFileIndex index = null;
         try {
             DomainEventMessage next = eventsToStore.next();
-            out = eventFileResolver.openEventFileForWriting(type, next.getAggregateIdentifier());
+            Object aggregateIdentifier = next.getAggregateIdentifier();
+            boolean indexed = false;
+            boolean newAggregate = false;
+            if (isIndexingEnabled()) {
+                newAggregate = !eventFileResolver.eventFileExists(type, aggregateIdentifier);
+                indexed = newAggregate || isIndexed(type, aggregateIdentifier);
+            }
+            long startPosition = indexed ? indexedResolver().eventFileSize(type, aggregateIdentifier) : 0;
+            out = eventFileResolver.openEventFileForWriting(type, aggregateIdentifier);
+            if (indexed && newAggregate) {
+                index = new EventFileIndex(indexedResolver().openIndexFileForWriting(type, aggregateIdentifier));
+            }
+            CountingOutputStream countingOut = new CountingOutputStream(out);
+            List<Long> indexedSequenceNumbers = new ArrayList<Long>();
+            List<Long> indexedOffsets = new ArrayList<Long>();
             do {
-                SerializedObject serializedObject = eventSerializer.serialize(next);
+                SerializedObject serializedObject = serializeMessage(next, eventSerializer);
                 String timeStamp = next.getTimestamp().toString();
-                writeEventEntry(out, next.getSequenceNumber(), timeStamp, serializedObject);
+                writeEventEntry(countingOut, next.getSequenceNumber(), timeStamp, serializedObject);
+                if (indexed && (next.getSequenceNumber() + 1) % indexInterval == 0) {
+                    indexedSequenceNumbers.add(next.getSequenceNumber());
+                    indexedOffsets.add(startPosition + countingOut.getByteCount());
+                }
                 if (eventsToStore.hasNext()) {
                     next = eventsToStore.next();
                 } else {
                     next = null;
                 }
             } while (next != null);
+            // the index may only refer to data that has actually been written
+            out.close();
+            if (!indexedSequenceNumbers.isEmpty()) {
+                if (index == null) {
+                    index = new EventFileIndex(indexedResolver().openIndexFileForWriting(type, aggregateIdentifier));
+                }
+                index.addRecords(toArray(indexedSequenceNumbers), toArray(indexedOffsets),
+                                 indexedSequenceNumbers.size());
+            }
         } catch (IOException e) {
             throw new EventStoreException("Unable to store given entity due to an IOException", e);
         } finally {
             IOUtils.closeQuietly(out);
+            if (index != null) {
+                index.close();
+            }
         }
     }
 
@@ -142,7 +186,7 @@ public class FileSystemEventStore implements EventStore, SnapshotEventStore {
         OutputStream fileOutputStream = null;
         try {
 
-            SerializedObject serializedEvent = eventSerializer.serialize(snapshotEvent);
+            SerializedObject serializedEvent = serializeMessage(snapshotEvent, eventSerializer);
 
             long offset = calculateOffset(type, aggregateIdentifier, snapshotEvent.getSequenceNumber());
             long sequenceNumber = snapshotEvent.getSequenceNumber();
@@ -150,9 +194,22 @@ public class FileSystemEventStore implements EventStore, SnapshotEventStore {
             SnapshotEventEntry snapshotEntry = new SnapshotEventEntry(serializedEvent, sequenceNumber,
                                                                       timeStamp, offset);
 
+            // the snapshot position is registered even when indexing is disabled, as existing indexes are still read
+            boolean indexed = isIndexed(type, aggregateIdentifier);
+            long snapshotPosition = indexed ? indexedResolver().snapshotFileSize(type, aggregateIdentifier) : 0;
             fileOutputStream = eventFileResolver.openSnapshotFileForWriting(type, aggregateIdentifier);
 
             EventSerializationUtils.writeSnapshotEntry(fileOutputStream, snapshotEntry);
+            fileOutputStream.close();
+            if (indexed) {
+                EventFileIndex index = new EventFileIndex(indexedResolver().openIndexFileForWriting(
+                        type, aggregateIdentifier));
+                try {
+                    index.setLastSnapshotPosition(snapshotPosition);
+                } finally {
+                    index.close();
+                }
+            }
         } catch (IOException e) {
             throw new EventStoreException("Error writing a snapshot event due to an IO exception", e);
         } finally {
@@ -162,16 +219,32 @@ public class FileSystemEventStore implements EventStore, SnapshotEventStore {
 
     private long calculateOffset(String type, Object aggregateIdentifier, long sequenceNumber)
             throws IOException {
+        long startOffset = 0;
+        if (isIndexed(type, aggregateIdentifier)) {
+            EventFileIndex index = new EventFileIndex(indexedResolver().openIndexFileForReading(type,
+                                                                                                aggregateIdentifier));
+            try {
+                long[] closestRecord = index.findClosestRecord(sequenceNumber);
+                if (closestRecord != null && closestRecord[0] == sequenceNumber) {
+                    return closestRecord[1];
+                } else if (closestRecord != null) {
+                    startOffset = closestRecord[1];
+                }
+            } finally {
+                index.close();
+            }
+        }
         CountingInputStream countingInputStream = null;
         try {
             InputStream eventInputStream = eventFileResolver.openEventFileForReading(type, aggregateIdentifier);
+            skipFully(eventInputStream, startOffset);
             countingInputStream = new CountingInputStream(new BufferedInputStream(eventInputStream));
             long lastReadSequenceNumber = -1;
             while (lastReadSequenceNumber < sequenceNumber) {
                 EventEntry entry = readEventEntry(countingInputStream);
                 lastReadSequenceNumber = entry.getSequenceNumber();
             }
-            return countingInputStream.getByteCount();
+            return startOffset + countingInputStream.getByteCount();
         } finally {
             IOUtils.closeQuietly(countingInputStream);
         }
@@ -195,9 +268,17 @@ public class FileSystemEventStore implements EventStore, SnapshotEventStore {
             throws IOException {
         SnapshotEventEntry snapshotEvent = null;
         if (eventFileResolver.snapshotFileExists(type, identifier)) {
+            long lastSnapshotPosition = lastSnapshotPosition(type, identifier);
+            if (lastSnapshotPosition < 0) {
+                return null;
+            }
             InputStream snapshotFileInputStream = eventFileResolver.openSnapshotFileForReading(type, identifier);
             try {
+                skipFully(snapshotFileInputStream, lastSnapshotPosition);
                 snapshotEvent = readLastSnapshotEntry(snapshotFileInputStream);
+                if (snapshotEvent == null) {
+                    return null;
+                }
                 long actuallySkipped = eventFileInputStream.skip(snapshotEvent.getOffset());
                 if (actuallySkipped != snapshotEvent.getOffset()) {
                     logger.warn(
@@ -212,6 +293,71 @@ public class FileSystemEventStore implements EventStore, SnapshotEventStore {
         return snapshotEvent;
     }
 
+    private long lastSnapshotPosition(String type, Object identifier) throws IOException {
+        if (!isIndexed(type, identifier)) {
+            // without an index, the snapshot file needs to be read entirely
+            return 0;
+        }
+        EventFileIndex index = new EventFileIndex(indexedResolver().openIndexFileForReading(type, identifier));
+        try {
+            return index.getLastSnapshotPosition();
+        } finally {
+            index.close();
+        }
+    }
+
+    private boolean isIndexingEnabled() {
+        return indexInterval > 0 && eventFileResolver instanceof IndexedEventFileResolver;
+    }
+
+    private boolean isIndexed(String type, Object aggregateIdentifier) throws IOException {
+        return eventFileResolver instanceof IndexedEventFileResolver
+                && indexedResolver().indexFileExists(type, aggregateIdentifier);
+    }
+
+    private IndexedEventFileResolver indexedResolver() {
+        return (IndexedEventFileResolver) eventFileResolver;
+    }
+
+    private static void skipFully(InputStream inputStream, long bytesToSkip) throws IOException {
+        long remaining = bytesToSkip;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                throw new EventStoreException("The event log is shorter than registered in its index. "
+                                                      + "It might be corrupt.");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static long[] toArray(List<Long> values) {
+        long[] array = new long[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Sets the number of events between two records in the index file of an aggregate. A record is added to the index
+     * for each event with a sequence number that is a multiple of this interval (minus one). Lower values increase the
+     * size of index files, but reduce the number of events that need to be read when writing a snapshot. An interval
+     * of about 100 events is a reasonable choice for most aggregates.
+     * <p/>
+     * Defaults to <code>0</code>, which disables indexing. When disabled, no index files are created and no records
+     * are added to them, but existing index files are still used to read events, and the position of the last
+     * snapshot registered in them is kept up to date. This value only affects records added to the index after it has
+     * been changed.
+     *
+     * @param indexInterval The number of events between two records in the index, or <code>0</code> to disable
+     *                      indexing
+     */
+    public void setIndexInterval(int indexInterval) {
+        Assert.isTrue(indexInterval >= 0, "The index interval may not be negative");
+        this.indexInterval = indexInterval;
+    }
+
     /**
      * Sets the base directory where the event store will store all events.
      *
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.fs;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * EventFileResolver that also provides access to an index file per aggregate, as well as the sizes of the event and
+ * snapshot files. The {@link FileSystemEventStore} uses the index file to find the positions of events and snapshot
+ * events without scanning the event and snapshot files. When the configured EventFileResolver does not implement this
+ * interface, the event store scans these files instead.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public interface IndexedEventFileResolver extends EventFileResolver {
+
+    /**
+     * Returns the size, in bytes, of the (regular) events file for the aggregate with the given
+     * <code>aggregateIdentifier</code> and of given <code>type</code>. Returns <code>0</code> if the file does not
+     * exist.
+     *
+     * @param type                The type of aggregate
+     * @param aggregateIdentifier the identifier of the aggregate
+     * @return the size of the event log of the given aggregate, in bytes
+     *
+     * @throws IOException when an error occurs while reading from the FileSystem
+     */
+    long eventFileSize(String type, Object aggregateIdentifier) throws IOException;
+
+    /**
+     * Returns the size, in bytes, of the snapshot events file for the aggregate with the given
+     * <code>aggregateIdentifier</code> and of given <code>type</code>. Returns <code>0</code> if the file does not
+     * exist.
+     *
+     * @param type                The type of aggregate
+     * @param aggregateIdentifier the identifier of the aggregate
+     * @return the size of the snapshot event log of the given aggregate, in bytes
+     *
+     * @throws IOException when an error occurs while reading from the FileSystem
+     */
+    long snapshotFileSize(String type, Object aggregateIdentifier) throws IOException;
+
+    /**
+     * Provides random read and write access to the index file for the aggregate with the given
+     * <code>aggregateIdentifier</code> and of given <code>type</code>. The file is created if it does not exist. The
+     * index keeps track of positions in the event and snapshot files, allowing the event store to find events without
+     * scanning these files.
+     * <p/>
+     * The caller of this method is responsible for closing the file when done using it.
+     *
+     * @param type                The type of aggregate to open the index file for
+     * @param aggregateIdentifier the identifier of the aggregate
+     * @return a RandomAccessFile providing access to the index of the given aggregate
+     *
+     * @throws IOException when an error occurs while opening a file
+     */
+    RandomAccessFile openIndexFileForWriting(String type, Object aggregateIdentifier) throws IOException;
+
+    /**
+     * Provides random read-only access to the existing index file for the aggregate with the given
+     * <code>aggregateIdentifier</code> and of given <code>type</code>.
+     * <p/>
+     * The caller of this method is responsible for closing the file when done using it.
+     *
+     * @param type                The type of aggregate to open the index file for
+     * @param aggregateIdentifier the identifier of the aggregate
+     * @return a RandomAccessFile providing read access to the index of the given aggregate
+     *
+     * @throws IOException when an error occurs while opening a file, for example because it does not exist
+     */
+    RandomAccessFile openIndexFileForReading(String type, Object aggregateIdentifier) throws IOException;
+
+    /**
+     * Indicates whether there is an index file for the given <code>aggregateIdentifier</code> of given
+     * <code>type</code>.
+     *
+     * @param type                The type of aggregate
+     * @param aggregateIdentifier the identifier of the aggregate
+     * @return <code>true</code> if an index file exists for the aggregate, <code>false</code> otherwise.
+     *
+     * @throws IOException when an error occurs while reading from the FileSystem. The existence of the index file is
+     *                     undetermined.
+     */
+    boolean indexFileExists(String type, Object aggregateIdentifier) throws IOException;
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.fs;
+
+import org.axonframework.common.io.IOUtils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A single file of the log written by the {@link SegmentedLogEventStore}. Each segment covers a range of the global
+ * log, starting at its <code>baseOffset</code>. Positions passed to and returned by a segment are global positions,
+ * not positions relative to the start of the file.
+ * <p/>
+ * Reads use positional {@link FileChannel} operations, which allows concurrent reads while data is being appended.
+ * Appending data is not thread safe; callers must make sure only a single thread appends to a segment at any time.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class LogSegment {
+
+    private final File file;
+    private final long baseOffset;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private volatile long size;
+
+    /**
+     * Opens the segment stored in the given <code>file</code>, which starts at the given <code>baseOffset</code> of
+     * the log. If the file does not exist, and the segment is opened <code>writable</code>, it is created.
+     *
+     * @param file       The file containing the segment's data
+     * @param baseOffset The position in the global log of the first byte in this segment
+     * @param writable   Whether data may be appended to this segment
+     * @throws IOException when the file could not be opened
+     */
+    public LogSegment(File file, long baseOffset, boolean writable) throws IOException {
+        this.file = file;
+        this.baseOffset = baseOffset;
+        this.randomAccessFile = new RandomAccessFile(file, writable ? "rw" : "r");
+        this.channel = randomAccessFile.getChannel();
+        this.size = channel.size();
+    }
+
+    /**
+     * Appends the given <code>data</code> to the end of this segment.
+     *
+     * @param data The bytes to append
+     * @return the global position at which the data was written
+     *
+     * @throws IOException when an error occurs writing to the file
+     */
+    public long append(byte[] data) throws IOException {
+        long filePosition = size;
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, filePosition + buffer.position());
+        }
+        size = filePosition + data.length;
+        return baseOffset + filePosition;
+    }
+
+    /**
+     * Reads <code>length</code> bytes, starting at the given global <code>position</code>.
+     *
+     * @param position The global position of the first byte to read
+     * @param length   The number of bytes to read
+     * @return the bytes read
+     *
+     * @throws IOException when an error occurs reading from the file, or when the segment does not contain the
+     *                     requested number of bytes
+     */
+    public byte[] read(long position, int length) throws IOException {
+        long filePosition = position - baseOffset;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, filePosition + buffer.position());
+            if (bytesRead < 0) {
+                throw new EOFException(String.format("Unexpected end of segment [%s] reading %s bytes at %s",
+                                                     file.getName(), length, filePosition));
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Discards all data in this segment beyond the given <code>validSize</code>. Used to remove a partially written
+     * entry at the end of the log after a crash.
+     *
+     * @param validSize The number of bytes in this segment to keep
+     * @throws IOException when an error occurs truncating the file
+     */
+    public void truncate(long validSize) throws IOException {
+        channel.truncate(validSize);
+        size = validSize;
+    }
+
+    /**
+     * Forces all data written to this segment to the storage device.
+     *
+     * @throws IOException when an error occurs syncing the file
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Closes the file underlying this segment. The segment cannot be used after it has been closed.
+     */
+    public void close() {
+        IOUtils.closeQuietly(randomAccessFile);
+    }
+
+    /**
+     * Returns the global position of the first byte in this segment.
+     *
+     * @return the global position of the first byte in this segment
+     */
+    public long getBaseOffset() {
+        return baseOffset;
+    }
+
+    /**
+     * Returns the global position just beyond the last byte in this segment, which is the position at which the next
+     * append would write data.
+     *
+     * @return the global position just beyond the last byte in this segment
+     */
+    public long getEndPosition() {
+        return baseOffset + size;
+    }
+
+    /**
+     * Returns the number of bytes in this segment.
+     *
+     * @return the number of bytes in this segment
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the file containing the data of this segment.
+     *
+     * @return the file containing the data of this segment
+     */
+    public File getFile() {
+        return file;
+    }
+}
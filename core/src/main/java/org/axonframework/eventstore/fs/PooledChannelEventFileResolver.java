@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.fs;
+
+import org.axonframework.common.Assert;
+import org.axonframework.common.io.IOUtils;
+import org.axonframework.eventstore.EventStoreException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+
+import static org.axonframework.eventstore.fs.SimpleEventFileResolver.*;
+
+/**
+ * EventFileResolver implementation that keeps the files it accesses open, allowing frequently used aggregates to read
+ * and append events without opening and closing a file for each operation. The number of open files is bounded. When
+ * that number is exceeded, the least recently used file that is not in use by any stream is closed. Files in use are
+ * never closed or opened a second time, so that all streams on the same file share a single handle. This means the
+ * number of open files may temporarily exceed the maximum when more files than that are in use at the same time.
+ * <p/>
+ * Files are stored in the same directory structure as used by the {@link SimpleEventFileResolver}. The existence of
+ * the directories for each aggregate type is checked only once.
+ * <p/>
+ * Streams returned by this resolver must be closed, so that the underlying file may be released. Closing these streams
+ * does not close the file itself. Use {@link #close()} to close all open files when the resolver is no longer used.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class PooledChannelEventFileResolver implements IndexedEventFileResolver {
+
+    /**
+     * The default maximum number of files kept open by this resolver.
+     */
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File baseDir;
+    private final int maxOpenFiles;
+    private final Set<String> existingDirectories =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Map<File, PooledChannel> openFiles;
+
+    /**
+     * Initialize the resolver to store files in the given <code>baseDir</code>, keeping at most {@link
+     * #DEFAULT_MAX_OPEN_FILES} files open.
+     *
+     * @param baseDir The directory where event files are stored.
+     */
+    public PooledChannelEventFileResolver(File baseDir) {
+        this(baseDir, DEFAULT_MAX_OPEN_FILES);
+    }
+
+    /**
+     * Initialize the resolver to store files in the given <code>baseDir</code>, keeping at most
+     * <code>maxOpenFiles</code> files open.
+     *
+     * @param baseDir      The directory where event files are stored.
+     * @param maxOpenFiles The maximum number of files to keep open
+     */
+    public PooledChannelEventFileResolver(File baseDir, int maxOpenFiles) {
+        Assert.isTrue(maxOpenFiles > 0, "The maximum number of open files must be a positive number");
+        this.baseDir = baseDir;
+        this.maxOpenFiles = maxOpenFiles;
+        this.openFiles = new LinkedHashMap<File, PooledChannel>(16, 0.75f, true);
+    }
+
+    @Override
+    public OutputStream openEventFileForWriting(String type, Object aggregateIdentifier) throws IOException {
+        return new ChannelOutputStream(acquire(getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_EVENTS)));
+    }
+
+    @Override
+    public OutputStream openSnapshotFileForWriting(String type, Object aggregateIdentifier) throws IOException {
+        return new ChannelOutputStream(acquire(getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_SNAPSHOTS)));
+    }
+
+    @Override
+    public InputStream openEventFileForReading(String type, Object aggregateIdentifier) throws IOException {
+        return openForReading(getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_EVENTS));
+    }
+
+    @Override
+    public InputStream openSnapshotFileForReading(String type, Object aggregateIdentifier) throws IOException {
+        return openForReading(getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_SNAPSHOTS));
+    }
+
+    @Override
+    public boolean eventFileExists(String type, Object aggregateIdentifier) throws IOException {
+        return fileExists(getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_EVENTS));
+    }
+
+    @Override
+    public boolean snapshotFileExists(String type, Object aggregateIdentifier) throws IOException {
+        return fileExists(getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_SNAPSHOTS));
+    }
+
+    @Override
+    public long eventFileSize(String type, Object aggregateIdentifier) throws IOException {
+        return fileSize(getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_EVENTS));
+    }
+
+    @Override
+    public long snapshotFileSize(String type, Object aggregateIdentifier) throws IOException {
+        return fileSize(getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_SNAPSHOTS));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Index files are not kept open by this resolver.
+     */
+    @Override
+    public RandomAccessFile openIndexFileForWriting(String type, Object aggregateIdentifier) throws IOException {
+        return new RandomAccessFile(getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_INDEX), "rw");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Index files are not kept open by this resolver.
+     */
+    @Override
+    public RandomAccessFile openIndexFileForReading(String type, Object aggregateIdentifier) throws IOException {
+        return new RandomAccessFile(getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_INDEX), "r");
+    }
+
+    @Override
+    public boolean indexFileExists(String type, Object aggregateIdentifier) throws IOException {
+        return getEventsFile(type, aggregateIdentifier, FILE_EXTENSION_INDEX).exists();
+    }
+
+    /**
+     * Closes all files kept open by this resolver. Files that are still in use by a stream are closed when that stream
+     * is closed, unless they have been opened again in the meantime. The resolver may still be used after this method
+     * has been called, in which case files are opened again.
+     */
+    @PreDestroy
+    public void close() {
+        synchronized (openFiles) {
+            Iterator<PooledChannel> iterator = openFiles.values().iterator();
+            while (iterator.hasNext()) {
+                PooledChannel channel = iterator.next();
+                if (channel.isInUse()) {
+                    channel.closeWhenReleased = true;
+                } else {
+                    iterator.remove();
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of files currently kept open by this resolver. This number may exceed the maximum number of
+     * open files when more files than that are in use by streams at the same time.
+     *
+     * @return the number of files currently kept open by this resolver
+     */
+    public int getOpenFileCount() {
+        synchronized (openFiles) {
+            return openFiles.size();
+        }
+    }
+
+    private InputStream openForReading(File file) throws IOException {
+        PooledChannel channel = acquireExisting(file);
+        if (channel == null) {
+            throw new FileNotFoundException(String.format("The file [%s] does not exist", file.getPath()));
+        }
+        return new BufferedInputStream(new ChannelInputStream(channel), BUFFER_SIZE);
+    }
+
+    private boolean fileExists(File file) {
+        synchronized (openFiles) {
+            if (openFiles.containsKey(file)) {
+                return true;
+            }
+        }
+        return file.exists();
+    }
+
+    private long fileSize(File file) throws IOException {
+        PooledChannel channel = acquireExisting(file);
+        if (channel == null) {
+            return 0;
+        }
+        try {
+            return channel.size();
+        } finally {
+            channel.release();
+        }
+    }
+
+    private PooledChannel acquireExisting(File file) throws IOException {
+        synchronized (openFiles) {
+            if (!openFiles.containsKey(file) && !file.exists()) {
+                return null;
+            }
+        }
+        return acquire(file);
+    }
+
+    private PooledChannel acquire(File file) throws IOException {
+        synchronized (openFiles) {
+            PooledChannel channel = openFiles.get(file);
+            if (channel == null) {
+                channel = new PooledChannel(file, new RandomAccessFile(file, "rw"));
+                openFiles.put(file, channel);
+            }
+            channel.users++;
+            channel.closeWhenReleased = false;
+            closeLeastRecentlyUsed();
+            return channel;
+        }
+    }
+
+    private void release(PooledChannel channel) {
+        synchronized (openFiles) {
+            channel.users--;
+            if (channel.closeWhenReleased && !channel.isInUse()) {
+                openFiles.remove(channel.file);
+                channel.close();
+            } else {
+                closeLeastRecentlyUsed();
+            }
+        }
+    }
+
+    /**
+     * Closes the least recently used files that are not in use, until the number of open files no longer exceeds the
+     * maximum. Must be called while synchronized on <code>openFiles</code>.
+     */
+    private void closeLeastRecentlyUsed() {
+        Iterator<PooledChannel> iterator = openFiles.values().iterator();
+        while (openFiles.size() > maxOpenFiles && iterator.hasNext()) {
+            PooledChannel channel = iterator.next();
+            if (!channel.isInUse()) {
+                iterator.remove();
+                channel.close();
+            }
+        }
+    }
+
+    private File getEventsFile(String type, Object identifier, String extension) {
+        return new File(getBaseDirForType(type), identifier + "." + extension);
+    }
+
+    private File getBaseDirForType(String type) {
+        File typeSpecificDir = new File(baseDir, type);
+        if (!existingDirectories.contains(type)) {
+            if (!typeSpecificDir.exists() && !typeSpecificDir.mkdirs()) {
+                throw new EventStoreException(
+                        "The given event store directory doesn't exist and could not be created");
+            }
+            existingDirectories.add(type);
+        }
+        return typeSpecificDir;
+    }
+
+    /**
+     * An open file that is shared by all streams accessing it. The number of streams using the file is counted, so that
+     * a file is never closed while in use. The <code>users</code> and <code>closeWhenReleased</code> fields are guarded
+     * by the lock on <code>openFiles</code>.
+     */
+    private final class PooledChannel {
+
+        private final File file;
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private int users;
+        private boolean closeWhenReleased;
+
+        private PooledChannel(File file, RandomAccessFile randomAccessFile) {
+            this.file = file;
+            this.randomAccessFile = randomAccessFile;
+            this.channel = randomAccessFile.getChannel();
+        }
+
+        public boolean isInUse() {
+            return users > 0;
+        }
+
+        public void release() {
+            PooledChannelEventFileResolver.this.release(this);
+        }
+
+        public synchronized void close() {
+            IOUtils.closeQuietly(randomAccessFile);
+        }
+
+        public synchronized void append(byte[] data, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+            long position = channel.size();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        public int read(ByteBuffer buffer, long position) throws IOException {
+            return channel.read(buffer, position);
+        }
+
+        public long size() throws IOException {
+            return channel.size();
+        }
+    }
+
+    /**
+     * OutputStream that buffers written data and appends it to the end of a pooled file. The pooled file is released
+     * when the stream is closed.
+     */
+    private static final class ChannelOutputStream extends OutputStream {
+
+        private final PooledChannel channel;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int count;
+        private boolean closed;
+
+        private ChannelOutputStream(PooledChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buffer.length - count) {
+                flush();
+            }
+            if (len >= buffer.length) {
+                channel.append(b, off, len);
+            } else {
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                channel.append(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                try {
+                    flush();
+                } finally {
+                    channel.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * InputStream that reads from a pooled file using positional reads, allowing multiple streams to read from the
+     * same file concurrently. The pooled file is released when the stream is closed.
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        private final PooledChannel channel;
+        private long position;
+        private boolean closed;
+
+        private ChannelInputStream(PooledChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int bytesRead = read(single, 0, 1);
+            return bytesRead < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int bytesRead = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (bytesRead > 0) {
+                position += bytesRead;
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.max(0, Math.min(n, channel.size() - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, channel.size() - position));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                channel.release();
+            }
+        }
+    }
+}
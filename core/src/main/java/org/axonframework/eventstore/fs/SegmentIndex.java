@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.fs;
+
+import org.axonframework.common.io.IOUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The index of a segment of the log written by the {@link SegmentedLogEventStore} that is no longer appended to. The
+ * index is stored in a file next to the segment, so that the segment itself doesn't have to be read when the event
+ * store is opened.
+ * <p/>
+ * The file contains a record (sequence number, global position and length) for each entry in the segment, grouped per
+ * aggregate, followed by a directory of the aggregates in the segment and a footer. The footer refers to the directory
+ * and contains the size of the segment at the time it was indexed, which allows detection of an index file that does
+ * not match its segment. The directory is loaded the first time it is needed, and is softly referenced, allowing the
+ * garbage collector to discard it when memory runs low. The records of an aggregate are only read when requested.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class SegmentIndex {
+
+    private static final int MAGIC = 0x41584958;
+    private static final int RECORD_SIZE = 8 + 8 + 4;
+    private static final int FOOTER_SIZE = 8 + 8 + 4;
+
+    private final File file;
+    private final long directoryPosition;
+    private volatile SoftReference<Map<String, DirectoryEntry>> directory;
+
+    private SegmentIndex(File file, long directoryPosition, Map<String, DirectoryEntry> directory) {
+        this.file = file;
+        this.directoryPosition = directoryPosition;
+        this.directory = new SoftReference<Map<String, DirectoryEntry>>(directory);
+    }
+
+    /**
+     * Opens the index stored in the given <code>file</code> for a segment of given <code>segmentSize</code>. Only the
+     * footer of the file is read. Returns <code>null</code> if the file does not exist, or if it does not contain a
+     * valid index of a segment with the given size.
+     *
+     * @param file        The file containing the index
+     * @param segmentSize The size of the indexed segment, in bytes
+     * @return the index stored in the file, or <code>null</code> if the file doesn't contain a valid index
+     *
+     * @throws IOException when an error occurs reading the file
+     */
+    public static SegmentIndex open(File file, long segmentSize) throws IOException {
+        if (!file.exists() || file.length() < FOOTER_SIZE) {
+            return null;
+        }
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            long footerPosition = in.length() - FOOTER_SIZE;
+            in.seek(footerPosition);
+            long directoryPosition = in.readLong();
+            long indexedSegmentSize = in.readLong();
+            if (in.readInt() != MAGIC || indexedSegmentSize != segmentSize
+                    || directoryPosition < 0 || directoryPosition > footerPosition) {
+                return null;
+            }
+            return new SegmentIndex(file, directoryPosition, null);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Writes an index of the given <code>entries</code> to the given <code>file</code>, replacing any existing index
+     * file. The index is written to a temporary file first, which is renamed when complete.
+     *
+     * @param file        The file to write the index to
+     * @param segmentSize The size of the indexed segment, in bytes
+     * @param entries     The entries in the segment, per aggregate
+     * @param force       Whether to force the index file to the storage device before renaming it
+     * @return the index written to the file
+     *
+     * @throws IOException when an error occurs writing the file
+     */
+    public static SegmentIndex write(File file, long segmentSize, Map<String, AggregateIndex> entries,
+                                     boolean force) throws IOException {
+        Map<String, DirectoryEntry> directory = new HashMap<String, DirectoryEntry>();
+        File tempFile = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tempFile);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        long directoryPosition;
+        try {
+            int recordCount = 0;
+            for (Map.Entry<String, AggregateIndex> entry : entries.entrySet()) {
+                AggregateIndex aggregateIndex = entry.getValue();
+                int eventCount = aggregateIndex.getEventCount();
+                for (int i = 0; i < eventCount; i++) {
+                    writeRecord(out, aggregateIndex.getSequenceNumber(i), aggregateIndex.getPosition(i),
+                                aggregateIndex.getLength(i));
+                }
+                long snapshotSequenceNumber = aggregateIndex.getSnapshotSequenceNumber();
+                if (snapshotSequenceNumber >= 0) {
+                    writeRecord(out, snapshotSequenceNumber, aggregateIndex.getSnapshotPosition(),
+                                aggregateIndex.getSnapshotLength());
+                }
+                directory.put(entry.getKey(), new DirectoryEntry(recordCount, eventCount,
+                                                                 aggregateIndex.getLastEventSequenceNumber(),
+                                                                 snapshotSequenceNumber));
+                recordCount += eventCount + (snapshotSequenceNumber >= 0 ? 1 : 0);
+            }
+            directoryPosition = (long) recordCount * RECORD_SIZE;
+            out.writeInt(directory.size());
+            for (Map.Entry<String, DirectoryEntry> entry : directory.entrySet()) {
+                byte[] key = entry.getKey().getBytes(IOUtils.UTF8);
+                DirectoryEntry directoryEntry = entry.getValue();
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(directoryEntry.firstRecord);
+                out.writeInt(directoryEntry.eventCount);
+                out.writeLong(directoryEntry.lastEventSequenceNumber);
+                out.writeLong(directoryEntry.snapshotSequenceNumber);
+            }
+            out.writeLong(directoryPosition);
+            out.writeLong(segmentSize);
+            out.writeInt(MAGIC);
+            out.flush();
+            if (force) {
+                fileOut.getFD().sync();
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException(String.format("Unable to replace index file [%s]", file.getName()));
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException(String.format("Unable to rename index file [%s]", tempFile.getName()));
+        }
+        return new SegmentIndex(file, directoryPosition, directory);
+    }
+
+    /**
+     * Returns the sequence number of the last event of the aggregate with given <code>key</code> in the indexed
+     * segment, or -1 if the segment contains no events of that aggregate.
+     *
+     * @param key The key identifying the aggregate
+     * @return the sequence number of the aggregate's last event in the segment, or -1
+     *
+     * @throws IOException when an error occurs reading the index file
+     */
+    public long getLastEventSequenceNumber(String key) throws IOException {
+        DirectoryEntry entry = directory().get(key);
+        return entry == null ? -1 : entry.lastEventSequenceNumber;
+    }
+
+    /**
+     * Returns the sequence number of the latest snapshot event of the aggregate with given <code>key</code> in the
+     * indexed segment, or -1 if the segment contains no snapshot events of that aggregate.
+     *
+     * @param key The key identifying the aggregate
+     * @return the sequence number of the aggregate's latest snapshot event in the segment, or -1
+     *
+     * @throws IOException when an error occurs reading the index file
+     */
+    public long getSnapshotSequenceNumber(String key) throws IOException {
+        DirectoryEntry entry = directory().get(key);
+        return entry == null ? -1 : entry.snapshotSequenceNumber;
+    }
+
+    /**
+     * Reads the positions of the entries of the aggregate with given <code>key</code> in the indexed segment.
+     *
+     * @param key The key identifying the aggregate
+     * @return the positions of the aggregate's entries, or <code>null</code> if the segment contains no entries of
+     *         that aggregate
+     *
+     * @throws IOException when an error occurs reading the index file
+     */
+    public AggregateIndex read(String key) throws IOException {
+        DirectoryEntry entry = directory().get(key);
+        if (entry == null) {
+            return null;
+        }
+        boolean hasSnapshot = entry.snapshotSequenceNumber >= 0;
+        byte[] records = new byte[(entry.eventCount + (hasSnapshot ? 1 : 0)) * RECORD_SIZE];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.seek((long) entry.firstRecord * RECORD_SIZE);
+            raf.readFully(records);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(records));
+        AggregateIndex aggregateIndex = new AggregateIndex();
+        for (int i = 0; i < entry.eventCount; i++) {
+            aggregateIndex.addEvent(in.readLong(), in.readLong(), in.readInt());
+        }
+        if (hasSnapshot) {
+            aggregateIndex.setSnapshot(in.readLong(), in.readLong(), in.readInt());
+        }
+        return aggregateIndex;
+    }
+
+    private Map<String, DirectoryEntry> directory() throws IOException {
+        Map<String, DirectoryEntry> loadedDirectory = directory.get();
+        if (loadedDirectory == null) {
+            synchronized (this) {
+                loadedDirectory = directory.get();
+                if (loadedDirectory == null) {
+                    loadedDirectory = loadDirectory();
+                    directory = new SoftReference<Map<String, DirectoryEntry>>(loadedDirectory);
+                }
+            }
+        }
+        return loadedDirectory;
+    }
+
+    private Map<String, DirectoryEntry> loadDirectory() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        byte[] data;
+        try {
+            data = new byte[(int) (raf.length() - FOOTER_SIZE - directoryPosition)];
+            raf.seek(directoryPosition);
+            raf.readFully(data);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int keyCount = in.readInt();
+        Map<String, DirectoryEntry> loadedDirectory = new HashMap<String, DirectoryEntry>(keyCount * 4 / 3 + 1);
+        for (int i = 0; i < keyCount; i++) {
+            byte[] key = new byte[in.readInt()];
+            in.readFully(key);
+            loadedDirectory.put(new String(key, IOUtils.UTF8),
+                                new DirectoryEntry(in.readInt(), in.readInt(), in.readLong(), in.readLong()));
+        }
+        return loadedDirectory;
+    }
+
+    private static void writeRecord(DataOutputStream out, long sequenceNumber, long position, int length)
+            throws IOException {
+        out.writeLong(sequenceNumber);
+        out.writeLong(position);
+        out.writeInt(length);
+    }
+
+    private static final class DirectoryEntry {
+
+        private final int firstRecord;
+        private final int eventCount;
+        private final long lastEventSequenceNumber;
+        private final long snapshotSequenceNumber;
+
+        private DirectoryEntry(int firstRecord, int eventCount, long lastEventSequenceNumber,
+                               long snapshotSequenceNumber) {
+            this.firstRecord = firstRecord;
+            this.eventCount = eventCount;
+            this.lastEventSequenceNumber = lastEventSequenceNumber;
+            this.snapshotSequenceNumber = snapshotSequenceNumber;
+        }
+    }
+}
@@ -0,0 +1,889 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.fs;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.axonframework.common.Assert;
+import org.axonframework.common.io.BinaryEntryInputStream;
+import org.axonframework.common.io.BinaryEntryOutputStream;
+import org.axonframework.common.io.IOUtils;
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.eventstore.EventStore;
+import org.axonframework.eventstore.EventStoreException;
+import org.axonframework.eventstore.EventStreamNotFoundException;
+import org.axonframework.eventstore.SnapshotEventStore;
+import org.axonframework.repository.ConcurrencyException;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.Serializer;
+import org.axonframework.serializer.XStreamSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.axonframework.eventstore.fs.EventSerializationUtils.readEventEntry;
+import static org.axonframework.eventstore.fs.EventSerializationUtils.writeEventEntry;
+import static org.axonframework.serializer.MessageSerializer.serializeMessage;
+
+/**
+ * Implementation of the {@link EventStore} that appends the events of all aggregates to a single log on the file
+ * system. The log is split into segment files of a configurable maximum size. Instead of creating a file for each
+ * aggregate, as the {@link FileSystemEventStore} does, this event store writes events sequentially to the end of the
+ * active segment. When the active segment is full, a new one is started.
+ * <p/>
+ * Each segment has an index of the positions of the events and the latest snapshot of each aggregate in it. Reading
+ * the events of an aggregate uses positional reads on the segment files, only touching the entries of that aggregate.
+ * The index of the active segment is kept in memory. When a new segment is started, the index of the previous segment
+ * is written to an index file next to it. These index files are only read when the entries of an aggregate are needed,
+ * so opening the event store only reads the active segment, regardless of the size of the log. An entry that was only
+ * partially written (e.g. due to a crash) at the end of the log is discarded at that time. Missing or outdated index
+ * files are recreated from their segment when the event store is opened.
+ * <p/>
+ * Entries are encoded using the format described by {@link EventSerializationUtils}, prefixed with the kind of entry
+ * (event or snapshot), the aggregate type and the aggregate identifier. The {@link SyncPolicy} determines when written
+ * data is forced to disk. The default is {@link SyncPolicy#NEVER}, which leaves that decision to the operating system.
+ * <p/>
+ * When group commit is enabled (see {@link #setGroupCommit(boolean)}), events appended by concurrent threads are
+ * combined into a single write (and sync, depending on the sync policy). One of the appending threads writes the
+ * events of all threads waiting at that time, optionally after waiting a short period for more threads to join (see
+ * {@link #setGroupCommitWindow(long)}). Each thread is notified of the outcome of its own append. An append that
+ * conflicts with events already stored fails with a {@link ConcurrencyException}, without affecting the other appends
+ * in the same group.
+ * <p/>
+ * This event store holds file handles to all segments. Use {@link #close()} to release them when the event store is
+ * no longer used.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class SegmentedLogEventStore implements EventStore, SnapshotEventStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedLogEventStore.class);
+
+    /**
+     * The default maximum size of a segment file, in bytes (64MB).
+     */
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Describes the file extension used for segment files.
+     */
+    public static final String FILE_EXTENSION_SEGMENT = "log";
+
+    /**
+     * Describes the file extension used for the index files of segments.
+     */
+    public static final String FILE_EXTENSION_INDEX = "idx";
+
+    private static final int ENTRY_KIND_EVENT = 0;
+    private static final int ENTRY_KIND_SNAPSHOT = 1;
+
+    private final File baseDir;
+    private final Serializer eventSerializer;
+    private final NavigableMap<Long, LogSegment> segments = new ConcurrentSkipListMap<Long, LogSegment>();
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private final Lock commitLock = new ReentrantLock();
+    private final Queue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<PendingWrite>();
+
+    private volatile LogSegment activeSegment;
+    private volatile LogIndex logIndex;
+    private volatile long syncedPosition;
+    private volatile long maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+    private volatile SyncPolicy syncPolicy = SyncPolicy.NEVER;
+    private volatile boolean closed;
+    private volatile boolean groupCommit;
+    private volatile long groupCommitWindow;
+
+    /**
+     * Opens the event store using the segment files in the given <code>baseDir</code>. The directory is created if it
+     * does not exist. Events are serialized using an {@link XStreamSerializer}.
+     *
+     * @param baseDir The directory containing the segment files
+     * @throws EventStoreException when the segment files could not be opened
+     */
+    public SegmentedLogEventStore(File baseDir) {
+        this(baseDir, new XStreamSerializer());
+    }
+
+    /**
+     * Opens the event store using the segment files in the given <code>baseDir</code>, serializing events using the
+     * given <code>serializer</code>. The directory is created if it does not exist. The serializer must be capable of
+     * serializing at least DomainEvents.
+     *
+     * @param baseDir    The directory containing the segment files
+     * @param serializer The serializer capable of serializing (at least) DomainEvents
+     * @throws EventStoreException when the segment files could not be opened
+     */
+    public SegmentedLogEventStore(File baseDir, Serializer serializer) {
+        this.baseDir = baseDir;
+        this.eventSerializer = serializer;
+        if (!baseDir.exists() && !baseDir.mkdirs()) {
+            throw new EventStoreException("The given event store directory doesn't exist and could not be created");
+        }
+        try {
+            openSegments();
+        } catch (IOException e) {
+            closeSegments();
+            throw new EventStoreException("An error occurred while opening the segments of the event log", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * This implementation appends all events in the stream to the end of the active segment in a single write
+     * operation. It verifies that the sequence numbers of the events are higher than those of events already stored
+     * for the same aggregate, and throws a {@link ConcurrencyException} otherwise. In that case, none of the events
+     * are stored.
+     */
+    @Override
+    public void appendEvents(String type, DomainEventStream eventsToStore) {
+        if (!eventsToStore.hasNext()) {
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        List<PendingEntry> pendingEntries = new ArrayList<PendingEntry>();
+        try {
+            while (eventsToStore.hasNext()) {
+                DomainEventMessage event = eventsToStore.next();
+                int start = buffer.size();
+                writeEntry(buffer, ENTRY_KIND_EVENT, type, event);
+                pendingEntries.add(new PendingEntry(indexKey(type, event.getAggregateIdentifier()),
+                                                    event.getAggregateIdentifier(), event.getSequenceNumber(),
+                                                    start, buffer.size() - start));
+            }
+        } catch (IOException e) {
+            throw new EventStoreException("Unable to store given entity due to an IOException", e);
+        }
+        if (groupCommit) {
+            commitInGroup(new PendingWrite(buffer.toByteArray(), pendingEntries));
+            return;
+        }
+        long endPosition;
+        synchronized (writeLock) {
+            verifySequenceNumbers(pendingEntries, new HashMap<String, Long>());
+            long position = write(buffer.toByteArray());
+            for (PendingEntry entry : pendingEntries) {
+                aggregateIndexFor(logIndex.activeSegment, entry.key)
+                        .addEvent(entry.sequenceNumber, position + entry.offset, entry.length);
+            }
+            endPosition = activeSegment.getEndPosition();
+        }
+        if (syncPolicy == SyncPolicy.ALWAYS) {
+            sync(endPosition);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DomainEventStream readEvents(String type, Object identifier) {
+        assertOpen();
+        long[][] entries = entriesToRead(indexKey(type, identifier));
+        if (entries == null) {
+            throw new EventStreamNotFoundException(type, identifier);
+        }
+        return new LogDomainEventStream(entries[0], entries[1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The snapshot event is appended to the log like any other event. Subsequent reads of the aggregate will start
+     * with the snapshot event, followed by the events with a higher sequence number.
+     *
+     * @throws EventStoreException when an error occurs while writing to the event log.
+     */
+    @Override
+    public void appendSnapshotEvent(String type, DomainEventMessage snapshotEvent) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            writeEntry(buffer, ENTRY_KIND_SNAPSHOT, type, snapshotEvent);
+        } catch (IOException e) {
+            throw new EventStoreException("Error writing a snapshot event due to an IO exception", e);
+        }
+        long endPosition;
+        synchronized (writeLock) {
+            long position = write(buffer.toByteArray());
+            aggregateIndexFor(logIndex.activeSegment, indexKey(type, snapshotEvent.getAggregateIdentifier()))
+                    .setSnapshot(snapshotEvent.getSequenceNumber(), position, buffer.size());
+            endPosition = activeSegment.getEndPosition();
+        }
+        if (syncPolicy == SyncPolicy.ALWAYS) {
+            sync(endPosition);
+        }
+    }
+
+    /**
+     * Forces all data written so far to the storage device, regardless of the configured {@link SyncPolicy}.
+     *
+     * @throws EventStoreException when an error occurs syncing the segment files
+     */
+    public void flush() {
+        assertOpen();
+        sync(activeSegment.getEndPosition());
+    }
+
+    /**
+     * Closes all segment files. Data written to the active segment is forced to disk, unless the sync policy is
+     * {@link SyncPolicy#NEVER}. The event store cannot be used after it has been closed.
+     */
+    public void close() {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (syncPolicy != SyncPolicy.NEVER) {
+                    try {
+                        activeSegment.force();
+                    } catch (IOException e) {
+                        logger.warn("Failed to force the active segment to disk while closing the event store", e);
+                    }
+                }
+                closeSegments();
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum size, in bytes, of a segment file. When appending an entry would cause the active segment to
+     * exceed this size, a new segment is started. A single append that is larger than this size is written to a
+     * segment of its own. Defaults to {@link #DEFAULT_MAX_SEGMENT_SIZE}.
+     *
+     * @param maxSegmentSize The maximum size of a segment file, in bytes
+     */
+    public void setMaxSegmentSize(long maxSegmentSize) {
+        Assert.isTrue(maxSegmentSize > 0, "The maximum segment size must be a positive number");
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * Sets the policy that describes when written data is forced to disk. Defaults to {@link SyncPolicy#NEVER}.
+     *
+     * @param syncPolicy The policy describing when data is forced to disk
+     */
+    public void setSyncPolicy(SyncPolicy syncPolicy) {
+        Assert.notNull(syncPolicy, "The sync policy may not be null");
+        this.syncPolicy = syncPolicy;
+    }
+
+    /**
+     * Sets whether events appended by concurrent threads should be written and synced as a group. Defaults to
+     * <code>false</code>.
+     *
+     * @param groupCommit Whether to combine concurrent appends into a single write
+     */
+    public void setGroupCommit(boolean groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    /**
+     * Sets the number of milliseconds the thread writing a group of appends waits for other threads to join that
+     * group. A longer window creates larger groups, at the cost of a higher latency of each append. Only used when
+     * group commit is enabled. Defaults to 0, meaning that a group contains only the appends waiting at the moment the
+     * previous group has been written.
+     *
+     * @param groupCommitWindow The number of milliseconds to wait for appends to join a group
+     */
+    public void setGroupCommitWindow(long groupCommitWindow) {
+        Assert.isFalse(groupCommitWindow < 0, "The group commit window may not be negative");
+        this.groupCommitWindow = groupCommitWindow;
+    }
+
+    /**
+     * Adds the given write to the pending writes and waits until it has been written. The thread that obtains the
+     * commit lock writes the appends of all pending writes. The other threads wait for their own write to complete,
+     * instead of waiting for the lock. When the writing thread releases the lock, it hands over to the oldest pending
+     * write that was not part of its group, if any.
+     */
+    private void commitInGroup(PendingWrite pendingWrite) {
+        pendingWrites.add(pendingWrite);
+        while (!pendingWrite.isCompleted()) {
+            if (commitLock.tryLock()) {
+                try {
+                    if (!pendingWrite.isCompleted()) {
+                        waitForGroupMembers();
+                        List<PendingWrite> group = new ArrayList<PendingWrite>();
+                        PendingWrite next = pendingWrites.poll();
+                        while (next != null) {
+                            group.add(next);
+                            next = pendingWrites.poll();
+                        }
+                        writeGroup(group);
+                    }
+                } finally {
+                    commitLock.unlock();
+                    PendingWrite nextLeader = pendingWrites.peek();
+                    if (nextLeader != null) {
+                        nextLeader.handOver();
+                    }
+                }
+            } else {
+                pendingWrite.awaitCompletionOrHandOver();
+            }
+        }
+        pendingWrite.rethrowFailure();
+    }
+
+    private void waitForGroupMembers() {
+        if (groupCommitWindow > 0) {
+            try {
+                Thread.sleep(groupCommitWindow);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void writeGroup(List<PendingWrite> group) {
+        List<PendingWrite> accepted = new ArrayList<PendingWrite>(group.size());
+        try {
+            long endPosition;
+            synchronized (writeLock) {
+                Map<String, Long> groupSequenceNumbers = new HashMap<String, Long>();
+                int groupSize = 0;
+                for (PendingWrite pendingWrite : group) {
+                    try {
+                        verifySequenceNumbers(pendingWrite.entries, groupSequenceNumbers);
+                        accepted.add(pendingWrite);
+                        groupSize += pendingWrite.data.length;
+                    } catch (ConcurrencyException e) {
+                        pendingWrite.fail(e);
+                    }
+                }
+                if (accepted.isEmpty()) {
+                    return;
+                }
+                byte[] data = new byte[groupSize];
+                int offset = 0;
+                for (PendingWrite pendingWrite : accepted) {
+                    System.arraycopy(pendingWrite.data, 0, data, offset, pendingWrite.data.length);
+                    offset += pendingWrite.data.length;
+                }
+                long position = write(data);
+                for (PendingWrite pendingWrite : accepted) {
+                    for (PendingEntry entry : pendingWrite.entries) {
+                        aggregateIndexFor(logIndex.activeSegment, entry.key)
+                                .addEvent(entry.sequenceNumber, position + entry.offset, entry.length);
+                    }
+                    position += pendingWrite.data.length;
+                }
+                endPosition = activeSegment.getEndPosition();
+            }
+            if (syncPolicy == SyncPolicy.ALWAYS) {
+                sync(endPosition);
+            }
+            for (PendingWrite pendingWrite : accepted) {
+                pendingWrite.complete();
+            }
+        } catch (RuntimeException e) {
+            failIncompleteWrites(group, e);
+        } catch (Error e) {
+            // the group members are no longer pending, so their threads must be woken up before propagating the error
+            failIncompleteWrites(group, new EventStoreException("An error occurred while writing events", e));
+            throw e;
+        }
+    }
+
+    private void failIncompleteWrites(List<PendingWrite> group, RuntimeException cause) {
+        for (PendingWrite pendingWrite : group) {
+            if (!pendingWrite.isCompleted()) {
+                pendingWrite.fail(cause);
+            }
+        }
+    }
+
+    private void writeEntry(OutputStream out, int kind, String type, DomainEventMessage event) throws IOException {
+        SerializedObject serializedEvent = serializeMessage(event, eventSerializer);
+        BinaryEntryOutputStream entryOut = new BinaryEntryOutputStream(out);
+        entryOut.writeNumber(kind);
+        entryOut.writeBytes(type.getBytes(IOUtils.UTF8));
+        entryOut.writeBytes(event.getAggregateIdentifier().toString().getBytes(IOUtils.UTF8));
+        writeEventEntry(out, event.getSequenceNumber(), event.getTimestamp().toString(), serializedEvent);
+    }
+
+    /**
+     * Verifies the sequence numbers of the given entries against those of the events already stored and those in the
+     * given <code>sequenceNumbers</code>, which is updated with the sequence numbers of the entries if they are
+     * valid.
+     */
+    private void verifySequenceNumbers(List<PendingEntry> pendingEntries, Map<String, Long> sequenceNumbers) {
+        Map<String, Long> lastSequenceNumbers = new HashMap<String, Long>();
+        for (PendingEntry entry : pendingEntries) {
+            Long lastSequenceNumber = lastSequenceNumbers.get(entry.key);
+            if (lastSequenceNumber == null) {
+                lastSequenceNumber = sequenceNumbers.get(entry.key);
+            }
+            if (lastSequenceNumber == null) {
+                lastSequenceNumber = lastSequenceNumber(entry.key);
+            }
+            if (entry.sequenceNumber <= lastSequenceNumber) {
+                throw new ConcurrencyException(
+                        String.format("Concurrent modification detected for Aggregate identifier [%s], sequence: [%s]",
+                                      entry.aggregateIdentifier,
+                                      entry.sequenceNumber));
+            }
+            lastSequenceNumbers.put(entry.key, entry.sequenceNumber);
+        }
+        sequenceNumbers.putAll(lastSequenceNumbers);
+    }
+
+    // must be called while holding the write lock
+    private long write(byte[] data) {
+        assertOpen();
+        try {
+            if (activeSegment.getSize() > 0 && activeSegment.getSize() + data.length > maxSegmentSize) {
+                rollSegment();
+            }
+            return activeSegment.append(data);
+        } catch (IOException e) {
+            throw new EventStoreException("An error occurred while appending to the event log", e);
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        LogSegment previousSegment = activeSegment;
+        boolean force = syncPolicy != SyncPolicy.NEVER;
+        if (force) {
+            previousSegment.force();
+        }
+        SegmentIndex previousIndex = SegmentIndex.write(indexFile(previousSegment.getBaseOffset()),
+                                                        previousSegment.getSize(), logIndex.activeSegment, force);
+        long baseOffset = previousSegment.getEndPosition();
+        LogSegment newSegment = new LogSegment(segmentFile(baseOffset), baseOffset, true);
+        segments.put(baseOffset, newSegment);
+        List<SegmentIndex> sealedSegments = new ArrayList<SegmentIndex>(logIndex.sealedSegments);
+        sealedSegments.add(previousIndex);
+        logIndex = new LogIndex(sealedSegments, new ConcurrentHashMap<String, AggregateIndex>());
+        activeSegment = newSegment;
+        logger.debug("Started new segment [{}] of the event log", newSegment.getFile().getName());
+    }
+
+    private void sync(long position) {
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                // another thread has already synced our data
+                return;
+            }
+            LogSegment segment;
+            long endPosition;
+            synchronized (writeLock) {
+                assertOpen();
+                segment = activeSegment;
+                endPosition = segment.getEndPosition();
+            }
+            try {
+                segment.force();
+            } catch (IOException e) {
+                throw new EventStoreException("An error occurred while forcing the event log to disk", e);
+            }
+            syncedPosition = endPosition;
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last event of the aggregate with given <code>key</code>. If the log contains
+     * only snapshot events of the aggregate, the sequence number of the latest snapshot is returned. Returns -1 if the
+     * log doesn't contain any entries of the aggregate.
+     */
+    private long lastSequenceNumber(String key) {
+        LogIndex currentIndex = logIndex;
+        long snapshotSequenceNumber = -1;
+        AggregateIndex activeIndex = currentIndex.activeSegment.get(key);
+        if (activeIndex != null) {
+            if (activeIndex.getEventCount() > 0) {
+                return activeIndex.getLastEventSequenceNumber();
+            }
+            snapshotSequenceNumber = activeIndex.getSnapshotSequenceNumber();
+        }
+        try {
+            for (int i = currentIndex.sealedSegments.size() - 1; i >= 0; i--) {
+                SegmentIndex segmentIndex = currentIndex.sealedSegments.get(i);
+                long lastEventSequenceNumber = segmentIndex.getLastEventSequenceNumber(key);
+                if (lastEventSequenceNumber >= 0) {
+                    return lastEventSequenceNumber;
+                }
+                if (snapshotSequenceNumber < 0) {
+                    snapshotSequenceNumber = segmentIndex.getSnapshotSequenceNumber(key);
+                }
+            }
+        } catch (IOException e) {
+            throw new EventStoreException("An error occurred while reading the index of the event log", e);
+        }
+        return snapshotSequenceNumber;
+    }
+
+    /**
+     * Returns the positions and lengths of the entries to read to reconstruct the aggregate with given
+     * <code>key</code>: the latest snapshot (if any), followed by the events that were appended after it. Segments are
+     * visited from newest to oldest, until the segment containing the events preceding the snapshot is found.
+     *
+     * @return the positions (at index 0) and lengths (at index 1) of the entries to read, or <code>null</code> if
+     *         there are no entries
+     */
+    private long[][] entriesToRead(String key) {
+        LogIndex currentIndex = logIndex;
+        List<AggregateIndex> segmentEntries = new ArrayList<AggregateIndex>();
+        AggregateIndex snapshotSegment = null;
+        try {
+            for (int i = currentIndex.sealedSegments.size(); i >= 0; i--) {
+                AggregateIndex aggregateIndex = i == currentIndex.sealedSegments.size()
+                        ? currentIndex.activeSegment.get(key)
+                        : currentIndex.sealedSegments.get(i).read(key);
+                if (aggregateIndex == null) {
+                    continue;
+                }
+                segmentEntries.add(aggregateIndex);
+                if (snapshotSegment == null && aggregateIndex.getSnapshotPosition() >= 0) {
+                    snapshotSegment = aggregateIndex;
+                }
+                if (snapshotSegment != null
+                        && aggregateIndex.containsEventsUpTo(snapshotSegment.getSnapshotSequenceNumber())) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new EventStoreException("An error occurred while reading the index of the event log", e);
+        }
+        long snapshotSequenceNumber = -1;
+        List<long[][]> events = new ArrayList<long[][]>(segmentEntries.size());
+        int entryCount = 0;
+        if (snapshotSegment != null) {
+            snapshotSequenceNumber = snapshotSegment.getSnapshotSequenceNumber();
+            entryCount++;
+        }
+        for (int i = segmentEntries.size() - 1; i >= 0; i--) {
+            long[][] segmentEvents = segmentEntries.get(i).eventsAfter(snapshotSequenceNumber);
+            events.add(segmentEvents);
+            entryCount += segmentEvents[0].length;
+        }
+        if (entryCount == 0) {
+            return null;
+        }
+        long[][] entries = new long[2][entryCount];
+        int offset = 0;
+        if (snapshotSegment != null) {
+            entries[0][0] = snapshotSegment.getSnapshotPosition();
+            entries[1][0] = snapshotSegment.getSnapshotLength();
+            offset++;
+        }
+        for (long[][] segmentEvents : events) {
+            System.arraycopy(segmentEvents[0], 0, entries[0], offset, segmentEvents[0].length);
+            System.arraycopy(segmentEvents[1], 0, entries[1], offset, segmentEvents[1].length);
+            offset += segmentEvents[0].length;
+        }
+        return entries;
+    }
+
+    private static AggregateIndex aggregateIndexFor(Map<String, AggregateIndex> index, String key) {
+        AggregateIndex aggregateIndex = index.get(key);
+        if (aggregateIndex == null) {
+            aggregateIndex = new AggregateIndex();
+            index.put(key, aggregateIndex);
+        }
+        return aggregateIndex;
+    }
+
+    private void openSegments() throws IOException {
+        File[] segmentFiles = baseDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith("." + FILE_EXTENSION_SEGMENT);
+            }
+        });
+        Arrays.sort(segmentFiles);
+        List<SegmentIndex> sealedSegments = new ArrayList<SegmentIndex>();
+        ConcurrentMap<String, AggregateIndex> activeSegmentIndex = new ConcurrentHashMap<String, AggregateIndex>();
+        for (int i = 0; i < segmentFiles.length; i++) {
+            File segmentFile = segmentFiles[i];
+            String fileName = segmentFile.getName();
+            long baseOffset = Long.parseLong(fileName.substring(0, fileName.indexOf('.')));
+            boolean lastSegment = i == segmentFiles.length - 1;
+            LogSegment segment = new LogSegment(segmentFile, baseOffset, lastSegment);
+            segments.put(baseOffset, segment);
+            if (lastSegment) {
+                long validSize = indexSegment(segment, activeSegmentIndex);
+                if (validSize < segment.getSize()) {
+                    logger.warn("Discarding {} bytes of an incomplete entry at the end of segment [{}]",
+                                segment.getSize() - validSize, fileName);
+                    segment.truncate(validSize);
+                }
+            } else {
+                sealedSegments.add(openSegmentIndex(segment));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, new LogSegment(segmentFile(0), 0, true));
+        }
+        logIndex = new LogIndex(sealedSegments, activeSegmentIndex);
+        activeSegment = segments.lastEntry().getValue();
+        syncedPosition = activeSegment.getEndPosition();
+    }
+
+    private SegmentIndex openSegmentIndex(LogSegment segment) throws IOException {
+        File indexFile = indexFile(segment.getBaseOffset());
+        SegmentIndex segmentIndex = SegmentIndex.open(indexFile, segment.getSize());
+        if (segmentIndex == null) {
+            logger.info("Index of segment [{}] is missing or outdated. Recreating it.", segment.getFile().getName());
+            Map<String, AggregateIndex> entries = new HashMap<String, AggregateIndex>();
+            long validSize = indexSegment(segment, entries);
+            if (validSize < segment.getSize()) {
+                throw new EventStoreException(String.format("Segment [%s] of the event log is corrupt at position %s",
+                                                            segment.getFile().getName(), validSize));
+            }
+            segmentIndex = SegmentIndex.write(indexFile, segment.getSize(), entries, false);
+        }
+        return segmentIndex;
+    }
+
+    private long indexSegment(LogSegment segment, Map<String, AggregateIndex> index) throws IOException {
+        CountingInputStream in = new CountingInputStream(
+                new BufferedInputStream(new FileInputStream(segment.getFile())));
+        long validSize = 0;
+        try {
+            BinaryEntryInputStream entryIn = new BinaryEntryInputStream(in);
+            long kind = entryIn.readNumber();
+            while (kind >= 0) {
+                byte[] type = entryIn.readBytes();
+                byte[] identifier = entryIn.readBytes();
+                EventEntry entry = type == null || identifier == null ? null : readEventEntry(in);
+                if (entry == null || in.read() != '\n') {
+                    break;
+                }
+                long entrySize = in.getByteCount() - validSize;
+                String key = indexKey(new String(type, IOUtils.UTF8), new String(identifier, IOUtils.UTF8));
+                long position = segment.getBaseOffset() + validSize;
+                if (kind == ENTRY_KIND_SNAPSHOT) {
+                    aggregateIndexFor(index, key).setSnapshot(entry.getSequenceNumber(), position, (int) entrySize);
+                } else {
+                    aggregateIndexFor(index, key).addEvent(entry.getSequenceNumber(), position, (int) entrySize);
+                }
+                validSize += entrySize;
+                kind = entryIn.readNumber();
+            }
+        } catch (NumberFormatException e) {
+            logger.debug("Found an unreadable entry in segment [{}]", segment.getFile().getName());
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return validSize;
+    }
+
+    private void closeSegments() {
+        for (LogSegment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private File segmentFile(long baseOffset) {
+        return new File(baseDir, String.format("%020d.%s", baseOffset, FILE_EXTENSION_SEGMENT));
+    }
+
+    private File indexFile(long baseOffset) {
+        return new File(baseDir, String.format("%020d.%s", baseOffset, FILE_EXTENSION_INDEX));
+    }
+
+    private void assertOpen() {
+        if (closed) {
+            throw new EventStoreException("The event store has been closed");
+        }
+    }
+
+    private static String indexKey(String type, Object identifier) {
+        return type.length() + ":" + type + identifier.toString();
+    }
+
+    private static final class PendingEntry {
+
+        private final String key;
+        private final Object aggregateIdentifier;
+        private final long sequenceNumber;
+        private final int offset;
+        private final int length;
+
+        private PendingEntry(String key, Object aggregateIdentifier, long sequenceNumber, int offset, int length) {
+            this.key = key;
+            this.aggregateIdentifier = aggregateIdentifier;
+            this.sequenceNumber = sequenceNumber;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The events of a single append operation waiting to be written as part of a group. The outcome of the write is
+     * registered with the instance, which wakes up the thread waiting for it.
+     */
+    private static final class PendingWrite {
+
+        private final byte[] data;
+        private final List<PendingEntry> entries;
+        private volatile boolean completed;
+        private volatile RuntimeException failure;
+        private boolean handedOver;
+
+        private PendingWrite(byte[] data, List<PendingEntry> entries) {
+            this.data = data;
+            this.entries = entries;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        public synchronized void complete() {
+            completed = true;
+            notifyAll();
+        }
+
+        public synchronized void fail(RuntimeException cause) {
+            failure = cause;
+            completed = true;
+            notifyAll();
+        }
+
+        /**
+         * Wakes up the thread waiting for this write, so that it attempts to write the pending writes itself.
+         */
+        public synchronized void handOver() {
+            handedOver = true;
+            notifyAll();
+        }
+
+        public synchronized void awaitCompletionOrHandOver() {
+            boolean interrupted = false;
+            while (!completed && !handedOver) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // the write is in progress, and its outcome must be reported to the caller
+                    interrupted = true;
+                }
+            }
+            handedOver = false;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public void rethrowFailure() {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * The indexes of the segments of the log: those of the sealed segments, oldest first, and the in-memory index of
+     * the active segment. Replaced as a whole when a new segment is started, allowing readers to use a consistent view
+     * without locking.
+     */
+    private static final class LogIndex {
+
+        private final List<SegmentIndex> sealedSegments;
+        private final ConcurrentMap<String, AggregateIndex> activeSegment;
+
+        private LogIndex(List<SegmentIndex> sealedSegments, ConcurrentMap<String, AggregateIndex> activeSegment) {
+            this.sealedSegments = sealedSegments;
+            this.activeSegment = activeSegment;
+        }
+    }
+
+    /**
+     * DomainEventStream implementation that reads the entries at given positions from the segment files.
+     */
+    private class LogDomainEventStream implements DomainEventStream {
+
+        private final long[] positions;
+        private final long[] lengths;
+        private int nextIndex;
+        private DomainEventMessage next;
+
+        public LogDomainEventStream(long[] positions, long[] lengths) {
+            this.positions = positions;
+            this.lengths = lengths;
+            this.next = doReadNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public DomainEventMessage next() {
+            DomainEventMessage toReturn = next;
+            next = doReadNext();
+            return toReturn;
+        }
+
+        @Override
+        public DomainEventMessage peek() {
+            return next;
+        }
+
+        private DomainEventMessage doReadNext() {
+            if (nextIndex >= positions.length) {
+                return null;
+            }
+            long position = positions[nextIndex];
+            int length = (int) lengths[nextIndex];
+            nextIndex++;
+            try {
+                LogSegment segment = segments.floorEntry(position).getValue();
+                InputStream in = new ByteArrayInputStream(segment.read(position, length));
+                BinaryEntryInputStream entryIn = new BinaryEntryInputStream(in);
+                entryIn.readNumber();
+                entryIn.readBytes();
+                entryIn.readBytes();
+                EventEntry entry = readEventEntry(in);
+                if (entry == null) {
+                    throw new EventStoreException(String.format("The entry at position %s is corrupt", position));
+                }
+                return entry.deserialize(eventSerializer);
+            } catch (IOException e) {
+                throw new EventStoreException("An error occurred while reading from the event log", e);
+            }
+        }
+    }
+}
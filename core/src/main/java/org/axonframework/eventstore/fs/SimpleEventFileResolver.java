@@ -25,6 +25,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 
 /**
  * Very straightforward implementation of the EventFileResolver that stores files in a directory structure underneath a
@@ -34,7 +35,7 @@ import java.io.OutputStream;
  * @author Allard Buijze
  * @since 0.5
  */
-public class SimpleEventFileResolver implements EventFileResolver {
+public class SimpleEventFileResolver implements IndexedEventFileResolver {
 
     /**
      * Describes the file extension used for files containing domain events.
@@ -44,6 +45,10 @@ public class SimpleEventFileResolver implements EventFileResolver {
      * Describes the file extension used for files containing snapshot events.
      */
     public static final String FILE_EXTENSION_SNAPSHOTS = "snapshots";
+    /**
+     * Describes the file extension used for index files.
+     */
+    public static final String FILE_EXTENSION_INDEX = "index";
 
     private final File baseDir;
 
@@ -92,6 +97,31 @@ public class SimpleEventFileResolver implements EventFileResolver {
         return getEventsFile(type, identifier, FILE_EXTENSION_SNAPSHOTS).exists();
     }
 
+    @Override
+    public long eventFileSize(String type, Object identifier) throws IOException {
+        return getEventsFile(type, identifier, FILE_EXTENSION_EVENTS).length();
+    }
+
+    @Override
+    public long snapshotFileSize(String type, Object identifier) throws IOException {
+        return getEventsFile(type, identifier, FILE_EXTENSION_SNAPSHOTS).length();
+    }
+
+    @Override
+    public RandomAccessFile openIndexFileForWriting(String type, Object identifier) throws IOException {
+        return new RandomAccessFile(getEventsFile(type, identifier, FILE_EXTENSION_INDEX), "rw");
+    }
+
+    @Override
+    public RandomAccessFile openIndexFileForReading(String type, Object identifier) throws IOException {
+        return new RandomAccessFile(getEventsFile(type, identifier, FILE_EXTENSION_INDEX), "r");
+    }
+
+    @Override
+    public boolean indexFileExists(String type, Object identifier) throws IOException {
+        return getEventsFile(type, identifier, FILE_EXTENSION_INDEX).exists();
+    }
+
     private File getEventsFile(String type, Object identifier, String extension) throws IOException {
         return new File(getBaseDirForType(type), identifier + "." + extension);
     }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.fs;
+
+/**
+ * The policy that describes when the {@link SegmentedLogEventStore} forces written data to the storage device.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public enum SyncPolicy {
+
+    /**
+     * Never explicitly force data to disk. The operating system decides when written data is flushed. This gives the
+     * best throughput, but events may be lost when the machine (not just the JVM) crashes.
+     */
+    NEVER,
+
+    /**
+     * Force data to disk each time a segment file is full and a new segment is started. Events in the active segment
+     * are left to the operating system.
+     */
+    ON_SEGMENT_ROLL,
+
+    /**
+     * Force data to disk before an append operation returns. Threads appending concurrently share a single sync
+     * operation (group commit): a thread that finds its data already synced by another thread returns immediately.
+     */
+    ALWAYS
+
+}
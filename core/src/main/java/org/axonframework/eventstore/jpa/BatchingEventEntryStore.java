@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.jpa;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.serializer.SerializedObject;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+
+/**
+ * EventEntryStore that is capable of persisting a number of events in a single operation. When the {@link
+ * JpaEventStore} is configured with a BatchingEventEntryStore, it will hand all events appended in a single call over
+ * at once, instead of one by one.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public interface BatchingEventEntryStore extends EventEntryStore {
+
+    /**
+     * Persists the given <code>events</code> in the backing data store using given <code>entityManager</code>. The
+     * serialized payload and meta data of each event are found at the same index in the
+     * <code>serializedPayloads</code> and <code>serializedMetaData</code> lists, respectively.
+     * <p/>
+     * These events should be returned by the <code>fetchBatch(...)</code> methods.
+     *
+     * @param aggregateType      The type identifier of the aggregate that generated the events
+     * @param events             The actual event instances. May be used to extract relevant meta data
+     * @param serializedPayloads The serialized payloads of the events
+     * @param serializedMetaData The serialized MetaData of the events
+     * @param entityManager      The entity manager providing access to the data store
+     */
+    void persistEvents(String aggregateType, List<DomainEventMessage> events,
+                       List<SerializedObject> serializedPayloads, List<SerializedObject> serializedMetaData,
+                       EntityManager entityManager);
+}
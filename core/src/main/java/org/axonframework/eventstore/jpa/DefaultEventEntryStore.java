@@ -34,7 +34,7 @@ import javax.persistence.Query;
  * @author Allard Buijze
  * @since 1.2
  */
-class DefaultEventEntryStore implements EventEntryStore {
+class DefaultEventEntryStore implements KeysetPagingEventEntryStore<SimpleSerializedDomainEventData> {
 
     @Override
     public void persistEvent(String aggregateType, DomainEventMessage event, SerializedObject serializedPayload,
@@ -78,6 +78,48 @@ class DefaultEventEntryStore implements EventEntryStore {
         return query.getResultList();
     }
 
+    @Override
+    @SuppressWarnings({"unchecked"})
+    public List<SimpleSerializedDomainEventData> fetchFilteredBatch(String whereClause, Map<String, Object> parameters,
+                                                                    SimpleSerializedDomainEventData lastEntry,
+                                                                    int batchSize,
+                                                                    EntityManager entityManager) {
+        StringBuilder clause = new StringBuilder();
+        if (lastEntry != null) {
+            clause.append("(e.timeStamp > :lastTimeStamp "
+                                  + "OR (e.timeStamp = :lastTimeStamp AND e.sequenceNumber > :lastSequenceNumber) "
+                                  + "OR (e.timeStamp = :lastTimeStamp AND e.sequenceNumber = :lastSequenceNumber "
+                                  + "AND e.aggregateIdentifier > :lastAggregateIdentifier) "
+                                  + "OR (e.timeStamp = :lastTimeStamp AND e.sequenceNumber = :lastSequenceNumber "
+                                  + "AND e.aggregateIdentifier = :lastAggregateIdentifier AND e.type > :lastType))");
+        }
+        if (whereClause != null && whereClause.length() > 0) {
+            if (clause.length() > 0) {
+                clause.append(" AND ");
+            }
+            clause.append("(").append(whereClause).append(")");
+        }
+        Query query = entityManager.createQuery(
+                String.format("SELECT new org.axonframework.eventstore.jpa.SimpleSerializedDomainEventData("
+                                      + "e.eventIdentifier, e.aggregateIdentifier, e.sequenceNumber, e.timeStamp, "
+                                      + "e.type, e.payloadType, e.payloadRevision, e.payload, e.metaData) "
+                                      + "FROM DomainEventEntry e %s "
+                                      + "ORDER BY e.timeStamp ASC, e.sequenceNumber ASC, "
+                                      + "e.aggregateIdentifier ASC, e.type ASC",
+                              clause.length() > 0 ? "WHERE " + clause : ""))
+                                   .setMaxResults(batchSize);
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            query.setParameter(entry.getKey(), entry.getValue());
+        }
+        if (lastEntry != null) {
+            query.setParameter("lastTimeStamp", lastEntry.getTimeStampAsString())
+                 .setParameter("lastSequenceNumber", lastEntry.getSequenceNumber())
+                 .setParameter("lastAggregateIdentifier", lastEntry.getAggregateIdentifier())
+                 .setParameter("lastType", lastEntry.getType());
+        }
+        return query.getResultList();
+    }
+
     @Override
     public void persistSnapshot(String aggregateType, DomainEventMessage snapshotEvent,
                                 SerializedObject serializedPayload, SerializedObject serializedMetaData,
@@ -0,0 +1,498 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.jpa;
+
+import org.axonframework.common.Assert;
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.eventstore.EventStoreException;
+import org.axonframework.eventstore.SerializedDomainEventData;
+import org.axonframework.repository.ConcurrencyException;
+import org.axonframework.serializer.SerializedObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+/**
+ * EventEntryStore implementation that uses plain JDBC to access the tables of the {@link DomainEventEntry} and {@link
+ * SnapshotEventEntry} entities. All events appended in a single call to {@link JpaEventStore#appendEvents(String,
+ * org.axonframework.domain.DomainEventStream)} are inserted using a single JDBC batch, instead of one insert statement
+ * per event.
+ * <p/>
+ * This implementation ignores the EntityManager passed to its methods. Instead, it obtains connections from the
+ * DataSource provided at construction time, and closes them after each operation. To have these operations take part
+ * in the same transaction as the EntityManager, the DataSource should provide transaction-bound connections, e.g. by
+ * wrapping it in Spring's <code>TransactionAwareDataSourceProxy</code>.
+ * <p/>
+ * The tables are expected to have the structure as generated for the DomainEventEntry and SnapshotEventEntry entities,
+ * with a database-generated value (e.g. identity or auto increment) for the <code>id</code> column. By default, the
+ * tables and columns carry the names of these entities and their properties. Tables using other names are supported
+ * by providing the table names and the column name per property using {@link #JdbcEventEntryStore(javax.sql.DataSource,
+ * String, String, java.util.Map)}.
+ * <p/>
+ * Exceptions reported by the database are wrapped in an {@link EventStoreException}, allowing a {@link
+ * PersistenceExceptionResolver} to detect duplicate key violations. Some drivers report neither an error code nor a
+ * cause when an entry in a batch fails. In that case, this implementation checks whether an entry with the key of the
+ * failed entry already exists, and reports a {@link ConcurrencyException} if it does.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class JdbcEventEntryStore
+        implements BatchingEventEntryStore, KeysetPagingEventEntryStore<SimpleSerializedDomainEventData> {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcEventEntryStore.class);
+
+    private static final String DEFAULT_DOMAIN_EVENT_TABLE = "DomainEventEntry";
+    private static final String DEFAULT_SNAPSHOT_EVENT_TABLE = "SnapshotEventEntry";
+    private static final String[] PROPERTIES = {"eventIdentifier", "aggregateIdentifier", "sequenceNumber",
+            "timeStamp", "type", "payloadType", "payloadRevision", "payload", "metaData"};
+    private static final String SELECT_COLUMNS = "SELECT e.eventIdentifier, e.aggregateIdentifier, "
+            + "e.sequenceNumber, e.timeStamp, e.type, e.payloadType, e.payloadRevision, e.payload, e.metaData ";
+    private static final Pattern NAMED_PARAMETER = Pattern.compile(":(\\w+)");
+    private static final Pattern PROPERTY_REFERENCE = Pattern.compile("\\be\\.(\\w+)");
+
+    private final DataSource dataSource;
+    private final String domainEventTable;
+    private final String snapshotEventTable;
+    private final Map<String, String> columnNames = new HashMap<String, String>();
+    private final String insertColumns;
+
+    /**
+     * Initialize the JdbcEventEntryStore, which obtains connections from the given <code>dataSource</code>. The
+     * tables are expected to carry the names of the entities, and their columns the names of the properties of the
+     * entries.
+     *
+     * @param dataSource The data source providing connections to the database containing the event entries
+     */
+    public JdbcEventEntryStore(DataSource dataSource) {
+        this(dataSource, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Initialize the JdbcEventEntryStore, which obtains connections from the given <code>dataSource</code>, and uses
+     * the given <code>columnNames</code> to access the tables. The map's keys are the names of the entry's properties
+     * (e.g. <code>timeStamp</code>), its values the names of the columns holding them. Properties not contained in
+     * the map are expected in a column with the same name as the property.
+     *
+     * @param dataSource  The data source providing connections to the database containing the event entries
+     * @param columnNames The column name of each property that is not stored in a column with the property's name
+     * @throws IllegalArgumentException if <code>columnNames</code> contains a key that is not a property of the
+     *                                  entries
+     */
+    public JdbcEventEntryStore(DataSource dataSource, Map<String, String> columnNames) {
+        this(dataSource, DEFAULT_DOMAIN_EVENT_TABLE, DEFAULT_SNAPSHOT_EVENT_TABLE, columnNames);
+    }
+
+    /**
+     * Initialize the JdbcEventEntryStore, which obtains connections from the given <code>dataSource</code>, and stores
+     * domain events and snapshot events in the tables with given <code>domainEventTable</code> and
+     * <code>snapshotEventTable</code> names, respectively. The <code>columnNames</code> map's keys are the names of
+     * the entry's properties (e.g. <code>timeStamp</code>), its values the names of the columns holding them.
+     * Properties not contained in the map are expected in a column with the same name as the property.
+     *
+     * @param dataSource         The data source providing connections to the database containing the event entries
+     * @param domainEventTable   The name of the table containing the domain events
+     * @param snapshotEventTable The name of the table containing the snapshot events
+     * @param columnNames        The column name of each property that is not stored in a column with the property's
+     *                           name
+     * @throws IllegalArgumentException if <code>columnNames</code> contains a key that is not a property of the
+     *                                  entries
+     */
+    public JdbcEventEntryStore(DataSource dataSource, String domainEventTable, String snapshotEventTable,
+                               Map<String, String> columnNames) {
+        Assert.notNull(domainEventTable, "The name of the domain event table may not be null");
+        Assert.notNull(snapshotEventTable, "The name of the snapshot event table may not be null");
+        this.dataSource = dataSource;
+        this.domainEventTable = domainEventTable;
+        this.snapshotEventTable = snapshotEventTable;
+        for (String property : PROPERTIES) {
+            this.columnNames.put(property, property);
+        }
+        for (Map.Entry<String, String> entry : columnNames.entrySet()) {
+            Assert.isTrue(this.columnNames.containsKey(entry.getKey()),
+                          "[" + entry.getKey() + "] is not a property of the event entries");
+            Assert.notNull(entry.getValue(), "The column name of property [" + entry.getKey() + "] may not be null");
+            this.columnNames.put(entry.getKey(), entry.getValue());
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String property : PROPERTIES) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(this.columnNames.get(property));
+        }
+        this.insertColumns = sb.toString();
+    }
+
+    @Override
+    public void persistEvent(String aggregateType, DomainEventMessage event, SerializedObject serializedPayload,
+                             SerializedObject serializedMetaData, EntityManager entityManager) {
+        persistEvents(aggregateType, Collections.singletonList(event), Collections.singletonList(serializedPayload),
+                      Collections.singletonList(serializedMetaData), entityManager);
+    }
+
+    @Override
+    public void persistEvents(String aggregateType, List<DomainEventMessage> events,
+                              List<SerializedObject> serializedPayloads, List<SerializedObject> serializedMetaData,
+                              EntityManager entityManager) {
+        insert(domainEventTable, aggregateType, events, serializedPayloads, serializedMetaData);
+    }
+
+    @Override
+    public void persistSnapshot(String aggregateType, DomainEventMessage snapshotEvent,
+                                SerializedObject serializedPayload, SerializedObject serializedMetaData,
+                                EntityManager entityManager) {
+        insert(snapshotEventTable, aggregateType, Collections.singletonList(snapshotEvent),
+               Collections.singletonList(serializedPayload), Collections.singletonList(serializedMetaData));
+    }
+
+    @Override
+    public SerializedDomainEventData loadLastSnapshotEvent(String aggregateType, Object identifier,
+                                                           EntityManager entityManager) {
+        List<SimpleSerializedDomainEventData> entries = query(
+                SELECT_COLUMNS + "FROM " + snapshotEventTable + " e "
+                        + "WHERE e.aggregateIdentifier = ? AND e.type = ? "
+                        + "ORDER BY e.sequenceNumber DESC",
+                0, 1, identifier.toString(), aggregateType);
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    @Override
+    public List<SimpleSerializedDomainEventData> fetchBatch(String aggregateType, Object identifier,
+                                                            long firstSequenceNumber, int batchSize,
+                                                            EntityManager entityManager) {
+        return query(SELECT_COLUMNS + "FROM " + domainEventTable + " e "
+                             + "WHERE e.aggregateIdentifier = ? AND e.type = ? AND e.sequenceNumber >= ? "
+                             + "ORDER BY e.sequenceNumber ASC",
+                     0, batchSize, identifier.toString(), aggregateType, firstSequenceNumber);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The property names and named parameters in the given <code>whereClause</code> are replaced with the
+     * configured column names and positional parameters, respectively.
+     *
+     * @throws IllegalArgumentException if the <code>whereClause</code> refers to an unknown property
+     */
+    @Override
+    public List<SimpleSerializedDomainEventData> fetchFilteredBatch(String whereClause, Map<String, Object> parameters,
+                                                                    int first, int batchSize,
+                                                                    EntityManager entityManager) {
+        List<Object> values = new ArrayList<Object>();
+        String sql = SELECT_COLUMNS + "FROM " + domainEventTable + " e "
+                + (whereClause != null && whereClause.length() > 0
+                ? "WHERE " + toPositionalParameters(whereClause, parameters, values) + " " : "")
+                + "ORDER BY e.timeStamp ASC, e.sequenceNumber ASC, e.aggregateIdentifier ASC, e.type ASC";
+        return query(sql, first, batchSize, values.toArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The property names and named parameters in the given <code>whereClause</code> are replaced with the
+     * configured column names and positional parameters, respectively.
+     *
+     * @throws IllegalArgumentException if the <code>whereClause</code> refers to an unknown property
+     */
+    @Override
+    public List<SimpleSerializedDomainEventData> fetchFilteredBatch(String whereClause, Map<String, Object> parameters,
+                                                                    SimpleSerializedDomainEventData lastEntry,
+                                                                    int batchSize, EntityManager entityManager) {
+        List<Object> values = new ArrayList<Object>();
+        StringBuilder clause = new StringBuilder();
+        if (lastEntry != null) {
+            clause.append("(e.timeStamp > ? "
+                                  + "OR (e.timeStamp = ? AND e.sequenceNumber > ?) "
+                                  + "OR (e.timeStamp = ? AND e.sequenceNumber = ? AND e.aggregateIdentifier > ?) "
+                                  + "OR (e.timeStamp = ? AND e.sequenceNumber = ? AND e.aggregateIdentifier = ? "
+                                  + "AND e.type > ?))");
+            String timeStamp = lastEntry.getTimeStampAsString();
+            long sequenceNumber = lastEntry.getSequenceNumber();
+            Object aggregateIdentifier = lastEntry.getAggregateIdentifier();
+            Collections.addAll(values, timeStamp,
+                               timeStamp, sequenceNumber,
+                               timeStamp, sequenceNumber, aggregateIdentifier,
+                               timeStamp, sequenceNumber, aggregateIdentifier, lastEntry.getType());
+        }
+        if (whereClause != null && whereClause.length() > 0) {
+            if (clause.length() > 0) {
+                clause.append(" AND ");
+            }
+            clause.append("(").append(toPositionalParameters(whereClause, parameters, values)).append(")");
+        }
+        String sql = SELECT_COLUMNS + "FROM " + domainEventTable + " e "
+                + (clause.length() > 0 ? "WHERE " + clause + " " : "")
+                + "ORDER BY e.timeStamp ASC, e.sequenceNumber ASC, e.aggregateIdentifier ASC, e.type ASC";
+        return query(sql, 0, batchSize, values.toArray());
+    }
+
+    @Override
+    public void pruneSnapshots(String type, DomainEventMessage mostRecentSnapshotEvent, int maxSnapshotsArchived,
+                               EntityManager entityManager) {
+        String aggregateIdentifier = mostRecentSnapshotEvent.getAggregateIdentifier().toString();
+        Connection connection = getConnection();
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.prepareStatement(toColumnNames(
+                    "SELECT e.sequenceNumber FROM " + snapshotEventTable + " e "
+                            + "WHERE e.type = ? AND e.aggregateIdentifier = ? "
+                            + "ORDER BY e.sequenceNumber DESC"));
+            statement.setMaxRows(maxSnapshotsArchived + 1);
+            statement.setString(1, type);
+            statement.setString(2, aggregateIdentifier);
+            resultSet = statement.executeQuery();
+            Long sequenceOfFirstSnapshotToPrune = null;
+            for (int t = 0; t <= maxSnapshotsArchived && resultSet.next(); t++) {
+                if (t == maxSnapshotsArchived) {
+                    sequenceOfFirstSnapshotToPrune = resultSet.getLong(1);
+                }
+            }
+            closeQuietly(resultSet);
+            closeQuietly(statement);
+            resultSet = null;
+            statement = null;
+            if (sequenceOfFirstSnapshotToPrune != null) {
+                statement = connection.prepareStatement(
+                        "DELETE FROM " + snapshotEventTable + " "
+                                + "WHERE " + columnNames.get("type") + " = ? "
+                                + "AND " + columnNames.get("aggregateIdentifier") + " = ? "
+                                + "AND " + columnNames.get("sequenceNumber") + " <= ?");
+                statement.setString(1, type);
+                statement.setString(2, aggregateIdentifier);
+                statement.setLong(3, sequenceOfFirstSnapshotToPrune);
+                statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new EventStoreException("Failed to prune snapshots for aggregate " + aggregateIdentifier, e);
+        } finally {
+            closeQuietly(resultSet);
+            closeQuietly(statement);
+            closeQuietly(connection);
+        }
+    }
+
+    private void insert(String table, String aggregateType, List<DomainEventMessage> events,
+                        List<SerializedObject> serializedPayloads, List<SerializedObject> serializedMetaData) {
+        Connection connection = getConnection();
+        PreparedStatement statement = null;
+        try {
+            statement = connection.prepareStatement(
+                    "INSERT INTO " + table + " (" + insertColumns + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            for (int t = 0; t < events.size(); t++) {
+                bindEntry(statement, aggregateType, events.get(t), serializedPayloads.get(t),
+                          serializedMetaData.get(t));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (BatchUpdateException e) {
+            throw translateBatchFailure(e, connection, table, aggregateType, events);
+        } catch (SQLException e) {
+            throw new EventStoreException("Failed to insert entries into " + table, e);
+        } finally {
+            closeQuietly(statement);
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Translates the given exception of a failed batch. When the driver doesn't report why the batch failed, the key
+     * of the failed entry is looked up, to detect whether it failed because the entry already exists. The failed
+     * batch is never executed again.
+     */
+    private RuntimeException translateBatchFailure(BatchUpdateException exception, Connection connection,
+                                                   String table, String aggregateType,
+                                                   List<DomainEventMessage> events) {
+        if (exception.getErrorCode() == 0 && exception.getSQLState() == null
+                && exception.getNextException() == null) {
+            DomainEventMessage failedEvent = findFailedEvent(exception, events);
+            if (failedEvent != null && entryExists(connection, table, aggregateType, failedEvent)) {
+                return new ConcurrencyException(
+                        String.format("Concurrent modification detected for Aggregate identifier [%s], sequence: [%s]",
+                                      failedEvent.getAggregateIdentifier(), failedEvent.getSequenceNumber()),
+                        exception);
+            }
+        }
+        return new EventStoreException("Failed to insert entries into " + table, exception);
+    }
+
+    private DomainEventMessage findFailedEvent(BatchUpdateException exception, List<DomainEventMessage> events) {
+        int[] updateCounts = exception.getUpdateCounts();
+        int failedIndex = updateCounts == null ? 0 : updateCounts.length;
+        for (int t = 0; updateCounts != null && t < updateCounts.length; t++) {
+            if (updateCounts[t] == Statement.EXECUTE_FAILED) {
+                failedIndex = t;
+                break;
+            }
+        }
+        return failedIndex < events.size() ? events.get(failedIndex) : null;
+    }
+
+    private boolean entryExists(Connection connection, String table, String aggregateType, DomainEventMessage event) {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.prepareStatement(toColumnNames(
+                    "SELECT e.sequenceNumber FROM " + table + " e "
+                            + "WHERE e.type = ? AND e.aggregateIdentifier = ? AND e.sequenceNumber = ?"));
+            statement.setString(1, aggregateType);
+            statement.setString(2, event.getAggregateIdentifier().toString());
+            statement.setLong(3, event.getSequenceNumber());
+            resultSet = statement.executeQuery();
+            return resultSet.next();
+        } catch (SQLException e) {
+            logger.warn("Unable to check whether the entry of a failed batch already exists. Ignoring...", e);
+            return false;
+        } finally {
+            closeQuietly(resultSet);
+            closeQuietly(statement);
+        }
+    }
+
+    private void bindEntry(PreparedStatement statement, String aggregateType, DomainEventMessage event,
+                           SerializedObject payload, SerializedObject metaData) throws SQLException {
+        statement.setString(1, event.getIdentifier());
+        statement.setString(2, event.getAggregateIdentifier().toString());
+        statement.setLong(3, event.getSequenceNumber());
+        statement.setString(4, event.getTimestamp().toString());
+        statement.setString(5, aggregateType);
+        statement.setString(6, payload.getType().getName());
+        statement.setInt(7, payload.getType().getRevision());
+        statement.setBytes(8, payload.getData());
+        statement.setBytes(9, metaData.getData());
+    }
+
+    private List<SimpleSerializedDomainEventData> query(String sql, int first, int maxResults, Object... values) {
+        Connection connection = getConnection();
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.prepareStatement(toColumnNames(sql));
+            statement.setMaxRows(first + maxResults);
+            for (int t = 0; t < values.length; t++) {
+                statement.setObject(t + 1, values[t]);
+            }
+            resultSet = statement.executeQuery();
+            int skipped = 0;
+            while (skipped < first && resultSet.next()) {
+                skipped++;
+            }
+            List<SimpleSerializedDomainEventData> entries = new ArrayList<SimpleSerializedDomainEventData>();
+            while (resultSet.next()) {
+                entries.add(new SimpleSerializedDomainEventData(resultSet.getString(1), resultSet.getString(2),
+                                                                resultSet.getLong(3), resultSet.getString(4),
+                                                                resultSet.getString(5), resultSet.getString(6),
+                                                                resultSet.getInt(7), resultSet.getBytes(8),
+                                                                resultSet.getBytes(9)));
+            }
+            return entries;
+        } catch (SQLException e) {
+            throw new EventStoreException("Failed to read entries from the event store", e);
+        } finally {
+            closeQuietly(resultSet);
+            closeQuietly(statement);
+            closeQuietly(connection);
+        }
+    }
+
+    private String toPositionalParameters(String whereClause, Map<String, Object> parameters, List<Object> values) {
+        StringBuffer sb = new StringBuffer();
+        Matcher matcher = NAMED_PARAMETER.matcher(whereClause);
+        while (matcher.find()) {
+            Object value = parameters.get(matcher.group(1));
+            if (value instanceof Collection) {
+                StringBuilder placeholders = new StringBuilder();
+                for (Object element : (Collection<?>) value) {
+                    placeholders.append(placeholders.length() == 0 ? "?" : ", ?");
+                    values.add(element);
+                }
+                matcher.appendReplacement(sb, placeholders.toString());
+            } else {
+                matcher.appendReplacement(sb, "?");
+                values.add(value);
+            }
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private String toColumnNames(String sql) {
+        StringBuffer sb = new StringBuffer();
+        Matcher matcher = PROPERTY_REFERENCE.matcher(sql);
+        while (matcher.find()) {
+            String columnName = columnNames.get(matcher.group(1));
+            if (columnName == null) {
+                throw new IllegalArgumentException("[" + matcher.group(1) + "] is not a property of the event entries");
+            }
+            matcher.appendReplacement(sb, Matcher.quoteReplacement("e." + columnName));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private Connection getConnection() {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new EventStoreException("Unable to obtain a connection to the event store database", e);
+        }
+    }
+
+    private void closeQuietly(ResultSet resultSet) {
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+        } catch (SQLException e) {
+            logger.warn("An error occurred while trying to close a result set. Ignoring...", e);
+        }
+    }
+
+    private void closeQuietly(PreparedStatement statement) {
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            logger.warn("An error occurred while trying to close a statement. Ignoring...", e);
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            logger.warn("An error occurred while trying to close the database connection. Ignoring...", e);
+        }
+    }
+}
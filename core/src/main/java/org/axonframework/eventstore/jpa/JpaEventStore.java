@@ -16,11 +16,13 @@
 
 package org.axonframework.eventstore.jpa;
 
+import org.axonframework.common.Assert;
 import org.axonframework.common.jpa.EntityManagerProvider;
 import org.axonframework.domain.DomainEventMessage;
 import org.axonframework.domain.DomainEventStream;
 import org.axonframework.domain.GenericDomainEventMessage;
 import org.axonframework.domain.MetaData;
+import org.axonframework.eventstore.EventStoreException;
 import org.axonframework.eventstore.EventStreamNotFoundException;
 import org.axonframework.eventstore.EventVisitor;
 import org.axonframework.eventstore.LazyDeserializingObject;
@@ -34,6 +36,7 @@ import org.axonframework.eventstore.management.Criteria;
 import org.axonframework.eventstore.management.CriteriaBuilder;
 import org.axonframework.eventstore.management.EventStoreManagement;
 import org.axonframework.repository.ConcurrencyException;
+import org.axonframework.serializer.SerializedObject;
 import org.axonframework.serializer.Serializer;
 import org.axonframework.serializer.XStreamSerializer;
 import org.slf4j.Logger;
@@ -43,12 +46,21 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.persistence.EntityManager;
 import javax.sql.DataSource;
 
 import static org.axonframework.common.IdentifierValidator.validateIdentifier;
+import static org.axonframework.serializer.MessageSerializer.serializeMetaData;
+import static org.axonframework.serializer.MessageSerializer.serializePayload;
 
 /**
  * An EventStore implementation that uses JPA to store DomainEvents in a database. The actual DomainEvent is stored as
@@ -61,6 +73,13 @@ import static org.axonframework.common.IdentifierValidator.validateIdentifier;
  * #DEFAULT_MAX_SNAPSHOTS_ARCHIVED} snapshot per aggregate.
  * <p/>
  * The serializer used to serialize the events is configurable. By default, the {@link XStreamSerializer} is used.
+ * <p/>
+ * When configured with a {@link BatchingEventEntryStore}, such as the {@link JdbcEventEntryStore}, all events appended
+ * in a single call are handed to the EventEntryStore at once, allowing it to persist them in a single operation.
+ * <p/>
+ * When visiting events, this EventStore reads the events in batches. When configured with a {@link
+ * KeysetPagingEventEntryStore}, such as the default one, each batch continues directly after the last entry of the
+ * previous batch. This keeps the cost of each batch constant, regardless of the number of events already visited.
  *
  * @author Allard Buijze
  * @since 0.5
@@ -71,12 +90,15 @@ public class JpaEventStore implements SnapshotEventStore, EventStoreManagement {
 
     private static final int DEFAULT_BATCH_SIZE = 100;
     private static final int DEFAULT_MAX_SNAPSHOTS_ARCHIVED = 1;
+    private static final int DEFAULT_PREFETCH_DEPTH = 1;
 
     private final EntityManagerProvider entityManagerProvider;
     private final Serializer eventSerializer;
     private final EventEntryStore eventEntryStore;
     private int batchSize = DEFAULT_BATCH_SIZE;
     private int maxSnapshotsArchived = DEFAULT_MAX_SNAPSHOTS_ARCHIVED;
+    private Executor prefetchExecutor;
+    private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
 
     private PersistenceExceptionResolver persistenceExceptionResolver;
 
@@ -139,11 +161,28 @@ public class JpaEventStore implements SnapshotEventStore, EventStoreManagement {
         DomainEventMessage event = null;
         try {
             EntityManager entityManager = entityManagerProvider.getEntityManager();
-            while (events.hasNext()) {
-                event = events.next();
-                validateIdentifier(event.getAggregateIdentifier().getClass());
-                eventEntryStore.persistEvent(type, event, eventSerializer.serialize(event.getPayload()),
-                                             eventSerializer.serialize(event.getMetaData()), entityManager);
+            if (eventEntryStore instanceof BatchingEventEntryStore) {
+                List<DomainEventMessage> batch = new ArrayList<DomainEventMessage>();
+                List<SerializedObject> serializedPayloads = new ArrayList<SerializedObject>();
+                List<SerializedObject> serializedMetaData = new ArrayList<SerializedObject>();
+                while (events.hasNext()) {
+                    event = events.next();
+                    validateIdentifier(event.getAggregateIdentifier().getClass());
+                    batch.add(event);
+                    serializedPayloads.add(serializePayload(event, eventSerializer));
+                    serializedMetaData.add(serializeMetaData(event, eventSerializer));
+                }
+                if (!batch.isEmpty()) {
+                    ((BatchingEventEntryStore) eventEntryStore).persistEvents(type, batch, serializedPayloads,
+                                                                              serializedMetaData, entityManager);
+                }
+            } else {
+                while (events.hasNext()) {
+                    event = events.next();
+                    validateIdentifier(event.getAggregateIdentifier().getClass());
+                    eventEntryStore.persistEvent(type, event, serializePayload(event, eventSerializer),
+                                                 serializeMetaData(event, eventSerializer), entityManager);
+                }
             }
             entityManager.flush();
         } catch (RuntimeException exception) {
@@ -193,6 +232,9 @@ public class JpaEventStore implements SnapshotEventStore, EventStoreManagement {
         if (events.isEmpty()) {
             throw new EventStreamNotFoundException(type, identifier);
         }
+        if (prefetchExecutor != null) {
+            return new PrefetchingDomainEventStream(events, identifier, type);
+        }
         return new BatchingDomainEventStream(events, identifier, type);
     }
 
@@ -229,8 +271,8 @@ public class JpaEventStore implements SnapshotEventStore, EventStoreManagement {
         EntityManager entityManager = entityManagerProvider.getEntityManager();
         // Persist snapshot before pruning redundant archived ones, in order to prevent snapshot misses when reloading
         // an aggregate, which may occur when a READ_UNCOMMITTED transaction isolation level is used.
-        eventEntryStore.persistSnapshot(type, snapshotEvent, eventSerializer.serialize(snapshotEvent.getPayload()),
-                                        eventSerializer.serialize(snapshotEvent.getMetaData()), entityManager);
+        eventEntryStore.persistSnapshot(type, snapshotEvent, serializePayload(snapshotEvent, eventSerializer),
+                                        serializeMetaData(snapshotEvent, eventSerializer), entityManager);
 
         if (maxSnapshotsArchived > 0) {
             eventEntryStore.pruneSnapshots(type, snapshotEvent, maxSnapshotsArchived,
@@ -258,6 +300,11 @@ public class JpaEventStore implements SnapshotEventStore, EventStoreManagement {
 
     private void doVisitEvents(EventVisitor visitor, String whereClause, Map<String, Object> parameters) {
         EntityManager entityManager = entityManagerProvider.getEntityManager();
+        if (eventEntryStore instanceof KeysetPagingEventEntryStore) {
+            doVisitEvents((KeysetPagingEventEntryStore<?>) eventEntryStore, visitor, whereClause, parameters,
+                          entityManager);
+            return;
+        }
         int first = 0;
         List<? extends SerializedDomainEventData> batch;
         boolean shouldContinue = true;
@@ -272,6 +319,25 @@ public class JpaEventStore implements SnapshotEventStore, EventStoreManagement {
         }
     }
 
+    private <T extends SerializedDomainEventData> void doVisitEvents(KeysetPagingEventEntryStore<T> entryStore,
+                                                                     EventVisitor visitor, String whereClause,
+                                                                     Map<String, Object> parameters,
+                                                                     EntityManager entityManager) {
+        T lastEntry = null;
+        List<T> batch;
+        boolean shouldContinue = true;
+        while (shouldContinue) {
+            batch = entryStore.fetchFilteredBatch(whereClause, parameters, lastEntry, batchSize, entityManager);
+            for (T entry : batch) {
+                visitor.doWithEvent(new SerializedDomainEventMessage<Object>(entry, eventSerializer, eventSerializer));
+            }
+            shouldContinue = (batch.size() >= batchSize);
+            if (!batch.isEmpty()) {
+                lastEntry = batch.get(batch.size() - 1);
+            }
+        }
+    }
+
     /**
      * Registers the data source that allows the EventStore to detect the database type and define the error codes that
      * represent concurrent access failures.
@@ -325,6 +391,44 @@ public class JpaEventStore implements SnapshotEventStore, EventStoreManagement {
         this.maxSnapshotsArchived = maxSnapshotsArchived;
     }
 
+    /**
+     * Sets the executor that fetches batches of events ahead of time while an aggregate's event stream is being read.
+     * When an executor is set, the next batch of events is fetched while the events of the current batch are being
+     * applied, instead of only after the current batch has been used up. Defaults to <code>null</code>, meaning events
+     * are fetched only when they are needed, in the thread reading the event stream.
+     * <p/>
+     * Note that the prefetched batches are read by the executor's threads, outside of the transaction of the thread
+     * reading the event stream. The EntityManagerProvider must therefore provide EntityManagers that may be used by
+     * the executor's threads, such as a container managed (shared) EntityManager.
+     * <p/>
+     * For the same reason, prefetching requires the events of the aggregate to have been committed. Events that have
+     * been appended in the transaction of the thread reading the event stream are only visible to the first batch,
+     * which is always read by the reading thread. Only enable prefetching when aggregates are not read in the same
+     * transaction that appended their events, unless the database isolation level allows dirty reads.
+     *
+     * @param prefetchExecutor the executor fetching batches of events ahead of time, or <code>null</code> to disable
+     *                         prefetching
+     * @see #setPrefetchDepth(int)
+     */
+    public void setPrefetchExecutor(Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    /**
+     * Sets the maximum number of batches to fetch ahead of the batch currently being read from an event stream. Only
+     * has effect when a {@link #setPrefetchExecutor(java.util.concurrent.Executor) prefetch executor} has been
+     * configured. Defaults to {@value #DEFAULT_PREFETCH_DEPTH}.
+     * <p/>
+     * Since prefetching is driven by reading from the event stream, a stream that is abandoned early will have fetched
+     * at most this number of batches that are never used.
+     *
+     * @param prefetchDepth the maximum number of batches to fetch ahead
+     */
+    public void setPrefetchDepth(int prefetchDepth) {
+        Assert.isTrue(prefetchDepth > 0, "The prefetch depth must be a positive number");
+        this.prefetchDepth = prefetchDepth;
+    }
+
     private final class BatchingDomainEventStream implements DomainEventStream {
 
         private int currentBatchSize;
@@ -366,4 +470,146 @@ public class JpaEventStore implements SnapshotEventStore, EventStoreManagement {
             return next;
         }
     }
+
+    /**
+     * DomainEventStream that fetches the next batches of events using the prefetch executor, while the events of the
+     * current batch are being read. A new batch is only requested when fewer than the configured prefetch depth of
+     * batches are waiting to be read, which keeps the amount of work bounded when the stream is not read until the
+     * end.
+     */
+    private final class PrefetchingDomainEventStream implements DomainEventStream {
+
+        private final Object id;
+        private final String typeId;
+        private final Lock lock = new ReentrantLock();
+        private final Condition batchAvailable = lock.newCondition();
+        private final Queue<List<DomainEventMessage>> prefetchedBatches = new LinkedList<List<DomainEventMessage>>();
+        private final Runnable fetchTask = new FetchTask();
+        private Iterator<DomainEventMessage> currentBatch;
+        private DomainEventMessage next;
+        // fields below are guarded by the lock
+        private long nextSequenceNumber;
+        private boolean fetching;
+        private boolean endOfStream;
+        private RuntimeException fetchFailure;
+
+        private PrefetchingDomainEventStream(List<DomainEventMessage> firstBatch, Object id, String typeId) {
+            this.id = id;
+            this.typeId = typeId;
+            this.currentBatch = firstBatch.iterator();
+            if (currentBatch.hasNext()) {
+                next = currentBatch.next();
+            }
+            lock.lock();
+            try {
+                endOfStream = firstBatch.size() < batchSize;
+                nextSequenceNumber = firstBatch.get(firstBatch.size() - 1).getSequenceNumber() + 1;
+                scheduleFetchIfRequired();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public DomainEventMessage next() {
+            DomainEventMessage current = next;
+            if (next != null && !currentBatch.hasNext()) {
+                currentBatch = takeNextBatch().iterator();
+            }
+            next = currentBatch.hasNext() ? currentBatch.next() : null;
+            return current;
+        }
+
+        @Override
+        public DomainEventMessage peek() {
+            return next;
+        }
+
+        private List<DomainEventMessage> takeNextBatch() {
+            lock.lock();
+            try {
+                while (prefetchedBatches.isEmpty() && fetchFailure == null && (fetching || !endOfStream)) {
+                    scheduleFetchIfRequired();
+                    if (fetching) {
+                        batchAvailable.await();
+                    }
+                }
+                if (!prefetchedBatches.isEmpty()) {
+                    List<DomainEventMessage> batch = prefetchedBatches.poll();
+                    scheduleFetchIfRequired();
+                    return batch;
+                }
+                if (fetchFailure != null) {
+                    throw fetchFailure;
+                }
+                return Collections.emptyList();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EventStoreException(
+                        String.format("Interrupted while waiting for events of Aggregate [%s]", id), e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Schedules a fetch of the next batch, unless one is in progress or enough batches have been fetched already.
+         * Must be invoked while holding the lock.
+         */
+        private void scheduleFetchIfRequired() {
+            if (!fetching && !endOfStream && fetchFailure == null && prefetchedBatches.size() < prefetchDepth) {
+                fetching = true;
+                try {
+                    prefetchExecutor.execute(fetchTask);
+                } catch (RejectedExecutionException e) {
+                    logger.debug("Prefetch executor rejected fetching the next batch. Fetching it in current thread.");
+                    fetchTask.run();
+                }
+            }
+        }
+
+        private class FetchTask implements Runnable {
+
+            @Override
+            public void run() {
+                long firstSequenceNumber;
+                lock.lock();
+                try {
+                    firstSequenceNumber = nextSequenceNumber;
+                } finally {
+                    lock.unlock();
+                }
+                List<DomainEventMessage> batch = null;
+                RuntimeException failure = null;
+                try {
+                    logger.debug("Prefetching new batch for Aggregate [{}]", id);
+                    batch = fetchBatch(typeId, id, firstSequenceNumber);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                lock.lock();
+                try {
+                    fetching = false;
+                    if (failure != null) {
+                        fetchFailure = failure;
+                    } else {
+                        endOfStream = batch.size() < batchSize;
+                        if (!batch.isEmpty()) {
+                            prefetchedBatches.add(batch);
+                            nextSequenceNumber = batch.get(batch.size() - 1).getSequenceNumber() + 1;
+                        }
+                        scheduleFetchIfRequired();
+                    }
+                    batchAvailable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.axonframework.eventstore.jpa;
+
+import org.axonframework.eventstore.SerializedDomainEventData;
+
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+
+/**
+ * EventEntryStore that is capable of fetching a batch of filtered events starting directly after a given entry. When
+ * the {@link JpaEventStore} is configured with a KeysetPagingEventEntryStore, it visits events in batches that each
+ * continue after the last entry of the previous batch, instead of skipping all entries of the previous batches.
+ *
+ * @param <T> The type of entries returned by this EventEntryStore
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public interface KeysetPagingEventEntryStore<T extends SerializedDomainEventData> extends EventEntryStore {
+
+    /**
+     * Fetches a selection of events that conform to the given JPA <code>whereClause</code>, starting directly after
+     * the given <code>lastEntry</code> with given <code>batchSize</code>. The given <code>parameters</code> provide the
+     * values for the placeholders used in the where clause.
+     * <p/>
+     * Entries are expected to be ordered by timestamp, sequence number, aggregate identifier and aggregate type. The
+     * <code>lastEntry</code> is the last entry of the previously fetched batch, as returned by this method, or
+     * <code>null</code> to fetch the first batch. Unlike {@link #fetchFilteredBatch(String, java.util.Map, int, int,
+     * javax.persistence.EntityManager)}, implementations should seek to the position of the last entry instead of
+     * skipping all preceding entries, so that the cost of fetching a batch does not depend on its position in the
+     * entire selection.
+     * <p/>
+     * The "WHERE" keyword is not included in the clause. If the clause is null or an empty String, no filters are
+     * expected to be applied.
+     *
+     * @param whereClause   The JPA clause to be included after the WHERE keyword
+     * @param parameters    A map containing all the parameter values for parameter keys included in the where clause
+     * @param lastEntry     The last entry of the previous batch, or <code>null</code> to fetch the first batch
+     * @param batchSize     The total number of events to return in this batch
+     * @param entityManager The entity manager providing access to the data store
+     * @return a List of serialized representations of Events included in this batch
+     */
+    List<T> fetchFilteredBatch(String whereClause, Map<String, Object> parameters, T lastEntry, int batchSize,
+                               EntityManager entityManager);
+}
@@ -138,8 +138,10 @@ public class SQLErrorCodesResolver implements PersistenceExceptionResolver {
     public boolean isDuplicateKeyViolation(Exception exception) {
         SQLException sqlException = findSQLException(exception);
         boolean isDuplicateKey = false;
-        if (sqlException != null) {
+        // drivers may report the cause of a failed batch as the next exception of the BatchUpdateException
+        while (!isDuplicateKey && sqlException != null) {
             isDuplicateKey = duplicateKeyCodes.contains(sqlException.getErrorCode());
+            sqlException = sqlException.getNextException();
         }
         return isDuplicateKey;
     }
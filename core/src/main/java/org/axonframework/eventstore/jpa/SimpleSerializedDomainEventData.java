@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.jpa;
+
+import org.axonframework.eventstore.SerializedDomainEventData;
+import org.axonframework.serializer.SerializedMetaData;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.SimpleSerializedObject;
+import org.joda.time.DateTime;
+
+/**
+ * Simple implementation of the {@link SerializedDomainEventData} class, used to reduce memory consumption by queries
+ * reading large numbers of Event Entries. Querying the entries directly would cause the EntityManager to keep a
+ * reference to each of them, preventing them from being garbage collected.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class SimpleSerializedDomainEventData implements SerializedDomainEventData {
+
+    private final String eventIdentifier;
+    private final String aggregateIdentifier;
+    private final long sequenceNumber;
+    private final String timeStamp;
+    private final String type;
+    private final SerializedObject serializedPayload;
+    private final SerializedObject serializedMetaData;
+
+    /**
+     * Initialize an instance using given properties. Used by JPA queries to create instances directly from the
+     * columns of a DomainEventEntry.
+     *
+     * @param eventIdentifier     The identifier of the event
+     * @param aggregateIdentifier The identifier of the aggregate
+     * @param sequenceNumber      The sequence number of the event
+     * @param timeStamp           The time stamp of the event, as stored in the entry
+     * @param type                The type identifier of the aggregate
+     * @param payloadType         The type of payload
+     * @param payloadRevision     The revision of the payload
+     * @param payload             The serialized representation of the event
+     * @param metaData            The serialized representation of the meta data
+     */
+    public SimpleSerializedDomainEventData(String eventIdentifier, String aggregateIdentifier,
+                                           long sequenceNumber, String timeStamp, String type,
+                                           String payloadType, int payloadRevision,
+                                           byte[] payload, byte[] metaData) {
+        this.eventIdentifier = eventIdentifier;
+        this.aggregateIdentifier = aggregateIdentifier;
+        this.sequenceNumber = sequenceNumber;
+        this.timeStamp = timeStamp;
+        this.type = type;
+        this.serializedPayload = new SimpleSerializedObject(payload, payloadType, payloadRevision);
+        this.serializedMetaData = new SerializedMetaData(metaData);
+    }
+
+    @Override
+    public String getEventIdentifier() {
+        return eventIdentifier;
+    }
+
+    @Override
+    public Object getAggregateIdentifier() {
+        return aggregateIdentifier;
+    }
+
+    @Override
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    @Override
+    public DateTime getTimestamp() {
+        return new DateTime(timeStamp);
+    }
+
+    @Override
+    public SerializedObject getMetaData() {
+        return serializedMetaData;
+    }
+
+    @Override
+    public SerializedObject getPayload() {
+        return serializedPayload;
+    }
+
+    /**
+     * Returns the type identifier of the aggregate.
+     *
+     * @return the type identifier of the aggregate
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the time stamp of the event, exactly as it was stored in the event entry.
+     *
+     * @return the time stamp of the event, exactly as it was stored in the event entry
+     */
+    String getTimeStampAsString() {
+        return timeStamp;
+    }
+}
@@ -21,6 +21,9 @@ import org.axonframework.eventstore.EventVisitor;
 /**
  * Interface describing operations useful for management purposes. These operations are typically used in migration
  * scripts when deploying new versions of applications.
+ * <p/>
+ * Events are visited on the calling thread. To process them using multiple threads, use a {@link
+ * PartitionedEventReplayer}.
  *
  * @author Allard Buijze
  * @since 0.6
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.management;
+
+import org.axonframework.common.Assert;
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.eventhandling.SequencingPolicy;
+import org.axonframework.eventhandling.SequentialPerAggregatePolicy;
+import org.axonframework.eventstore.EventStoreException;
+import org.axonframework.eventstore.EventVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Replays the events of an {@link EventStoreManagement} implementation to an {@link EventVisitor} using a number of
+ * worker threads. The event store reads events on the thread calling one of the <code>replay</code> methods. Each
+ * event is handed to one of the workers, based on the sequence identifier assigned to it by the {@link
+ * SequencingPolicy}. Events with the same sequence identifier are always handled by the same worker, in the order
+ * provided by the event store. Events without a sequence identifier are distributed over the workers in turn. The
+ * default policy is the {@link SequentialPerAggregatePolicy}, which guarantees that the events of a single aggregate
+ * are visited in the order of their sequence number.
+ * <p/>
+ * Event stores typically provide events that deserialize their payload and meta data lazily. Unless the sequencing
+ * policy accesses these, the events are deserialized by the workers. Note that the visitor is invoked concurrently by
+ * several threads, and must be thread safe.
+ * <p/>
+ * Each worker has a queue with a bounded capacity. When the queue of a worker is full, reading events from the event
+ * store is suspended until the worker has made room. If the visitor throws an exception, the replay is stopped and the
+ * exception is rethrown by the <code>replay</code> method once all workers have stopped.
+ * <p/>
+ * The progress of a replay can be monitored using {@link #getDispatchedEventCount()} and {@link
+ * #getProcessedEventCount()}.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class PartitionedEventReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedEventReplayer.class);
+
+    /**
+     * The default number of events that may be waiting for each worker.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    private final EventStoreManagement eventStore;
+    private final Executor executor;
+    private final int workerCount;
+    private SequencingPolicy<? super DomainEventMessage> sequencingPolicy = new SequentialPerAggregatePolicy();
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    private final AtomicLong dispatchedEventCount = new AtomicLong();
+    private final AtomicLong processedEventCount = new AtomicLong();
+
+    /**
+     * Initializes a replayer that reads events from the given <code>eventStore</code> and visits them using the given
+     * number of workers. A new thread is started for each worker when a replay starts. These threads end when the
+     * replay is finished.
+     *
+     * @param eventStore  The event store to read events from
+     * @param workerCount The number of workers to process the events
+     */
+    public PartitionedEventReplayer(EventStoreManagement eventStore, int workerCount) {
+        this(eventStore, new ThreadPerWorkerExecutor(), workerCount);
+    }
+
+    /**
+     * Initializes a replayer that reads events from the given <code>eventStore</code> and visits them using the given
+     * number of workers, which are executed using the given <code>executor</code>. The executor must be able to run
+     * at least <code>workerCount</code> tasks concurrently. If it cannot, the replay will not make progress. If the
+     * executor rejects one of the workers, the workers already started are stopped and the rejection is rethrown by
+     * the <code>replay</code> method.
+     *
+     * @param eventStore  The event store to read events from
+     * @param executor    The executor that runs the workers
+     * @param workerCount The number of workers to process the events
+     */
+    public PartitionedEventReplayer(EventStoreManagement eventStore, Executor executor, int workerCount) {
+        Assert.isTrue(workerCount > 0, "The number of workers must be a positive number");
+        this.eventStore = eventStore;
+        this.executor = executor;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Replays all events in the event store to the given <code>visitor</code>. This method returns when all events
+     * have been visited, or rethrows the exception thrown by the visitor.
+     *
+     * @param visitor The visitor that receives each loaded event
+     * @throws EventStoreException when the thread is interrupted while waiting for the workers
+     */
+    public void replay(EventVisitor visitor) {
+        replay(null, visitor);
+    }
+
+    /**
+     * Replays the events in the event store matching the given <code>criteria</code> to the given
+     * <code>visitor</code>. This method returns when all events have been visited, or rethrows the exception thrown by
+     * the visitor.
+     *
+     * @param criteria The criteria describing the events to select. <code>null</code> selects all events.
+     * @param visitor  The visitor that receives each loaded event
+     * @throws EventStoreException when the thread is interrupted while waiting for the workers
+     */
+    public void replay(Criteria criteria, EventVisitor visitor) {
+        dispatchedEventCount.set(0);
+        processedEventCount.set(0);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        CountDownLatch workersDone = new CountDownLatch(workerCount);
+        Worker[] workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(visitor, failure, workersDone);
+        }
+        startWorkers(workers, workersDone);
+        DispatchingVisitor dispatcher = new DispatchingVisitor(workers, failure);
+        try {
+            if (criteria == null) {
+                eventStore.visitEvents(dispatcher);
+            } else {
+                eventStore.visitEvents(criteria, dispatcher);
+            }
+        } catch (ReplayAbortedException e) {
+            logger.debug("Replay aborted after a failure in one of the workers");
+        } finally {
+            stopWorkers(workers, workersDone);
+        }
+        logger.info("Replayed {} events using {} workers", processedEventCount.get(), workerCount);
+        rethrow(failure.get());
+    }
+
+    /**
+     * Sets the policy that decides which events must be visited sequentially. Defaults to a {@link
+     * SequentialPerAggregatePolicy}.
+     *
+     * @param sequencingPolicy The policy providing the sequence identifier of each event
+     */
+    public void setSequencingPolicy(SequencingPolicy<? super DomainEventMessage> sequencingPolicy) {
+        Assert.notNull(sequencingPolicy, "The sequencing policy may not be null");
+        this.sequencingPolicy = sequencingPolicy;
+    }
+
+    /**
+     * Sets the number of events that may be waiting to be processed by each worker. When a worker's queue is full,
+     * reading from the event store is suspended. Defaults to {@link #DEFAULT_QUEUE_CAPACITY}.
+     *
+     * @param queueCapacity The number of events that may be waiting for each worker
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        Assert.isTrue(queueCapacity > 0, "The queue capacity must be a positive number");
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Returns the number of events read from the event store and handed to a worker in the current (or last) replay.
+     *
+     * @return the number of events handed to a worker
+     */
+    public long getDispatchedEventCount() {
+        return dispatchedEventCount.get();
+    }
+
+    /**
+     * Returns the number of events visited by the workers in the current (or last) replay.
+     *
+     * @return the number of events visited by the workers
+     */
+    public long getProcessedEventCount() {
+        return processedEventCount.get();
+    }
+
+    private void startWorkers(Worker[] workers, CountDownLatch workersDone) {
+        int startedWorkers = 0;
+        try {
+            while (startedWorkers < workers.length) {
+                executor.execute(workers[startedWorkers]);
+                startedWorkers++;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("The executor rejected a worker. Stopping the {} workers that have already been started.",
+                        startedWorkers);
+            for (int i = startedWorkers; i < workers.length; i++) {
+                workersDone.countDown();
+            }
+            stopWorkers(workers, workersDone);
+            throw e;
+        }
+    }
+
+    private static void stopWorkers(Worker[] workers, CountDownLatch workersDone) {
+        for (Worker worker : workers) {
+            worker.finish();
+        }
+        await(workersDone);
+    }
+
+    private static void await(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (latch.getCount() > 0) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void rethrow(Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new EventStoreException("An exception occurred while replaying events", failure);
+        }
+    }
+
+    /**
+     * Visitor invoked by the event store, which hands each event to a worker.
+     */
+    private class DispatchingVisitor implements EventVisitor {
+
+        private final Worker[] workers;
+        private final AtomicReference<Throwable> failure;
+        private int nextWorker;
+
+        public DispatchingVisitor(Worker[] workers, AtomicReference<Throwable> failure) {
+            this.workers = workers;
+            this.failure = failure;
+        }
+
+        @Override
+        public void doWithEvent(DomainEventMessage domainEvent) {
+            if (failure.get() != null) {
+                throw new ReplayAbortedException();
+            }
+            Object sequenceIdentifier = sequencingPolicy.getSequenceIdentifierFor(domainEvent);
+            int workerIndex;
+            if (sequenceIdentifier == null) {
+                workerIndex = nextWorker;
+                nextWorker = (nextWorker + 1) % workers.length;
+            } else {
+                workerIndex = (sequenceIdentifier.hashCode() & Integer.MAX_VALUE) % workers.length;
+            }
+            workers[workerIndex].enqueue(domainEvent);
+            dispatchedEventCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Processes the events in its queue, until the end of the replay is reached. After a failure, remaining events are
+     * discarded.
+     */
+    private class Worker implements Runnable {
+
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(queueCapacity);
+        private final EventVisitor visitor;
+        private final AtomicReference<Throwable> failure;
+        private final CountDownLatch doneLatch;
+
+        public Worker(EventVisitor visitor, AtomicReference<Throwable> failure, CountDownLatch doneLatch) {
+            this.visitor = visitor;
+            this.failure = failure;
+            this.doneLatch = doneLatch;
+        }
+
+        public void enqueue(DomainEventMessage event) {
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EventStoreException("Thread was interrupted while waiting for a worker to make room", e);
+            }
+        }
+
+        public void finish() {
+            boolean interrupted = false;
+            boolean enqueued = false;
+            while (!enqueued) {
+                try {
+                    queue.put(EndOfReplay.INSTANCE);
+                    enqueued = true;
+                } catch (InterruptedException e) {
+                    // the worker will only stop when it receives the marker
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Object next = takeNext();
+                while (next != EndOfReplay.INSTANCE) {
+                    if (failure.get() == null) {
+                        handle((DomainEventMessage) next);
+                    }
+                    next = takeNext();
+                }
+            } finally {
+                doneLatch.countDown();
+            }
+        }
+
+        private void handle(DomainEventMessage event) {
+            try {
+                visitor.doWithEvent(event);
+                processedEventCount.incrementAndGet();
+            } catch (Throwable e) {
+                if (failure.compareAndSet(null, e)) {
+                    logger.warn("Replay failed on event [{}] of aggregate [{}]",
+                                event.getIdentifier(), event.getAggregateIdentifier());
+                }
+            }
+        }
+
+        private Object takeNext() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return queue.take();
+                    } catch (InterruptedException e) {
+                        // the dispatcher always sends an end-of-replay marker
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static final class EndOfReplay {
+
+        private static final EndOfReplay INSTANCE = new EndOfReplay();
+    }
+
+    private static final class ReplayAbortedException extends RuntimeException {
+
+        private static final long serialVersionUID = 5394478622738417474L;
+    }
+
+    private static final class ThreadPerWorkerExecutor implements Executor {
+
+        private final AtomicInteger threadCounter = new AtomicInteger();
+
+        @Override
+        public void execute(Runnable command) {
+            Thread thread = new Thread(command, "PartitionedEventReplayer-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}
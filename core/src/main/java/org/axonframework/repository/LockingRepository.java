@@ -16,12 +16,15 @@
 
 package org.axonframework.repository;
 
+import org.axonframework.common.Assert;
 import org.axonframework.domain.AggregateRoot;
 import org.axonframework.unitofwork.CurrentUnitOfWork;
 import org.axonframework.unitofwork.UnitOfWorkListenerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Implementation of the Repository interface that takes provides a locking mechanism to prevent concurrent
  * modifications of persisted aggregates. Unless there is a locking mechanism present in the underlying persistence
@@ -68,6 +71,12 @@ public abstract class LockingRepository<T extends AggregateRoot> extends Abstrac
             case PESSIMISTIC:
                 lockManager = new PessimisticLockManager();
                 break;
+            case STRIPED:
+                lockManager = new StripedLockManager(false);
+                break;
+            case STRIPED_FAIR:
+                lockManager = new StripedLockManager(true);
+                break;
             case OPTIMISTIC:
                 lockManager = new OptimisticLockManager();
                 break;
@@ -90,6 +99,24 @@ public abstract class LockingRepository<T extends AggregateRoot> extends Abstrac
         this.lockManager = lockManager;
     }
 
+    /**
+     * Sets the maximum time a thread waits for the lock on an aggregate. When the lock cannot be obtained within that
+     * time, a {@link ConcurrencyException} is thrown. A timeout of 0 or less means threads wait until the lock is
+     * available. Defaults to 10 seconds.
+     * <p/>
+     * Timeouts are only supported by the {@link LockingStrategy#STRIPED} and {@link LockingStrategy#STRIPED_FAIR}
+     * locking strategies.
+     *
+     * @param timeout The maximum time to wait for a lock
+     * @param unit    The unit of the given <code>timeout</code>
+     * @throws IllegalStateException if the locking strategy of this repository does not support timeouts
+     */
+    public void setLockTimeout(long timeout, TimeUnit unit) {
+        Assert.state(lockManager instanceof StripedLockManager,
+                     "The locking strategy of this repository does not support lock timeouts");
+        ((StripedLockManager) lockManager).setTimeout(timeout, unit);
+    }
+
     @Override
     public void add(T aggregate) {
         lockManager.obtainLock(aggregate.getIdentifier());
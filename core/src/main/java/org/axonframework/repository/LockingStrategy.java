@@ -48,6 +48,29 @@ public enum LockingStrategy {
      */
     PESSIMISTIC,
 
+    /**
+     * Indicator of a pessimistic locking strategy that uses a fixed number of locks, each shared by all aggregates
+     * whose identifiers hash to it. Unlike the {@link #PESSIMISTIC} strategy, it does not create and dispose of a lock
+     * for each aggregate. Threads may have to wait for a lock held on another aggregate, though.
+     * <p/>
+     * <strong>Important note</strong>: threads that load multiple aggregates in a single Unit of Work may deadlock when
+     * their aggregates share locks. To prevent threads from waiting endlessly, a {@link ConcurrencyException} is
+     * thrown when a lock cannot be obtained within 10 seconds. Configure another timeout using {@link
+     * LockingRepository#setLockTimeout(long, java.util.concurrent.TimeUnit)}.
+     *
+     * @see LockingRepository
+     */
+    STRIPED,
+
+    /**
+     * Indicator of the {@link #STRIPED} locking strategy, where waiting threads obtain a lock in the order in which they
+     * requested it. This prevents threads from waiting much longer than others, at the cost of throughput under
+     * contention.
+     *
+     * @see LockingRepository
+     */
+    STRIPED_FAIR,
+
     /**
      * Indicator of no locking strategy. This strategy expects another mechanism to perform the necessary locking, such
      * as an event store using a relational database.
@@ -54,8 +54,7 @@ class PessimisticLockManager implements LockManager {
     public void obtainLock(Object aggregateIdentifier) {
         boolean lockObtained = false;
         while (!lockObtained) {
-            createLockIfAbsent(aggregateIdentifier);
-            DisposableLock lock = lockFor(aggregateIdentifier);
+            DisposableLock lock = createLockIfAbsent(aggregateIdentifier);
             lockObtained = lock.lock();
             if (!lockObtained) {
                 locks.remove(aggregateIdentifier, lock);
@@ -77,10 +76,16 @@ class PessimisticLockManager implements LockManager {
         lock.unlock(aggregateIdentifier);
     }
 
-    private void createLockIfAbsent(Object aggregateIdentifier) {
-        if (!locks.contains(aggregateIdentifier)) {
-            locks.putIfAbsent(aggregateIdentifier, new DisposableLock());
+    private DisposableLock createLockIfAbsent(Object aggregateIdentifier) {
+        DisposableLock lock = locks.get(aggregateIdentifier);
+        if (lock == null) {
+            DisposableLock newLock = new DisposableLock();
+            lock = locks.putIfAbsent(aggregateIdentifier, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
         }
+        return lock;
     }
 
     private boolean isLockAvailableFor(Object aggregateIdentifier) {
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.repository;
+
+import org.axonframework.common.Assert;
+import org.axonframework.domain.AggregateRoot;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implementation of the {@link LockManager} that uses a pessimistic locking strategy, based on a fixed number of
+ * locks. Each aggregate identifier is assigned to one of these locks, based on its hash code. No lock objects are
+ * created or disposed of when locks are obtained and released. Each thread does keep track of the identifiers it has
+ * locked, so that locks are validated and released for the exact aggregate only. This bookkeeping reuses the same
+ * arrays for each thread, so obtaining and releasing an uncontended lock does not allocate any objects. These arrays
+ * only grow when a thread holds more locks at once than it did before. As they are searched linearly, this lock
+ * manager is meant for threads that hold a few locks at a time.
+ * <p/>
+ * Since several aggregates share each lock, a thread may have to wait for a lock held on another aggregate. A thread
+ * that locks multiple aggregates in a single Unit of Work may even deadlock with another thread doing the same, if
+ * their aggregates share locks. To prevent threads from waiting endlessly, they wait for a lock for at most {@link
+ * #DEFAULT_TIMEOUT_MILLIS 10 seconds} by default. When the lock cannot be obtained within that time, a {@link
+ * ConcurrencyException} is thrown.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class StripedLockManager implements LockManager {
+
+    /**
+     * The default number of locks.
+     */
+    static final int DEFAULT_STRIPE_COUNT = 1024;
+
+    /**
+     * The default maximum time to wait for a lock, in milliseconds.
+     */
+    static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final ThreadLocal<HeldLocks> heldLocks = new ThreadLocal<HeldLocks>() {
+        @Override
+        protected HeldLocks initialValue() {
+            return new HeldLocks();
+        }
+    };
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    /**
+     * Initializes a StripedLockManager with the {@link #DEFAULT_STRIPE_COUNT default} number of locks.
+     *
+     * @param fair whether waiting threads should obtain locks in the order in which they requested them
+     */
+    StripedLockManager(boolean fair) {
+        this(DEFAULT_STRIPE_COUNT, fair);
+    }
+
+    /**
+     * Initializes a StripedLockManager with the given number of locks. Threads waiting for a lock are granted it in the
+     * order in which they requested it if <code>fair</code> is <code>true</code>. Fair locks have a lower throughput
+     * under contention, but prevent threads from waiting for a lock much longer than others.
+     *
+     * @param stripeCount The number of locks. Must be a power of two.
+     * @param fair        whether waiting threads should obtain locks in the order in which they requested them
+     */
+    StripedLockManager(int stripeCount, boolean fair) {
+        Assert.isTrue(stripeCount > 0 && Integer.bitCount(stripeCount) == 1,
+                      "The number of stripes must be a positive power of two");
+        this.stripes = new ReentrantLock[stripeCount];
+        this.mask = stripeCount - 1;
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock(fair);
+        }
+    }
+
+    /**
+     * Sets the maximum time to wait for a lock. A value of 0 or less means threads wait until the lock is available.
+     * Defaults to {@link #DEFAULT_TIMEOUT_MILLIS 10 seconds}.
+     *
+     * @param timeout The maximum time to wait for a lock
+     * @param unit    The unit of the given <code>timeout</code>
+     */
+    void setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    @Override
+    public boolean validateLock(AggregateRoot aggregate) {
+        return heldLocks.get().indexOf(aggregate.getIdentifier()) >= 0;
+    }
+
+    /**
+     * Obtain a lock for an aggregate. This method will block until a lock was successfully obtained, or the timeout
+     * has expired.
+     *
+     * @param aggregateIdentifier the identifier of the aggregate to obtains a lock for.
+     * @throws ConcurrencyException if the lock could not be obtained within the configured timeout, or the thread was
+     *                              interrupted while waiting for it
+     */
+    @Override
+    public void obtainLock(Object aggregateIdentifier) {
+        ReentrantLock lock = stripeFor(aggregateIdentifier);
+        long timeout = timeoutMillis;
+        if (timeout <= 0) {
+            lock.lock();
+        } else {
+            try {
+                if (!lock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new ConcurrencyException(String.format(
+                            "Unable to obtain a lock for aggregate [%s] within %s milliseconds",
+                            aggregateIdentifier, timeout));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConcurrencyException(String.format(
+                        "Thread was interrupted while waiting for a lock for aggregate [%s]", aggregateIdentifier), e);
+            }
+        }
+        heldLocks.get().increment(aggregateIdentifier);
+    }
+
+    /**
+     * Release the lock held on the aggregate.
+     *
+     * @param aggregateIdentifier the identifier of the aggregate to release the lock for.
+     * @throws IllegalMonitorStateException if the lock is not currently held by the current thread
+     */
+    @Override
+    public void releaseLock(Object aggregateIdentifier) {
+        HeldLocks locks = heldLocks.get();
+        int index = locks.indexOf(aggregateIdentifier);
+        if (index < 0) {
+            throw new IllegalMonitorStateException(String.format(
+                    "The current thread does not hold a lock for aggregate [%s]", aggregateIdentifier));
+        }
+        stripeFor(aggregateIdentifier).unlock();
+        locks.decrement(index);
+    }
+
+    private ReentrantLock stripeFor(Object aggregateIdentifier) {
+        int hash = aggregateIdentifier.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[hash & mask];
+    }
+
+    /**
+     * The identifiers of the aggregates locked by a single thread, and the number of times the thread holds each of
+     * these locks.
+     */
+    private static final class HeldLocks {
+
+        private static final int INITIAL_CAPACITY = 4;
+
+        private Object[] identifiers = new Object[INITIAL_CAPACITY];
+        private int[] holdCounts = new int[INITIAL_CAPACITY];
+        private int size;
+
+        private int indexOf(Object aggregateIdentifier) {
+            for (int i = 0; i < size; i++) {
+                if (identifiers[i].equals(aggregateIdentifier)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void increment(Object aggregateIdentifier) {
+            int index = indexOf(aggregateIdentifier);
+            if (index >= 0) {
+                holdCounts[index]++;
+                return;
+            }
+            if (size == identifiers.length) {
+                identifiers = Arrays.copyOf(identifiers, size * 2);
+                holdCounts = Arrays.copyOf(holdCounts, size * 2);
+            }
+            identifiers[size] = aggregateIdentifier;
+            holdCounts[size] = 1;
+            size++;
+        }
+
+        private void decrement(int index) {
+            if (--holdCounts[index] == 0) {
+                size--;
+                identifiers[index] = identifiers[size];
+                holdCounts[index] = holdCounts[size];
+                // the reference is cleared, so that the identifier can be garbage collected
+                identifiers[size] = null;
+            }
+        }
+    }
+}
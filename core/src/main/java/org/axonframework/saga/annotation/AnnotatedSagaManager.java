@@ -18,6 +18,7 @@ package org.axonframework.saga.annotation;
 
 import org.axonframework.domain.EventMessage;
 import org.axonframework.eventhandling.EventBus;
+import org.axonframework.eventhandling.PayloadTypeAware;
 import org.axonframework.saga.AbstractSagaManager;
 import org.axonframework.saga.AssociationValue;
 import org.axonframework.saga.GenericSagaFactory;
@@ -32,11 +33,14 @@ import java.util.Set;
 /**
  * Implementation of the SagaManager that uses annotations on the Sagas to describe the lifecycle management. Unlike
  * the SimpleSagaManager, this implementation can manage several types of Saga in a single AnnotatedSagaManager.
+ * <p/>
+ * The AnnotatedSagaManager is {@link PayloadTypeAware}: Event Buses and Clusters will only pass it events for which at
+ * least one of the managed Saga types has a {@link SagaEventHandler}.
  *
  * @author Allard Buijze
  * @since 0.7
  */
-public class AnnotatedSagaManager extends AbstractSagaManager {
+public class AnnotatedSagaManager extends AbstractSagaManager implements PayloadTypeAware {
 
     private final Set<SagaAnnotationInspector<? extends AbstractAnnotatedSaga>> managedSagaTypes =
             new HashSet<SagaAnnotationInspector<? extends AbstractAnnotatedSaga>>();
@@ -71,6 +75,16 @@ public class AnnotatedSagaManager extends AbstractSagaManager {
         }
     }
 
+    @Override
+    public boolean handlesPayloadType(Class<?> payloadType) {
+        for (SagaAnnotationInspector<? extends AbstractAnnotatedSaga> inspector : managedSagaTypes) {
+            if (inspector.hasHandlerFor(payloadType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     protected Set<Saga> findSagas(EventMessage event) {
         Set<Saga> sagasFound = new HashSet<Saga>();
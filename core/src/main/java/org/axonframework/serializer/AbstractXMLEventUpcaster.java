@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+
+/**
+ * Abstract implementation of an Upcaster that rewrites the XML representation of serialized objects while it is being
+ * read, instead of building a (dom4j) Document of the entire object first. The upcaster works on a {@link
+ * XMLEventReader}, which is read by the {@link XStreamSerializer} directly. The events of the serialized object are
+ * passed through the {@link XMLEventRewriter} created by {@link #createRewriter(SerializedType)} one at a time, as
+ * they are needed by the next upcaster in the chain, or by the serializer. This means that only the events held back
+ * by the rewriters are kept in memory, regardless of the size of the serialized object.
+ * <p/>
+ * Upcasters for the same type may be combined in a single UpcasterChain. Each of them will wrap the reader provided
+ * by the previous one, so that the serialized object is still read only once.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public abstract class AbstractXMLEventUpcaster implements Upcaster<XMLEventReader> {
+
+    /**
+     * The factory to create new XML events with. The factory is never configured with a location, which makes it
+     * safe to use for concurrent upcasting.
+     */
+    protected static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+    @Override
+    public Class<XMLEventReader> expectedRepresentationType() {
+        return XMLEventReader.class;
+    }
+
+    @Override
+    public IntermediateRepresentation<XMLEventReader> upcast(
+            IntermediateRepresentation<XMLEventReader> intermediateRepresentation) {
+        SerializedType originalType = intermediateRepresentation.getType();
+        return new SimpleIntermediateRepresentation<XMLEventReader>(
+                upcast(originalType), XMLEventReader.class,
+                new RewritingXMLEventReader(intermediateRepresentation.getData(), createRewriter(originalType)));
+    }
+
+    /**
+     * Creates the rewriter that rewrites the events of a single serialized object of the given
+     * <code>serializedType</code>. The returned instance is used for one serialized object only, allowing it to keep
+     * state while the object is being read.
+     *
+     * @param serializedType The type of the serialized object, before upcasting
+     * @return the rewriter to rewrite the events of the serialized object with
+     */
+    protected abstract XMLEventRewriter createRewriter(SerializedType serializedType);
+}
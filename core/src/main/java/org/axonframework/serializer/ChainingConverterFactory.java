@@ -7,6 +7,8 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.List;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * ConverterFactory implementation that will combine converters to form chains of converters to be able to convert
@@ -15,6 +17,9 @@ import java.util.ServiceLoader;
  * This implementation will also autodetect ContentTypeConverter implementations by scanning
  * <code>/META-INF/services/org.axonframework.serializer.ContentTypeConverter</code> files on the classpath. These
  * files must contain the fully qualified class names of the implementations to use.
+ * <p/>
+ * The converter found for each combination of source and target type is cached, so that the registered converters
+ * only need to be inspected the first time a conversion is requested.
  *
  * @author Allard Buijze
  * @since 2.0
@@ -23,6 +28,8 @@ public class ChainingConverterFactory implements ConverterFactory {
 
     private static final Logger logger = LoggerFactory.getLogger(ChainingConverterFactory.class);
     private final Deque<ContentTypeConverter<?, ?>> converters = new ArrayDeque<ContentTypeConverter<?, ?>>();
+    private final ConcurrentMap<ConversionKey, ContentTypeConverter> resolvedConverters =
+            new ConcurrentHashMap<ConversionKey, ContentTypeConverter>();
 
     /**
      * Initialize a new ChainingConverterFactory. Will autodetect all converters mentioned in
@@ -37,6 +44,16 @@ public class ChainingConverterFactory implements ConverterFactory {
 
     @Override
     public <S, T> ContentTypeConverter getConverter(Class<S> sourceContentType, Class<T> targetContentType) {
+        ConversionKey key = new ConversionKey(sourceContentType, targetContentType);
+        ContentTypeConverter converter = resolvedConverters.get(key);
+        if (converter == null) {
+            converter = resolveConverter(sourceContentType, targetContentType);
+            resolvedConverters.put(key, converter);
+        }
+        return converter;
+    }
+
+    private <S, T> ContentTypeConverter resolveConverter(Class<S> sourceContentType, Class<T> targetContentType) {
         for (ContentTypeConverter converter : converters) {
             try {
                 if (converter.expectedSourceType().isAssignableFrom(sourceContentType) &&
@@ -68,6 +85,7 @@ public class ChainingConverterFactory implements ConverterFactory {
      */
     public void registerConverter(ContentTypeConverter converter) {
         converters.addFirst(converter);
+        resolvedConverters.clear();
     }
 
     /**
@@ -82,4 +100,32 @@ public class ChainingConverterFactory implements ConverterFactory {
             registerConverter(converter);
         }
     }
+
+    private static final class ConversionKey {
+
+        private final Class<?> sourceType;
+        private final Class<?> targetType;
+
+        private ConversionKey(Class<?> sourceType, Class<?> targetType) {
+            this.sourceType = sourceType;
+            this.targetType = targetType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ConversionKey that = (ConversionKey) o;
+            return sourceType.equals(that.sourceType) && targetType.equals(that.targetType);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sourceType.hashCode() + targetType.hashCode();
+        }
+    }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+import org.axonframework.domain.Message;
+
+/**
+ * Utility class that serializes the payload and meta data of Messages, while taking the serialization awareness of
+ * messages into account. When a message implements {@link SerializationAware}, serialization is delegated to the
+ * message, allowing it to return a serialized form it has created earlier. Otherwise, the payload or meta data is
+ * serialized using the given Serializer.
+ * <p/>
+ * Components that serialize messages as a whole should use {@link #serializeMessage(Message, Serializer)}, so that
+ * messages wrapped to make them SerializationAware are stored in the same form as the messages they wrap.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public final class MessageSerializer {
+
+    private MessageSerializer() {
+        // utility class
+    }
+
+    /**
+     * Serialize the payload of the given <code>message</code> using the given <code>serializer</code>.
+     *
+     * @param message    The message containing the payload to serialize
+     * @param serializer The serializer to serialize the payload with
+     * @return the serialized form of the payload of the message
+     */
+    public static SerializedObject serializePayload(Message<?> message, Serializer serializer) {
+        if (message instanceof SerializationAware) {
+            return ((SerializationAware) message).serializePayload(serializer);
+        }
+        return serializer.serialize(message.getPayload());
+    }
+
+    /**
+     * Serialize the meta data of the given <code>message</code> using the given <code>serializer</code>.
+     *
+     * @param message    The message containing the meta data to serialize
+     * @param serializer The serializer to serialize the meta data with
+     * @return the serialized form of the meta data of the message
+     */
+    public static SerializedObject serializeMetaData(Message<?> message, Serializer serializer) {
+        if (message instanceof SerializationAware) {
+            return ((SerializationAware) message).serializeMetaData(serializer);
+        }
+        return serializer.serialize(message.getMetaData());
+    }
+
+    /**
+     * Serialize the given <code>message</code> as a whole using the given <code>serializer</code>. A message wrapped
+     * by a {@link SerializationAwareEventMessage} is serialized as the message it wraps. The type of the serialized
+     * object is therefore that of the wrapped message, regardless of how the serializer treats the wrapper.
+     *
+     * @param message    The message to serialize
+     * @param serializer The serializer to serialize the message with
+     * @return the serialized form of the message
+     */
+    public static SerializedObject serializeMessage(Message<?> message, Serializer serializer) {
+        if (message instanceof SerializationAwareEventMessage) {
+            return serializer.serialize(((SerializationAwareEventMessage<?>) message).getWrappedMessage());
+        }
+        return serializer.serialize(message);
+    }
+}
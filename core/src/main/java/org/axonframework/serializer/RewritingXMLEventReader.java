@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+import org.axonframework.common.SerializationException;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.XMLEventConsumer;
+
+/**
+ * XMLEventReader that passes the events read from another reader through an {@link XMLEventRewriter}. Events are
+ * read from the original reader only when the events produced by the rewriter so far have been consumed.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class RewritingXMLEventReader implements XMLEventReader, XMLEventConsumer {
+
+    private final XMLEventReader source;
+    private final XMLEventRewriter rewriter;
+    private final Queue<XMLEvent> pending = new ArrayDeque<XMLEvent>();
+
+    /**
+     * Initialize a reader that rewrites the events of the given <code>source</code> using the given
+     * <code>rewriter</code>.
+     *
+     * @param source   The reader providing the original events
+     * @param rewriter The rewriter that rewrites the original events
+     */
+    RewritingXMLEventReader(XMLEventReader source, XMLEventRewriter rewriter) {
+        this.source = source;
+        this.rewriter = rewriter;
+    }
+
+    @Override
+    public XMLEvent nextEvent() throws XMLStreamException {
+        if (!fill()) {
+            throw new NoSuchElementException("There are no more events to read");
+        }
+        return pending.poll();
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return fill();
+        } catch (XMLStreamException e) {
+            throw new SerializationException("Unable to read the next XML event of the upcast object", e);
+        }
+    }
+
+    @Override
+    public Object next() {
+        try {
+            return nextEvent();
+        } catch (XMLStreamException e) {
+            throw new SerializationException("Unable to read the next XML event of the upcast object", e);
+        }
+    }
+
+    @Override
+    public XMLEvent peek() throws XMLStreamException {
+        return fill() ? pending.peek() : null;
+    }
+
+    @Override
+    public String getElementText() throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        XMLEvent event = nextEvent();
+        while (!event.isEndElement()) {
+            if (event.isCharacters()) {
+                text.append(event.asCharacters().getData());
+            } else if (event.isStartElement()) {
+                throw new XMLStreamException("Expected an element with text only, but found a child element",
+                                             event.getLocation());
+            }
+            event = nextEvent();
+        }
+        return text.toString();
+    }
+
+    @Override
+    public XMLEvent nextTag() throws XMLStreamException {
+        XMLEvent event = nextEvent();
+        while ((event.isCharacters() && event.asCharacters().isWhiteSpace())
+                || event.getEventType() == XMLEvent.COMMENT
+                || event.isProcessingInstruction()) {
+            event = nextEvent();
+        }
+        if (!event.isStartElement() && !event.isEndElement()) {
+            throw new XMLStreamException("Expected a start or end element", event.getLocation());
+        }
+        return event;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return source.getProperty(name);
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        source.close();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Events cannot be removed from an XMLEventReader");
+    }
+
+    /**
+     * Adds the given <code>event</code> to the events to return from this reader. This method is invoked by the
+     * rewriter.
+     *
+     * @param event The event to add
+     */
+    @Override
+    public void add(XMLEvent event) {
+        pending.add(event);
+    }
+
+    private boolean fill() throws XMLStreamException {
+        while (pending.isEmpty() && source.hasNext()) {
+            rewriter.rewrite(source.nextEvent(), this);
+        }
+        return !pending.isEmpty();
+    }
+}
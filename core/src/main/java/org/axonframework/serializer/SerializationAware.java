@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+/**
+ * Marker interface for messages that have special serialization awareness. Typically, implementations will optimize
+ * the serialization process by caching the serialized form of their payload and meta data for each Serializer they
+ * have been serialized with. Components that serialize messages should use the {@link MessageSerializer} to benefit
+ * from these optimizations.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public interface SerializationAware {
+
+    /**
+     * Serialize the payload of this message using given <code>serializer</code>. If the payload has already been
+     * serialized using the same serializer, the earlier result may be returned.
+     *
+     * @param serializer The serializer to serialize the payload with
+     * @return the serialized form of the payload
+     */
+    SerializedObject serializePayload(Serializer serializer);
+
+    /**
+     * Serialize the meta data of this message using given <code>serializer</code>. If the meta data has already been
+     * serialized using the same serializer, the earlier result may be returned.
+     *
+     * @param serializer The serializer to serialize the meta data with
+     * @return the serialized form of the meta data
+     */
+    SerializedObject serializeMetaData(Serializer serializer);
+}
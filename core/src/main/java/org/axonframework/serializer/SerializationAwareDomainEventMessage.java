@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+import org.axonframework.domain.DomainEventMessage;
+
+import java.util.Map;
+
+/**
+ * Wrapper around a DomainEventMessage that caches the serialized form of its payload and meta data for each
+ * Serializer it is serialized with. See {@link SerializationAwareEventMessage} for details.
+ *
+ * @param <T> The type of payload contained in the message
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class SerializationAwareDomainEventMessage<T> extends SerializationAwareEventMessage<T>
+        implements DomainEventMessage<T> {
+
+    private static final long serialVersionUID = -1339521472466891734L;
+
+    private final DomainEventMessage<T> domainEventMessage;
+
+    /**
+     * Wrap the given <code>message</code> to make it SerializationAware. The returned object can be safely cast to
+     * {@link SerializationAware}. If the given <code>message</code> already implements SerializationAware, it is
+     * returned as-is.
+     *
+     * @param message The message to wrap
+     * @param <T>     The type of payload in the message
+     * @return a SerializationAware version of the given message
+     */
+    public static <T> DomainEventMessage<T> wrap(DomainEventMessage<T> message) {
+        if (message instanceof SerializationAware) {
+            return message;
+        }
+        return new SerializationAwareDomainEventMessage<T>(message);
+    }
+
+    /**
+     * Initializes a new wrapper for the given <code>domainEventMessage</code>.
+     *
+     * @param domainEventMessage The message to wrap
+     */
+    protected SerializationAwareDomainEventMessage(DomainEventMessage<T> domainEventMessage) {
+        super(domainEventMessage);
+        this.domainEventMessage = domainEventMessage;
+    }
+
+    /**
+     * Initializes a new wrapper for the given <code>domainEventMessage</code>, which has the same payload as the
+     * message wrapped by the given <code>original</code>. The serialized forms of the payload are shared with the
+     * original.
+     *
+     * @param domainEventMessage The message to wrap
+     * @param original           The wrapper of a message with the same payload
+     */
+    protected SerializationAwareDomainEventMessage(DomainEventMessage<T> domainEventMessage,
+                                                   SerializationAwareDomainEventMessage<T> original) {
+        super(domainEventMessage, original);
+        this.domainEventMessage = domainEventMessage;
+    }
+
+    @Override
+    public long getSequenceNumber() {
+        return domainEventMessage.getSequenceNumber();
+    }
+
+    @Override
+    public Object getAggregateIdentifier() {
+        return domainEventMessage.getAggregateIdentifier();
+    }
+
+    @Override
+    public DomainEventMessage<T> withMetaData(Map<String, Object> metaData) {
+        DomainEventMessage<T> newMessage = domainEventMessage.withMetaData(metaData);
+        if (newMessage == domainEventMessage) {
+            return this;
+        }
+        return new SerializationAwareDomainEventMessage<T>(newMessage, this);
+    }
+
+    @Override
+    public DomainEventMessage<T> andMetaData(Map<String, Object> metaData) {
+        DomainEventMessage<T> newMessage = domainEventMessage.andMetaData(metaData);
+        if (newMessage == domainEventMessage) {
+            return this;
+        }
+        return new SerializationAwareDomainEventMessage<T>(newMessage, this);
+    }
+}
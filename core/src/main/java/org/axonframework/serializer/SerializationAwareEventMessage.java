@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.EventMessage;
+import org.axonframework.domain.MetaData;
+import org.joda.time.DateTime;
+
+import java.util.Map;
+
+/**
+ * Wrapper around an EventMessage that caches the serialized form of its payload and meta data for each Serializer it
+ * is serialized with. This allows components along the publication path of an event, such as the Event Store and
+ * Event Bus Terminals, to share a single serialized form, provided they use the same Serializer instance.
+ * <p/>
+ * When the meta data of the message is changed using {@link #withMetaData(java.util.Map)} or {@link
+ * #andMetaData(java.util.Map)}, the resulting message shares the serialized forms of the payload with this message.
+ * <p/>
+ * Using Java serialization, this wrapper is replaced by the message it wraps.
+ *
+ * @param <T> The type of payload contained in the message
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class SerializationAwareEventMessage<T> implements SerializationAware, EventMessage<T> {
+
+    private static final long serialVersionUID = 4760330133615704145L;
+
+    private final EventMessage<T> eventMessage;
+    private final transient SerializedObjectHolder serializedObjectHolder;
+
+    /**
+     * Wrap the given <code>message</code> to make it SerializationAware. The returned object can be safely cast to
+     * {@link SerializationAware}. If the given <code>message</code> already implements SerializationAware, it is
+     * returned as-is. Domain Event Messages are wrapped in a {@link SerializationAwareDomainEventMessage}. It is
+     * therefore not safe to assume the returned message is an instance of SerializationAwareEventMessage.
+     *
+     * @param message The message to wrap
+     * @param <T>     The type of payload in the message
+     * @return a SerializationAware version of the given message
+     */
+    @SuppressWarnings({"unchecked"})
+    public static <T> EventMessage<T> wrap(EventMessage<T> message) {
+        if (message instanceof SerializationAware) {
+            return message;
+        } else if (message instanceof DomainEventMessage) {
+            return SerializationAwareDomainEventMessage.wrap((DomainEventMessage<T>) message);
+        }
+        return new SerializationAwareEventMessage<T>(message);
+    }
+
+    /**
+     * Initializes a new wrapper for the given <code>eventMessage</code>.
+     *
+     * @param eventMessage The message to wrap
+     */
+    protected SerializationAwareEventMessage(EventMessage<T> eventMessage) {
+        this.eventMessage = eventMessage;
+        this.serializedObjectHolder = new SerializedObjectHolder(eventMessage);
+    }
+
+    /**
+     * Initializes a new wrapper for the given <code>eventMessage</code>, which has the same payload as the message
+     * wrapped by the given <code>original</code>. The serialized forms of the payload are shared with the original.
+     *
+     * @param eventMessage The message to wrap
+     * @param original     The wrapper of a message with the same payload
+     */
+    protected SerializationAwareEventMessage(EventMessage<T> eventMessage, SerializationAwareEventMessage<T> original) {
+        this.eventMessage = eventMessage;
+        this.serializedObjectHolder = new SerializedObjectHolder(eventMessage, original.serializedObjectHolder);
+    }
+
+    @Override
+    public SerializedObject serializePayload(Serializer serializer) {
+        return serializedObjectHolder.serializePayload(serializer);
+    }
+
+    @Override
+    public SerializedObject serializeMetaData(Serializer serializer) {
+        return serializedObjectHolder.serializeMetaData(serializer);
+    }
+
+    @Override
+    public String getIdentifier() {
+        return eventMessage.getIdentifier();
+    }
+
+    @Override
+    public MetaData getMetaData() {
+        return eventMessage.getMetaData();
+    }
+
+    @Override
+    public T getPayload() {
+        return eventMessage.getPayload();
+    }
+
+    @Override
+    public Class getPayloadType() {
+        return eventMessage.getPayloadType();
+    }
+
+    @Override
+    public DateTime getTimestamp() {
+        return eventMessage.getTimestamp();
+    }
+
+    @Override
+    public EventMessage<T> withMetaData(Map<String, Object> metaData) {
+        EventMessage<T> newMessage = eventMessage.withMetaData(metaData);
+        if (newMessage == eventMessage) {
+            return this;
+        }
+        return new SerializationAwareEventMessage<T>(newMessage, this);
+    }
+
+    @Override
+    public EventMessage<T> andMetaData(Map<String, Object> metaData) {
+        EventMessage<T> newMessage = eventMessage.andMetaData(metaData);
+        if (newMessage == eventMessage) {
+            return this;
+        }
+        return new SerializationAwareEventMessage<T>(newMessage, this);
+    }
+
+    /**
+     * Returns the EventMessage wrapped by this instance.
+     *
+     * @return the EventMessage wrapped by this instance
+     */
+    EventMessage<T> getWrappedMessage() {
+        return eventMessage;
+    }
+
+    /**
+     * Java Serialization API Method that provides a replacement to serialize, as the fields contained in this instance
+     * are not serializable themselves.
+     *
+     * @return the EventMessage wrapped by this instance
+     */
+    protected Object writeReplace() {
+        return eventMessage;
+    }
+
+    @Override
+    public String toString() {
+        return eventMessage.toString();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+import org.axonframework.domain.Message;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Holder that keeps references to the serialized payload and meta data of a message, for each Serializer used to
+ * serialize them. Serializers are compared by identity, meaning that each Serializer instance serializes the payload
+ * and meta data of the message at most once.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class SerializedObjectHolder implements SerializationAware {
+
+    private final Message message;
+    private final Object payloadGuard;
+    // guarded by "payloadGuard"
+    private final Map<Serializer, SerializedObject> serializedPayload;
+    private final Object metaDataGuard = new Object();
+    // guarded by "metaDataGuard"
+    private final Map<Serializer, SerializedObject> serializedMetaData =
+            new IdentityHashMap<Serializer, SerializedObject>(2);
+
+    /**
+     * Initialize the holder for the serialized payload and meta data of the given <code>message</code>.
+     *
+     * @param message The message to serialize the payload and meta data of
+     */
+    public SerializedObjectHolder(Message message) {
+        this.message = message;
+        this.payloadGuard = new Object();
+        this.serializedPayload = new IdentityHashMap<Serializer, SerializedObject>(2);
+    }
+
+    /**
+     * Initialize the holder for the serialized payload and meta data of the given <code>message</code>, which has the
+     * same payload as the message of the given <code>original</code> holder. The serialized forms of the payload are
+     * shared with the original holder, while the meta data is serialized separately.
+     *
+     * @param message  The message to serialize the payload and meta data of
+     * @param original The holder of a message with the same payload
+     */
+    public SerializedObjectHolder(Message message, SerializedObjectHolder original) {
+        this.message = message;
+        this.payloadGuard = original.payloadGuard;
+        this.serializedPayload = original.serializedPayload;
+    }
+
+    @Override
+    public SerializedObject serializePayload(Serializer serializer) {
+        synchronized (payloadGuard) {
+            SerializedObject existingForm = serializedPayload.get(serializer);
+            if (existingForm == null) {
+                existingForm = serializer.serialize(message.getPayload());
+                serializedPayload.put(serializer, existingForm);
+            }
+            return existingForm;
+        }
+    }
+
+    @Override
+    public SerializedObject serializeMetaData(Serializer serializer) {
+        synchronized (metaDataGuard) {
+            SerializedObject existingForm = serializedMetaData.get(serializer);
+            if (existingForm == null) {
+                existingForm = serializer.serialize(message.getMetaData());
+                serializedMetaData.put(serializer, existingForm);
+            }
+            return existingForm;
+        }
+    }
+}
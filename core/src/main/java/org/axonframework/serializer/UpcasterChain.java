@@ -16,9 +16,10 @@
 
 package org.axonframework.serializer;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Represents a series of upcasters which are combined to upcast a {@link SerializedObject} to the most recent revision
@@ -27,14 +28,22 @@ import java.util.List;
  * <p/>
  * Upcasters for different object types may be merged into a single chain, as long as the order of related upcasters
  * can be guaranteed.
+ * <p/>
+ * The chain remembers which upcaster to apply next for each type and revision it encounters, so that each upcaster's
+ * {@link Upcaster#canUpcast(SerializedType) canUpcast} method is invoked only once for each type and revision. This
+ * requires the result of that method to depend on the name and revision of the given type only. Objects of types
+ * that no upcaster can upcast are returned after a single lookup.
  *
  * @author Allard Buijze
  * @since 2.0
  */
 public class UpcasterChain {
 
-    private final List<Upcaster> upcasters;
+    private static final int NO_UPCASTER = -1;
+
+    private final Upcaster[] upcasters;
     private final ConverterFactory converterFactory;
+    private final ConcurrentMap<UpcastStep, Integer> nextUpcasters = new ConcurrentHashMap<UpcastStep, Integer>();
 
     /**
      * Initialize a chain of the given <code>upcasters</code> and using the given <code>converterFactory</code> to
@@ -45,7 +54,7 @@ public class UpcasterChain {
      */
     public UpcasterChain(ConverterFactory converterFactory, List<Upcaster> upcasters) {
         this.converterFactory = converterFactory;
-        this.upcasters = new ArrayList<Upcaster>(upcasters);
+        this.upcasters = upcasters.toArray(new Upcaster[upcasters.size()]);
     }
 
     /**
@@ -69,11 +78,12 @@ public class UpcasterChain {
     @SuppressWarnings({"unchecked"})
     public IntermediateRepresentation upcast(SerializedObject serializedObject) {
         IntermediateRepresentation current = new DefaultIntermediateRepresentation(serializedObject);
-        for (Upcaster upcaster : upcasters) {
-            if (upcaster.canUpcast(current.getType())) {
-                current = ensureCorrectContentType(current, upcaster.expectedRepresentationType());
-                current = upcaster.upcast(current);
-            }
+        int index = nextUpcaster(current.getType(), 0);
+        while (index != NO_UPCASTER) {
+            Upcaster upcaster = upcasters[index];
+            current = ensureCorrectContentType(current, upcaster.expectedRepresentationType());
+            current = upcaster.upcast(current);
+            index = nextUpcaster(current.getType(), index + 1);
         }
         return current;
     }
@@ -85,16 +95,45 @@ public class UpcasterChain {
      * @param serializedType The serialized type to upcast
      * @return The last known revision of the SerializedType
      */
+    @SuppressWarnings({"unchecked"})
     public SerializedType upcast(SerializedType serializedType) {
         SerializedType current = serializedType;
-        for (Upcaster upcaster : upcasters) {
-            if (upcaster.canUpcast(current)) {
-                current = upcaster.upcast(current);
-            }
+        int index = nextUpcaster(current, 0);
+        while (index != NO_UPCASTER) {
+            current = upcasters[index].upcast(current);
+            index = nextUpcaster(current, index + 1);
         }
         return current;
     }
 
+    /**
+     * Returns the index of the first upcaster, starting at the given <code>fromIndex</code>, that can upcast the given
+     * <code>type</code>, or {@link #NO_UPCASTER} if there is no such upcaster. The result is cached for each
+     * combination of type name, revision and index.
+     *
+     * @param type      The type to find an upcaster for
+     * @param fromIndex The index of the first upcaster to consider
+     * @return the index of the next upcaster to apply, or {@link #NO_UPCASTER}
+     */
+    @SuppressWarnings({"unchecked"})
+    private int nextUpcaster(SerializedType type, int fromIndex) {
+        if (fromIndex >= upcasters.length) {
+            return NO_UPCASTER;
+        }
+        UpcastStep step = new UpcastStep(type.getName(), type.getRevision(), fromIndex);
+        Integer next = nextUpcasters.get(step);
+        if (next == null) {
+            next = NO_UPCASTER;
+            for (int i = fromIndex; i < upcasters.length && next == NO_UPCASTER; i++) {
+                if (upcasters[i].canUpcast(type)) {
+                    next = i;
+                }
+            }
+            nextUpcasters.putIfAbsent(step, next);
+        }
+        return next;
+    }
+
     @SuppressWarnings({"unchecked"})
     private <T> IntermediateRepresentation<T> ensureCorrectContentType(IntermediateRepresentation<?> current,
                                                                        Class<T> expectedContentType) {
@@ -128,4 +167,37 @@ public class UpcasterChain {
             return serializedObject.getData();
         }
     }
+
+    private static final class UpcastStep {
+
+        private final String typeName;
+        private final int revision;
+        private final int fromIndex;
+
+        private UpcastStep(String typeName, int revision, int fromIndex) {
+            this.typeName = typeName;
+            this.revision = revision;
+            this.fromIndex = fromIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            UpcastStep that = (UpcastStep) o;
+            return revision == that.revision && fromIndex == that.fromIndex && typeName.equals(that.typeName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = typeName.hashCode();
+            result = 31 * result + revision;
+            result = 31 * result + fromIndex;
+            return result;
+        }
+    }
 }
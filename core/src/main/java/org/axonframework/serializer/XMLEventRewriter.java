@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.XMLEventConsumer;
+
+/**
+ * Rewrites the XML events of a single serialized object while they are being read. The rewriter receives each event
+ * of the original document in the order they appear, and adds the events that replace it to the given
+ * <code>output</code>. An event may be passed on as is, be replaced by any number of other events, or be dropped
+ * entirely.
+ * <p/>
+ * A new instance is created for each serialized object, which allows implementations to keep track of their position
+ * in the document. Implementations that need to change the order of elements may hold back the events of small
+ * elements, and add them to the output once the right position has been reached.
+ *
+ * @author Allard Buijze
+ * @see AbstractXMLEventUpcaster
+ * @since 2.0
+ */
+public interface XMLEventRewriter {
+
+    /**
+     * Rewrite the given <code>event</code> by adding zero or more events to the given <code>output</code>.
+     *
+     * @param event  The event read from the original document
+     * @param output The consumer of the events of the upcast document
+     * @throws XMLStreamException when an error occurs creating or adding events
+     */
+    void rewrite(XMLEvent event, XMLEventConsumer output) throws XMLStreamException;
+}
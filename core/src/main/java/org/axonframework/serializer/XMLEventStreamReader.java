@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+import com.thoughtworks.xstream.converters.ErrorWriter;
+import com.thoughtworks.xstream.io.StreamException;
+import com.thoughtworks.xstream.io.xml.AbstractPullReader;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * XStream reader that reads from a StAX {@link XMLEventReader}. This allows XStream to unmarshal objects from the
+ * output of streaming upcasters (see {@link AbstractXMLEventUpcaster}), without the need to write the upcast events
+ * to a buffer first.
+ * <p/>
+ * Just like the {@link com.thoughtworks.xstream.io.xml.StaxReader}, attributes are read from the last element that
+ * was read. Names are decoded using the XmlFriendlyReplacer, which is available in XStream 1.3 as well as 1.4.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class XMLEventStreamReader extends AbstractPullReader {
+
+    private final XMLEventReader in;
+    private XMLEvent currentEvent;
+    private StartElement currentElement;
+    private List<Attribute> attributes;
+
+    /**
+     * Initialize a reader that reads from the given <code>in</code>, and moves it to the root element.
+     *
+     * @param in The XMLEventReader providing the events
+     */
+    @SuppressWarnings({"deprecation"})
+    XMLEventStreamReader(XMLEventReader in) {
+        super(new com.thoughtworks.xstream.io.xml.XmlFriendlyReplacer());
+        this.in = in;
+        moveDown();
+    }
+
+    @Override
+    protected int pullNextEvent() {
+        try {
+            if (!in.hasNext()) {
+                return END_NODE;
+            }
+            currentEvent = in.nextEvent();
+            switch (currentEvent.getEventType()) {
+                case XMLEvent.START_ELEMENT:
+                    currentElement = currentEvent.asStartElement();
+                    attributes = null;
+                    return START_NODE;
+                case XMLEvent.END_ELEMENT:
+                case XMLEvent.END_DOCUMENT:
+                    return END_NODE;
+                case XMLEvent.CHARACTERS:
+                case XMLEvent.CDATA:
+                case XMLEvent.SPACE:
+                    return TEXT;
+                case XMLEvent.COMMENT:
+                    return COMMENT;
+                default:
+                    return OTHER;
+            }
+        } catch (XMLStreamException e) {
+            throw new StreamException(e);
+        }
+    }
+
+    @Override
+    protected String pullElementName() {
+        return currentElement.getName().getLocalPart();
+    }
+
+    @Override
+    protected String pullText() {
+        return currentEvent.asCharacters().getData();
+    }
+
+    @SuppressWarnings({"deprecation"})
+    @Override
+    public String getAttribute(String name) {
+        Attribute attribute = currentElement.getAttributeByName(new QName(escapeXmlName(name)));
+        return attribute == null ? null : attribute.getValue();
+    }
+
+    @Override
+    public String getAttribute(int index) {
+        return attributes().get(index).getValue();
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return attributes().size();
+    }
+
+    @SuppressWarnings({"deprecation"})
+    @Override
+    public String getAttributeName(int index) {
+        return unescapeXmlName(attributes().get(index).getName().getLocalPart());
+    }
+
+    @Override
+    public void appendErrors(ErrorWriter errorWriter) {
+        Location location = currentEvent == null ? null : currentEvent.getLocation();
+        if (location != null && location.getLineNumber() >= 0) {
+            errorWriter.add("line number", String.valueOf(location.getLineNumber()));
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch (XMLStreamException e) {
+            throw new StreamException(e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private List<Attribute> attributes() {
+        if (attributes == null) {
+            attributes = new ArrayList<Attribute>();
+            Iterator<Attribute> iterator = currentElement.getAttributes();
+            while (iterator.hasNext()) {
+                attributes.add(iterator.next());
+            }
+        }
+        return attributes;
+    }
+}
@@ -45,6 +45,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import javax.xml.stream.XMLEventReader;
 
 /**
  * Serializer that uses XStream to serialize and deserialize arbitrary objects. The XStream instance is configured to
@@ -181,6 +182,10 @@ public class XStreamSerializer implements Serializer {
 
     /**
      * {@inheritDoc}
+     * <p/>
+     * When the last upcaster provides a dom4j Document or a StAX XMLEventReader, the object is read from that
+     * representation directly. The latter allows events to be upcast while they are being read (see {@link
+     * AbstractXMLEventUpcaster}).
      */
     @SuppressWarnings({"unchecked"})
     @Override
@@ -195,6 +200,8 @@ public class XStreamSerializer implements Serializer {
         }
         if ("org.dom4j.Document".equals(current.getContentType().getName())) {
             return xStream.unmarshal(new Dom4JReader((Document) current.getData()));
+        } else if (XMLEventReader.class.isAssignableFrom(current.getContentType())) {
+            return xStream.unmarshal(new XMLEventStreamReader((XMLEventReader) current.getData()));
         } else {
             current = converterFactory.getConverter(current.getContentType(), InputStream.class).convert(current);
         }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Node in a {@link BinaryGraph} representing an array, other than a <code>byte[]</code>.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class ArrayNode {
+
+    private final String componentTypeName;
+    private final List<Object> elements = new ArrayList<Object>();
+
+    /**
+     * Initializes an empty array node with components of the class with given <code>componentTypeName</code>. For
+     * arrays of primitives, this is the name of the primitive type, e.g. <code>int</code>.
+     *
+     * @param componentTypeName The fully qualified name of the component type of the array
+     */
+    public ArrayNode(String componentTypeName) {
+        this.componentTypeName = componentTypeName;
+    }
+
+    /**
+     * Returns the fully qualified name of the component type of the array.
+     *
+     * @return the fully qualified name of the component type of the array
+     */
+    public String getComponentTypeName() {
+        return componentTypeName;
+    }
+
+    /**
+     * Returns the elements of the array. Changes to the returned list are reflected in the array.
+     *
+     * @return the modifiable list of elements of the array
+     */
+    public List<Object> getElements() {
+        return elements;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+/**
+ * Constants describing the binary format written by the {@link BinarySerializer}.
+ * <p/>
+ * The serialized form starts with the version of the format, followed by the serialized object. Each value is written
+ * as a tag, describing the kind of value, followed by the value itself. Values of the kinds marked as
+ * <em>referenceable</em> are numbered in the order they are written. When such a value is written again, a {@link
+ * #REFERENCE} to that number is written instead.
+ * <p/>
+ * References to classes are written as the registered identifier of that class, or <code>0</code> followed by the
+ * number of the class within the serialized form. The name of the class is written the first time it is used.
+ * Instances of classes that have no special tag are written as {@link #OBJECT}. The first time a class is used in
+ * this way, the keys of its fields are written as well. Each instance is then written as the values of these fields.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+abstract class BinaryFormat {
+
+    /**
+     * The version of the format.
+     */
+    static final int VERSION = 1;
+
+    static final int NULL = 0;
+    static final int TRUE = 1;
+    static final int FALSE = 2;
+    static final int BYTE = 3;
+    static final int SHORT = 4;
+    static final int CHAR = 5;
+    static final int INT = 6;
+    static final int LONG = 7;
+    static final int FLOAT = 8;
+    static final int DOUBLE = 9;
+    static final int STRING = 10;
+    static final int ENUM = 11;
+    static final int DATE_TIME = 12;
+    static final int UUID = 13;
+    static final int BIG_INTEGER = 14;
+    static final int BIG_DECIMAL = 15;
+    static final int CLASS = 16;
+    static final int REFERENCE = 17;
+
+    // referenceable values
+    static final int BYTE_ARRAY = 32;
+    static final int ARRAY = 33;
+    static final int COLLECTION = 34;
+    static final int MAP = 35;
+    static final int META_DATA = 36;
+    static final int JAVA_SERIALIZED = 37;
+    static final int OBJECT = 38;
+
+    private BinaryFormat() {
+        // constants class
+    }
+}
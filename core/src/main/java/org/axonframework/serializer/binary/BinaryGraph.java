@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+/**
+ * Intermediate representation of data written by the {@link BinarySerializer}, allowing upcasters to inspect and
+ * change serialized objects without deserializing them. The classes referred to in the data are not loaded, so
+ * upcasters can deal with classes that have been renamed or removed.
+ * <p/>
+ * The graph consists of the following values:
+ * <ul>
+ * <li><code>null</code>, Strings, primitive wrappers, <code>byte[]</code>, {@link org.joda.time.DateTime}, {@link
+ * java.util.UUID}, {@link java.math.BigInteger} and {@link java.math.BigDecimal} instances, as they are;</li>
+ * <li>{@link ObjectNode} for objects written field by field;</li>
+ * <li>{@link EnumNode} for enum constants and {@link ClassNode} for references to classes;</li>
+ * <li>{@link ArrayNode}, {@link CollectionNode} and {@link MapNode} for arrays, collections and maps, including
+ * {@link org.axonframework.domain.MetaData};</li>
+ * <li>{@link JavaSerializedNode} for objects written using Java serialization.</li>
+ * </ul>
+ * A node that is referred to from several places in the serialized data appears as the same instance in each of these
+ * places, and is written only once when the graph is converted back to its binary form.
+ * <p/>
+ * Upcasters use this representation by declaring <code>BinaryGraph</code> as their {@link
+ * org.axonframework.serializer.Upcaster#expectedRepresentationType() expected representation type}. The {@link
+ * BinarySerializer} provides the converters between this representation and the binary form, as reading the binary
+ * form requires the identifiers of the types registered with it. Instances are not thread safe.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class BinaryGraph {
+
+    private Object root;
+
+    /**
+     * Initializes a graph with the given <code>root</code> value.
+     *
+     * @param root The value at the root of the graph
+     */
+    public BinaryGraph(Object root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the value at the root of the graph. For serialized objects that are not a String, primitive wrapper,
+     * collection or map, this is an {@link ObjectNode}.
+     *
+     * @return the value at the root of the graph
+     */
+    public Object getRoot() {
+        return root;
+    }
+
+    /**
+     * Replaces the value at the root of the graph with the given <code>root</code>.
+     *
+     * @param root The new value at the root of the graph
+     */
+    public void setRoot(Object root) {
+        this.root = root;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import org.axonframework.common.SerializationException;
+import org.axonframework.domain.MetaData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.axonframework.serializer.binary.BinaryFormat.*;
+
+/**
+ * Reads data written in the binary format described by {@link BinaryFormat} into a {@link BinaryGraph}. Classes are
+ * never loaded, except for the registered classes, which are needed to find the name of the class with a given
+ * identifier. Instances are not thread safe, and should be used to read a single graph only.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class BinaryGraphReader {
+
+    private final BinaryInput in;
+    private final TypeRegistry typeRegistry;
+    private final List<Object> references = new ArrayList<Object>();
+    private final List<ClassDescription> classes = new ArrayList<ClassDescription>();
+    private final Map<Integer, ClassDescription> registeredClasses = new HashMap<Integer, ClassDescription>();
+
+    /**
+     * Initializes a reader that reads from the given <code>in</code>, using the given <code>typeRegistry</code> to
+     * find the names of registered classes.
+     *
+     * @param in           The input to read from
+     * @param typeRegistry The registry containing class identifiers
+     */
+    public BinaryGraphReader(BinaryInput in, TypeRegistry typeRegistry) {
+        this.in = in;
+        this.typeRegistry = typeRegistry;
+    }
+
+    /**
+     * Reads the graph.
+     *
+     * @return the graph read
+     */
+    public BinaryGraph readGraph() {
+        int version = in.readVarInt();
+        if (version != VERSION) {
+            throw new SerializationException(String.format("Unsupported version [%s] of the binary format", version));
+        }
+        return new BinaryGraph(readValue());
+    }
+
+    private Object readValue() {
+        int tag = in.readByte();
+        switch (tag) {
+            case ENUM:
+                String enumTypeName = readClassDescription().name;
+                return new EnumNode(enumTypeName, in.readString());
+            case CLASS:
+                return new ClassNode(in.readString());
+            case REFERENCE:
+                return readReference();
+            case BYTE_ARRAY:
+                return register(in.readBytes());
+            case ARRAY:
+                ArrayNode array = (ArrayNode) register(new ArrayNode(readClassDescription().name));
+                readElements(array.getElements());
+                return array;
+            case COLLECTION:
+                CollectionNode collection = (CollectionNode) register(
+                        new CollectionNode(readClassDescription().name));
+                readElements(collection.getElements());
+                return collection;
+            case MAP:
+                MapNode map = (MapNode) register(new MapNode(readClassDescription().name));
+                readEntries(map.getEntries());
+                return map;
+            case META_DATA:
+                MapNode metaData = (MapNode) register(new MapNode(MetaData.class.getName()));
+                readEntries(metaData.getEntries());
+                return metaData;
+            case JAVA_SERIALIZED:
+                return register(new JavaSerializedNode(in.readBytes()));
+            case OBJECT:
+                return readObject();
+            default:
+                return ObjectGraphReader.readPlainValue(in, tag);
+        }
+    }
+
+    private Object readReference() {
+        int reference = in.readVarInt();
+        if (reference < 0 || reference >= references.size()) {
+            throw new SerializationException(String.format("Invalid reference [%s] in serialized data", reference));
+        }
+        return references.get(reference);
+    }
+
+    private void readElements(List<Object> elements) {
+        int size = in.readVarInt();
+        for (int i = 0; i < size; i++) {
+            elements.add(readValue());
+        }
+    }
+
+    private void readEntries(Map<Object, Object> entries) {
+        int size = in.readVarInt();
+        for (int i = 0; i < size; i++) {
+            Object key = readValue();
+            entries.put(key, readValue());
+        }
+    }
+
+    private Object readObject() {
+        ClassDescription description = readClassDescription();
+        if (description.fieldKeys == null) {
+            int fieldCount = in.readVarInt();
+            description.fieldKeys = new String[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                description.fieldKeys[i] = in.readString();
+            }
+        }
+        ObjectNode node = (ObjectNode) register(new ObjectNode(description.name));
+        for (String fieldKey : description.fieldKeys) {
+            node.setField(fieldKey, readValue());
+        }
+        return node;
+    }
+
+    private ClassDescription readClassDescription() {
+        int id = in.readVarInt();
+        if (id != 0) {
+            ClassDescription description = registeredClasses.get(id);
+            if (description == null) {
+                description = new ClassDescription(typeRegistry.typeOf(id).getName());
+                registeredClasses.put(id, description);
+            }
+            return description;
+        }
+        int classNumber = in.readVarInt();
+        if (classNumber < classes.size()) {
+            return classes.get(classNumber);
+        } else if (classNumber != classes.size()) {
+            throw new SerializationException(String.format("Invalid class number [%s] in serialized data",
+                                                           classNumber));
+        }
+        ClassDescription description = new ClassDescription(in.readString());
+        classes.add(description);
+        return description;
+    }
+
+    private Object register(Object value) {
+        references.add(value);
+        return value;
+    }
+
+    /**
+     * The name of a class referred to in the data, and the keys of the fields written for its instances.
+     */
+    private static final class ClassDescription {
+
+        private final String name;
+        private String[] fieldKeys;
+
+        private ClassDescription(String name) {
+            this.name = name;
+        }
+    }
+}
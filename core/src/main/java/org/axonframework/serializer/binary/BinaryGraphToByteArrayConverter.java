@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import org.axonframework.serializer.ContentTypeConverter;
+import org.axonframework.serializer.IntermediateRepresentation;
+import org.axonframework.serializer.SimpleIntermediateRepresentation;
+
+/**
+ * ContentTypeConverter that writes a {@link BinaryGraph} in the format of the {@link BinarySerializer}. Requires the
+ * registry of the serializer that is to read the data to find the identifiers of the registered classes.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class BinaryGraphToByteArrayConverter implements ContentTypeConverter<BinaryGraph, byte[]> {
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final TypeRegistry typeRegistry;
+
+    /**
+     * Initializes the converter to use the given <code>typeRegistry</code> to find the identifiers of registered
+     * classes.
+     *
+     * @param typeRegistry The registry of the serializer that reads the data
+     */
+    public BinaryGraphToByteArrayConverter(TypeRegistry typeRegistry) {
+        this.typeRegistry = typeRegistry;
+    }
+
+    @Override
+    public Class<BinaryGraph> expectedSourceType() {
+        return BinaryGraph.class;
+    }
+
+    @Override
+    public Class<byte[]> targetType() {
+        return byte[].class;
+    }
+
+    @Override
+    public IntermediateRepresentation<byte[]> convert(IntermediateRepresentation<BinaryGraph> original) {
+        BinaryOutput out = new BinaryOutput(INITIAL_BUFFER_SIZE);
+        new BinaryGraphWriter(out, typeRegistry).writeGraph(original.getData());
+        return new SimpleIntermediateRepresentation<byte[]>(original.getType(), byte[].class, out.toByteArray());
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import org.axonframework.common.SerializationException;
+import org.axonframework.domain.MetaData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.axonframework.serializer.binary.BinaryFormat.*;
+
+/**
+ * Writes a {@link BinaryGraph} in the binary format described by {@link BinaryFormat}, so that it can be read by the
+ * {@link ObjectGraphReader}. Instances are not thread safe, and should be used to write a single graph only.
+ * <p/>
+ * The keys of the fields of a class are only written once per graph in the binary format. As upcasters may change the
+ * fields of some instances of a class only, the class is referred to by its name for each additional combination of
+ * field keys.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class BinaryGraphWriter {
+
+    private final BinaryOutput out;
+    private final TypeRegistry typeRegistry;
+    private final Map<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+    private final Map<String, List<ClassReference>> classReferences = new HashMap<String, List<ClassReference>>();
+    private int classCount;
+
+    /**
+     * Initializes a writer that writes to the given <code>out</code>, using the given <code>typeRegistry</code> to
+     * find the identifiers of classes.
+     *
+     * @param out          The buffer to write to
+     * @param typeRegistry The registry containing class identifiers
+     */
+    public BinaryGraphWriter(BinaryOutput out, TypeRegistry typeRegistry) {
+        this.out = out;
+        this.typeRegistry = typeRegistry;
+    }
+
+    /**
+     * Writes the given <code>graph</code>.
+     *
+     * @param graph The graph to write
+     */
+    public void writeGraph(BinaryGraph graph) {
+        out.writeVarInt(VERSION);
+        writeValue(graph.getRoot());
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof EnumNode) {
+            out.writeByte(ENUM);
+            writeClassReference(((EnumNode) value).getTypeName());
+            out.writeString(((EnumNode) value).getName());
+        } else if (value instanceof ClassNode) {
+            out.writeByte(CLASS);
+            out.writeString(((ClassNode) value).getTypeName());
+        } else if (!ObjectGraphWriter.writePlainValue(out, value)) {
+            Integer reference = references.get(value);
+            if (reference != null) {
+                out.writeByte(REFERENCE);
+                out.writeVarInt(reference);
+            } else {
+                references.put(value, references.size());
+                writeReferenceableValue(value);
+            }
+        }
+    }
+
+    private void writeReferenceableValue(Object value) {
+        if (value instanceof byte[]) {
+            out.writeByte(BYTE_ARRAY);
+            out.writeBytes((byte[]) value);
+        } else if (value instanceof ObjectNode) {
+            ObjectNode node = (ObjectNode) value;
+            List<String> fieldKeys = node.getFieldKeys();
+            out.writeByte(OBJECT);
+            writeObjectClassReference(node.getTypeName(), fieldKeys);
+            for (String fieldKey : fieldKeys) {
+                writeValue(node.getField(fieldKey));
+            }
+        } else if (value instanceof ArrayNode) {
+            out.writeByte(ARRAY);
+            writeClassReference(((ArrayNode) value).getComponentTypeName());
+            writeElements(((ArrayNode) value).getElements());
+        } else if (value instanceof CollectionNode) {
+            out.writeByte(COLLECTION);
+            writeClassReference(((CollectionNode) value).getTypeName());
+            writeElements(((CollectionNode) value).getElements());
+        } else if (value instanceof MapNode) {
+            MapNode node = (MapNode) value;
+            if (MetaData.class.getName().equals(node.getTypeName())) {
+                out.writeByte(META_DATA);
+            } else {
+                out.writeByte(MAP);
+                writeClassReference(node.getTypeName());
+            }
+            out.writeVarInt(node.getEntries().size());
+            for (Map.Entry<Object, Object> entry : node.getEntries().entrySet()) {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        } else if (value instanceof JavaSerializedNode) {
+            out.writeByte(JAVA_SERIALIZED);
+            out.writeBytes(((JavaSerializedNode) value).getData());
+        } else {
+            throw new SerializationException(String.format("Values of type [%s] cannot be part of a BinaryGraph",
+                                                           value.getClass().getName()));
+        }
+    }
+
+    private void writeElements(List<Object> elements) {
+        out.writeVarInt(elements.size());
+        for (Object element : elements) {
+            writeValue(element);
+        }
+    }
+
+    private void writeClassReference(String typeName) {
+        List<ClassReference> candidates = classReferencesOf(typeName);
+        ClassReference classReference = candidates.isEmpty() ? newClassReference(typeName) : candidates.get(0);
+        classReference.write();
+    }
+
+    /**
+     * Writes a reference to the class with given <code>typeName</code> for an object with given
+     * <code>fieldKeys</code>. The reference is followed by the field keys if they have not been written for it
+     * before.
+     */
+    private void writeObjectClassReference(String typeName, List<String> fieldKeys) {
+        ClassReference classReference = null;
+        for (ClassReference candidate : classReferencesOf(typeName)) {
+            if (candidate.fieldKeys == null || candidate.fieldKeys.equals(fieldKeys)) {
+                classReference = candidate;
+                break;
+            }
+        }
+        if (classReference == null) {
+            classReference = newClassReference(typeName);
+        }
+        classReference.write();
+        if (classReference.fieldKeys == null) {
+            classReference.fieldKeys = fieldKeys;
+            out.writeVarInt(fieldKeys.size());
+            for (String fieldKey : fieldKeys) {
+                out.writeString(fieldKey);
+            }
+        }
+    }
+
+    private List<ClassReference> classReferencesOf(String typeName) {
+        List<ClassReference> candidates = classReferences.get(typeName);
+        if (candidates == null) {
+            candidates = new ArrayList<ClassReference>();
+            Integer id = typeRegistry.idOf(typeName);
+            if (id != null) {
+                candidates.add(new ClassReference(typeName, id, -1));
+            }
+            classReferences.put(typeName, candidates);
+        }
+        return candidates;
+    }
+
+    private ClassReference newClassReference(String typeName) {
+        ClassReference classReference = new ClassReference(typeName, 0, classCount++);
+        classReferencesOf(typeName).add(classReference);
+        return classReference;
+    }
+
+    /**
+     * A way to refer to a class in the data: either by its registered identifier, or by a number given to it in the
+     * data. Also holds the keys of the fields written for the instances referring to the class this way.
+     */
+    private final class ClassReference {
+
+        private final String typeName;
+        private final int id;
+        private final int classNumber;
+        private boolean written;
+        private List<String> fieldKeys;
+
+        private ClassReference(String typeName, int id, int classNumber) {
+            this.typeName = typeName;
+            this.id = id;
+            this.classNumber = classNumber;
+        }
+
+        public void write() {
+            out.writeVarInt(id);
+            if (id == 0) {
+                out.writeVarInt(classNumber);
+                if (!written) {
+                    out.writeString(typeName);
+                }
+            }
+            written = true;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import org.axonframework.common.SerializationException;
+import org.axonframework.common.io.IOUtils;
+
+/**
+ * Reads primitive values from a byte array, in the format written by {@link BinaryOutput}.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class BinaryInput {
+
+    private final byte[] data;
+    private int position;
+
+    /**
+     * Initializes the input to read from the given <code>data</code>.
+     *
+     * @param data The bytes to read
+     */
+    public BinaryInput(byte[] data) {
+        this.data = data;
+    }
+
+    public int readByte() {
+        ensureAvailable(1);
+        return data[position++];
+    }
+
+    public int readVarInt() {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SerializationException("Malformed variable-length integer in serialized data");
+    }
+
+    public long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SerializationException("Malformed variable-length long in serialized data");
+    }
+
+    public int readSignedVarInt() {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readSignedVarLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readFixedLong() {
+        ensureAvailable(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    public byte[] readBytes() {
+        int length = readVarInt();
+        ensureAvailable(length);
+        byte[] bytes = new byte[length];
+        System.arraycopy(data, position, bytes, 0, length);
+        position += length;
+        return bytes;
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        ensureAvailable(length);
+        String value = new String(data, position, length, IOUtils.UTF8);
+        position += length;
+        return value;
+    }
+
+    private void ensureAvailable(int length) {
+        if (length < 0 || position + length > data.length) {
+            throw new SerializationException("Unexpected end of serialized data");
+        }
+    }
+}
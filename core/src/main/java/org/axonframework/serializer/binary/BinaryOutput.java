@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import org.axonframework.common.io.IOUtils;
+
+import java.util.Arrays;
+
+/**
+ * Growable, unsynchronized buffer that encodes primitive values in the binary format. Integers are written as
+ * variable-length values, using 7 bits per byte.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class BinaryOutput {
+
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * Initializes an empty buffer with the given initial <code>capacity</code>.
+     *
+     * @param capacity The initial capacity of the buffer
+     */
+    public BinaryOutput(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Writes the given signed <code>value</code> using zig-zag encoding, which keeps small negative values short.
+     *
+     * @param value The value to write
+     */
+    public void writeSignedVarInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes the given signed <code>value</code> using zig-zag encoding, which keeps small negative values short.
+     *
+     * @param value The value to write
+     */
+    public void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeFixedLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes the given <code>bytes</code>, prefixed with their length.
+     *
+     * @param bytes The bytes to write
+     */
+    public void writeBytes(byte[] bytes) {
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    /**
+     * Writes the UTF-8 representation of the given <code>value</code>, prefixed with its length.
+     *
+     * @param value The String to write
+     */
+    public void writeString(String value) {
+        writeBytes(value.getBytes(IOUtils.UTF8));
+    }
+
+    /**
+     * Returns a copy of the bytes written to this buffer.
+     *
+     * @return the bytes written to this buffer
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Returns the buffer backing this instance. Only the first {@link #size()} bytes are valid.
+     *
+     * @return the buffer backing this instance
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the number of bytes written to this buffer.
+     *
+     * @return the number of bytes written to this buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, size + additional));
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import org.axonframework.common.Assert;
+import org.axonframework.common.SerializationException;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.GenericEventMessage;
+import org.axonframework.domain.MetaData;
+import org.axonframework.saga.AssociationValue;
+import org.axonframework.saga.annotation.AssociationValuesImpl;
+import org.axonframework.serializer.ChainedConverter;
+import org.axonframework.serializer.ChainingConverterFactory;
+import org.axonframework.serializer.ContentTypeConverter;
+import org.axonframework.serializer.ConverterFactory;
+import org.axonframework.serializer.IntermediateRepresentation;
+import org.axonframework.serializer.Revision;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.SerializedType;
+import org.axonframework.serializer.Serializer;
+import org.axonframework.serializer.SimpleIntermediateRepresentation;
+import org.axonframework.serializer.SimpleSerializedObject;
+import org.axonframework.serializer.SimpleSerializedType;
+import org.axonframework.serializer.Upcaster;
+import org.axonframework.serializer.UpcasterChain;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Serializer implementation that writes objects in a compact binary format. Instead of writing the names of classes
+ * and fields for each object, like the {@link org.axonframework.serializer.XStreamSerializer} does, this serializer
+ * writes an integer identifier for each registered class, and writes the field names of each class only once per
+ * serialized object. This makes the serialized form considerably smaller, and faster to read and write.
+ * <p/>
+ * Classes are registered using {@link #registerType(Class, int)}. Classes that are not registered can be serialized
+ * as well, in which case their name is written once per serialized object. The identifiers of registered classes are
+ * stored in the serialized data, meaning that the identifier of a class may never change once data has been written
+ * using it. Identifiers below {@value #FIRST_USER_TYPE_ID} are reserved for the classes registered by Axon itself.
+ * <p/>
+ * Like the XStreamSerializer, fields are identified by their name. Fields that are removed from a class are ignored
+ * when reading older data, while new fields keep their initial value. Changes that cannot be dealt with in this way
+ * can be handled by {@link Upcaster upcasters}. Upcasters that expect a {@link BinaryGraph} receive the serialized
+ * object as a tree of nodes, allowing them to add, remove, rename and convert fields, or to change the class of
+ * objects, without loading the classes referred to in the data. This serializer provides the converters between the
+ * <code>byte[]</code> form and the BinaryGraph to its upcasters. Other representations are obtained from the
+ * <code>byte[]</code> form using the configured ConverterFactory. The type
+ * of the serialized object is described by its fully qualified class name and the revision in its {@link Revision
+ * &#64;Revision} annotation, making the serializer a drop-in replacement for the other serializers in the event
+ * stores and saga repositories.
+ * <p/>
+ * The <code>writeReplace</code> and <code>readResolve</code> methods of serializable classes are honored, and the
+ * replacements are written in the binary format. This means that wrappers such as the
+ * {@link org.axonframework.serializer.SerializationAwareDomainEventMessage} are written as the message they wrap. The
+ * type of the serialized object is that of the replacement written. Serializable classes of the Java platform, and
+ * serializable classes that need a custom <code>readObject</code> method while lacking a no-arg constructor, are
+ * written using Java serialization.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class BinarySerializer implements Serializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinarySerializer.class);
+
+    /**
+     * The lowest identifier that may be used to register classes using {@link #registerType(Class, int)}.
+     */
+    public static final int FIRST_USER_TYPE_ID = 64;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final TypeRegistry typeRegistry = new TypeRegistry();
+    private final ConverterFactory converterFactory;
+    private final ConverterFactory upcastConverterFactory = new BinaryGraphConverterFactory();
+    private volatile UpcasterChain upcasters;
+
+    /**
+     * Initialize a serializer using a {@link ChainingConverterFactory} to provide the converters needed by upcasters.
+     */
+    public BinarySerializer() {
+        this(new ChainingConverterFactory());
+    }
+
+    /**
+     * Initialize a serializer using the given <code>converterFactory</code> to provide the converters needed by
+     * upcasters.
+     *
+     * @param converterFactory The factory providing the converter instances for upcasters
+     */
+    public BinarySerializer(ConverterFactory converterFactory) {
+        this.converterFactory = converterFactory;
+        registerBuiltInTypes();
+    }
+
+    /**
+     * Registers the given <code>type</code> under the given <code>id</code>. Instances of registered classes are
+     * written using the identifier instead of the class name. The identifier must be at least {@value
+     * #FIRST_USER_TYPE_ID}, and may not be changed once data has been serialized with it.
+     * <p/>
+     * Types should be registered before this serializer is used.
+     *
+     * @param type The class to register
+     * @param id   The identifier to register the class with
+     * @throws IllegalArgumentException if the id is reserved, or if the type or id is already registered
+     */
+    public void registerType(Class<?> type, int id) {
+        Assert.isTrue(id >= FIRST_USER_TYPE_ID,
+                      String.format("Type identifiers below %s are reserved", FIRST_USER_TYPE_ID));
+        typeRegistry.register(type, id);
+    }
+
+    @Override
+    public SerializedType serialize(Object object, OutputStream outputStream) throws IOException {
+        Object replacement = typeRegistry.replacementOf(object);
+        BinaryOutput out = write(replacement);
+        outputStream.write(out.buffer(), 0, out.size());
+        Class<?> type = writtenTypeOf(object, replacement);
+        return new SimpleSerializedType(type.getName(), revisionOf(type));
+    }
+
+    @Override
+    public SerializedObject serialize(Object object) {
+        Object replacement = typeRegistry.replacementOf(object);
+        Class<?> type = writtenTypeOf(object, replacement);
+        return new SimpleSerializedObject(write(replacement).toByteArray(), type.getName(), revisionOf(type));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * If upcasters have been configured, the serialized object is upcast first. When an upcaster changes the type of
+     * the serialized object, that type is instantiated instead of the type referred to in the serialized data.
+     */
+    @SuppressWarnings({"unchecked"})
+    @Override
+    public Object deserialize(SerializedObject serializedObject) {
+        UpcasterChain currentUpcasterChain = upcasters; // create copy for concurrency reasons
+        if (currentUpcasterChain == null) {
+            return read(serializedObject.getData(), null);
+        }
+        IntermediateRepresentation current = currentUpcasterChain.upcast(serializedObject);
+        if (!byte[].class.equals(current.getContentType())) {
+            current = upcastConverterFactory.getConverter(current.getContentType(), byte[].class).convert(current);
+        }
+        Class<?> rootType = null;
+        if (!serializedObject.getType().getName().equals(current.getType().getName())) {
+            rootType = typeRegistry.typeOf(current.getType().getName());
+        }
+        return read((byte[]) current.getData(), rootType);
+    }
+
+    @Override
+    public Class classForType(SerializedType type) {
+        UpcasterChain currentUpcasterChain = upcasters; // create copy for concurrency reasons
+        if (currentUpcasterChain != null) {
+            type = currentUpcasterChain.upcast(type);
+        }
+        try {
+            return typeRegistry.typeOf(type.getName());
+        } catch (SerializationException e) {
+            logger.warn("Could not load class for serialized type [{}] revision {}",
+                        type.getName(), type.getRevision());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the revision number for the given <code>type</code>. The default implementation checks for an {@link
+     * Revision @Revision} annotation, and returns <code>0</code> if none was found. This method can be safely
+     * overridden by subclasses.
+     * <p/>
+     * The revision number is used by upcasters to decide whether they need to process a certain serialized event.
+     * Generally, the revision number needs to be increased each time the structure of an event has been changed in an
+     * incompatible manner.
+     *
+     * @param type The type for which to return the revision number
+     * @return the revision number for the given <code>type</code>
+     */
+    protected int revisionOf(Class<?> type) {
+        Revision revision = type.getAnnotation(Revision.class);
+        return revision == null ? 0 : revision.value();
+    }
+
+    /**
+     * Returns the ConverterFactory used by this serializer. The converter factory allows registration of
+     * ContentTypeConverters needed by the upcasters.
+     *
+     * @return the ConverterFactory used by this serializer
+     */
+    public ConverterFactory getConverterFactory() {
+        return converterFactory;
+    }
+
+    /**
+     * Sets the upcasters which allow older revisions of serialized objects to be deserialized. Upcasters are evaluated
+     * in the order they are provided in the given List. That means that you should take special precaution when an
+     * upcaster expects another upcaster to have processed an event.
+     * <p/>
+     * Any upcaster that relies on another upcaster doing its work first, should be placed <em>after</em> that other
+     * upcaster in the given list. Thus for any <em>upcaster B</em> that relies on <em>upcaster A</em> to do its work
+     * first, the following must be true: <code>upcasters.indexOf(B) > upcasters.indexOf(A)</code>.
+     *
+     * @param upcasters the upcasters for this serializer.
+     */
+    public void setUpcasters(List<Upcaster> upcasters) {
+        this.upcasters = new UpcasterChain(upcastConverterFactory, upcasters);
+    }
+
+    private static Class<?> writtenTypeOf(Object object, Object replacement) {
+        return replacement == null ? object.getClass() : replacement.getClass();
+    }
+
+    private BinaryOutput write(Object object) {
+        BinaryOutput out = new BinaryOutput(INITIAL_BUFFER_SIZE);
+        new ObjectGraphWriter(out, typeRegistry).writeGraph(object);
+        return out;
+    }
+
+    private Object read(byte[] data, Class<?> rootType) {
+        return new ObjectGraphReader(new BinaryInput(data), typeRegistry).readGraph(rootType);
+    }
+
+    /**
+     * ConverterFactory that provides the converters between the <code>byte[]</code> form and the {@link BinaryGraph},
+     * which need the type registry of this serializer. Conversions from and to other representations go through the
+     * <code>byte[]</code> form, using converters provided by the configured ConverterFactory.
+     */
+    private final class BinaryGraphConverterFactory implements ConverterFactory {
+
+        private final ContentTypeConverter<byte[], BinaryGraph> toGraph =
+                new ByteArrayToBinaryGraphConverter(typeRegistry);
+        private final ContentTypeConverter<BinaryGraph, byte[]> fromGraph =
+                new BinaryGraphToByteArrayConverter(typeRegistry);
+
+        @Override
+        public <S, T> ContentTypeConverter getConverter(Class<S> sourceContentType, Class<T> targetContentType) {
+            if (BinaryGraph.class.equals(sourceContentType)) {
+                return byte[].class.equals(targetContentType)
+                        ? fromGraph
+                        : chain(fromGraph, converterFactory.getConverter(byte[].class, targetContentType));
+            } else if (BinaryGraph.class.equals(targetContentType)) {
+                return byte[].class.equals(sourceContentType)
+                        ? toGraph
+                        : chain(converterFactory.getConverter(sourceContentType, byte[].class), toGraph);
+            }
+            return converterFactory.getConverter(sourceContentType, targetContentType);
+        }
+
+        private ContentTypeConverter chain(ContentTypeConverter first, ContentTypeConverter second) {
+            return new ChainedConverter<Object, Object>(Arrays.<ContentTypeConverter>asList(first, second));
+        }
+    }
+
+    /**
+     * Registers the classes commonly found in events, snapshots and sagas. The order of these registrations may never
+     * change, as the identifiers are part of the serialized form.
+     */
+    private void registerBuiltInTypes() {
+        Class<?>[] builtInTypes = new Class<?>[]{
+                Object.class, String.class, Boolean.class, Byte.class, Short.class, Character.class,
+                Integer.class, Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class,
+                UUID.class, DateTime.class, ArrayList.class, LinkedList.class, CopyOnWriteArrayList.class,
+                HashSet.class, LinkedHashSet.class, TreeSet.class, HashMap.class, LinkedHashMap.class, TreeMap.class,
+                ConcurrentHashMap.class, MetaData.class, GenericEventMessage.class, GenericDomainEventMessage.class,
+                AssociationValue.class, AssociationValuesImpl.class};
+        for (int i = 0; i < builtInTypes.length; i++) {
+            typeRegistry.register(builtInTypes[i], i + 1);
+        }
+    }
+}
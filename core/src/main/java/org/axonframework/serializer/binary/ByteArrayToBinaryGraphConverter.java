@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import org.axonframework.serializer.ContentTypeConverter;
+import org.axonframework.serializer.IntermediateRepresentation;
+import org.axonframework.serializer.SimpleIntermediateRepresentation;
+
+/**
+ * ContentTypeConverter that reads data written by the {@link BinarySerializer} into a {@link BinaryGraph}. Requires
+ * the registry of the serializer that wrote the data to find the names of the registered classes.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class ByteArrayToBinaryGraphConverter implements ContentTypeConverter<byte[], BinaryGraph> {
+
+    private final TypeRegistry typeRegistry;
+
+    /**
+     * Initializes the converter to use the given <code>typeRegistry</code> to find the names of registered classes.
+     *
+     * @param typeRegistry The registry of the serializer that wrote the data
+     */
+    public ByteArrayToBinaryGraphConverter(TypeRegistry typeRegistry) {
+        this.typeRegistry = typeRegistry;
+    }
+
+    @Override
+    public Class<byte[]> expectedSourceType() {
+        return byte[].class;
+    }
+
+    @Override
+    public Class<BinaryGraph> targetType() {
+        return BinaryGraph.class;
+    }
+
+    @Override
+    public IntermediateRepresentation<BinaryGraph> convert(IntermediateRepresentation<byte[]> original) {
+        BinaryGraph graph = new BinaryGraphReader(new BinaryInput(original.getData()), typeRegistry).readGraph();
+        return new SimpleIntermediateRepresentation<BinaryGraph>(original.getType(), BinaryGraph.class, graph);
+    }
+}
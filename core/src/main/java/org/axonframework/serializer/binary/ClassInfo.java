@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import org.axonframework.common.SerializationException;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes how instances of a class are written field by field, and how they are created when read. Instances are
+ * created using the class' no-arg constructor, if it has one, so that transient fields are initialized. Otherwise,
+ * they are created without invoking a constructor.
+ * <p/>
+ * Each field is identified by its name. When a subclass declares a field with the same name as a field of a
+ * superclass, the field of the superclass is identified by its name prefixed with the name of the declaring class.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class ClassInfo {
+
+    private final Class<?> type;
+    private final Field[] fields;
+    private final String[] fieldKeys;
+    private final Map<String, Field> fieldsByKey;
+    private final Constructor<?> constructor;
+    private final ReflectionProvider reflectionProvider;
+    private final boolean javaSerialized;
+    private final Method writeReplaceMethod;
+    private final Method readResolveMethod;
+
+    /**
+     * Inspects the given <code>type</code>.
+     *
+     * @param type               The class to inspect
+     * @param reflectionProvider The provider used to create instances of classes without a no-arg constructor
+     */
+    public ClassInfo(Class<?> type, ReflectionProvider reflectionProvider) {
+        this.type = type;
+        this.reflectionProvider = reflectionProvider;
+        List<Field> fieldList = new ArrayList<Field>();
+        List<String> keyList = new ArrayList<String>();
+        Set<String> names = new HashSet<String>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                    field.setAccessible(true);
+                    fieldList.add(field);
+                    keyList.add(names.add(field.getName())
+                                        ? field.getName()
+                                        : current.getName() + "#" + field.getName());
+                }
+            }
+        }
+        this.fields = fieldList.toArray(new Field[fieldList.size()]);
+        this.fieldKeys = keyList.toArray(new String[keyList.size()]);
+        this.fieldsByKey = new HashMap<String, Field>();
+        for (int i = 0; i < fields.length; i++) {
+            fieldsByKey.put(fieldKeys[i], fields[i]);
+        }
+        this.constructor = noArgConstructorOf(type);
+        this.javaSerialized = requiresJavaSerialization(type, constructor);
+        boolean replaceable = !javaSerialized && Serializable.class.isAssignableFrom(type);
+        this.writeReplaceMethod = replaceable ? serializationMethodOf(type, "writeReplace") : null;
+        this.readResolveMethod = replaceable ? serializationMethodOf(type, "readResolve") : null;
+    }
+
+    /**
+     * Indicates whether instances of this class must be written using Java serialization. That is the case for
+     * serializable classes of the Java platform, and for serializable classes that need a custom
+     * <code>readObject</code> method while lacking a no-arg constructor.
+     *
+     * @return whether instances of this class must be written using Java serialization
+     */
+    public boolean isJavaSerialized() {
+        return javaSerialized;
+    }
+
+    /**
+     * Indicates whether this is a serializable class that designates a replacement to write using a
+     * <code>writeReplace</code> method.
+     *
+     * @return whether instances of this class are replaced when written
+     */
+    public boolean hasWriteReplace() {
+        return writeReplaceMethod != null;
+    }
+
+    /**
+     * Returns the object to write instead of the given <code>instance</code>, as designated by the
+     * <code>writeReplace</code> method of the class. Must only be invoked if {@link #hasWriteReplace()} returns
+     * <code>true</code>.
+     *
+     * @param instance The instance to replace
+     * @return the object to write instead of the given instance
+     */
+    public Object writeReplace(Object instance) {
+        return invoke(writeReplaceMethod, instance);
+    }
+
+    /**
+     * Returns the object to return instead of the given <code>instance</code> which has just been read, as designated
+     * by the <code>readResolve</code> method of the class. If the class has no such method, the instance itself is
+     * returned.
+     *
+     * @param instance The instance that has been read
+     * @return the object to return instead of the given instance
+     */
+    public Object readResolve(Object instance) {
+        return readResolveMethod == null ? instance : invoke(readResolveMethod, instance);
+    }
+
+    public Field[] getFields() {
+        return fields;
+    }
+
+    public String[] getFieldKeys() {
+        return fieldKeys;
+    }
+
+    /**
+     * Returns the field identified by the given <code>key</code>, or <code>null</code> if the class no longer has
+     * such a field.
+     *
+     * @param key The key identifying the field
+     * @return the field identified by the given key, or <code>null</code>
+     */
+    public Field getField(String key) {
+        return fieldsByKey.get(key);
+    }
+
+    /**
+     * Creates a new instance of the class.
+     *
+     * @return a new instance of the class
+     */
+    public Object newInstance() {
+        if (constructor == null) {
+            return reflectionProvider.newInstance(type);
+        }
+        try {
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new SerializationException(String.format("Unable to create an instance of [%s]", type.getName()), e);
+        }
+    }
+
+    private static Constructor<?> noArgConstructorOf(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())
+                || (type.isMemberClass() && !Modifier.isStatic(type.getModifiers()))) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static boolean requiresJavaSerialization(Class<?> type, Constructor<?> constructor) {
+        if (!Serializable.class.isAssignableFrom(type)) {
+            return false;
+        }
+        String name = type.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.")) {
+            return true;
+        }
+        boolean hasReadObject = false;
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            hasReadObject |= declaresMethod(current, "readObject", java.io.ObjectInputStream.class);
+        }
+        return hasReadObject && constructor == null;
+    }
+
+    /**
+     * Finds the <code>writeReplace</code> or <code>readResolve</code> method with the given <code>name</code> that
+     * applies to the given <code>type</code>, following the rules of Java serialization: private methods only apply
+     * to the class declaring them.
+     */
+    private static Method serializationMethodOf(Class<?> type, String name) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                Method method = current.getDeclaredMethod(name);
+                int modifiers = method.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isAbstract(modifiers)
+                        || (current != type && Modifier.isPrivate(modifiers))) {
+                    return null;
+                }
+                method.setAccessible(true);
+                return method;
+            } catch (NoSuchMethodException e) {
+                // continue with the superclass
+            }
+        }
+        return null;
+    }
+
+    private Object invoke(Method method, Object instance) {
+        try {
+            return method.invoke(instance);
+        } catch (Exception e) {
+            throw new SerializationException(String.format("Unable to invoke [%s] on an instance of [%s]",
+                                                           method.getName(), type.getName()), e);
+        }
+    }
+
+    private static boolean declaresMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = type.getDeclaredMethod(name, parameterTypes);
+            return !Modifier.isStatic(method.getModifiers());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+/**
+ * Node in a {@link BinaryGraph} representing a reference to a class, i.e. a value of type {@link Class}.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class ClassNode {
+
+    private final String typeName;
+
+    /**
+     * Initializes a node referring to the class with given <code>typeName</code>.
+     *
+     * @param typeName The fully qualified name of the class
+     */
+    public ClassNode(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * Returns the fully qualified name of the class.
+     *
+     * @return the fully qualified name of the class
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Node in a {@link BinaryGraph} representing a collection that is written element by element, such as an {@link
+ * java.util.ArrayList} or a {@link java.util.HashSet}.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class CollectionNode {
+
+    private final String typeName;
+    private final List<Object> elements = new ArrayList<Object>();
+
+    /**
+     * Initializes an empty collection node for an instance of the class with given <code>typeName</code>.
+     *
+     * @param typeName The fully qualified name of the class of the collection
+     */
+    public CollectionNode(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * Returns the fully qualified name of the class of the collection.
+     *
+     * @return the fully qualified name of the class of the collection
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * Returns the elements of the collection. Changes to the returned list are reflected in the collection.
+     *
+     * @return the modifiable list of elements of the collection
+     */
+    public List<Object> getElements() {
+        return elements;
+    }
+}
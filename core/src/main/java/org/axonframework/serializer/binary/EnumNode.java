@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+/**
+ * Node in a {@link BinaryGraph} representing a constant of an enum.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class EnumNode {
+
+    private final String typeName;
+    private final String name;
+
+    /**
+     * Initializes a node for the constant with given <code>name</code> of the enum with given
+     * <code>typeName</code>.
+     *
+     * @param typeName The fully qualified name of the enum class
+     * @param name     The name of the constant
+     */
+    public EnumNode(String typeName, String name) {
+        this.typeName = typeName;
+        this.name = name;
+    }
+
+    /**
+     * Returns the fully qualified name of the enum class.
+     *
+     * @return the fully qualified name of the enum class
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * Returns the name of the constant.
+     *
+     * @return the name of the constant
+     */
+    public String getName() {
+        return name;
+    }
+}
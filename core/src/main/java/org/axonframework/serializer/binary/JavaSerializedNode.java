@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+/**
+ * Node in a {@link BinaryGraph} representing an object that is written using Java serialization. This is the case for
+ * serializable classes of the Java platform, and for serializable classes that need a custom <code>readObject</code>
+ * method while lacking a no-arg constructor.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class JavaSerializedNode {
+
+    private final byte[] data;
+
+    /**
+     * Initializes a node for the object serialized in the given <code>data</code>.
+     *
+     * @param data The object, serialized using Java serialization
+     */
+    public JavaSerializedNode(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Returns the object, serialized using Java serialization.
+     *
+     * @return the Java serialized form of the object
+     */
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Node in a {@link BinaryGraph} representing a map that is written entry by entry, such as a {@link
+ * java.util.HashMap}, or {@link org.axonframework.domain.MetaData}.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class MapNode {
+
+    private final String typeName;
+    private final Map<Object, Object> entries = new LinkedHashMap<Object, Object>();
+
+    /**
+     * Initializes an empty map node for an instance of the class with given <code>typeName</code>.
+     *
+     * @param typeName The fully qualified name of the class of the map
+     */
+    public MapNode(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * Returns the fully qualified name of the class of the map.
+     *
+     * @return the fully qualified name of the class of the map
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * Returns the entries of the map. Changes to the returned map are reflected in the node. Keys that are nodes are
+     * compared by identity.
+     *
+     * @return the modifiable entries of the map
+     */
+    public Map<Object, Object> getEntries() {
+        return entries;
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import org.axonframework.common.SerializationException;
+import org.axonframework.domain.MetaData;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.axonframework.serializer.binary.BinaryFormat.*;
+
+/**
+ * Reads a single object graph written by the {@link ObjectGraphWriter}. Instances are not thread safe, and should be
+ * used to read a single object graph only.
+ * <p/>
+ * Fields that have been removed from a class since the data was written are ignored. Fields that have been added keep
+ * the value assigned by the constructor of the class, if it has a no-arg constructor, or their default value
+ * otherwise.
+ * <p/>
+ * Instances of serializable classes that declare a <code>readResolve</code> method are replaced by the result of that
+ * method once their fields have been read, like Java serialization does. References to such an instance from within
+ * its own fields refer to the instance before it was resolved.
+ * <p/>
+ * Classes referred to in the data are only loaded when they are needed. When the type of the root object is
+ * overridden, the class written in the data is never loaded for that object, so it may no longer exist.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class ObjectGraphReader {
+
+    private final BinaryInput in;
+    private final TypeRegistry typeRegistry;
+    private final List<Object> references = new ArrayList<Object>();
+    private final List<ClassReference> classes = new ArrayList<ClassReference>();
+    private final Map<Integer, ClassReference> registeredClasses = new HashMap<Integer, ClassReference>();
+
+    /**
+     * Initializes a reader that reads from the given <code>in</code>, using the given <code>typeRegistry</code> to
+     * resolve the identifiers of classes.
+     *
+     * @param in           The input to read from
+     * @param typeRegistry The registry containing class identifiers and information
+     */
+    public ObjectGraphReader(BinaryInput in, TypeRegistry typeRegistry) {
+        this.in = in;
+        this.typeRegistry = typeRegistry;
+    }
+
+    /**
+     * Reads the object graph. When the root of the graph is written as an object, the given <code>rootType</code> is
+     * instantiated instead of the class referred to in the data. This allows upcasters to change the class of
+     * serialized objects.
+     *
+     * @param rootType The class to instantiate for the root object, or <code>null</code> to use the class in the data
+     * @return the root of the object graph
+     */
+    public Object readGraph(Class<?> rootType) {
+        int version = in.readVarInt();
+        if (version != VERSION) {
+            throw new SerializationException(String.format("Unsupported version [%s] of the binary format", version));
+        }
+        return readValue(rootType);
+    }
+
+    private Object readValue(Class<?> overriddenType) {
+        int tag = in.readByte();
+        switch (tag) {
+            case ENUM:
+                return readEnum();
+            case CLASS:
+                return typeRegistry.typeOf(in.readString());
+            case REFERENCE:
+                return readReference();
+            case BYTE_ARRAY:
+                return register(in.readBytes());
+            case ARRAY:
+                return readArray();
+            case COLLECTION:
+                return readCollection();
+            case MAP:
+                return readMap();
+            case META_DATA:
+                return readMetaData();
+            case JAVA_SERIALIZED:
+                return readJavaSerialized();
+            case OBJECT:
+                return readObject(overriddenType);
+            default:
+                return readPlainValue(in, tag);
+        }
+    }
+
+    /**
+     * Reads the value with given <code>tag</code> from the given <code>in</code>, for the tags of values that neither
+     * refer to a class nor can be referenced. These values are read the same way in an object graph and in a {@link
+     * BinaryGraph}.
+     *
+     * @param in  The input to read the value from
+     * @param tag The tag describing the kind of value, which has already been read
+     * @return the value read
+     *
+     * @throws SerializationException if the tag is not that of a plain value
+     */
+    static Object readPlainValue(BinaryInput in, int tag) {
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return (byte) in.readByte();
+            case SHORT:
+                return (short) in.readSignedVarInt();
+            case CHAR:
+                return (char) in.readVarInt();
+            case INT:
+                return in.readSignedVarInt();
+            case LONG:
+                return in.readSignedVarLong();
+            case FLOAT:
+                return Float.intBitsToFloat(in.readVarInt());
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readFixedLong());
+            case STRING:
+                return in.readString();
+            case DATE_TIME:
+                long millis = in.readSignedVarLong();
+                return new DateTime(millis, DateTimeZone.forID(in.readString()));
+            case BinaryFormat.UUID:
+                return new UUID(in.readFixedLong(), in.readFixedLong());
+            case BIG_INTEGER:
+                return new BigInteger(in.readString());
+            case BIG_DECIMAL:
+                return new BigDecimal(in.readString());
+            default:
+                throw new SerializationException(String.format("Unknown tag [%s] in serialized data", tag));
+        }
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private Object readEnum() {
+        Class enumType = readClassReference().resolve();
+        String name = in.readString();
+        try {
+            return Enum.valueOf(enumType, name);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException(String.format("Enum [%s] has no constant named [%s]",
+                                                           enumType.getName(), name), e);
+        }
+    }
+
+    private Object readReference() {
+        int reference = in.readVarInt();
+        if (reference < 0 || reference >= references.size()) {
+            throw new SerializationException(String.format("Invalid reference [%s] in serialized data", reference));
+        }
+        return references.get(reference);
+    }
+
+    private Object readArray() {
+        Class<?> componentType = readClassReference().resolve();
+        int length = in.readVarInt();
+        Object array = register(Array.newInstance(componentType, length));
+        for (int i = 0; i < length; i++) {
+            Array.set(array, i, readValue(null));
+        }
+        return array;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private Object readCollection() {
+        Collection<Object> collection = (Collection<Object>) register(newElementWiseInstance());
+        int size = in.readVarInt();
+        for (int i = 0; i < size; i++) {
+            collection.add(readValue(null));
+        }
+        return collection;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private Object readMap() {
+        Map<Object, Object> map = (Map<Object, Object>) register(newElementWiseInstance());
+        readEntries(map);
+        return map;
+    }
+
+    private Object readMetaData() {
+        int reference = reserveReference();
+        Map<String, Object> entries = new HashMap<String, Object>();
+        readEntries(entries);
+        MetaData metaData = MetaData.from(entries);
+        references.set(reference, metaData);
+        return metaData;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private void readEntries(Map map) {
+        int size = in.readVarInt();
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(null);
+            map.put(key, readValue(null));
+        }
+    }
+
+    private Object readJavaSerialized() {
+        int reference = reserveReference();
+        Object value = javaDeserialize(in.readBytes());
+        references.set(reference, value);
+        return value;
+    }
+
+    private Object readObject(Class<?> overriddenType) {
+        ClassReference classReference = readClassReference();
+        if (classReference.fieldNames == null) {
+            int fieldCount = in.readVarInt();
+            classReference.fieldNames = new String[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                classReference.fieldNames[i] = in.readString();
+            }
+        }
+        ClassInfo classInfo = typeRegistry.classInfoOf(
+                overriddenType == null ? classReference.resolve() : overriddenType);
+        Field[] fields = classReference.fieldsOf(classInfo);
+        int reference = references.size();
+        Object instance = register(classInfo.newInstance());
+        for (Field field : fields) {
+            Object value = readValue(null);
+            if (field != null) {
+                try {
+                    field.set(instance, value);
+                } catch (Exception e) {
+                    throw new SerializationException(String.format("Unable to set field [%s] of [%s]",
+                                                                   field.getName(), instance.getClass().getName()), e);
+                }
+            }
+        }
+        Object resolved = classInfo.readResolve(instance);
+        references.set(reference, resolved);
+        return resolved;
+    }
+
+    private Object newElementWiseInstance() {
+        Class<?> type = readClassReference().resolve();
+        if (!ObjectGraphWriter.ELEMENT_WISE_TYPES.contains(type)) {
+            throw new SerializationException(String.format("Type [%s] cannot be read as a collection or map",
+                                                           type.getName()));
+        }
+        return typeRegistry.classInfoOf(type).newInstance();
+    }
+
+    private ClassReference readClassReference() {
+        int id = in.readVarInt();
+        if (id != 0) {
+            ClassReference classReference = registeredClasses.get(id);
+            if (classReference == null) {
+                classReference = new ClassReference(typeRegistry.typeOf(id));
+                registeredClasses.put(id, classReference);
+            }
+            return classReference;
+        }
+        int classNumber = in.readVarInt();
+        if (classNumber < classes.size()) {
+            return classes.get(classNumber);
+        } else if (classNumber != classes.size()) {
+            throw new SerializationException(String.format("Invalid class number [%s] in serialized data",
+                                                           classNumber));
+        }
+        ClassReference classReference = new ClassReference(in.readString());
+        classes.add(classReference);
+        return classReference;
+    }
+
+    private Object register(Object value) {
+        references.add(value);
+        return value;
+    }
+
+    private int reserveReference() {
+        references.add(null);
+        return references.size() - 1;
+    }
+
+    private static Object javaDeserialize(byte[] bytes) {
+        try {
+            ObjectInputStream ois = new ContextClassLoaderObjectInputStream(new ByteArrayInputStream(bytes));
+            return ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new SerializationException("Unable to deserialize a Java serialized value", e);
+        } catch (IOException e) {
+            throw new SerializationException("Unable to deserialize a Java serialized value", e);
+        }
+    }
+
+    /**
+     * A class referred to in the data, which is loaded when it is first needed. Also holds the names of the fields
+     * written for instances of the class, and the fields they resolve to in the class actually instantiated.
+     */
+    private final class ClassReference {
+
+        private final String name;
+        private Class<?> type;
+        private String[] fieldNames;
+        private ClassInfo fieldsClassInfo;
+        private Field[] fields;
+
+        private ClassReference(Class<?> type) {
+            this.name = type.getName();
+            this.type = type;
+        }
+
+        private ClassReference(String name) {
+            this.name = name;
+        }
+
+        public Class<?> resolve() {
+            if (type == null) {
+                type = typeRegistry.typeOf(name);
+            }
+            return type;
+        }
+
+        public Field[] fieldsOf(ClassInfo classInfo) {
+            if (fieldsClassInfo != classInfo) {
+                fields = new Field[fieldNames.length];
+                for (int i = 0; i < fieldNames.length; i++) {
+                    fields[i] = classInfo.getField(fieldNames[i]);
+                }
+                fieldsClassInfo = classInfo;
+            }
+            return fields;
+        }
+    }
+
+    private static final class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private ContextClassLoaderObjectInputStream(ByteArrayInputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the default behavior
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import org.axonframework.common.SerializationException;
+import org.axonframework.domain.MetaData;
+import org.joda.time.DateTime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.axonframework.serializer.binary.BinaryFormat.*;
+
+/**
+ * Writes a single object graph in the binary format described by {@link BinaryFormat}. Instances are not thread safe,
+ * and should be used to write a single object graph only.
+ * <p/>
+ * Serializable objects that designate a replacement using a <code>writeReplace</code> method are replaced before
+ * they are written, like Java serialization does. Each object is replaced only once per graph, so that shared
+ * references to it remain shared.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class ObjectGraphWriter {
+
+    /**
+     * The collection and map classes that are written element by element. Instances are recreated using their no-arg
+     * constructor. Sorted collections are only written this way if they use the natural ordering of their elements.
+     */
+    static final Set<Class<?>> ELEMENT_WISE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            ArrayList.class, LinkedList.class, CopyOnWriteArrayList.class, HashSet.class, LinkedHashSet.class,
+            TreeSet.class, HashMap.class, LinkedHashMap.class, TreeMap.class, ConcurrentHashMap.class));
+
+    private final BinaryOutput out;
+    private final TypeRegistry typeRegistry;
+    private final Map<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+    private final Map<Object, Object> replacements = new IdentityHashMap<Object, Object>();
+    private final Map<Class<?>, Integer> classNumbers = new HashMap<Class<?>, Integer>();
+    private final Set<Class<?>> describedClasses = new HashSet<Class<?>>();
+
+    /**
+     * Initializes a writer that writes to the given <code>out</code>, using the given <code>typeRegistry</code> to
+     * find the identifiers of classes.
+     *
+     * @param out          The buffer to write to
+     * @param typeRegistry The registry containing class identifiers and information
+     */
+    public ObjectGraphWriter(BinaryOutput out, TypeRegistry typeRegistry) {
+        this.out = out;
+        this.typeRegistry = typeRegistry;
+    }
+
+    /**
+     * Writes the given <code>root</code> object, and all objects it refers to.
+     *
+     * @param root The object to write
+     */
+    public void writeGraph(Object root) {
+        out.writeVarInt(VERSION);
+        writeValue(root);
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (!writeSimpleValue(value)) {
+            Object replacement = replacementOf(value);
+            if (replacement != value) {
+                writeValue(replacement);
+                return;
+            }
+            Integer reference = references.get(value);
+            if (reference != null) {
+                out.writeByte(REFERENCE);
+                out.writeVarInt(reference);
+            } else {
+                references.put(value, references.size());
+                writeReferenceableValue(value);
+            }
+        }
+    }
+
+    private boolean writeSimpleValue(Object value) {
+        if (value instanceof Enum) {
+            out.writeByte(ENUM);
+            writeClassReference(((Enum) value).getDeclaringClass());
+            out.writeString(((Enum) value).name());
+        } else if (value.getClass() == Class.class) {
+            out.writeByte(CLASS);
+            out.writeString(((Class) value).getName());
+        } else {
+            return writePlainValue(out, value);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the given <code>value</code> to the given <code>out</code> if it is a value that neither refers to a
+     * class nor can be referenced, such as a String or a number. These values are written the same way for an object
+     * graph and for a {@link BinaryGraph}.
+     *
+     * @param out   The output to write the value to
+     * @param value The value to write, which may not be <code>null</code>
+     * @return <code>true</code> if the value has been written, <code>false</code> if it is not a plain value
+     */
+    static boolean writePlainValue(BinaryOutput out, Object value) {
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        } else if (type == Integer.class) {
+            out.writeByte(INT);
+            out.writeSignedVarInt((Integer) value);
+        } else if (type == Long.class) {
+            out.writeByte(LONG);
+            out.writeSignedVarLong((Long) value);
+        } else if (type == Boolean.class) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (type == Double.class) {
+            out.writeByte(DOUBLE);
+            out.writeFixedLong(Double.doubleToLongBits((Double) value));
+        } else if (type == Float.class) {
+            out.writeByte(FLOAT);
+            out.writeVarInt(Float.floatToIntBits((Float) value));
+        } else if (type == Byte.class) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (type == Short.class) {
+            out.writeByte(SHORT);
+            out.writeSignedVarInt((Short) value);
+        } else if (type == Character.class) {
+            out.writeByte(CHAR);
+            out.writeVarInt((Character) value);
+        } else if (type == DateTime.class) {
+            DateTime dateTime = (DateTime) value;
+            out.writeByte(DATE_TIME);
+            out.writeSignedVarLong(dateTime.getMillis());
+            out.writeString(dateTime.getZone().getID());
+        } else if (type == UUID.class) {
+            out.writeByte(BinaryFormat.UUID);
+            out.writeFixedLong(((UUID) value).getMostSignificantBits());
+            out.writeFixedLong(((UUID) value).getLeastSignificantBits());
+        } else if (type == BigInteger.class) {
+            out.writeByte(BIG_INTEGER);
+            out.writeString(value.toString());
+        } else if (type == BigDecimal.class) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeString(value.toString());
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void writeReferenceableValue(Object value) {
+        Class<?> type = value.getClass();
+        if (type == byte[].class) {
+            out.writeByte(BYTE_ARRAY);
+            out.writeBytes((byte[]) value);
+        } else if (type.isArray()) {
+            out.writeByte(ARRAY);
+            writeClassReference(type.getComponentType());
+            int length = Array.getLength(value);
+            out.writeVarInt(length);
+            for (int i = 0; i < length; i++) {
+                writeValue(Array.get(value, i));
+            }
+        } else if (value instanceof MetaData) {
+            out.writeByte(META_DATA);
+            writeEntries((MetaData) value);
+        } else if (isWrittenElementWise(value)) {
+            if (value instanceof Map) {
+                out.writeByte(MAP);
+                writeClassReference(type);
+                writeEntries((Map<?, ?>) value);
+            } else {
+                out.writeByte(COLLECTION);
+                writeClassReference(type);
+                Collection<?> collection = (Collection<?>) value;
+                out.writeVarInt(collection.size());
+                for (Object element : collection) {
+                    writeValue(element);
+                }
+            }
+        } else {
+            ClassInfo classInfo = typeRegistry.classInfoOf(type);
+            if (classInfo.isJavaSerialized()) {
+                out.writeByte(JAVA_SERIALIZED);
+                out.writeBytes(javaSerialize(value));
+            } else {
+                out.writeByte(OBJECT);
+                writeClassReference(type);
+                writeFields(value, classInfo);
+            }
+        }
+    }
+
+    private Object replacementOf(Object value) {
+        if (value.getClass().isArray() || value instanceof MetaData || isWrittenElementWise(value)) {
+            return value;
+        }
+        Object replacement = replacements.get(value);
+        if (replacement == null && !replacements.containsKey(value)) {
+            replacement = typeRegistry.replacementOf(value);
+            replacements.put(value, replacement);
+            if (replacement != null) {
+                replacements.put(replacement, replacement);
+            }
+        }
+        return replacement;
+    }
+
+    private void writeEntries(Map<?, ?> map) {
+        out.writeVarInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(entry.getKey());
+            writeValue(entry.getValue());
+        }
+    }
+
+    private void writeFields(Object value, ClassInfo classInfo) {
+        Field[] fields = classInfo.getFields();
+        if (describedClasses.add(value.getClass())) {
+            String[] fieldKeys = classInfo.getFieldKeys();
+            out.writeVarInt(fieldKeys.length);
+            for (String fieldKey : fieldKeys) {
+                out.writeString(fieldKey);
+            }
+        }
+        for (Field field : fields) {
+            try {
+                writeValue(field.get(value));
+            } catch (IllegalAccessException e) {
+                throw new SerializationException(String.format("Unable to read field [%s] of [%s]",
+                                                               field.getName(), value.getClass().getName()), e);
+            }
+        }
+    }
+
+    private void writeClassReference(Class<?> type) {
+        Integer id = typeRegistry.idOf(type);
+        if (id != null) {
+            out.writeVarInt(id);
+            return;
+        }
+        out.writeVarInt(0);
+        Integer classNumber = classNumbers.get(type);
+        if (classNumber != null) {
+            out.writeVarInt(classNumber);
+        } else {
+            classNumber = classNumbers.size();
+            classNumbers.put(type, classNumber);
+            out.writeVarInt(classNumber);
+            out.writeString(type.getName());
+        }
+    }
+
+    private static boolean isWrittenElementWise(Object value) {
+        if (!ELEMENT_WISE_TYPES.contains(value.getClass())) {
+            return false;
+        } else if (value instanceof SortedSet) {
+            return ((SortedSet) value).comparator() == null;
+        } else if (value instanceof SortedMap) {
+            return ((SortedMap) value).comparator() == null;
+        }
+        return true;
+    }
+
+    private static byte[] javaSerialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(bytes);
+            oos.writeObject(value);
+            oos.close();
+        } catch (IOException e) {
+            throw new SerializationException(String.format("Unable to serialize an instance of [%s]",
+                                                           value.getClass().getName()), e);
+        }
+        return bytes.toByteArray();
+    }
+}
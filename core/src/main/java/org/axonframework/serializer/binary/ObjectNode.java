@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Node in a {@link BinaryGraph} representing an object that is written field by field. Fields are identified by their
+ * key, which is the name of the field. When a subclass declares a field with the same name as a field of one of its
+ * superclasses, the key of the superclass' field is its name prefixed with the name of the declaring class and a
+ * <code>#</code>.
+ * <p/>
+ * When the object is read, fields without a counterpart in the class are ignored, and fields of the class that have no
+ * value in the node keep the value assigned by the constructor of the class.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class ObjectNode {
+
+    private String typeName;
+    private final Map<String, Object> fields = new LinkedHashMap<String, Object>();
+
+    /**
+     * Initializes a node without fields for an instance of the class with given <code>typeName</code>.
+     *
+     * @param typeName The fully qualified name of the class of the object
+     */
+    public ObjectNode(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * Returns the fully qualified name of the class of the object.
+     *
+     * @return the fully qualified name of the class of the object
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * Changes the class of the object to the class with given <code>typeName</code>.
+     *
+     * @param typeName The fully qualified name of the new class of the object
+     */
+    public void setTypeName(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * Returns the keys of the fields of the object, in the order they are written. The returned list is a copy.
+     *
+     * @return the keys of the fields of the object
+     */
+    public List<String> getFieldKeys() {
+        return new ArrayList<String>(fields.keySet());
+    }
+
+    /**
+     * Indicates whether the object has a field with the given <code>key</code>.
+     *
+     * @param key The key of the field
+     * @return <code>true</code> if the object has such a field, otherwise <code>false</code>
+     */
+    public boolean hasField(String key) {
+        return fields.containsKey(key);
+    }
+
+    /**
+     * Returns the value of the field with the given <code>key</code>, or <code>null</code> if the object has no such
+     * field.
+     *
+     * @param key The key of the field
+     * @return the value of the field, as represented in the {@link BinaryGraph}
+     */
+    public Object getField(String key) {
+        return fields.get(key);
+    }
+
+    /**
+     * Sets the value of the field with the given <code>key</code>, adding the field if the object doesn't have it
+     * yet. The value must be one of the values described by {@link BinaryGraph}.
+     *
+     * @param key   The key of the field
+     * @param value The value of the field
+     */
+    public void setField(String key, Object value) {
+        fields.put(key, value);
+    }
+
+    /**
+     * Removes the field with the given <code>key</code>.
+     *
+     * @param key The key of the field to remove
+     * @return the value of the removed field, or <code>null</code> if the object had no such field
+     */
+    public Object removeField(String key) {
+        return fields.remove(key);
+    }
+
+    /**
+     * Changes the key of the field with given <code>oldKey</code> to <code>newKey</code>. Does nothing if the object
+     * has no field with the old key.
+     *
+     * @param oldKey The current key of the field
+     * @param newKey The new key of the field
+     */
+    public void renameField(String oldKey, String newKey) {
+        if (fields.containsKey(oldKey)) {
+            fields.put(newKey, fields.remove(oldKey));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.converters.reflection.Sun14ReflectionProvider;
+import com.thoughtworks.xstream.core.JVM;
+import org.axonframework.common.SerializationException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of the integer identifiers of registered classes, and caches the information about classes needed to
+ * read and write their instances.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+class TypeRegistry {
+
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<String, Class<?>>();
+
+    static {
+        for (Class<?> type : new Class<?>[]{boolean.class, byte.class, short.class, char.class, int.class,
+                long.class, float.class, double.class}) {
+            PRIMITIVE_TYPES.put(type.getName(), type);
+        }
+    }
+
+    private final ConcurrentMap<Class<?>, Integer> idsByType = new ConcurrentHashMap<Class<?>, Integer>();
+    private final ConcurrentMap<Integer, Class<?>> typesById = new ConcurrentHashMap<Integer, Class<?>>();
+    private final ConcurrentMap<String, Integer> idsByName = new ConcurrentHashMap<String, Integer>();
+    private final ConcurrentMap<String, Class<?>> typesByName = new ConcurrentHashMap<String, Class<?>>();
+    private final ConcurrentMap<Class<?>, ClassInfo> classInfos = new ConcurrentHashMap<Class<?>, ClassInfo>();
+    private final ReflectionProvider reflectionProvider = createReflectionProvider();
+
+    /**
+     * Registers the given <code>type</code> under the given <code>id</code>.
+     *
+     * @param type The class to register
+     * @param id   The identifier of the class
+     * @throws IllegalArgumentException if the id or the type has already been registered
+     */
+    public synchronized void register(Class<?> type, int id) {
+        Class<?> existingType = typesById.get(id);
+        Integer existingId = idsByType.get(type);
+        if ((existingType != null && !existingType.equals(type)) || (existingId != null && existingId != id)) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot register type [%s] with id [%s]. The type or id is already registered.",
+                    type.getName(), id));
+        }
+        typesById.put(id, type);
+        idsByType.put(type, id);
+        idsByName.put(type.getName(), id);
+    }
+
+    /**
+     * Returns the identifier of the given <code>type</code>, or <code>null</code> if it is not registered.
+     *
+     * @param type The class to find the identifier for
+     * @return the identifier of the given class, or <code>null</code>
+     */
+    public Integer idOf(Class<?> type) {
+        return idsByType.get(type);
+    }
+
+    /**
+     * Returns the identifier of the class with given <code>typeName</code>, or <code>null</code> if it is not
+     * registered. Unlike {@link #idOf(Class)}, this method does not require the class to be loaded.
+     *
+     * @param typeName The fully qualified name of the class to find the identifier for
+     * @return the identifier of the class with given name, or <code>null</code>
+     */
+    public Integer idOf(String typeName) {
+        return idsByName.get(typeName);
+    }
+
+    /**
+     * Returns the class registered under the given <code>id</code>.
+     *
+     * @param id The identifier of the class
+     * @return the class registered under the given id
+     *
+     * @throws SerializationException if no class is registered under the given id
+     */
+    public Class<?> typeOf(int id) {
+        Class<?> type = typesById.get(id);
+        if (type == null) {
+            throw new SerializationException(String.format("No type has been registered with id [%s]", id));
+        }
+        return type;
+    }
+
+    /**
+     * Returns the class with the given <code>name</code>.
+     *
+     * @param name The fully qualified name of the class
+     * @return the class with the given name
+     *
+     * @throws SerializationException if the class cannot be loaded
+     */
+    public Class<?> typeOf(String name) {
+        Class<?> type = typesByName.get(name);
+        if (type == null) {
+            type = PRIMITIVE_TYPES.get(name);
+            if (type == null) {
+                type = loadClass(name);
+            }
+            typesByName.put(name, type);
+        }
+        return type;
+    }
+
+    /**
+     * Returns the information needed to read and write the fields of instances of the given <code>type</code>.
+     *
+     * @param type The class to return information for
+     * @return the information about the given class
+     */
+    public ClassInfo classInfoOf(Class<?> type) {
+        ClassInfo classInfo = classInfos.get(type);
+        if (classInfo == null) {
+            classInfo = new ClassInfo(type, reflectionProvider);
+            classInfos.put(type, classInfo);
+        }
+        return classInfo;
+    }
+
+    /**
+     * Returns the object to write instead of the given <code>value</code>. Like Java serialization, the
+     * <code>writeReplace</code> method of the value's class is invoked, and again on the replacement as long as it is
+     * an instance of another class that declares such a method. Returns the value itself if its class does not
+     * designate a replacement.
+     *
+     * @param value The object to find the replacement for
+     * @return the object to write instead of the given value, which may be <code>null</code>
+     */
+    public Object replacementOf(Object value) {
+        Object current = value;
+        ClassInfo classInfo = classInfoOf(current.getClass());
+        while (classInfo.hasWriteReplace()) {
+            Object replacement = classInfo.writeReplace(current);
+            if (replacement == null || replacement.getClass() == current.getClass()) {
+                return replacement;
+            }
+            current = replacement;
+            classInfo = classInfoOf(current.getClass());
+        }
+        return current;
+    }
+
+    /**
+     * Creates the provider used to instantiate classes without invoking a constructor. The Sun reflection provider is
+     * used when available, as the JVM detection of XStream does not recognize all JVMs that support it.
+     *
+     * @return the provider used to instantiate classes without invoking a constructor
+     */
+    private static ReflectionProvider createReflectionProvider() {
+        try {
+            return new Sun14ReflectionProvider();
+        } catch (LinkageError e) {
+            return new JVM().bestReflectionProvider();
+        }
+    }
+
+    private static Class<?> loadClass(String name) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = TypeRegistry.class.getClassLoader();
+        }
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new SerializationException(String.format("Unable to load class [%s]", name), e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.converters;
+
+import org.axonframework.common.io.IOUtils;
+import org.axonframework.serializer.CannotConvertBetweenTypesException;
+import org.axonframework.serializer.ContentTypeConverter;
+import org.axonframework.serializer.IntermediateRepresentation;
+import org.axonframework.serializer.SimpleIntermediateRepresentation;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Converter that converts an input stream to a StAX XMLEventReader. It assumes that the input stream provides UTF-8
+ * formatted XML. The input stream is read as events are taken from the reader.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class InputStreamToXMLEventReaderConverter implements ContentTypeConverter<InputStream, XMLEventReader> {
+
+    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    @Override
+    public Class<InputStream> expectedSourceType() {
+        return InputStream.class;
+    }
+
+    @Override
+    public Class<XMLEventReader> targetType() {
+        return XMLEventReader.class;
+    }
+
+    @Override
+    public IntermediateRepresentation<XMLEventReader> convert(IntermediateRepresentation<InputStream> original) {
+        try {
+            XMLEventReader reader = inputFactory.createXMLEventReader(new InputStreamReader(original.getData(),
+                                                                                            IOUtils.UTF8));
+            return new SimpleIntermediateRepresentation<XMLEventReader>(original.getType(), XMLEventReader.class,
+                                                                        reader);
+        } catch (XMLStreamException e) {
+            throw new CannotConvertBetweenTypesException("Cannot convert from InputStream to XMLEventReader.", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.converters;
+
+import org.axonframework.serializer.CannotConvertBetweenTypesException;
+import org.axonframework.serializer.ContentTypeConverter;
+import org.axonframework.serializer.IntermediateRepresentation;
+import org.axonframework.serializer.SimpleIntermediateRepresentation;
+
+import java.io.ByteArrayOutputStream;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Converter that writes the events of a StAX XMLEventReader to a byte array, using the UTF-8 character set. This
+ * converter is used when upcasters expecting another representation follow streaming upcasters.
+ *
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class XMLEventReaderToByteArrayConverter implements ContentTypeConverter<XMLEventReader, byte[]> {
+
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    @Override
+    public Class<XMLEventReader> expectedSourceType() {
+        return XMLEventReader.class;
+    }
+
+    @Override
+    public Class<byte[]> targetType() {
+        return byte[].class;
+    }
+
+    @Override
+    public IntermediateRepresentation<byte[]> convert(IntermediateRepresentation<XMLEventReader> original) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            XMLEventWriter writer = outputFactory.createXMLEventWriter(output, "UTF-8");
+            writer.add(original.getData());
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new CannotConvertBetweenTypesException("Cannot convert from XMLEventReader to byte[].", e);
+        }
+        return new SimpleIntermediateRepresentation<byte[]>(original.getType(), byte[].class, output.toByteArray());
+    }
+}
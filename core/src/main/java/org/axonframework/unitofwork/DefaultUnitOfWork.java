@@ -22,6 +22,7 @@ import org.axonframework.domain.DomainEventStream;
 import org.axonframework.domain.EventMessage;
 import org.axonframework.domain.EventRegistrationCallback;
 import org.axonframework.eventhandling.EventBus;
+import org.axonframework.serializer.SerializationAwareDomainEventMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +41,11 @@ import java.util.Set;
  * been explicitly save in their aggregates will be saved when the UnitOfWork commits.
  * <p/>
  * This implementation requires a mechanism that explicitly commits or rolls back.
+ * <p/>
+ * Events registered by aggregates while they are registered with this Unit of Work are made {@link
+ * org.axonframework.serializer.SerializationAware}. Since the same instances are stored in the Event Store and
+ * published on the Event Bus, each of these components can reuse the serialized form created by another, as long as
+ * they use the same Serializer instance.
  *
  * @author Allard Buijze
  * @since 0.6
@@ -304,7 +310,8 @@ public class DefaultUnitOfWork extends AbstractUnitOfWork {
         @Override
         public <T> DomainEventMessage<T> onRegisteredEvent(DomainEventMessage<T> event) {
             if (registeredAggregates.containsKey(aggregate)) {
-                event = (DomainEventMessage<T>) invokeEventRegistrationListeners(event);
+                event = (DomainEventMessage<T>) invokeEventRegistrationListeners(
+                        SerializationAwareDomainEventMessage.wrap(event));
                 doPublish(event, eventBus);
             }
             return event;
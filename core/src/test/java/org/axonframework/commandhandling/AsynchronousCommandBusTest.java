@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.commandhandling;
+
+import org.axonframework.commandhandling.callbacks.FutureCallback;
+import org.axonframework.unitofwork.UnitOfWork;
+import org.junit.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.axonframework.commandhandling.GenericCommandMessage.asCommandMessage;
+import static org.junit.Assert.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class AsynchronousCommandBusTest {
+
+    private AsynchronousCommandBus testSubject;
+    private CountDownLatch release;
+    private CountDownLatch started;
+
+    @Before
+    public void setUp() {
+        release = new CountDownLatch(1);
+        started = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (testSubject != null) {
+            testSubject.stop();
+        }
+    }
+
+    @Test
+    public void testCommandIsHandledInOtherThread() throws Exception {
+        testSubject = new AsynchronousCommandBus(2, 10, AsynchronousCommandBus.SaturationPolicy.BLOCK, false);
+        testSubject.subscribe(String.class, new ThreadNameCommandHandler());
+
+        FutureCallback<String> callback = new FutureCallback<String>();
+        testSubject.dispatch(asCommandMessage("Say hi!"), callback);
+
+        String handlingThread = callback.get(1, TimeUnit.SECONDS);
+        assertNotNull(handlingThread);
+        assertFalse(Thread.currentThread().getName().equals(handlingThread));
+    }
+
+    @Test
+    public void testExceptionIsReportedToCallback() throws Exception {
+        testSubject = new AsynchronousCommandBus(1, 10, AsynchronousCommandBus.SaturationPolicy.BLOCK, false);
+        final RuntimeException exception = new RuntimeException("Mock");
+        testSubject.subscribe(String.class, new CommandHandler<String>() {
+            @Override
+            public Object handle(CommandMessage<String> command, UnitOfWork unitOfWork) throws Throwable {
+                throw exception;
+            }
+        });
+
+        FutureCallback<Object> callback = new FutureCallback<Object>();
+        testSubject.dispatch(asCommandMessage("Say hi!"), callback);
+
+        try {
+            callback.get(1, TimeUnit.SECONDS);
+            fail("Expected exception");
+        } catch (ExecutionException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+
+    @Test(expected = NoHandlerForCommandException.class)
+    public void testNoHandlerIsReportedToDispatchingThread() {
+        testSubject = new AsynchronousCommandBus(1, 10, AsynchronousCommandBus.SaturationPolicy.BLOCK, false);
+        testSubject.dispatch(asCommandMessage("Say hi!"), new FutureCallback<Object>());
+    }
+
+    @Test
+    public void testRejectPolicy() throws Exception {
+        testSubject = saturatedCommandBus(AsynchronousCommandBus.SaturationPolicy.REJECT, false);
+
+        FutureCallback<String> rejected = new FutureCallback<String>();
+        testSubject.dispatch(asCommandMessage("third"), rejected);
+
+        assertTrue(rejected.isDone());
+        try {
+            rejected.get();
+            fail("Expected command to be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testCallerRunsPolicy() throws Exception {
+        testSubject = saturatedCommandBus(AsynchronousCommandBus.SaturationPolicy.CALLER_RUNS, false);
+        testSubject.subscribe(Integer.class, new ThreadNameCommandHandler());
+
+        FutureCallback<String> callback = new FutureCallback<String>();
+        testSubject.dispatch(asCommandMessage(3), callback);
+
+        assertTrue(callback.isDone());
+        assertEquals(Thread.currentThread().getName(), callback.get());
+    }
+
+    @Test
+    public void testBlockPolicyWaitsForRoomInQueue() throws Exception {
+        testSubject = saturatedCommandBus(AsynchronousCommandBus.SaturationPolicy.BLOCK, false);
+        final FutureCallback<String> callback = new FutureCallback<String>();
+        Thread dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                testSubject.dispatch(asCommandMessage("third"), callback);
+            }
+        });
+        dispatcher.start();
+
+        dispatcher.join(200);
+        assertTrue("Dispatching thread should be waiting for room in the queue", dispatcher.isAlive());
+
+        release.countDown();
+        dispatcher.join(1000);
+        assertFalse(dispatcher.isAlive());
+        assertEquals("third", callback.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBlockPolicyHandlesCommandsDispatchedByCommandBusThreadInPlace() throws Exception {
+        testSubject = new AsynchronousCommandBus(1, 1, AsynchronousCommandBus.SaturationPolicy.BLOCK, false);
+        testSubject.subscribe(Integer.class, new ThreadNameCommandHandler());
+        final FutureCallback<String> queued = new FutureCallback<String>();
+        final FutureCallback<String> handledInPlace = new FutureCallback<String>();
+        testSubject.subscribe(String.class, new CommandHandler<String>() {
+            @Override
+            public Object handle(CommandMessage<String> command, UnitOfWork unitOfWork) throws Throwable {
+                testSubject.dispatch(asCommandMessage(1), queued);
+                testSubject.dispatch(asCommandMessage(2), handledInPlace);
+                return Thread.currentThread().getName();
+            }
+        });
+
+        FutureCallback<String> callback = new FutureCallback<String>();
+        testSubject.dispatch(asCommandMessage("dispatch two more"), callback);
+
+        String handlingThread = callback.get(1, TimeUnit.SECONDS);
+        assertEquals(handlingThread, handledInPlace.get(1, TimeUnit.SECONDS));
+        assertEquals(handlingThread, queued.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCommandsAreRejectedAfterStop() {
+        testSubject = new AsynchronousCommandBus(1, 10, AsynchronousCommandBus.SaturationPolicy.BLOCK, false);
+        testSubject.subscribe(String.class, new ThreadNameCommandHandler());
+        testSubject.stop();
+
+        FutureCallback<String> callback = new FutureCallback<String>();
+        testSubject.dispatch(asCommandMessage("Say hi!"), callback);
+        assertTrue(callback.isDone());
+
+        try {
+            testSubject.dispatch(asCommandMessage("Say hi!"));
+            fail("Expected command to be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testQueueStatisticsAreExposedAsMBean() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.axonframework", "type", AsynchronousCommandBus.class.getSimpleName());
+        testSubject = saturatedCommandBus(AsynchronousCommandBus.SaturationPolicy.REJECT, true);
+        try {
+            testSubject.dispatch(asCommandMessage("third"), new FutureCallback<Object>());
+
+            assertEquals(1L, mBeanServer.getAttribute(name, "QueuedCommandCount"));
+            assertEquals(1L, mBeanServer.getAttribute(name, "LargestQueuedCommandCount"));
+            assertEquals(1L, mBeanServer.getAttribute(name, "RejectedCommandCount"));
+        } finally {
+            mBeanServer.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void testCommandsForSameAggregateAreHandledInOrderOneAtATime() throws Exception {
+        testSubject = new AsynchronousCommandBus(4, 100, AsynchronousCommandBus.SaturationPolicy.BLOCK,
+                                                 new StubTargetResolver(), false);
+        final Map<Object, List<Integer>> handledSequences = new HashMap<Object, List<Integer>>();
+        final Set<Object> activeAggregates = new HashSet<Object>();
+        testSubject.subscribe(TargetedCommand.class, new CommandHandler<TargetedCommand>() {
+            @Override
+            public Object handle(CommandMessage<TargetedCommand> command, UnitOfWork unitOfWork) throws Throwable {
+                TargetedCommand payload = command.getPayload();
+                synchronized (handledSequences) {
+                    assertTrue("Commands for the same aggregate are handled concurrently",
+                               activeAggregates.add(payload.aggregateId));
+                    if (!handledSequences.containsKey(payload.aggregateId)) {
+                        handledSequences.put(payload.aggregateId, new ArrayList<Integer>());
+                    }
+                    handledSequences.get(payload.aggregateId).add(payload.sequence);
+                }
+                Thread.yield();
+                synchronized (handledSequences) {
+                    activeAggregates.remove(payload.aggregateId);
+                }
+                return null;
+            }
+        });
+
+        List<FutureCallback<Object>> callbacks = new ArrayList<FutureCallback<Object>>();
+        for (int sequence = 0; sequence < 20; sequence++) {
+            for (int aggregate = 0; aggregate < 5; aggregate++) {
+                FutureCallback<Object> callback = new FutureCallback<Object>();
+                testSubject.dispatch(asCommandMessage(new TargetedCommand("aggregate" + aggregate, sequence)),
+                                     callback);
+                callbacks.add(callback);
+            }
+        }
+        for (FutureCallback<Object> callback : callbacks) {
+            callback.get(1, TimeUnit.SECONDS);
+        }
+
+        assertEquals(5, handledSequences.size());
+        for (List<Integer> sequences : handledSequences.values()) {
+            assertEquals(20, sequences.size());
+            for (int i = 0; i < sequences.size(); i++) {
+                assertEquals(Integer.valueOf(i), sequences.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testCommandsForOtherAggregateAreNotBlockedByBusyThread() throws Exception {
+        testSubject = new AsynchronousCommandBus(2, 10, AsynchronousCommandBus.SaturationPolicy.BLOCK,
+                                                 new StubTargetResolver(), false);
+        testSubject.subscribe(TargetedCommand.class, new CommandHandler<TargetedCommand>() {
+            @Override
+            public Object handle(CommandMessage<TargetedCommand> command, UnitOfWork unitOfWork) throws Throwable {
+                if (command.getPayload().sequence == 0) {
+                    started.countDown();
+                    release.await();
+                }
+                return Thread.currentThread().getName();
+            }
+        });
+
+        FutureCallback<String> blocked = new FutureCallback<String>();
+        testSubject.dispatch(asCommandMessage(new TargetedCommand(0, 0)), blocked);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        FutureCallback<String> sameAggregate = new FutureCallback<String>();
+        testSubject.dispatch(asCommandMessage(new TargetedCommand(0, 1)), sameAggregate);
+        FutureCallback<String> otherAggregate = new FutureCallback<String>();
+        testSubject.dispatch(asCommandMessage(new TargetedCommand(1, 1)), otherAggregate);
+
+        assertNotNull(otherAggregate.get(1, TimeUnit.SECONDS));
+        assertFalse(sameAggregate.isDone());
+
+        release.countDown();
+        assertNotNull(sameAggregate.get(1, TimeUnit.SECONDS));
+        assertFalse(blocked.get().equals(otherAggregate.get()));
+    }
+
+    @Test(timeout = 5000)
+    public void testCommandsForSameAggregateAreHandledAfterCallbackThrowsException() throws Exception {
+        testSubject = new AsynchronousCommandBus(1, 1, AsynchronousCommandBus.SaturationPolicy.BLOCK,
+                                                 new StubTargetResolver(), false);
+        testSubject.subscribe(TargetedCommand.class, new CommandHandler<TargetedCommand>() {
+            @Override
+            public Object handle(CommandMessage<TargetedCommand> command, UnitOfWork unitOfWork) throws Throwable {
+                if (command.getPayload().sequence == 0) {
+                    throw new IllegalStateException("Mock");
+                }
+                return Thread.currentThread().getName();
+            }
+        });
+
+        final CountDownLatch callbackInvoked = new CountDownLatch(1);
+        testSubject.dispatch(asCommandMessage(new TargetedCommand(0, 0)), new CommandCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                callbackInvoked.countDown();
+                throw new IllegalStateException("Mock exception in callback");
+            }
+        });
+        assertTrue(callbackInvoked.await(1, TimeUnit.SECONDS));
+
+        for (int sequence = 1; sequence <= 3; sequence++) {
+            FutureCallback<String> callback = new FutureCallback<String>();
+            testSubject.dispatch(asCommandMessage(new TargetedCommand(0, sequence)), callback);
+            assertNotNull(callback.get(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testCommandsWithoutTargetAreHandledWithAffinity() throws Exception {
+        testSubject = new AsynchronousCommandBus(2, 10, AsynchronousCommandBus.SaturationPolicy.BLOCK,
+                                                 new StubTargetResolver(), false);
+        testSubject.subscribe(String.class, new ThreadNameCommandHandler());
+
+        FutureCallback<String> callback = new FutureCallback<String>();
+        testSubject.dispatch(asCommandMessage("No target"), callback);
+
+        assertNotNull(callback.get(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Returns a command bus with a single thread that is busy handling a command, and a full queue of one command.
+     */
+    private AsynchronousCommandBus saturatedCommandBus(AsynchronousCommandBus.SaturationPolicy policy,
+                                                       boolean registerMBeans) throws InterruptedException {
+        AsynchronousCommandBus commandBus = new AsynchronousCommandBus(1, 1, policy, registerMBeans);
+        commandBus.subscribe(String.class, new CommandHandler<String>() {
+            @Override
+            public Object handle(CommandMessage<String> command, UnitOfWork unitOfWork) throws Throwable {
+                started.countDown();
+                release.await();
+                return command.getPayload();
+            }
+        });
+        commandBus.dispatch(asCommandMessage("first"));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        commandBus.dispatch(asCommandMessage("second"));
+        return commandBus;
+    }
+
+    private static class TargetedCommand {
+
+        private final Object aggregateId;
+        private final int sequence;
+
+        private TargetedCommand(Object aggregateId, int sequence) {
+            this.aggregateId = aggregateId;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class StubTargetResolver implements CommandTargetResolver {
+
+        @Override
+        public VersionedAggregateIdentifier resolveTarget(CommandMessage<?> command) {
+            if (!(command.getPayload() instanceof TargetedCommand)) {
+                throw new IllegalArgumentException("Command does not target an aggregate");
+            }
+            return new VersionedAggregateIdentifier(((TargetedCommand) command.getPayload()).aggregateId, null);
+        }
+    }
+
+    private static class ThreadNameCommandHandler implements CommandHandler<Object> {
+
+        @Override
+        public Object handle(CommandMessage<Object> command, UnitOfWork unitOfWork) throws Throwable {
+            return Thread.currentThread().getName();
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.axonframework.commandhandling;
 
+import org.axonframework.commandhandling.callbacks.FutureCallback;
 import org.axonframework.unitofwork.CurrentUnitOfWork;
 import org.axonframework.unitofwork.DefaultUnitOfWorkFactory;
 import org.axonframework.unitofwork.UnitOfWork;
@@ -25,8 +26,13 @@ import org.mockito.*;
 import org.mockito.invocation.*;
 import org.mockito.stubbing.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.axonframework.commandhandling.GenericCommandMessage.asCommandMessage;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.*;
@@ -314,6 +320,184 @@ public class SimpleCommandBusTest {
         inOrder.verify(commandHandler, never()).handle(isA(CommandMessage.class), isA(UnitOfWork.class));
     }
 
+    @Test
+    public void testDispatchBatch_CommandsShareUnitOfWork() throws Exception {
+        UnitOfWorkFactory spyUnitOfWorkFactory = spy(new DefaultUnitOfWorkFactory());
+        testSubject.setUnitOfWorkFactory(spyUnitOfWorkFactory);
+        BatchCommandHandler handler = new BatchCommandHandler();
+        testSubject.subscribe(String.class, handler);
+
+        List<FutureCallback<Object>> callbacks = dispatchBatch(CommandBatch.FailurePolicy.ROLLBACK_BATCH,
+                                                               "one", "two", "three");
+
+        verify(spyUnitOfWorkFactory).createUnitOfWork();
+        assertEquals(Arrays.asList("one", "two", "three"), handler.handled);
+        assertEquals(1, handler.unitsOfWork.size());
+        assertEquals("one", callbacks.get(0).get());
+        assertEquals("two", callbacks.get(1).get());
+        assertEquals("three", callbacks.get(2).get());
+        assertFalse(CurrentUnitOfWork.isStarted());
+    }
+
+    @Test
+    public void testDispatchBatch_RollbackBatchOnFailure() throws Exception {
+        UnitOfWorkFactory mockUnitOfWorkFactory = mock(DefaultUnitOfWorkFactory.class);
+        UnitOfWork mockUnitOfWork = mock(UnitOfWork.class);
+        when(mockUnitOfWorkFactory.createUnitOfWork()).thenReturn(mockUnitOfWork);
+        testSubject.setUnitOfWorkFactory(mockUnitOfWorkFactory);
+        BatchCommandHandler handler = new BatchCommandHandler();
+        testSubject.subscribe(String.class, handler);
+
+        List<FutureCallback<Object>> callbacks = dispatchBatch(CommandBatch.FailurePolicy.ROLLBACK_BATCH,
+                                                               "one", "fail", "three");
+
+        assertEquals(Arrays.asList("one", "fail"), handler.handled);
+        verify(mockUnitOfWork).rollback(isA(RuntimeException.class));
+        verify(mockUnitOfWork, never()).commit();
+        Throwable failure = failureOf(callbacks.get(1));
+        assertEquals("fail", failure.getMessage());
+        assertTrue(failureOf(callbacks.get(0)) instanceof CommandExecutionException);
+        assertSame(failure, failureOf(callbacks.get(0)).getCause());
+        assertTrue(failureOf(callbacks.get(2)) instanceof CommandExecutionException);
+        assertSame(failure, failureOf(callbacks.get(2)).getCause());
+    }
+
+    @Test
+    public void testDispatchBatch_SplitAndRetryOnFailure() throws Exception {
+        UnitOfWorkFactory spyUnitOfWorkFactory = spy(new DefaultUnitOfWorkFactory());
+        testSubject.setUnitOfWorkFactory(spyUnitOfWorkFactory);
+        BatchCommandHandler handler = new BatchCommandHandler();
+        testSubject.subscribe(String.class, handler);
+
+        List<FutureCallback<Object>> callbacks = dispatchBatch(CommandBatch.FailurePolicy.SPLIT_AND_RETRY,
+                                                               "one", "two", "fail", "four", "five");
+
+        // the first attempt fails at the third command. The parts before, at and after it are dispatched again
+        assertEquals(Arrays.asList("one", "two", "fail", "one", "two", "fail", "four", "five"), handler.handled);
+        verify(spyUnitOfWorkFactory, times(4)).createUnitOfWork();
+        assertEquals("one", callbacks.get(0).get());
+        assertEquals("two", callbacks.get(1).get());
+        assertEquals("fail", failureOf(callbacks.get(2)).getMessage());
+        assertEquals("four", callbacks.get(3).get());
+        assertEquals("five", callbacks.get(4).get());
+        assertFalse(CurrentUnitOfWork.isStarted());
+    }
+
+    @Test
+    public void testDispatchBatch_ExceptionWithoutRollbackOnlyFailsCommand() throws Exception {
+        testSubject.setRollbackConfiguration(new RollbackOnUncheckedExceptionConfiguration());
+        BatchCommandHandler handler = new BatchCommandHandler();
+        testSubject.subscribe(String.class, handler);
+
+        List<FutureCallback<Object>> callbacks = dispatchBatch(CommandBatch.FailurePolicy.ROLLBACK_BATCH,
+                                                               "one", "checked", "three");
+
+        assertEquals(Arrays.asList("one", "checked", "three"), handler.handled);
+        assertEquals(1, handler.unitsOfWork.size());
+        assertEquals("one", callbacks.get(0).get());
+        assertEquals("checked", failureOf(callbacks.get(1)).getMessage());
+        assertEquals("three", callbacks.get(2).get());
+    }
+
+    @Test
+    public void testDispatchBatch_RollbackBatchReportsExceptionOfCommandThatFailedEarlier() throws Exception {
+        testSubject.setRollbackConfiguration(new RollbackOnUncheckedExceptionConfiguration());
+        BatchCommandHandler handler = new BatchCommandHandler();
+        testSubject.subscribe(String.class, handler);
+
+        List<FutureCallback<Object>> callbacks = dispatchBatch(CommandBatch.FailurePolicy.ROLLBACK_BATCH,
+                                                               "checked", "fail", "three");
+
+        assertEquals(Arrays.asList("checked", "fail"), handler.handled);
+        assertEquals("checked", failureOf(callbacks.get(0)).getMessage());
+        assertEquals("fail", failureOf(callbacks.get(1)).getMessage());
+        assertTrue(failureOf(callbacks.get(2)) instanceof CommandExecutionException);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    @Test
+    public void testDispatchBatch_CallbackExceptionsDoNotAffectOtherCommands() throws Exception {
+        BatchCommandHandler handler = new BatchCommandHandler();
+        testSubject.subscribe(String.class, handler);
+        CommandCallback<Object> throwingCallback = mock(CommandCallback.class);
+        doThrow(new RuntimeException("Mock")).when(throwingCallback).onSuccess(any());
+        doThrow(new RuntimeException("Mock")).when(throwingCallback).onFailure(isA(Throwable.class));
+        FutureCallback<Object> lastCallback = new FutureCallback<Object>();
+
+        CommandBatch batch = new CommandBatch(CommandBatch.FailurePolicy.SPLIT_AND_RETRY)
+                .add(asCommandMessage("one"), throwingCallback)
+                .add(asCommandMessage("fail"), throwingCallback)
+                .add(asCommandMessage("three"), lastCallback);
+        testSubject.dispatchBatch(batch);
+
+        verify(throwingCallback).onSuccess("one");
+        verify(throwingCallback).onFailure(isA(RuntimeException.class));
+        assertEquals("three", lastCallback.get());
+        assertEquals(Arrays.asList("one", "fail", "one", "fail", "three"), handler.handled);
+    }
+
+    @Test
+    public void testDispatchBatch_NoHandlerForOneOfTheCommands() {
+        BatchCommandHandler handler = new BatchCommandHandler();
+        testSubject.subscribe(String.class, handler);
+
+        CommandBatch batch = new CommandBatch().add(asCommandMessage("one"))
+                                               .add(asCommandMessage(1));
+        try {
+            testSubject.dispatchBatch(batch);
+            fail("Expected exception");
+        } catch (NoHandlerForCommandException e) {
+            // expected
+        }
+        assertTrue(handler.handled.isEmpty());
+    }
+
+    private List<FutureCallback<Object>> dispatchBatch(CommandBatch.FailurePolicy failurePolicy, String... payloads) {
+        CommandBatch batch = new CommandBatch(failurePolicy);
+        List<FutureCallback<Object>> callbacks = new ArrayList<FutureCallback<Object>>();
+        for (String payload : payloads) {
+            FutureCallback<Object> callback = new FutureCallback<Object>();
+            batch.add(asCommandMessage(payload), callback);
+            callbacks.add(callback);
+        }
+        testSubject.dispatchBatch(batch);
+        for (FutureCallback<Object> callback : callbacks) {
+            assertTrue(callback.isDone());
+        }
+        return callbacks;
+    }
+
+    private Throwable failureOf(FutureCallback<Object> callback) throws InterruptedException {
+        try {
+            callback.get();
+            fail("Expected command to fail");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static class BatchCommandHandler implements CommandHandler<String> {
+
+        private final List<String> handled = new ArrayList<String>();
+        private final List<UnitOfWork> unitsOfWork = new ArrayList<UnitOfWork>();
+
+        @Override
+        public Object handle(CommandMessage<String> command, UnitOfWork unitOfWork) throws Throwable {
+            String payload = command.getPayload();
+            handled.add(payload);
+            if (!unitsOfWork.contains(unitOfWork)) {
+                unitsOfWork.add(unitOfWork);
+            }
+            if ("fail".equals(payload)) {
+                throw new RuntimeException(payload);
+            } else if ("checked".equals(payload)) {
+                throw new Exception(payload);
+            }
+            return payload;
+        }
+    }
+
     private static class MyStringCommandHandler implements CommandHandler<String> {
 
         @Override
@@ -149,6 +149,24 @@ public class AnnotationCommandTargetResolverTest {
         testSubject.resolveTarget(asCommandMessage(new FieldAnnotatedCommand(aggregateIdentifier, version)));
     }
 
+    @Test
+    public void testResolveTarget_RepeatedlyForSameCommandType() {
+        for (int i = 0; i < 3; i++) {
+            final UUID aggregateIdentifier = UUID.randomUUID();
+            VersionedAggregateIdentifier actual = testSubject.resolveTarget(
+                    asCommandMessage(new FieldAnnotatedCommand(aggregateIdentifier, i)));
+            assertEquals(aggregateIdentifier, actual.getIdentifier());
+            assertEquals((Long) (long) i, actual.getVersion());
+
+            try {
+                testSubject.resolveTarget(asCommandMessage("That won't work"));
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
     private static class FieldAnnotatedCommand {
 
         @TargetAggregateIdentifier
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.axonframework.common;
+
+import org.junit.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Allard Buijze
+ * @since 2.0
+ */
+public class ClassCacheTest {
+
+    private ClassCache<String> testSubject;
+
+    @Before
+    public void setUp() {
+        testSubject = new ClassCache<String>();
+    }
+
+    @Test
+    public void testValueCachedPerClass() {
+        assertNull(testSubject.get(CachedType.class));
+        assertNull(testSubject.putIfAbsent(CachedType.class, "first"));
+        assertEquals("first", testSubject.putIfAbsent(CachedType.class, "second"));
+
+        assertEquals("first", testSubject.get(CachedType.class));
+        assertNull(testSubject.get(String.class));
+    }
+
+    @Test
+    public void testClassWithSameNameFromOtherClassLoaderIsNotConfused() throws Exception {
+        Class<?> otherType = new IsolatingClassLoader().loadClass(CachedType.class.getName());
+        assertNotSame(CachedType.class, otherType);
+
+        testSubject.putIfAbsent(CachedType.class, "ours");
+
+        assertNull(testSubject.get(otherType));
+        assertNull(testSubject.putIfAbsent(otherType, "theirs"));
+        assertEquals("theirs", testSubject.get(otherType));
+        assertNull(testSubject.get(CachedType.class));
+    }
+
+    @Test
+    public void testCacheDoesNotPreventClassFromBeingUnloaded() throws Exception {
+        IsolatingClassLoader classLoader = new IsolatingClassLoader();
+        Class<?> otherType = classLoader.loadClass(CachedType.class.getName());
+        testSubject.putIfAbsent(otherType, "value");
+        WeakReference<ClassLoader> classLoaderReference = new WeakReference<ClassLoader>(classLoader);
+        classLoader = null;
+        otherType = null;
+
+        for (int t = 0; t < 20 && classLoaderReference.get() != null; t++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertNull("The class loader should have been garbage collected", classLoaderReference.get());
+        assertNull(testSubject.putIfAbsent(CachedType.class, "value"));
+    }
+
+    public static class CachedType {
+
+    }
+
+    private static class IsolatingClassLoader extends ClassLoader {
+
+        private IsolatingClassLoader() {
+            super(ClassCacheTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!CachedType.class.getName().equals(name)) {
+                return super.loadClass(name, resolve);
+            }
+            byte[] bytes = readClassFile(name);
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        private byte[] readClassFile(String name) throws ClassNotFoundException {
+            InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                in.close();
+                return out.toByteArray();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+}
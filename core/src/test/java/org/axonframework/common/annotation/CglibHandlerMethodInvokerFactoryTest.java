@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.common.annotation;
+
+import org.junit.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class CglibHandlerMethodInvokerFactoryTest {
+
+    private CglibHandlerMethodInvokerFactory testSubject;
+    private StubHandler target;
+
+    @Before
+    public void setUp() {
+        testSubject = new CglibHandlerMethodInvokerFactory();
+        target = new StubHandler();
+    }
+
+    @Test
+    public void testInvokeSingleParameterMethod() throws Exception {
+        HandlerMethodInvoker invoker = testSubject.createInvoker(method("handle", String.class));
+
+        assertTrue(invoker.getClass().getName().contains("$$HandlerInvokerByAxon$$"));
+        assertNull(invoker.invokeWithParameter(target, "first"));
+        assertNull(invoker.invoke(target, new Object[]{"second"}));
+        assertEquals("second", target.lastValue);
+        assertEquals(2, target.invocationCount);
+    }
+
+    @Test
+    public void testInvokeMethodWithPrimitiveParametersAndReturnValue() throws Exception {
+        HandlerMethodInvoker invoker = testSubject.createInvoker(method("add", Integer.class, int.class, long.class));
+
+        assertEquals(6L, invoker.invoke(target, new Object[]{1, 2, 3L}));
+    }
+
+    @Test
+    public void testInvokeWithParameter_MethodDeclaresMultipleParameters() throws Exception {
+        HandlerMethodInvoker invoker = testSubject.createInvoker(method("add", Integer.class, int.class, long.class));
+
+        try {
+            invoker.invokeWithParameter(target, 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvokeMethodDeclaredOnSuperclass() throws Exception {
+        HandlerMethodInvoker invoker = testSubject.createInvoker(method("inherited", String.class));
+
+        assertEquals("inherited:value", invoker.invokeWithParameter(target, "value"));
+    }
+
+    @Test
+    public void testExceptionsAreWrappedInInvocationTargetException() throws Exception {
+        HandlerMethodInvoker invoker = testSubject.createInvoker(method("fail", Exception.class));
+
+        Exception[] exceptions = {new RuntimeException("runtime"), new Exception("checked")};
+        for (Exception exception : exceptions) {
+            try {
+                invoker.invokeWithParameter(target, exception);
+                fail("Expected InvocationTargetException");
+            } catch (InvocationTargetException e) {
+                assertSame(exception, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void testNonPublicMethodIsInvokedUsingReflection() throws Exception {
+        Method method = method("hidden", String.class);
+        method.setAccessible(true);
+        HandlerMethodInvoker invoker = testSubject.createInvoker(method);
+
+        assertFalse(invoker.getClass().getName().contains("$$HandlerInvokerByAxon$$"));
+        assertEquals("hidden:value", invoker.invokeWithParameter(target, "value"));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testInvokeWithWrongParameterType() throws Exception {
+        testSubject.createInvoker(method("handle", String.class)).invokeWithParameter(target, 1);
+    }
+
+    private Method method(String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        Class<?> type = StubHandler.class;
+        while (type != null) {
+            try {
+                return type.getDeclaredMethod(name, parameterTypes);
+            } catch (NoSuchMethodException e) {
+                type = type.getSuperclass();
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    public static class StubSuperclass {
+
+        public String inherited(String value) {
+            return "inherited:" + value;
+        }
+    }
+
+    public static class StubHandler extends StubSuperclass {
+
+        private int invocationCount;
+        private String lastValue;
+
+        public void handle(String value) {
+            invocationCount++;
+            lastValue = value;
+        }
+
+        public long add(Integer first, int second, long third) {
+            return first + second + third;
+        }
+
+        public void fail(Exception exception) throws Exception {
+            throw exception;
+        }
+
+        String hidden(String value) {
+            return "hidden:" + value;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.common.annotation;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.EventMessage;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.GenericEventMessage;
+import org.axonframework.domain.Message;
+import org.axonframework.domain.StubDomainEvent;
+import org.axonframework.eventhandling.annotation.EventHandler;
+import org.axonframework.saga.annotation.SagaEventHandler;
+import org.junit.*;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class MessageHandlerInvokerTest {
+
+    @Test
+    public void testHandlersAreSharedBetweenInstancesOfSameType() {
+        MessageHandlerInvoker first = new MessageHandlerInvoker(new TargetHandler(), EventHandler.class);
+        MessageHandlerInvoker second = new MessageHandlerInvoker(new TargetHandler(), EventHandler.class);
+
+        List<MethodMessageHandler> firstHandlers = first.getHandlers();
+        List<MethodMessageHandler> secondHandlers = second.getHandlers();
+        assertEquals(2, firstHandlers.size());
+        assertEquals(firstHandlers.size(), secondHandlers.size());
+        for (int i = 0; i < firstHandlers.size(); i++) {
+            assertSame(firstHandlers.get(i), secondHandlers.get(i));
+        }
+    }
+
+    @Test
+    public void testHandlersAreInspectedPerAnnotationType() {
+        MessageHandlerInvoker eventHandlers = new MessageHandlerInvoker(new TargetHandler(), EventHandler.class);
+        MessageHandlerInvoker sagaHandlers = new MessageHandlerInvoker(new TargetHandler(), SagaEventHandler.class);
+
+        assertEquals(2, eventHandlers.getHandlers().size());
+        assertEquals(0, sagaHandlers.getHandlers().size());
+    }
+
+    @Test
+    public void testSharedHandlersAreInvokedOnOwnTarget() throws Exception {
+        TargetHandler firstTarget = new TargetHandler();
+        TargetHandler secondTarget = new TargetHandler();
+        MessageHandlerInvoker first = new MessageHandlerInvoker(firstTarget, EventHandler.class);
+        MessageHandlerInvoker second = new MessageHandlerInvoker(secondTarget, EventHandler.class);
+
+        first.invokeHandlerMethod(new GenericEventMessage<StubDomainEvent>(new StubDomainEvent()));
+        second.invokeHandlerMethod(new GenericEventMessage<String>("string"));
+        second.invokeHandlerMethod(new GenericEventMessage<String>("string"));
+
+        assertEquals(1, firstTarget.stubEventCount);
+        assertEquals(0, firstTarget.stringCount);
+        assertEquals(0, secondTarget.stubEventCount);
+        assertEquals(2, secondTarget.stringCount);
+    }
+
+    @Test
+    public void testInvalidTypeIsRejectedOnEveryInspection() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                new MessageHandlerInvoker(new DuplicateHandler(), EventHandler.class);
+                fail("Expected UnsupportedHandlerException");
+            } catch (UnsupportedHandlerException e) {
+                assertTrue(e.getMessage().contains("DuplicateHandler"));
+            }
+        }
+    }
+
+    @Test
+    public void testMostSpecificHandlerIsFoundForPayloadType() {
+        HierarchyHandler target = new HierarchyHandler();
+        MessageHandlerInvoker invoker = new MessageHandlerInvoker(target, EventHandler.class);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("handleSpecific", invoker.findHandlerMethod(
+                    new GenericEventMessage<SpecificStubDomainEvent>(new SpecificStubDomainEvent())).getMethodName());
+            assertEquals("handleStub", invoker.findHandlerMethod(
+                    new GenericEventMessage<StubDomainEvent>(new StubDomainEvent())).getMethodName());
+            assertEquals("handleAnyMessage", invoker.findHandlerMethod(
+                    new GenericEventMessage<String>("string")).getMethodName());
+        }
+    }
+
+    @Test
+    public void testHandlersAreMatchedAgainstMessageForSamePayloadType() {
+        MessageHandlerInvoker invoker = new MessageHandlerInvoker(new MessageTypeHandler(), EventHandler.class);
+
+        SpecificStubDomainEvent payload = new SpecificStubDomainEvent();
+        assertEquals("handleDomainEvent", invoker.findHandlerMethod(
+                new GenericDomainEventMessage<SpecificStubDomainEvent>("id", 0, payload)).getMethodName());
+        assertEquals("handleOtherEvent", invoker.findHandlerMethod(
+                new GenericEventMessage<SpecificStubDomainEvent>(payload)).getMethodName());
+        assertEquals("handleMetaData", invoker.findHandlerMethod(
+                new GenericEventMessage<Long>(1L, Collections.<String, Object>singletonMap("key", "value")))
+                                              .getMethodName());
+    }
+
+    @Test
+    public void testNoHandlerFoundForUnknownPayloadType() {
+        MessageHandlerInvoker invoker = new MessageHandlerInvoker(new TargetHandler(), EventHandler.class);
+
+        for (int i = 0; i < 2; i++) {
+            assertNull(invoker.findHandlerMethod(new GenericEventMessage<Long>(1L)));
+        }
+        assertFalse(invoker.hasHandlerFor(Long.class));
+        assertTrue(invoker.hasHandlerFor(String.class));
+        assertTrue(invoker.hasHandlerFor(SpecificStubDomainEvent.class));
+    }
+
+    @Test
+    public void testHasHandlerFor_HandlerWithMetaDataAsFirstParameter() {
+        MessageHandlerInvoker invoker = new MessageHandlerInvoker(new MessageTypeHandler(), EventHandler.class);
+
+        assertTrue(invoker.hasHandlerFor(Long.class));
+    }
+
+    private static class TargetHandler {
+
+        private int stubEventCount;
+        private int stringCount;
+
+        @EventHandler
+        public void handle(StubDomainEvent event) {
+            stubEventCount++;
+        }
+
+        @EventHandler
+        public void handle(String event) {
+            stringCount++;
+        }
+    }
+
+    private static class HierarchyHandler {
+
+        @EventHandler
+        public void handleStub(StubDomainEvent event) {
+        }
+
+        @EventHandler
+        public void handleSpecific(SpecificStubDomainEvent event) {
+        }
+
+        @EventHandler
+        public void handleAnyMessage(EventMessage event) {
+        }
+    }
+
+    private static class MessageTypeHandler {
+
+        @EventHandler
+        public void handleDomainEvent(SpecificStubDomainEvent event, DomainEventMessage message) {
+        }
+
+        @EventHandler
+        public void handleOtherEvent(StubDomainEvent event, Message message) {
+        }
+
+        @EventHandler
+        public void handleMetaData(@MetaData(key = "key") Object value) {
+        }
+    }
+
+    private static class SpecificStubDomainEvent extends StubDomainEvent {
+
+        private static final long serialVersionUID = 5429853422958924744L;
+    }
+
+    private static class DuplicateHandler {
+
+        @EventHandler
+        public void handle(String event) {
+        }
+
+        @EventHandler
+        public void handleAgain(String event) {
+        }
+    }
+}
@@ -34,6 +34,7 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 /**
  * @author Allard Buijze
@@ -56,6 +57,19 @@ public class AsynchronousEventHandlerWrapperTest {
                                                           new SequentialPerAggregatePolicy(), executorService);
     }
 
+    @Test
+    public void testHandlesPayloadTypesOfWrappedListener() {
+        assertTrue(testSubject.handlesPayloadType(String.class));
+
+        EventListener typedListener = mock(EventListener.class, withSettings().extraInterfaces(PayloadTypeAware.class));
+        when(((PayloadTypeAware) typedListener).handlesPayloadType(String.class)).thenReturn(true);
+        AsynchronousEventHandlerWrapper wrapper = new AsynchronousEventHandlerWrapper(
+                typedListener, new SequentialPerAggregatePolicy(), executorService);
+
+        assertTrue(wrapper.handlesPayloadType(String.class));
+        assertFalse(wrapper.handlesPayloadType(Integer.class));
+    }
+
     @Test
     public void testEventsAreExecutedInOrder() throws InterruptedException {
         Object[] groupIds = new Object[100];
@@ -67,6 +67,30 @@ public class ClusteringEventBusTest {
         verify(mockEventListener, never()).handle(Matchers.<EventMessage>any());
     }
 
+    @Test
+    public void testEventIsNotPublishedToClustersNotHandlingItsPayloadType() {
+        Cluster interestedCluster = spy(new SimpleCluster());
+        Cluster uninterestedCluster = spy(new SimpleCluster());
+        EventListener interestedListener = mock(EventListener.class, withSettings().extraInterfaces(
+                PayloadTypeAware.class));
+        when(((PayloadTypeAware) interestedListener).handlesPayloadType(String.class)).thenReturn(true);
+        EventListener uninterestedListener = mock(EventListener.class, withSettings().extraInterfaces(
+                PayloadTypeAware.class));
+        ClusterSelector clusterSelector = mock(ClusterSelector.class);
+        when(clusterSelector.selectCluster(interestedListener)).thenReturn(interestedCluster);
+        when(clusterSelector.selectCluster(uninterestedListener)).thenReturn(uninterestedCluster);
+        eventBus = new ClusteringEventBus(clusterSelector);
+        eventBus.subscribe(interestedListener);
+        eventBus.subscribe(uninterestedListener);
+
+        EventMessage event = new GenericEventMessage<String>("payload");
+        eventBus.publish(event);
+
+        verify(interestedCluster).publish(event);
+        verify(uninterestedCluster, never()).publish(Matchers.<EventMessage>any());
+        verify(interestedListener).handle(event);
+    }
+
     private class RecordingClusteredEventListener implements EventListener {
 
         private final List<EventMessage> receivedEvents = new ArrayList<EventMessage>();
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventhandling;
+
+import org.junit.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class EventListenerIndexTest {
+
+    private EventListenerIndex testSubject;
+    private EventListener stringListener;
+    private EventListener plainListener;
+
+    @Before
+    public void setUp() {
+        testSubject = new EventListenerIndex();
+        stringListener = mock(EventListener.class, withSettings().extraInterfaces(PayloadTypeAware.class));
+        when(((PayloadTypeAware) stringListener).handlesPayloadType(String.class)).thenReturn(true);
+        plainListener = mock(EventListener.class);
+    }
+
+    @Test
+    public void testListenersForPayloadType() {
+        assertTrue(testSubject.add(stringListener));
+        assertTrue(testSubject.add(plainListener));
+        assertFalse(testSubject.add(plainListener));
+
+        assertEquals(Arrays.asList(stringListener, plainListener), testSubject.getListenersFor(String.class));
+        assertEquals(Collections.singletonList(plainListener), testSubject.getListenersFor(Integer.class));
+        assertEquals(Arrays.asList(stringListener, plainListener), testSubject.getListenersFor(null));
+        assertEquals(2, testSubject.getAll().size());
+    }
+
+    @Test
+    public void testPayloadTypeIsResolvedOnlyOnce() {
+        testSubject.add(stringListener);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Collections.singletonList(stringListener), testSubject.getListenersFor(String.class));
+            assertTrue(testSubject.getListenersFor(Integer.class).isEmpty());
+        }
+
+        verify((PayloadTypeAware) stringListener, times(1)).handlesPayloadType(String.class);
+        verify((PayloadTypeAware) stringListener, times(1)).handlesPayloadType(Integer.class);
+    }
+
+    @Test
+    public void testResolutionsAreDiscardedWhenListenersChange() {
+        testSubject.add(stringListener);
+        assertTrue(testSubject.getListenersFor(Integer.class).isEmpty());
+
+        testSubject.add(plainListener);
+        assertEquals(Collections.singletonList(plainListener), testSubject.getListenersFor(Integer.class));
+
+        assertTrue(testSubject.remove(plainListener));
+        assertFalse(testSubject.remove(plainListener));
+        assertTrue(testSubject.getListenersFor(Integer.class).isEmpty());
+        verify((PayloadTypeAware) stringListener, times(3)).handlesPayloadType(Integer.class);
+    }
+}
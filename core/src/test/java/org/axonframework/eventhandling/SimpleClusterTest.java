@@ -56,6 +56,38 @@ public class SimpleClusterTest {
         assertNotNull(testSubject.getMetaData());
     }
 
+    @Test
+    public void testHandlesPayloadType() {
+        assertFalse(testSubject.handlesPayloadType(String.class));
+
+        EventListener typedListener = mock(EventListener.class, withSettings().extraInterfaces(PayloadTypeAware.class));
+        when(((PayloadTypeAware) typedListener).handlesPayloadType(String.class)).thenReturn(true);
+        testSubject.subscribe(typedListener);
+        assertTrue(testSubject.handlesPayloadType(String.class));
+        assertFalse(testSubject.handlesPayloadType(Integer.class));
+
+        testSubject.subscribe(eventListener);
+        assertTrue(testSubject.handlesPayloadType(Integer.class));
+    }
+
+    @Test
+    public void testPublishEvent_SkipsMembersNotHandlingPayloadType() {
+        EventListener typedListener = mock(EventListener.class, withSettings().extraInterfaces(PayloadTypeAware.class));
+        when(((PayloadTypeAware) typedListener).handlesPayloadType(String.class)).thenReturn(true);
+        testSubject.subscribe(typedListener);
+        testSubject.subscribe(eventListener);
+
+        EventMessage stringEvent = new GenericEventMessage<String>("payload");
+        EventMessage integerEvent = new GenericEventMessage<Integer>(1);
+        testSubject.publish(stringEvent);
+        testSubject.publish(integerEvent);
+
+        verify(typedListener).handle(stringEvent);
+        verify(typedListener, never()).handle(integerEvent);
+        verify(eventListener).handle(stringEvent);
+        verify(eventListener).handle(integerEvent);
+    }
+
     @Test
     public void testPublishEvent() {
         testSubject.subscribe(eventListener);
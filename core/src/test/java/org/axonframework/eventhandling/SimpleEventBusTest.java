@@ -18,8 +18,16 @@ package org.axonframework.eventhandling;
 
 import org.axonframework.domain.EventMessage;
 import org.axonframework.domain.GenericEventMessage;
+import org.axonframework.domain.MetaData;
+import org.axonframework.eventstore.LazyDeserializingObject;
+import org.axonframework.eventstore.SerializedDomainEventMessage;
+import org.axonframework.serializer.Serializer;
+import org.axonframework.serializer.XStreamSerializer;
+import org.joda.time.DateTime;
 import org.junit.*;
 
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.*;
 
@@ -64,6 +72,45 @@ public class SimpleEventBusTest {
         verify(listener3, times(2)).handle(isA(EventMessage.class));
     }
 
+    @Test
+    public void testEventIsOnlyDispatchedToListenersHandlingItsPayloadType() {
+        EventListener interestedListener = mock(EventListener.class, withSettings().extraInterfaces(
+                PayloadTypeAware.class));
+        when(((PayloadTypeAware) interestedListener).handlesPayloadType(String.class)).thenReturn(true);
+        EventListener uninterestedListener = mock(EventListener.class, withSettings().extraInterfaces(
+                PayloadTypeAware.class));
+        testSubject.subscribe(interestedListener);
+        testSubject.subscribe(uninterestedListener);
+        testSubject.subscribe(listener1);
+
+        EventMessage event = new GenericEventMessage<String>("payload");
+        testSubject.publish(event);
+
+        verify(interestedListener).handle(event);
+        verify(uninterestedListener, never()).handle(any(EventMessage.class));
+        verify(listener1).handle(event);
+    }
+
+    @Test
+    public void testUnhandledSerializedEventIsNotDeserialized() {
+        Serializer serializer = new XStreamSerializer();
+        LazyDeserializingObject<Object> payload = new LazyDeserializingObject<Object>(
+                serializer.serialize("payload"), serializer);
+        LazyDeserializingObject<MetaData> metaData = new LazyDeserializingObject<MetaData>(
+                serializer.serialize(MetaData.emptyInstance()), serializer);
+        EventListener uninterestedListener = mock(EventListener.class, withSettings().extraInterfaces(
+                PayloadTypeAware.class));
+        testSubject.subscribe(uninterestedListener);
+
+        testSubject.publish(new SerializedDomainEventMessage<Object>("eventId", "aggregateId", 0, new DateTime(),
+                                                                     payload, metaData));
+
+        verify((PayloadTypeAware) uninterestedListener).handlesPayloadType(String.class);
+        verify(uninterestedListener, never()).handle(any(EventMessage.class));
+        assertFalse(payload.isDeserialized());
+        assertFalse(metaData.isDeserialized());
+    }
+
     private EventMessage newEvent() {
         return new GenericEventMessage<Object>(new Object());
     }
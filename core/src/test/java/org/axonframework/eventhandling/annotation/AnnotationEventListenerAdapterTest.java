@@ -17,6 +17,7 @@
 package org.axonframework.eventhandling.annotation;
 
 import org.axonframework.common.DirectExecutor;
+import org.axonframework.common.annotation.MetaData;
 import org.axonframework.domain.EventMessage;
 import org.axonframework.domain.GenericEventMessage;
 import org.axonframework.domain.StubDomainEvent;
@@ -47,6 +48,32 @@ public class AnnotationEventListenerAdapterTest {
         verify(handler).handleEvent(event);
     }
 
+    @Test
+    public void testHandlesPayloadType() {
+        AnnotationEventListenerAdapter adapter = new AnnotationEventListenerAdapter(new TypedEventHandler(), null);
+
+        assertTrue(adapter.handlesPayloadType(StubDomainEvent.class));
+        assertTrue(adapter.handlesPayloadType(SpecificStubDomainEvent.class));
+        assertFalse(adapter.handlesPayloadType(String.class));
+        assertFalse(adapter.handlesPayloadType(Object.class));
+    }
+
+    @Test
+    public void testHandlesAllPayloadTypesWhenHandlerAcceptsMessages() {
+        AnnotationEventListenerAdapter adapter = new AnnotationEventListenerAdapter(new AnnotatedEventHandler(), null);
+
+        assertTrue(adapter.handlesPayloadType(String.class));
+        assertTrue(adapter.handlesPayloadType(Object.class));
+    }
+
+    @Test
+    public void testHandlesAllPayloadTypesWhenHandlerOnlyResolvesMetaData() {
+        AnnotationEventListenerAdapter adapter = new AnnotationEventListenerAdapter(new MetaDataEventHandler(), null);
+
+        assertTrue(adapter.handlesPayloadType(StubDomainEvent.class));
+        assertTrue(adapter.handlesPayloadType(Long.class));
+    }
+
     @Test
     public void testAdaptAsyncEventHandler_NoExecutor() {
         AsyncAnnotatedEventHandler handler = mock(AsyncAnnotatedEventHandler.class);
@@ -174,6 +201,18 @@ public class AnnotationEventListenerAdapterTest {
         }
     }
 
+    private static class TypedEventHandler {
+
+        @EventHandler
+        public void handleEvent(StubDomainEvent event) {
+        }
+    }
+
+    private static class SpecificStubDomainEvent extends StubDomainEvent {
+
+        private static final long serialVersionUID = -2935212436406484478L;
+    }
+
     private static class AnnotatedEventHandler {
 
         @EventHandler
@@ -181,6 +220,13 @@ public class AnnotationEventListenerAdapterTest {
         }
     }
 
+    private static class MetaDataEventHandler {
+
+        @EventHandler
+        public void handleEvent(@MetaData(key = "key") String value) {
+        }
+    }
+
     @AsynchronousEventListener
     private static class AsyncAnnotatedEventHandler {
 
@@ -24,6 +24,8 @@ import org.axonframework.domain.StubDomainEvent;
 import org.junit.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -90,6 +92,45 @@ public class AbstractEventSourcedAggregateRootTest {
         assertFalse(testSubject.getUncommittedEvents().hasNext());
     }
 
+    @Test
+    public void testEntityReferencedTwiceHandlesEventOnce() {
+        testSubject = new CompositeAggregateRoot(identifier);
+        testSubject.apply(new StubDomainEvent());
+        testSubject.getSimpleEntityList().add(testSubject.getSimpleEntity());
+
+        testSubject.apply(new StubDomainEvent());
+
+        assertEquals(2, testSubject.getSimpleEntity().getInvocationCount());
+    }
+
+    @Test
+    public void testChildEntitiesOfAggregateWithoutEntities() {
+        LeafAggregateRoot leaf = new LeafAggregateRoot();
+
+        assertTrue(leaf.getChildEntities().isEmpty());
+        Collection<AbstractEventSourcedEntity> children = leaf.getChildEntities();
+        children.add(new SimpleEntity());
+        assertTrue("Expected a new collection on each invocation", leaf.getChildEntities().isEmpty());
+
+        leaf.entities = new ArrayList<SimpleEntity>();
+        assertTrue(leaf.getChildEntities().isEmpty());
+
+        leaf.entities.add(new SimpleEntity());
+        assertEquals(1, leaf.getChildEntities().size());
+    }
+
+    @Test
+    public void testOverriddenGetChildEntitiesIsUsedToPropagateEvents() {
+        SimpleEntity entity = new SimpleEntity();
+        ExplicitChildrenAggregateRoot aggregate = new ExplicitChildrenAggregateRoot(entity);
+
+        aggregate.apply(new StubDomainEvent());
+
+        assertEquals(1, entity.getInvocationCount());
+        assertTrue(ChildEntityFields.of(ExplicitChildrenAggregateRoot.class).isGetChildEntitiesOverridden());
+        assertFalse(ChildEntityFields.of(LeafAggregateRoot.class).isGetChildEntitiesOverridden());
+    }
+
     /**
      * @author Allard Buijze
      */
@@ -140,6 +181,44 @@ public class AbstractEventSourcedAggregateRootTest {
 
     }
 
+    private static class LeafAggregateRoot extends AbstractEventSourcedAggregateRoot {
+
+        private List<SimpleEntity> entities;
+
+        @Override
+        protected void handle(DomainEventMessage event) {
+        }
+
+        @Override
+        public Object getIdentifier() {
+            return "leaf";
+        }
+    }
+
+    private static class ExplicitChildrenAggregateRoot extends AbstractEventSourcedAggregateRoot {
+
+        // not found by the default lookup, as the field type is not an entity, collection or map
+        private final Object entity;
+
+        private ExplicitChildrenAggregateRoot(SimpleEntity entity) {
+            this.entity = entity;
+        }
+
+        @Override
+        protected Collection<AbstractEventSourcedEntity> getChildEntities() {
+            return Collections.singleton((AbstractEventSourcedEntity) entity);
+        }
+
+        @Override
+        protected void handle(DomainEventMessage event) {
+        }
+
+        @Override
+        public Object getIdentifier() {
+            return "explicit";
+        }
+    }
+
     /**
      * @author Allard Buijze
      */
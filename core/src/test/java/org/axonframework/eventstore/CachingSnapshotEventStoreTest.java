@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.domain.StubDomainEvent;
+import org.axonframework.repository.ConcurrencyException;
+import org.axonframework.unitofwork.DefaultUnitOfWork;
+import org.axonframework.unitofwork.UnitOfWork;
+import org.junit.*;
+import org.mockito.invocation.*;
+import org.mockito.stubbing.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class CachingSnapshotEventStoreTest {
+
+    private SnapshotEventStore mockEventStore;
+    private CachingSnapshotEventStore testSubject;
+    private Object aggregateIdentifier;
+    private List<DomainEventMessage> storedEvents;
+
+    @Before
+    public void setUp() {
+        mockEventStore = mock(SnapshotEventStore.class);
+        testSubject = new CachingSnapshotEventStore(mockEventStore);
+        aggregateIdentifier = UUID.randomUUID();
+        storedEvents = createEvents(0, 3);
+        when(mockEventStore.readEvents("test", aggregateIdentifier)).thenAnswer(new Answer<DomainEventStream>() {
+            @Override
+            public DomainEventStream answer(InvocationOnMock invocation) throws Throwable {
+                return new SimpleDomainEventStream(storedEvents);
+            }
+        });
+    }
+
+    @Test
+    public void testEventsReadFromCacheAfterFirstRead() {
+        assertSequence(readAll(testSubject.readEvents("test", aggregateIdentifier)), 0, 3);
+        List<DomainEventMessage> cachedEvents = readAll(testSubject.readEvents("test", aggregateIdentifier));
+
+        assertSequence(cachedEvents, 0, 3);
+        assertEquals(storedEvents.get(0).getIdentifier(), cachedEvents.get(0).getIdentifier());
+        assertEquals(StubDomainEvent.class, cachedEvents.get(0).getPayload().getClass());
+        assertNotSame(storedEvents.get(0).getPayload(), cachedEvents.get(0).getPayload());
+        verify(mockEventStore, times(1)).readEvents("test", aggregateIdentifier);
+        assertTrue(testSubject.getCacheSize() > 0);
+    }
+
+    @Test
+    public void testPartiallyReadStreamIsNotCached() {
+        testSubject.readEvents("test", aggregateIdentifier).next();
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+
+        verify(mockEventStore, times(2)).readEvents("test", aggregateIdentifier);
+    }
+
+    @Test
+    public void testAppendedEventsAddedToCachedStream() {
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createEvents(3, 2)));
+
+        assertSequence(readAll(testSubject.readEvents("test", aggregateIdentifier)), 0, 5);
+        verify(mockEventStore).appendEvents(eq("test"), isA(DomainEventStream.class));
+        verify(mockEventStore, times(1)).readEvents("test", aggregateIdentifier);
+    }
+
+    @Test
+    public void testCachedStreamRemovedOnGapInSequenceNumbers() {
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createEvents(4, 1)));
+
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        verify(mockEventStore, times(2)).readEvents("test", aggregateIdentifier);
+    }
+
+    @Test
+    public void testCachedStreamRemovedWhenAppendFails() {
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        doThrow(new ConcurrencyException("Mock")).when(mockEventStore).appendEvents(eq("test"),
+                                                                                  isA(DomainEventStream.class));
+        try {
+            testSubject.appendEvents("test", new SimpleDomainEventStream(createEvents(3, 1)));
+            fail("Expected exception to be propagated");
+        } catch (ConcurrencyException e) {
+            // expected
+        }
+
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        verify(mockEventStore, times(2)).readEvents("test", aggregateIdentifier);
+    }
+
+    @Test
+    public void testCachedStreamRemovedWhenUnitOfWorkRolledBack() {
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        UnitOfWork unitOfWork = DefaultUnitOfWork.startAndGet();
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createEvents(3, 1)));
+        unitOfWork.rollback();
+
+        assertEquals(0, testSubject.getCacheSize());
+        assertSequence(readAll(testSubject.readEvents("test", aggregateIdentifier)), 0, 3);
+    }
+
+    @Test
+    public void testCachedStreamUpdatedAfterUnitOfWorkCommits() {
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        UnitOfWork unitOfWork = DefaultUnitOfWork.startAndGet();
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createEvents(3, 2)));
+
+        assertSequence(readAll(testSubject.readEvents("test", aggregateIdentifier)), 0, 3);
+        unitOfWork.commit();
+
+        assertSequence(readAll(testSubject.readEvents("test", aggregateIdentifier)), 0, 5);
+        verify(mockEventStore, times(1)).readEvents("test", aggregateIdentifier);
+    }
+
+    @Test
+    public void testSnapshotAppliedToCachedStreamAfterUnitOfWorkCommits() {
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        UnitOfWork unitOfWork = DefaultUnitOfWork.startAndGet();
+        testSubject.appendSnapshotEvent("test", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 1, new StubDomainEvent()));
+
+        assertSequence(readAll(testSubject.readEvents("test", aggregateIdentifier)), 0, 3);
+        unitOfWork.commit();
+
+        assertSequence(readAll(testSubject.readEvents("test", aggregateIdentifier)), 1, 2);
+        verify(mockEventStore, times(1)).readEvents("test", aggregateIdentifier);
+    }
+
+    @Test
+    public void testSnapshotReplacesSummarizedEvents() {
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        DomainEventMessage snapshot = new GenericDomainEventMessage<StubDomainEvent>(aggregateIdentifier, 1,
+                                                                                     new StubDomainEvent());
+        testSubject.appendSnapshotEvent("test", snapshot);
+
+        List<DomainEventMessage> events = readAll(testSubject.readEvents("test", aggregateIdentifier));
+        assertEquals(2, events.size());
+        assertEquals(snapshot.getIdentifier(), events.get(0).getIdentifier());
+        assertEquals(2L, events.get(1).getSequenceNumber());
+        verify(mockEventStore).appendSnapshotEvent("test", snapshot);
+        verify(mockEventStore, times(1)).readEvents("test", aggregateIdentifier);
+    }
+
+    @Test
+    public void testInvalidate() {
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        testSubject.invalidate("test", aggregateIdentifier);
+
+        assertEquals(0, testSubject.getCacheSize());
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        verify(mockEventStore, times(2)).readEvents("test", aggregateIdentifier);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedStreamsEvictedWhenCacheIsFull() {
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        long streamSize = testSubject.getCacheSize();
+        testSubject.setMaxCacheSize(streamSize);
+        Object otherIdentifier = UUID.randomUUID();
+        when(mockEventStore.readEvents("test", otherIdentifier)).thenReturn(new SimpleDomainEventStream(
+                new GenericDomainEventMessage<StubDomainEvent>(otherIdentifier, 0, new StubDomainEvent())));
+        readAll(testSubject.readEvents("test", otherIdentifier));
+
+        assertTrue(testSubject.getCacheSize() <= streamSize);
+        readAll(testSubject.readEvents("test", aggregateIdentifier));
+        verify(mockEventStore, times(2)).readEvents("test", aggregateIdentifier);
+    }
+
+    private void assertSequence(List<DomainEventMessage> events, long firstSequenceNumber, int count) {
+        assertEquals(count, events.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(firstSequenceNumber + i, events.get(i).getSequenceNumber());
+        }
+    }
+
+    private List<DomainEventMessage> readAll(DomainEventStream eventStream) {
+        List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
+        while (eventStream.hasNext()) {
+            events.add(eventStream.next());
+        }
+        return events;
+    }
+
+    private List<DomainEventMessage> createEvents(long firstSequenceNumber, int count) {
+        List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
+        for (int i = 0; i < count; i++) {
+            events.add(new GenericDomainEventMessage<StubDomainEvent>(aggregateIdentifier, firstSequenceNumber + i,
+                                                                      new StubDomainEvent()));
+        }
+        return events;
+    }
+}
@@ -20,15 +20,27 @@ import org.axonframework.domain.DomainEventMessage;
 import org.axonframework.domain.DomainEventStream;
 import org.axonframework.domain.GenericDomainEventMessage;
 import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.domain.StubAggregate;
 import org.axonframework.domain.StubDomainEvent;
+import org.axonframework.eventhandling.EventBus;
 import org.axonframework.eventstore.EventStoreException;
+import org.axonframework.serializer.JavaSerializer;
+import org.axonframework.serializer.SerializationAware;
+import org.axonframework.serializer.SerializationAwareDomainEventMessage;
 import org.axonframework.serializer.XStreamSerializer;
+import org.axonframework.serializer.binary.BinarySerializer;
+import org.axonframework.unitofwork.DefaultUnitOfWork;
+import org.axonframework.unitofwork.SaveAggregateCallback;
+import org.axonframework.unitofwork.UnitOfWork;
 import org.junit.*;
 import org.mockito.*;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -82,6 +94,24 @@ public class FileSystemEventStoreTest {
         assertEquals(event3.getIdentifier(), domainEvents.get(2).getIdentifier());
     }
 
+    @Test
+    public void testSaveStreamAndReadBackIn_BinarySerializer() {
+        eventStore = new FileSystemEventStore(new BinarySerializer());
+        eventStore.setBaseDir(new File("target/"));
+        GenericDomainEventMessage<MyStubDomainEvent> event1 = new GenericDomainEventMessage<MyStubDomainEvent>(
+                aggregateIdentifier, 0, new MyStubDomainEvent("first \n event"));
+        GenericDomainEventMessage<StubDomainEvent> event2 = new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 1, new StubDomainEvent());
+        eventStore.appendEvents("test", new SimpleDomainEventStream(event1, event2));
+
+        DomainEventStream eventStream = eventStore.readEvents("test", aggregateIdentifier);
+        DomainEventMessage actual1 = eventStream.next();
+        assertEquals(event1.getIdentifier(), actual1.getIdentifier());
+        assertEquals("first \n event", ((MyStubDomainEvent) actual1.getPayload()).getDescription());
+        assertEquals(event2.getIdentifier(), eventStream.next().getIdentifier());
+        assertFalse(eventStream.hasNext());
+    }
+
     @Test
     // Issue #25: XStreamFileSystemEventStore fails when event data contains newline character
     public void testSaveStreamAndReadBackIn_NewLineInEvent() {
@@ -201,6 +231,176 @@ public class FileSystemEventStoreTest {
         assertEquals(3, actualEvents.size());
     }
 
+    @Test
+    public void testAppendSnapshot_UsesIndex() {
+        eventStore.setIndexInterval(10);
+        AtomicInteger counter = new AtomicInteger(0);
+        writeEvents(counter, 35);
+        eventStore.appendSnapshotEvent("snapshotting", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 19, new StubDomainEvent()));
+        writeEvents(counter, 10);
+        eventStore.appendSnapshotEvent("snapshotting", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 42, new StubDomainEvent()));
+        writeEvents(counter, 3);
+
+        assertTrue(new File("target/snapshotting/" + aggregateIdentifier + ".index").exists());
+        List<DomainEventMessage<?>> actualEvents = readAll(eventStore.readEvents("snapshotting", aggregateIdentifier));
+        assertEquals(6, actualEvents.size());
+        for (int i = 0; i < actualEvents.size(); i++) {
+            assertEquals(42L + i, actualEvents.get(i).getSequenceNumber());
+        }
+    }
+
+    @Test
+    public void testAppendEventsRegisteredInUnitOfWork_StoredWithTypeOfWrappedMessage() throws IOException {
+        UnitOfWork uow = DefaultUnitOfWork.startAndGet();
+        StubAggregate aggregate = uow.registerAggregate(new StubAggregate(aggregateIdentifier), mock(EventBus.class),
+                                                        new SaveAggregateCallback<StubAggregate>() {
+                                                            @Override
+                                                            public void save(StubAggregate aggregate) {
+                                                                eventStore.appendEvents(
+                                                                        "test", aggregate.getUncommittedEvents());
+                                                            }
+                                                        });
+        aggregate.doSomething();
+        assertTrue(aggregate.getUncommittedEvents().next() instanceof SerializationAware);
+        uow.commit();
+
+        String storedEvent = readEventFile("test");
+        assertTrue("Expected the stored event to be a domain-event", storedEvent.contains("<domain-event>"));
+        assertFalse("The wrapper should not be stored", storedEvent.contains(SerializationAware.class.getName()));
+        assertEquals(aggregate.getIdentifier(),
+                     eventStore.readEvents("test", aggregateIdentifier).next().getAggregateIdentifier());
+    }
+
+    @Test
+    public void testAppendSerializationAwareEvents_JavaSerializer() throws IOException {
+        eventStore = new FileSystemEventStore(new JavaSerializer());
+        eventStore.setBaseDir(new File("target/"));
+        DomainEventMessage<StubDomainEvent> event = SerializationAwareDomainEventMessage.wrap(
+                new GenericDomainEventMessage<StubDomainEvent>(aggregateIdentifier, 0, new StubDomainEvent()));
+        eventStore.appendEvents("test", new SimpleDomainEventStream(event));
+
+        String storedEvent = readEventFile("test");
+        assertTrue("Expected the type of the wrapped message to be stored",
+                   storedEvent.contains(GenericDomainEventMessage.class.getName()));
+        assertFalse("The wrapper should not be stored", storedEvent.contains(SerializationAware.class.getName()));
+        assertEquals(event.getIdentifier(), eventStore.readEvents("test", aggregateIdentifier).next().getIdentifier());
+    }
+
+    @Test
+    public void testIndexingDisabledByDefault() {
+        AtomicInteger counter = new AtomicInteger(0);
+        writeEvents(counter, 250);
+        eventStore.appendSnapshotEvent("snapshotting", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 239, new StubDomainEvent()));
+
+        assertFalse(new File("target/snapshotting/" + aggregateIdentifier + ".index").exists());
+        List<DomainEventMessage<?>> actualEvents = readAll(eventStore.readEvents("snapshotting", aggregateIdentifier));
+        assertEquals(11, actualEvents.size());
+        assertEquals(239L, actualEvents.get(0).getSequenceNumber());
+    }
+
+    @Test
+    public void testAppendSnapshot_IndexingDisabledAfterIndexWasCreated() {
+        eventStore.setIndexInterval(10);
+        AtomicInteger counter = new AtomicInteger(0);
+        writeEvents(counter, 25);
+        eventStore.setIndexInterval(0);
+        writeEvents(counter, 10);
+        eventStore.appendSnapshotEvent("snapshotting", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 29, new StubDomainEvent()));
+        writeEvents(counter, 3);
+
+        List<DomainEventMessage<?>> actualEvents = readAll(eventStore.readEvents("snapshotting", aggregateIdentifier));
+        assertEquals(9, actualEvents.size());
+        assertEquals(29L, actualEvents.get(0).getSequenceNumber());
+
+        eventStore.setIndexInterval(10);
+        writeEvents(counter, 5);
+        eventStore.appendSnapshotEvent("snapshotting", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 40, new StubDomainEvent()));
+
+        actualEvents = readAll(eventStore.readEvents("snapshotting", aggregateIdentifier));
+        assertEquals(3, actualEvents.size());
+        assertEquals(40L, actualEvents.get(0).getSequenceNumber());
+    }
+
+    @Test
+    public void testAppendSnapshot_AggregateWithoutIndex() {
+        eventStore.setIndexInterval(10);
+        AtomicInteger counter = new AtomicInteger(0);
+        writeEvents(counter, 25);
+        assertTrue(new File("target/snapshotting/" + aggregateIdentifier + ".index").delete());
+        writeEvents(counter, 10);
+        eventStore.appendSnapshotEvent("snapshotting", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 29, new StubDomainEvent()));
+
+        assertFalse(new File("target/snapshotting/" + aggregateIdentifier + ".index").exists());
+        List<DomainEventMessage<?>> actualEvents = readAll(eventStore.readEvents("snapshotting", aggregateIdentifier));
+        assertEquals(6, actualEvents.size());
+        assertEquals(29L, actualEvents.get(0).getSequenceNumber());
+        assertEquals(34L, actualEvents.get(5).getSequenceNumber());
+    }
+
+    @Test
+    public void testAppendSnapshot_ResolverWithoutIndexSupport() {
+        eventStore.setIndexInterval(10);
+        eventStore.setEventFileResolver(new CountingEventFileResolver(new File("target/")));
+        AtomicInteger counter = new AtomicInteger(0);
+        writeEvents(counter, 35);
+        eventStore.appendSnapshotEvent("snapshotting", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 29, new StubDomainEvent()));
+
+        assertFalse(new File("target/snapshotting/" + aggregateIdentifier + ".index").exists());
+        List<DomainEventMessage<?>> actualEvents = readAll(eventStore.readEvents("snapshotting", aggregateIdentifier));
+        assertEquals(6, actualEvents.size());
+        assertEquals(29L, actualEvents.get(0).getSequenceNumber());
+        assertEquals(34L, actualEvents.get(5).getSequenceNumber());
+    }
+
+    @Test
+    public void testAppendSnapshot_IndexPreventsScanningEventFile() {
+        eventStore.setIndexInterval(10);
+        CountingEventFileResolver scanningResolver = new CountingEventFileResolver(new File("target/"));
+        eventStore.setEventFileResolver(scanningResolver);
+        writeEvents(new AtomicInteger(0), 500);
+        eventStore.appendSnapshotEvent("snapshotting", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 495, new StubDomainEvent()));
+
+        aggregateIdentifier = UUID.randomUUID();
+        CountingEventFileResolver indexedResolver = new IndexedCountingEventFileResolver(new File("target/"));
+        eventStore.setEventFileResolver(indexedResolver);
+        writeEvents(new AtomicInteger(0), 500);
+        eventStore.appendSnapshotEvent("snapshotting", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 495, new StubDomainEvent()));
+
+        long eventFileSize = new File("target/snapshotting/" + aggregateIdentifier + ".events").length();
+        assertTrue(scanningResolver.getBytesRead() >= eventFileSize * 99 / 100);
+        assertTrue("Expected only the events after the closest index record to be read",
+                   indexedResolver.getBytesRead() < eventFileSize / 10);
+        assertEquals(5, readAll(eventStore.readEvents("snapshotting", aggregateIdentifier)).size());
+    }
+
+    private String readEventFile(String type) throws IOException {
+        RandomAccessFile eventFile = new RandomAccessFile("target/" + type + "/" + aggregateIdentifier + ".events", "r");
+        byte[] contents = new byte[(int) eventFile.length()];
+        try {
+            eventFile.readFully(contents);
+        } finally {
+            eventFile.close();
+        }
+        return new String(contents, "UTF-8");
+    }
+
+    private List<DomainEventMessage<?>> readAll(DomainEventStream eventStream) {
+        List<DomainEventMessage<?>> events = new ArrayList<DomainEventMessage<?>>();
+        while (eventStream.hasNext()) {
+            events.add(eventStream.next());
+        }
+        return events;
+    }
+
     private void writeEvents(AtomicInteger counter, int numberOfEvents) {
         List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
         for (int t = 0; t < numberOfEvents; t++) {
@@ -213,6 +413,101 @@ public class FileSystemEventStoreTest {
         eventStore.appendEvents("snapshotting", new SimpleDomainEventStream(events));
     }
 
+    /**
+     * EventFileResolver that doesn't support index files, and counts the number of bytes read from event files.
+     * Skipped bytes are not counted.
+     */
+    private static class CountingEventFileResolver implements EventFileResolver {
+
+        protected final SimpleEventFileResolver delegate;
+        private long bytesRead;
+
+        private CountingEventFileResolver(File baseDir) {
+            this.delegate = new SimpleEventFileResolver(baseDir);
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public InputStream openEventFileForReading(String type, Object aggregateIdentifier) throws IOException {
+            return new FilterInputStream(delegate.openEventFileForReading(type, aggregateIdentifier)) {
+                @Override
+                public int read() throws IOException {
+                    int value = super.read();
+                    bytesRead += value < 0 ? 0 : 1;
+                    return value;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int count = super.read(b, off, len);
+                    bytesRead += count < 0 ? 0 : count;
+                    return count;
+                }
+            };
+        }
+
+        @Override
+        public OutputStream openEventFileForWriting(String type, Object aggregateIdentifier) throws IOException {
+            return delegate.openEventFileForWriting(type, aggregateIdentifier);
+        }
+
+        @Override
+        public OutputStream openSnapshotFileForWriting(String type, Object aggregateIdentifier) throws IOException {
+            return delegate.openSnapshotFileForWriting(type, aggregateIdentifier);
+        }
+
+        @Override
+        public InputStream openSnapshotFileForReading(String type, Object aggregateIdentifier) throws IOException {
+            return delegate.openSnapshotFileForReading(type, aggregateIdentifier);
+        }
+
+        @Override
+        public boolean eventFileExists(String type, Object aggregateIdentifier) throws IOException {
+            return delegate.eventFileExists(type, aggregateIdentifier);
+        }
+
+        @Override
+        public boolean snapshotFileExists(String type, Object aggregateIdentifier) throws IOException {
+            return delegate.snapshotFileExists(type, aggregateIdentifier);
+        }
+    }
+
+    private static class IndexedCountingEventFileResolver extends CountingEventFileResolver
+            implements IndexedEventFileResolver {
+
+        private IndexedCountingEventFileResolver(File baseDir) {
+            super(baseDir);
+        }
+
+        @Override
+        public long eventFileSize(String type, Object aggregateIdentifier) throws IOException {
+            return delegate.eventFileSize(type, aggregateIdentifier);
+        }
+
+        @Override
+        public long snapshotFileSize(String type, Object aggregateIdentifier) throws IOException {
+            return delegate.snapshotFileSize(type, aggregateIdentifier);
+        }
+
+        @Override
+        public RandomAccessFile openIndexFileForWriting(String type, Object aggregateIdentifier) throws IOException {
+            return delegate.openIndexFileForWriting(type, aggregateIdentifier);
+        }
+
+        @Override
+        public RandomAccessFile openIndexFileForReading(String type, Object aggregateIdentifier) throws IOException {
+            return delegate.openIndexFileForReading(type, aggregateIdentifier);
+        }
+
+        @Override
+        public boolean indexFileExists(String type, Object aggregateIdentifier) throws IOException {
+            return delegate.indexFileExists(type, aggregateIdentifier);
+        }
+    }
+
     public static class MyStubDomainEvent extends StubDomainEvent {
 
         private static final long serialVersionUID = -7959231436742664073L;
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.fs;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.domain.StubDomainEvent;
+import org.axonframework.serializer.XStreamSerializer;
+import org.junit.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class PooledChannelEventFileResolverTest {
+
+    private File baseDir;
+    private PooledChannelEventFileResolver testSubject;
+
+    @Before
+    public void setUp() {
+        baseDir = new File("target/pooled-channels/" + UUID.randomUUID());
+        testSubject = new PooledChannelEventFileResolver(baseDir, 2);
+    }
+
+    @After
+    public void tearDown() {
+        testSubject.close();
+    }
+
+    @Test
+    public void testStoreAndReadEventsThroughEventStore() {
+        FileSystemEventStore eventStore = new FileSystemEventStore(new XStreamSerializer());
+        eventStore.setEventFileResolver(testSubject);
+        eventStore.setIndexInterval(5);
+        Object aggregateIdentifier = UUID.randomUUID();
+
+        for (int i = 0; i < 4; i++) {
+            eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, i * 3, 3)));
+        }
+        eventStore.appendSnapshotEvent("test", new GenericDomainEventMessage<StubDomainEvent>(
+                aggregateIdentifier, 7, new StubDomainEvent()));
+
+        DomainEventStream eventStream = eventStore.readEvents("test", aggregateIdentifier);
+        long expectedSequenceNumber = 7;
+        while (eventStream.hasNext()) {
+            assertEquals(expectedSequenceNumber++, eventStream.next().getSequenceNumber());
+        }
+        assertEquals(12L, expectedSequenceNumber);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFilesAreClosed() throws IOException {
+        writeBytes("a", "first");
+        writeBytes("b", "second");
+        writeBytes("c", "third");
+
+        assertEquals(2, testSubject.getOpenFileCount());
+        assertEquals("first", readBytes("a"));
+        assertEquals("second", readBytes("b"));
+        assertEquals("third", readBytes("c"));
+        assertEquals(5L, testSubject.eventFileSize("test", "a"));
+    }
+
+    @Test
+    public void testFileInUseIsNotEvicted() throws IOException {
+        OutputStream out = testSubject.openEventFileForWriting("test", "a");
+        writeBytes("b", "second");
+        writeBytes("c", "third");
+
+        out.write("first".getBytes("UTF-8"));
+        out.close();
+
+        assertEquals("first", readBytes("a"));
+        assertEquals(2, testSubject.getOpenFileCount());
+    }
+
+    @Test
+    public void testFilesInUseAreNeverOpenedTwice() throws IOException {
+        OutputStream first = testSubject.openEventFileForWriting("test", "a");
+        OutputStream second = testSubject.openEventFileForWriting("test", "b");
+        OutputStream third = testSubject.openEventFileForWriting("test", "c");
+        assertEquals(3, testSubject.getOpenFileCount());
+
+        OutputStream again = testSubject.openEventFileForWriting("test", "a");
+        assertEquals(3, testSubject.getOpenFileCount());
+
+        first.write("first".getBytes("UTF-8"));
+        again.write("again".getBytes("UTF-8"));
+        first.close();
+        again.close();
+        second.close();
+        third.close();
+
+        assertEquals(2, testSubject.getOpenFileCount());
+        assertEquals("firstagain", readBytes("a"));
+    }
+
+    @Test
+    public void testFileInUseIsClosedAfterUseWhenResolverIsClosed() throws IOException {
+        OutputStream out = testSubject.openEventFileForWriting("test", "a");
+        writeBytes("b", "second");
+        testSubject.close();
+        assertEquals(1, testSubject.getOpenFileCount());
+
+        out.write("first".getBytes("UTF-8"));
+        out.close();
+
+        assertEquals(0, testSubject.getOpenFileCount());
+        assertEquals("first", readBytes("a"));
+    }
+
+    @Test
+    public void testAppendsToExistingFile() throws IOException {
+        writeBytes("a", "first");
+        testSubject.close();
+        writeBytes("a", "second");
+
+        assertEquals("firstsecond", readBytes("a"));
+        assertTrue(new File(baseDir, "test/a.events").exists());
+    }
+
+    @Test
+    public void testReadingFromMultipleStreamsConcurrently() throws IOException {
+        writeBytes("a", "0123456789");
+        InputStream first = testSubject.openEventFileForReading("test", "a");
+        InputStream second = testSubject.openEventFileForReading("test", "a");
+
+        assertEquals('0', first.read());
+        assertEquals(5, second.skip(5));
+        assertEquals('5', second.read());
+        assertEquals('1', first.read());
+        first.close();
+        second.close();
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testOpenNonExistentFileForReading() throws IOException {
+        assertFalse(testSubject.eventFileExists("test", "unknown"));
+        testSubject.openEventFileForReading("test", "unknown");
+    }
+
+    private void writeBytes(String identifier, String contents) throws IOException {
+        OutputStream out = testSubject.openEventFileForWriting("test", identifier);
+        out.write(contents.getBytes("UTF-8"));
+        out.close();
+    }
+
+    private String readBytes(String identifier) throws IOException {
+        InputStream in = testSubject.openEventFileForReading("test", identifier);
+        StringBuilder sb = new StringBuilder();
+        int ch;
+        while ((ch = in.read()) >= 0) {
+            sb.append((char) ch);
+        }
+        in.close();
+        return sb.toString();
+    }
+
+    private List<DomainEventMessage> createEvents(Object identifier, long firstSequenceNumber, int count) {
+        List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
+        for (int i = 0; i < count; i++) {
+            events.add(new GenericDomainEventMessage<StubDomainEvent>(identifier, firstSequenceNumber + i,
+                                                                      new StubDomainEvent()));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.fs;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.domain.StubDomainEvent;
+import org.axonframework.eventstore.EventStoreException;
+import org.axonframework.eventstore.EventStreamNotFoundException;
+import org.axonframework.repository.ConcurrencyException;
+import org.axonframework.serializer.XStreamSerializer;
+import org.junit.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class SegmentedLogEventStoreTest {
+
+    private File baseDir;
+    private SegmentedLogEventStore eventStore;
+    private Object aggregateIdentifier;
+
+    @Before
+    public void setUp() {
+        baseDir = new File("target/segmented-log/" + UUID.randomUUID());
+        eventStore = new SegmentedLogEventStore(baseDir, new XStreamSerializer());
+        aggregateIdentifier = UUID.randomUUID();
+    }
+
+    @After
+    public void tearDown() {
+        eventStore.close();
+    }
+
+    @Test
+    public void testSaveStreamAndReadBackIn() {
+        List<DomainEventMessage> events = createEvents(aggregateIdentifier, 0, 3);
+        eventStore.appendEvents("test", new SimpleDomainEventStream(events));
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(UUID.randomUUID(), 0, 2)));
+
+        List<DomainEventMessage> actualEvents = readAll(eventStore.readEvents("test", aggregateIdentifier));
+        assertEquals(3, actualEvents.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(events.get(i).getIdentifier(), actualEvents.get(i).getIdentifier());
+            assertEquals((long) i, actualEvents.get(i).getSequenceNumber());
+        }
+        assertEquals(1, segmentFiles().length);
+    }
+
+    @Test(expected = EventStreamNotFoundException.class)
+    public void testReadEvents_UnknownAggregate() {
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 0, 1)));
+        eventStore.readEvents("other", aggregateIdentifier);
+    }
+
+    @Test
+    public void testReadEventsFromMultipleSegments() {
+        eventStore.setMaxSegmentSize(1024);
+        Object otherAggregate = UUID.randomUUID();
+        for (int i = 0; i < 20; i++) {
+            eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, i, 1)));
+            eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(otherAggregate, i, 1)));
+        }
+
+        assertTrue("Expected the log to roll over to new segments", segmentFiles().length > 1);
+        assertSequence(readAll(eventStore.readEvents("test", aggregateIdentifier)), 0, 20);
+        assertSequence(readAll(eventStore.readEvents("test", otherAggregate)), 0, 20);
+    }
+
+    @Test(expected = ConcurrencyException.class)
+    public void testAppendDuplicateSequenceNumber() {
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 0, 3)));
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 2, 2)));
+    }
+
+    @Test
+    public void testAppendDuplicateSequenceNumber_NothingStored() {
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 0, 3)));
+        List<DomainEventMessage> events = createEvents(aggregateIdentifier, 3, 2);
+        events.addAll(createEvents(aggregateIdentifier, 4, 1));
+        try {
+            eventStore.appendEvents("test", new SimpleDomainEventStream(events));
+            fail("Expected a ConcurrencyException");
+        } catch (ConcurrencyException e) {
+            // expected
+        }
+        assertSequence(readAll(eventStore.readEvents("test", aggregateIdentifier)), 0, 3);
+    }
+
+    @Test
+    public void testAppendSnapshot() {
+        eventStore.setMaxSegmentSize(2048);
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 0, 5)));
+        eventStore.appendSnapshotEvent("test", new GenericDomainEventMessage<String>(aggregateIdentifier, 4,
+                                                                                     "Snapshot"));
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 5, 10)));
+        eventStore.appendSnapshotEvent("test", new GenericDomainEventMessage<String>(aggregateIdentifier, 12,
+                                                                                     "Snapshot"));
+
+        List<DomainEventMessage> actualEvents = readAll(eventStore.readEvents("test", aggregateIdentifier));
+        assertEquals(3, actualEvents.size());
+        assertEquals("Snapshot", actualEvents.get(0).getPayload());
+        assertEquals(12L, actualEvents.get(0).getSequenceNumber());
+        assertEquals(13L, actualEvents.get(1).getSequenceNumber());
+        assertEquals(14L, actualEvents.get(2).getSequenceNumber());
+    }
+
+    @Test
+    public void testIndexRebuiltWhenReopened() {
+        eventStore.setMaxSegmentSize(2048);
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 0, 10)));
+        eventStore.appendSnapshotEvent("test", new GenericDomainEventMessage<String>(aggregateIdentifier, 5,
+                                                                                     "Snapshot"));
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 10, 2)));
+        eventStore.close();
+
+        eventStore = new SegmentedLogEventStore(baseDir, new XStreamSerializer());
+        List<DomainEventMessage> actualEvents = readAll(eventStore.readEvents("test", aggregateIdentifier));
+        assertEquals("Snapshot", actualEvents.get(0).getPayload());
+        assertSequence(actualEvents.subList(1, actualEvents.size()), 6, 6);
+
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 12, 1)));
+        assertEquals(8, readAll(eventStore.readEvents("test", aggregateIdentifier)).size());
+    }
+
+    @Test
+    public void testSnapshotInLaterSegmentThanEvents() {
+        eventStore.setMaxSegmentSize(1024);
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 0, 10)));
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(UUID.randomUUID(), 0, 10)));
+        eventStore.appendSnapshotEvent("test", new GenericDomainEventMessage<String>(aggregateIdentifier, 5,
+                                                                                     "Snapshot"));
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(UUID.randomUUID(), 0, 10)));
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 10, 2)));
+        assertTrue("Expected the log to roll over to new segments", segmentFiles().length > 2);
+
+        List<DomainEventMessage> actualEvents = readAll(eventStore.readEvents("test", aggregateIdentifier));
+        assertEquals("Snapshot", actualEvents.get(0).getPayload());
+        assertSequence(actualEvents.subList(1, actualEvents.size()), 6, 6);
+    }
+
+    @Test
+    public void testIndexFilesWrittenForSealedSegments() {
+        eventStore.setMaxSegmentSize(1024);
+        for (int i = 0; i < 20; i++) {
+            eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, i, 1)));
+        }
+
+        File[] segmentFiles = segmentFiles();
+        for (int i = 0; i < segmentFiles.length; i++) {
+            assertEquals("Expected an index file for each sealed segment only",
+                         i < segmentFiles.length - 1, indexFile(segmentFiles[i]).exists());
+        }
+    }
+
+    @Test
+    public void testSealedSegmentsNotReadWhenReopened() throws IOException {
+        eventStore.setMaxSegmentSize(1024);
+        Object otherAggregate = UUID.randomUUID();
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 0, 1)));
+        long otherAggregatePosition = segmentFiles()[0].length();
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(otherAggregate, 0, 1)));
+        for (int i = 1; i < 20; i++) {
+            eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, i, 1)));
+        }
+        eventStore.close();
+        File firstSegment = segmentFiles()[0];
+        RandomAccessFile segmentFile = new RandomAccessFile(firstSegment, "rw");
+        segmentFile.seek(otherAggregatePosition);
+        segmentFile.write('x');
+        segmentFile.close();
+
+        // the corrupt entry is not noticed, as the index file of the segment is used
+        eventStore = new SegmentedLogEventStore(baseDir, new XStreamSerializer());
+        assertSequence(readAll(eventStore.readEvents("test", aggregateIdentifier)), 0, 20);
+        eventStore.close();
+
+        assertTrue(indexFile(firstSegment).delete());
+        try {
+            new SegmentedLogEventStore(baseDir, new XStreamSerializer());
+            fail("Expected the segment to be read, as its index file is missing");
+        } catch (EventStoreException e) {
+            assertTrue(e.getMessage().contains("corrupt"));
+        }
+    }
+
+    @Test
+    public void testMissingIndexFileRecreatedWhenReopened() {
+        eventStore.setMaxSegmentSize(1024);
+        for (int i = 0; i < 20; i++) {
+            eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, i, 1)));
+        }
+        eventStore.appendSnapshotEvent("test", new GenericDomainEventMessage<String>(aggregateIdentifier, 9,
+                                                                                     "Snapshot"));
+        eventStore.close();
+        File firstIndexFile = indexFile(segmentFiles()[0]);
+        assertTrue(firstIndexFile.delete());
+
+        eventStore = new SegmentedLogEventStore(baseDir, new XStreamSerializer());
+        assertTrue(firstIndexFile.exists());
+        List<DomainEventMessage> actualEvents = readAll(eventStore.readEvents("test", aggregateIdentifier));
+        assertEquals("Snapshot", actualEvents.get(0).getPayload());
+        assertSequence(actualEvents.subList(1, actualEvents.size()), 10, 10);
+        try {
+            eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 19, 1)));
+            fail("Expected a ConcurrencyException");
+        } catch (ConcurrencyException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIncompleteEntryDiscardedWhenReopened() throws IOException {
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 0, 3)));
+        eventStore.close();
+        File[] segmentFiles = segmentFiles();
+        File lastSegment = segmentFiles[segmentFiles.length - 1];
+        long validLength = lastSegment.length();
+        FileOutputStream out = new FileOutputStream(lastSegment, true);
+        out.write("0 4 test 36 some-incomplete-entry".getBytes("UTF-8"));
+        out.close();
+
+        eventStore = new SegmentedLogEventStore(baseDir, new XStreamSerializer());
+        assertEquals(validLength, lastSegment.length());
+        assertSequence(readAll(eventStore.readEvents("test", aggregateIdentifier)), 0, 3);
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 3, 1)));
+        assertSequence(readAll(eventStore.readEvents("test", aggregateIdentifier)), 0, 4);
+    }
+
+    @Test
+    public void testConcurrentAppendsWithSyncPolicyAlways() throws InterruptedException {
+        eventStore.setSyncPolicy(SyncPolicy.ALWAYS);
+        eventStore.setMaxSegmentSize(8192);
+        final int threadCount = 4;
+        final int appendsPerThread = 25;
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        final List<Object> identifiers = new ArrayList<Object>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final Object identifier = UUID.randomUUID();
+            identifiers.add(identifier);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+                        for (int i = 0; i < appendsPerThread; i++) {
+                            eventStore.appendEvents("test", new SimpleDomainEventStream(
+                                    createEvents(identifier, i, 1)));
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        startSignal.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, failures.get());
+        for (Object identifier : identifiers) {
+            assertSequence(readAll(eventStore.readEvents("test", identifier)), 0, appendsPerThread);
+        }
+    }
+
+    @Test
+    public void testConcurrentAppendsWithGroupCommit() throws InterruptedException {
+        eventStore.setGroupCommit(true);
+        eventStore.setSyncPolicy(SyncPolicy.ALWAYS);
+        eventStore.setMaxSegmentSize(8192);
+        final int appendsPerThread = 25;
+        final List<Object> identifiers = new ArrayList<Object>();
+        final List<Runnable> appenders = new ArrayList<Runnable>();
+        for (int t = 0; t < 4; t++) {
+            final Object identifier = UUID.randomUUID();
+            identifiers.add(identifier);
+            appenders.add(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < appendsPerThread; i++) {
+                        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(identifier, i, 1)));
+                    }
+                }
+            });
+        }
+
+        assertEquals(0, runConcurrently(appenders));
+        for (Object identifier : identifiers) {
+            assertSequence(readAll(eventStore.readEvents("test", identifier)), 0, appendsPerThread);
+        }
+    }
+
+    @Test
+    public void testGroupCommit_ConflictingAppendsFailIndividually() throws InterruptedException {
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 0, 3)));
+        eventStore.setGroupCommit(true);
+        eventStore.setGroupCommitWindow(100);
+        final Object otherAggregateIdentifier = UUID.randomUUID();
+        List<Runnable> appenders = new ArrayList<Runnable>();
+        appenders.add(appender(aggregateIdentifier, 3));
+        appenders.add(appender(aggregateIdentifier, 3));
+        appenders.add(appender(aggregateIdentifier, 1));
+        appenders.add(appender(otherAggregateIdentifier, 0));
+
+        assertEquals(2, runConcurrently(appenders));
+        assertSequence(readAll(eventStore.readEvents("test", aggregateIdentifier)), 0, 4);
+        assertSequence(readAll(eventStore.readEvents("test", otherAggregateIdentifier)), 0, 1);
+    }
+
+    @Test(expected = EventStoreException.class)
+    public void testAppendAfterClose() {
+        eventStore.close();
+        eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(aggregateIdentifier, 0, 1)));
+    }
+
+    private Runnable appender(final Object identifier, final long sequenceNumber) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                eventStore.appendEvents("test", new SimpleDomainEventStream(createEvents(identifier,
+                                                                                         sequenceNumber, 1)));
+            }
+        };
+    }
+
+    /**
+     * Runs the given tasks in separate threads, returning the number of tasks that failed with a
+     * ConcurrencyException.
+     */
+    private int runConcurrently(List<Runnable> tasks) throws InterruptedException {
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final AtomicInteger concurrencyFailures = new AtomicInteger();
+        final AtomicInteger otherFailures = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final Runnable task : tasks) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+                        task.run();
+                    } catch (ConcurrencyException e) {
+                        concurrencyFailures.incrementAndGet();
+                    } catch (Exception e) {
+                        otherFailures.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        startSignal.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, otherFailures.get());
+        return concurrencyFailures.get();
+    }
+
+    private void assertSequence(List<DomainEventMessage> events, long firstSequenceNumber, int count) {
+        assertEquals(count, events.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(firstSequenceNumber + i, events.get(i).getSequenceNumber());
+        }
+    }
+
+    private File[] segmentFiles() {
+        File[] files = baseDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith("." + SegmentedLogEventStore.FILE_EXTENSION_SEGMENT);
+            }
+        });
+        Arrays.sort(files);
+        return files;
+    }
+
+    private File indexFile(File segmentFile) {
+        String name = segmentFile.getName();
+        return new File(segmentFile.getParentFile(), name.substring(0, name.indexOf('.') + 1)
+                + SegmentedLogEventStore.FILE_EXTENSION_INDEX);
+    }
+
+    private List<DomainEventMessage> readAll(DomainEventStream eventStream) {
+        List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
+        while (eventStream.hasNext()) {
+            events.add(eventStream.next());
+        }
+        return events;
+    }
+
+    private List<DomainEventMessage> createEvents(Object identifier, long firstSequenceNumber, int count) {
+        List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
+        for (int i = 0; i < count; i++) {
+            events.add(new GenericDomainEventMessage<StubDomainEvent>(identifier, firstSequenceNumber + i,
+                                                                      new StubDomainEvent()));
+        }
+        return events;
+    }
+}
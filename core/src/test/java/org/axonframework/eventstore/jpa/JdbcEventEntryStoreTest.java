@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.jpa;
+
+import org.axonframework.common.jpa.SimpleEntityManagerProvider;
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.MetaData;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.eventstore.EventStoreException;
+import org.axonframework.eventstore.EventVisitor;
+import org.axonframework.eventstore.management.CriteriaBuilder;
+import org.axonframework.repository.ConcurrencyException;
+import org.axonframework.serializer.SerializedObject;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.junit.*;
+import org.junit.runner.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.sql.DataSource;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Allard Buijze
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath:/META-INF/spring/db-context.xml"})
+@Transactional()
+public class JdbcEventEntryStoreTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private JpaEventStore testSubject;
+
+    @Before
+    public void setUp() throws SQLException {
+        testSubject = new JpaEventStore(new SimpleEntityManagerProvider(entityManager),
+                                        new JdbcEventEntryStore(new TransactionAwareDataSourceProxy(dataSource)));
+        testSubject.setDataSource(dataSource);
+        entityManager.createQuery("DELETE FROM DomainEventEntry").executeUpdate();
+        entityManager.createQuery("DELETE FROM SnapshotEventEntry").executeUpdate();
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void testStoreAndLoadEvents() {
+        testSubject.setBatchSize(10);
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("id", 0, 25)));
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("other", 0, 5)));
+
+        assertEquals(30L, entityManager.createQuery("SELECT count(e) FROM DomainEventEntry e").getSingleResult());
+        DomainEventStream events = testSubject.readEvents("test", "id");
+        long t = 0L;
+        while (events.hasNext()) {
+            DomainEventMessage event = events.next();
+            assertEquals(t, event.getSequenceNumber());
+            assertEquals("id", event.getAggregateIdentifier());
+            assertEquals("Mock contents", event.getPayload());
+            assertEquals("value", event.getMetaData().get("key"));
+            t++;
+        }
+        assertEquals(25L, t);
+    }
+
+    @Test
+    public void testLoadWithSnapshotEvent() {
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("id", 0, 10)));
+        testSubject.appendSnapshotEvent("test", new GenericDomainEventMessage<String>("id", 5L, "Snapshot"));
+
+        DomainEventStream events = testSubject.readEvents("test", "id");
+        assertEquals("Snapshot", events.next().getPayload());
+        long t = 6L;
+        while (events.hasNext()) {
+            assertEquals(t++, events.next().getSequenceNumber());
+        }
+        assertEquals(10L, t);
+    }
+
+    @Test
+    public void testPrunesSnapshots() {
+        testSubject.setMaxSnapshotsArchived(2);
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("id", 0, 10)));
+        for (long sequenceNumber = 3; sequenceNumber < 10; sequenceNumber += 2) {
+            testSubject.appendSnapshotEvent("test", new GenericDomainEventMessage<String>("id", sequenceNumber,
+                                                                                          "Snapshot"));
+        }
+
+        @SuppressWarnings({"unchecked"})
+        List<Long> sequenceNumbers = entityManager.createQuery(
+                "SELECT e.sequenceNumber FROM SnapshotEventEntry e ORDER BY e.sequenceNumber ASC").getResultList();
+        assertEquals(2, sequenceNumbers.size());
+        assertEquals(7L, (long) sequenceNumbers.get(0));
+        assertEquals(9L, (long) sequenceNumbers.get(1));
+    }
+
+    @Test(expected = ConcurrencyException.class)
+    public void testStoreDuplicateEventInSameBatch() {
+        testSubject.appendEvents("test", new SimpleDomainEventStream(
+                new GenericDomainEventMessage<String>("123", 0L, "Mock contents", MetaData.emptyInstance()),
+                new GenericDomainEventMessage<String>("123", 0L, "Mock contents", MetaData.emptyInstance())));
+    }
+
+    @Test(expected = ConcurrencyException.class)
+    public void testStoreDuplicateEventInSeparateBatch() {
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("123", 0, 3)));
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("123", 2, 3)));
+    }
+
+    @Test
+    public void testVisitEvents_SmallBatchesWithCriteria() {
+        testSubject.setBatchSize(5);
+        DateTimeUtils.setCurrentMillisFixed(new DateTime(2011, 12, 18, 12, 59, 59, 999).getMillis());
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("a", 0, 11)));
+        DateTime onePM = new DateTime(2011, 12, 18, 13, 0, 0, 0);
+        DateTimeUtils.setCurrentMillisFixed(onePM.getMillis());
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("b", 0, 12)));
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("c", 0, 13)));
+        testSubject.appendEvents("other", new SimpleDomainEventStream(createDomainEvents("c", 0, 7)));
+        DateTimeUtils.setCurrentMillisSystem();
+
+        final List<DomainEventMessage> visited = new ArrayList<DomainEventMessage>();
+        EventVisitor visitor = new EventVisitor() {
+            @Override
+            public void doWithEvent(DomainEventMessage domainEvent) {
+                visited.add(domainEvent);
+            }
+        };
+        CriteriaBuilder criteriaBuilder = testSubject.newCriteriaBuilder();
+        testSubject.visitEvents(criteriaBuilder.property("timeStamp").greaterThanEquals(onePM)
+                                               .and(criteriaBuilder.property("type").in(
+                                                       Collections.singletonList("test"))),
+                                visitor);
+        assertEquals(12 + 13, visited.size());
+
+        visited.clear();
+        testSubject.visitEvents(visitor);
+        assertEquals(11 + 12 + 13 + 7, visited.size());
+    }
+
+    @Test
+    public void testFetchFilteredBatch_WithOffset() {
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("a", 0, 11)));
+        JdbcEventEntryStore eventEntryStore = new JdbcEventEntryStore(new TransactionAwareDataSourceProxy(dataSource));
+
+        assertEquals(5, eventEntryStore.fetchFilteredBatch(null, Collections.<String, Object>emptyMap(),
+                                                           0, 5, entityManager).size());
+        assertEquals(1, eventEntryStore.fetchFilteredBatch(null, Collections.<String, Object>emptyMap(),
+                                                           10, 5, entityManager).size());
+    }
+
+    @Test
+    public void testFailedBatchIsNotExecutedAgain() throws SQLException {
+        DataSource mockDataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        BatchUpdateException failure = new BatchUpdateException("failed batch", new int[]{1});
+        when(mockDataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeBatch()).thenThrow(failure);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        testSubject = new JpaEventStore(new SimpleEntityManagerProvider(entityManager),
+                                        new JdbcEventEntryStore(mockDataSource));
+
+        try {
+            testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("a", 0, 2)));
+            fail("Expected an EventStoreException");
+        } catch (EventStoreException e) {
+            assertSame(failure, e.getCause());
+        }
+        verify(statement).executeBatch();
+        verify(statement, never()).executeUpdate();
+        verify(connection).prepareStatement(startsWith("INSERT"));
+        verify(connection).prepareStatement(startsWith("SELECT"));
+    }
+
+    @Test
+    public void testFetchFilteredBatch_UsesConfiguredColumnNames() throws SQLException {
+        DataSource mockDataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(mockDataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        Map<String, String> columnNames = new HashMap<String, String>();
+        columnNames.put("timeStamp", "event_time");
+        columnNames.put("sequenceNumber", "seq_no");
+        JdbcEventEntryStore eventEntryStore = new JdbcEventEntryStore(mockDataSource, columnNames);
+
+        eventEntryStore.fetchFilteredBatch("e.timeStamp >= :time", Collections.<String, Object>singletonMap(
+                "time", "2011-12-18T13:00:00.000Z"), 0, 5, entityManager);
+
+        verify(connection).prepareStatement(
+                "SELECT e.eventIdentifier, e.aggregateIdentifier, e.seq_no, e.event_time, e.type, e.payloadType, "
+                        + "e.payloadRevision, e.payload, e.metaData FROM DomainEventEntry e "
+                        + "WHERE e.event_time >= ? "
+                        + "ORDER BY e.event_time ASC, e.seq_no ASC, e.aggregateIdentifier ASC, e.type ASC");
+        verify(statement).setObject(1, "2011-12-18T13:00:00.000Z");
+    }
+
+    @Test
+    public void testAppendAndLoadSnapshot_UsesConfiguredTableNames() throws SQLException {
+        DataSource mockDataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(mockDataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        JdbcEventEntryStore eventEntryStore = new JdbcEventEntryStore(
+                mockDataSource, "domain_events", "snapshot_events", Collections.singletonMap("timeStamp", "event_time"));
+        testSubject = new JpaEventStore(new SimpleEntityManagerProvider(entityManager), eventEntryStore);
+
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents("a", 0, 2)));
+        eventEntryStore.loadLastSnapshotEvent("test", "a", entityManager);
+
+        verify(connection).prepareStatement(
+                "INSERT INTO domain_events (eventIdentifier, aggregateIdentifier, sequenceNumber, event_time, type, "
+                        + "payloadType, payloadRevision, payload, metaData) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        verify(connection).prepareStatement(
+                "SELECT e.eventIdentifier, e.aggregateIdentifier, e.sequenceNumber, e.event_time, e.type, "
+                        + "e.payloadType, e.payloadRevision, e.payload, e.metaData FROM snapshot_events e "
+                        + "WHERE e.aggregateIdentifier = ? AND e.type = ? ORDER BY e.sequenceNumber DESC");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFetchFilteredBatch_UnknownPropertyRejected() {
+        JdbcEventEntryStore eventEntryStore = new JdbcEventEntryStore(new TransactionAwareDataSourceProxy(dataSource));
+
+        eventEntryStore.fetchFilteredBatch("e.unknown = :value", Collections.<String, Object>singletonMap(
+                "value", "test"), 0, 5, entityManager);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testColumnNameOfUnknownPropertyRejected() {
+        new JdbcEventEntryStore(dataSource, Collections.singletonMap("unknown", "column"));
+    }
+
+    @Test
+    public void testAppendEventsUsesSingleBatch() {
+        BatchingEventEntryStore eventEntryStore = mock(BatchingEventEntryStore.class);
+        testSubject = new JpaEventStore(new SimpleEntityManagerProvider(entityManager), eventEntryStore);
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents(UUID.randomUUID(), 0, 3)));
+
+        verify(eventEntryStore).persistEvents(eq("test"), anyList(), anyList(), anyList(), same(entityManager));
+        verify(eventEntryStore, never()).persistEvent(anyString(), any(DomainEventMessage.class),
+                                                      any(SerializedObject.class), any(SerializedObject.class),
+                                                      any(EntityManager.class));
+    }
+
+    private List<DomainEventMessage<String>> createDomainEvents(Object aggregateIdentifier, long firstSequenceNumber,
+                                                                int numberOfEvents) {
+        List<DomainEventMessage<String>> events = new ArrayList<DomainEventMessage<String>>();
+        for (int t = 0; t < numberOfEvents; t++) {
+            events.add(new GenericDomainEventMessage<String>(aggregateIdentifier, firstSequenceNumber + t,
+                                                             "Mock contents",
+                                                             Collections.<String, Object>singletonMap("key",
+                                                                                                      "value")));
+        }
+        return events;
+    }
+}
@@ -37,18 +37,30 @@ import org.joda.time.DateTimeUtils;
 import org.junit.*;
 import org.junit.runner.*;
 import org.mockito.*;
+import org.mockito.invocation.*;
+import org.mockito.stubbing.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceException;
@@ -72,6 +84,10 @@ public class JpaEventStoreTest {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ExecutorService prefetchExecutor;
     private StubAggregateRoot aggregate1;
     private StubAggregateRoot aggregate2;
     private Object mockAggregateIdentifier;
@@ -88,13 +104,27 @@ public class JpaEventStoreTest {
         aggregate2.changeState();
         aggregate2.changeState();
         aggregate2.changeState();
-        entityManager.createQuery("DELETE FROM DomainEventEntry").executeUpdate();
+        deleteAllEvents();
     }
 
     @After
     public void tearDown() {
         // just to make sure
         DateTimeUtils.setCurrentMillisSystem();
+        if (prefetchExecutor != null) {
+            testSubject.setPrefetchExecutor(null);
+            prefetchExecutor.shutdownNow();
+        }
+    }
+
+    private void deleteAllEvents() {
+        // joins the test's transaction, if any
+        new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                entityManager.createQuery("DELETE FROM DomainEventEntry").executeUpdate();
+            }
+        });
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -293,6 +323,43 @@ public class JpaEventStoreTest {
         verify(eventVisitor, times(100)).doWithEvent(isA(DomainEventMessage.class));
     }
 
+    @Test
+    public void testVisitAllEvents_SmallBatchesWithEqualTimestamps() {
+        testSubject.setBatchSize(10);
+        DateTimeUtils.setCurrentMillisFixed(new DateTime(2011, 12, 18, 12, 59, 59, 999).getMillis());
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents(17)));
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents(23)));
+        testSubject.appendEvents("other", new SimpleDomainEventStream(createDomainEvents(15)));
+        DateTimeUtils.setCurrentMillisSystem();
+
+        final List<String> visitedEvents = new ArrayList<String>();
+        testSubject.visitEvents(new EventVisitor() {
+            @Override
+            public void doWithEvent(DomainEventMessage domainEvent) {
+                visitedEvents.add(domainEvent.getIdentifier());
+            }
+        });
+        assertEquals(55, visitedEvents.size());
+        assertEquals(55, new HashSet<String>(visitedEvents).size());
+    }
+
+    @Test
+    public void testVisitEvents_SmallBatchesWithCriteria() {
+        testSubject.setBatchSize(5);
+        EventVisitor eventVisitor = mock(EventVisitor.class);
+        DateTimeUtils.setCurrentMillisFixed(new DateTime(2011, 12, 18, 12, 59, 59, 999).getMillis());
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents(11)));
+        DateTime onePM = new DateTime(2011, 12, 18, 13, 0, 0, 0);
+        DateTimeUtils.setCurrentMillisFixed(onePM.getMillis());
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents(12)));
+        testSubject.appendEvents("test", new SimpleDomainEventStream(createDomainEvents(13)));
+        DateTimeUtils.setCurrentMillisSystem();
+
+        CriteriaBuilder criteriaBuilder = testSubject.newCriteriaBuilder();
+        testSubject.visitEvents(criteriaBuilder.property("timeStamp").greaterThanEquals(onePM), eventVisitor);
+        verify(eventVisitor, times(12 + 13)).doWithEvent(isA(DomainEventMessage.class));
+    }
+
     @Test
     public void testVisitEvents_AfterTimestamp() {
         EventVisitor eventVisitor = mock(EventVisitor.class);
@@ -450,6 +517,144 @@ public class JpaEventStoreTest {
         verify(eventEntryStore).loadLastSnapshotEvent("test", "1", entityManager);
     }
 
+    @SuppressWarnings({"unchecked"})
+    @Test
+    public void testVisitEvents_CustomEventEntryStoreWithoutKeysetPaging() {
+        EventEntryStore eventEntryStore = mock(EventEntryStore.class);
+        List<SimpleSerializedDomainEventData> fullBatch = new ArrayList<SimpleSerializedDomainEventData>();
+        for (int t = 0; t < 10; t++) {
+            fullBatch.add(new SimpleSerializedDomainEventData(UUID.randomUUID().toString(), "id", t,
+                                                              new DateTime().toString(), "test", "mock", 0,
+                                                              "Mock contents".getBytes(), new byte[0]));
+        }
+        when(eventEntryStore.fetchFilteredBatch(anyString(), anyMap(), anyInt(), anyInt(), any(EntityManager.class)))
+                .thenReturn((List) fullBatch, (List) fullBatch.subList(0, 5));
+        testSubject = new JpaEventStore(new SimpleEntityManagerProvider(entityManager), eventEntryStore);
+        testSubject.setBatchSize(10);
+        EventVisitor eventVisitor = mock(EventVisitor.class);
+
+        testSubject.visitEvents(eventVisitor);
+
+        verify(eventVisitor, times(15)).doWithEvent(isA(DomainEventMessage.class));
+        verify(eventEntryStore).fetchFilteredBatch(anyString(), anyMap(), eq(0), eq(10), same(entityManager));
+        verify(eventEntryStore).fetchFilteredBatch(anyString(), anyMap(), eq(10), eq(10), same(entityManager));
+    }
+
+    /**
+     * Prefetched batches are read outside the reading thread's transaction, so the events are committed before
+     * reading them. Otherwise, the test would depend on the database allowing dirty reads.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testLoad_LargeAmountOfEventsWithPrefetching() {
+        prefetchExecutor = Executors.newSingleThreadExecutor();
+        testSubject.setBatchSize(10);
+        testSubject.setPrefetchExecutor(prefetchExecutor);
+        testSubject.setPrefetchDepth(3);
+        final List<DomainEventMessage<String>> domainEvents = new ArrayList<DomainEventMessage<String>>(110);
+        for (int t = 0; t < 110; t++) {
+            domainEvents.add(new GenericDomainEventMessage<String>("id", (long) t, "Mock contents",
+                                                                   MetaData.emptyInstance()));
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    testSubject.appendEvents("test", new SimpleDomainEventStream(domainEvents));
+                }
+            });
+            transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    DomainEventStream events = testSubject.readEvents("test", "id");
+                    long t = 0L;
+                    while (events.hasNext()) {
+                        assertEquals(t++, events.next().getSequenceNumber());
+                    }
+                    assertEquals(110L, t);
+                }
+            });
+        } finally {
+            deleteAllEvents();
+        }
+    }
+
+    @SuppressWarnings({"unchecked"})
+    @Test
+    public void testPrefetchingStreamReturnsEventsInOrder() {
+        EventEntryStore eventEntryStore = mock(EventEntryStore.class);
+        when(eventEntryStore.fetchBatch(anyString(), any(), anyLong(), anyInt(), any(EntityManager.class)))
+                .thenAnswer(new StubBatchAnswer(95));
+        prefetchExecutor = Executors.newFixedThreadPool(4);
+        testSubject = new JpaEventStore(new SimpleEntityManagerProvider(entityManager), eventEntryStore);
+        testSubject.setBatchSize(10);
+        testSubject.setPrefetchExecutor(prefetchExecutor);
+        testSubject.setPrefetchDepth(3);
+
+        DomainEventStream events = testSubject.readEvents("test", "id");
+        long t = 0L;
+        while (events.hasNext()) {
+            assertEquals(t, events.peek().getSequenceNumber());
+            assertEquals(t, events.next().getSequenceNumber());
+            t++;
+        }
+        assertEquals(95L, t);
+        verify(eventEntryStore, times(10)).fetchBatch(eq("test"), eq("id"), anyLong(), eq(10),
+                                                      any(EntityManager.class));
+    }
+
+    @SuppressWarnings({"unchecked"})
+    @Test
+    public void testPrefetchingStreamStopsFetchingWhenAbandoned() throws InterruptedException {
+        EventEntryStore eventEntryStore = mock(EventEntryStore.class);
+        when(eventEntryStore.fetchBatch(anyString(), any(), anyLong(), anyInt(), any(EntityManager.class)))
+                .thenAnswer(new StubBatchAnswer(1000));
+        prefetchExecutor = Executors.newSingleThreadExecutor();
+        testSubject = new JpaEventStore(new SimpleEntityManagerProvider(entityManager), eventEntryStore);
+        testSubject.setBatchSize(10);
+        testSubject.setPrefetchExecutor(prefetchExecutor);
+        testSubject.setPrefetchDepth(2);
+
+        DomainEventStream events = testSubject.readEvents("test", "id");
+        for (int t = 0; t < 15; t++) {
+            events.next();
+        }
+        prefetchExecutor.shutdown();
+        assertTrue(prefetchExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        // the first batch, the batch currently being read, and at most 2 batches ahead
+        verify(eventEntryStore, times(4)).fetchBatch(eq("test"), eq("id"), anyLong(), eq(10),
+                                                     any(EntityManager.class));
+    }
+
+    @SuppressWarnings({"unchecked"})
+    @Test
+    public void testPrefetchingStreamReportsFailedFetch() {
+        EventEntryStore eventEntryStore = mock(EventEntryStore.class);
+        when(eventEntryStore.fetchBatch(anyString(), any(), anyLong(), anyInt(), any(EntityManager.class)))
+                .thenAnswer(new StubBatchAnswer(30))
+                .thenThrow(new MockException());
+        testSubject = new JpaEventStore(new SimpleEntityManagerProvider(entityManager), eventEntryStore);
+        testSubject.setBatchSize(10);
+        testSubject.setPrefetchExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+
+        DomainEventStream events = testSubject.readEvents("test", "id");
+        for (int t = 0; t < 9; t++) {
+            events.next();
+        }
+        try {
+            events.next();
+            fail("Expected the failure of fetching the second batch to be reported");
+        } catch (MockException e) {
+            // expected
+        }
+    }
+
     private SerializedObject mockSerializedObject(byte[] bytes) {
         return new SimpleSerializedObject(bytes, "mock", 0);
     }
@@ -467,6 +672,35 @@ public class JpaEventStoreTest {
         return events;
     }
 
+    private static class StubBatchAnswer implements Answer<List<DomainEventEntry>> {
+
+        private final long eventCount;
+
+        private StubBatchAnswer(long eventCount) {
+            this.eventCount = eventCount;
+        }
+
+        @Override
+        public List<DomainEventEntry> answer(InvocationOnMock invocation) throws Throwable {
+            Object[] arguments = invocation.getArguments();
+            long firstSequenceNumber = (Long) arguments[2];
+            int batchSize = (Integer) arguments[3];
+            List<DomainEventEntry> entries = new ArrayList<DomainEventEntry>();
+            for (long t = firstSequenceNumber; t < eventCount && t < firstSequenceNumber + batchSize; t++) {
+                entries.add(new DomainEventEntry((String) arguments[0],
+                                                 new GenericDomainEventMessage<String>(arguments[1], t, "Mock"),
+                                                 new SimpleSerializedObject("Mock".getBytes(), "mock", 0),
+                                                 new SimpleSerializedObject("Mock".getBytes(), "mock", 0)));
+            }
+            return entries;
+        }
+    }
+
+    private static class MockException extends RuntimeException {
+
+        private static final long serialVersionUID = -2302460318563271553L;
+    }
+
     private static class StubAggregateRoot extends AbstractAnnotatedAggregateRoot {
 
         private static final long serialVersionUID = -3656612830058057848L;
@@ -20,10 +20,12 @@ import org.axonframework.common.AxonConfigurationException;
 import org.junit.*;
 import org.mockito.*;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import javax.persistence.PersistenceException;
@@ -60,6 +62,17 @@ public class SQLErrorCodesResolverTest {
         assertTrue(isDuplicateKey);
     }
 
+    @Test
+    public void testIsDuplicateKey_isDuplicateKey_reportedAsNextExceptionOfBatch() throws Exception {
+        SQLErrorCodesResolver sqlErrorCodesResolver = new SQLErrorCodesResolver(Collections.singletonList(-104));
+
+        BatchUpdateException batchUpdateException = new BatchUpdateException("test", new int[0]);
+        batchUpdateException.setNextException(new SQLException("test", "error", -104));
+
+        assertTrue(sqlErrorCodesResolver.isDuplicateKeyViolation(new PersistenceException("error",
+                                                                                          batchUpdateException)));
+    }
+
 
     @Test
     public void testIsDuplicateKey_isDuplicateKey_usingDataSource() throws Exception {
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.eventstore.management;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.eventhandling.FullConcurrencyPolicy;
+import org.axonframework.eventstore.EventVisitor;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class PartitionedEventReplayerTest {
+
+    private static final int AGGREGATE_COUNT = 20;
+    private static final int EVENTS_PER_AGGREGATE = 50;
+
+    private StubEventStore eventStore;
+    private PartitionedEventReplayer testSubject;
+
+    @Before
+    public void setUp() {
+        eventStore = new StubEventStore();
+        testSubject = new PartitionedEventReplayer(eventStore, 4);
+    }
+
+    @Test
+    public void testEventsOfSameAggregateVisitedInOrder() {
+        final Map<Object, Long> lastSequenceNumbers = new ConcurrentHashMap<Object, Long>();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final Map<Object, Thread> threads = new ConcurrentHashMap<Object, Thread>();
+        testSubject.setQueueCapacity(3);
+
+        testSubject.replay(new EventVisitor() {
+            @Override
+            public void doWithEvent(DomainEventMessage domainEvent) {
+                Object aggregateIdentifier = domainEvent.getAggregateIdentifier();
+                Long last = lastSequenceNumbers.get(aggregateIdentifier);
+                if (last != null && last + 1 != domainEvent.getSequenceNumber()) {
+                    outOfOrder.incrementAndGet();
+                }
+                lastSequenceNumbers.put(aggregateIdentifier, domainEvent.getSequenceNumber());
+                Thread previousThread = threads.put(aggregateIdentifier, Thread.currentThread());
+                if (previousThread != null && previousThread != Thread.currentThread()) {
+                    outOfOrder.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(0, outOfOrder.get());
+        assertEquals(AGGREGATE_COUNT, lastSequenceNumbers.size());
+        for (Long lastSequenceNumber : lastSequenceNumbers.values()) {
+            assertEquals(EVENTS_PER_AGGREGATE - 1, (long) lastSequenceNumber);
+        }
+        assertEquals(AGGREGATE_COUNT * EVENTS_PER_AGGREGATE, testSubject.getDispatchedEventCount());
+        assertEquals(AGGREGATE_COUNT * EVENTS_PER_AGGREGATE, testSubject.getProcessedEventCount());
+    }
+
+    @Test
+    public void testEventsVisitedByMultipleWorkers() {
+        final Map<Thread, Boolean> threads = new ConcurrentHashMap<Thread, Boolean>();
+        testSubject.setSequencingPolicy(new FullConcurrencyPolicy());
+        testSubject.replay(new EventVisitor() {
+            @Override
+            public void doWithEvent(DomainEventMessage domainEvent) {
+                threads.put(Thread.currentThread(), Boolean.TRUE);
+            }
+        });
+
+        assertEquals(4, threads.size());
+        assertFalse(threads.containsKey(Thread.currentThread()));
+    }
+
+    @Test
+    public void testReplayWithCriteria() {
+        Criteria criteria = mock(Criteria.class);
+        EventVisitor visitor = mock(EventVisitor.class);
+        testSubject.replay(criteria, visitor);
+
+        assertSame(criteria, eventStore.lastCriteria);
+        verify(visitor, times(AGGREGATE_COUNT * EVENTS_PER_AGGREGATE)).doWithEvent(isA(DomainEventMessage.class));
+    }
+
+    @Test
+    public void testFailureInVisitorStopsReplay() {
+        final RuntimeException failure = new RuntimeException("Mock");
+        final AtomicInteger counter = new AtomicInteger();
+        testSubject.setQueueCapacity(1);
+        try {
+            testSubject.replay(new EventVisitor() {
+                @Override
+                public void doWithEvent(DomainEventMessage domainEvent) {
+                    if (counter.incrementAndGet() == 10) {
+                        throw failure;
+                    }
+                }
+            });
+            fail("Expected the failure to be rethrown");
+        } catch (RuntimeException e) {
+            assertSame(failure, e);
+        }
+        assertTrue("Expected the replay to stop early",
+                   testSubject.getDispatchedEventCount() < AGGREGATE_COUNT * EVENTS_PER_AGGREGATE);
+    }
+
+    @Test
+    public void testStartedWorkersStoppedWhenExecutorRejectsWorker() throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+                                                             new SynchronousQueue<Runnable>());
+        testSubject = new PartitionedEventReplayer(eventStore, executor, 4);
+        EventVisitor visitor = mock(EventVisitor.class);
+        try {
+            testSubject.replay(visitor);
+            fail("Expected the rejection to be rethrown");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        executor.shutdown();
+        assertTrue("Expected the started workers to stop", executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, testSubject.getDispatchedEventCount());
+        verifyZeroInteractions(visitor);
+    }
+
+    private static class StubEventStore implements EventStoreManagement {
+
+        private final List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
+        private Criteria lastCriteria;
+
+        public StubEventStore() {
+            for (int sequenceNumber = 0; sequenceNumber < EVENTS_PER_AGGREGATE; sequenceNumber++) {
+                for (int aggregate = 0; aggregate < AGGREGATE_COUNT; aggregate++) {
+                    events.add(new GenericDomainEventMessage<String>("aggregate" + aggregate, sequenceNumber,
+                                                                     "payload"));
+                }
+            }
+        }
+
+        @Override
+        public void visitEvents(EventVisitor visitor) {
+            for (DomainEventMessage event : events) {
+                visitor.doWithEvent(event);
+            }
+        }
+
+        @Override
+        public void visitEvents(Criteria criteria, EventVisitor visitor) {
+            lastCriteria = criteria;
+            visitEvents(visitor);
+        }
+
+        @Override
+        public CriteriaBuilder newCriteriaBuilder() {
+            return null;
+        }
+    }
+}
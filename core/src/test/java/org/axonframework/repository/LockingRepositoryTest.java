@@ -30,6 +30,7 @@ import org.mockito.*;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -203,4 +204,29 @@ public class LockingRepositoryTest {
             // that's ok
         }
     }
+
+    @Test
+    public void testStoreAggregateWithStripedLocks() {
+        testSubject = new InMemoryLockingRepository(LockingStrategy.STRIPED);
+        testSubject.setEventBus(mockEventBus);
+        testSubject.setLockTimeout(1, TimeUnit.SECONDS);
+
+        DefaultUnitOfWork.startAndGet();
+        StubAggregate aggregate = new StubAggregate();
+        aggregate.doSomething();
+        testSubject.add(aggregate);
+        CurrentUnitOfWork.commit();
+
+        DefaultUnitOfWork.startAndGet();
+        StubAggregate loadedAggregate = testSubject.load(aggregate.getIdentifier(), 0L);
+        loadedAggregate.doSomething();
+        CurrentUnitOfWork.commit();
+
+        verify(mockEventBus, times(2)).publish(isA(DomainEventMessage.class));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLockTimeoutNotSupportedByOptimisticLocking() {
+        testSubject.setLockTimeout(1, TimeUnit.SECONDS);
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.repository;
+
+import org.axonframework.domain.AggregateRoot;
+import org.junit.*;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class StripedLockManagerTest {
+
+    @Test
+    public void testLockIsReentrant() {
+        StripedLockManager manager = new StripedLockManager(false);
+        UUID identifier = UUID.randomUUID();
+        AggregateRoot aggregateRoot = mock(AggregateRoot.class);
+        when(aggregateRoot.getIdentifier()).thenReturn(identifier);
+
+        assertFalse(manager.validateLock(aggregateRoot));
+
+        manager.obtainLock(identifier);
+        assertTrue(manager.validateLock(aggregateRoot));
+
+        manager.obtainLock(identifier);
+        assertTrue(manager.validateLock(aggregateRoot));
+
+        manager.releaseLock(identifier);
+        assertTrue(manager.validateLock(aggregateRoot));
+
+        manager.releaseLock(identifier);
+        assertFalse(manager.validateLock(aggregateRoot));
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void testReleaseLockNotHeld() {
+        new StripedLockManager(true).releaseLock(UUID.randomUUID());
+    }
+
+    @Test
+    public void testLockIsOnlyValidForLockedAggregateSharingItsStripe() {
+        StripedLockManager manager = new StripedLockManager(1, false);
+        AggregateRoot lockedAggregate = mock(AggregateRoot.class);
+        when(lockedAggregate.getIdentifier()).thenReturn("locked");
+        AggregateRoot otherAggregate = mock(AggregateRoot.class);
+        when(otherAggregate.getIdentifier()).thenReturn("other");
+
+        manager.obtainLock("locked");
+        assertTrue(manager.validateLock(lockedAggregate));
+        assertFalse(manager.validateLock(otherAggregate));
+
+        try {
+            manager.releaseLock("other");
+            fail("Expected an IllegalMonitorStateException");
+        } catch (IllegalMonitorStateException e) {
+            assertTrue(manager.validateLock(lockedAggregate));
+        }
+
+        manager.obtainLock("other");
+        assertTrue(manager.validateLock(otherAggregate));
+        manager.releaseLock("locked");
+        assertFalse(manager.validateLock(lockedAggregate));
+        assertTrue(manager.validateLock(otherAggregate));
+        manager.releaseLock("other");
+        assertFalse(manager.validateLock(otherAggregate));
+    }
+
+    @Test
+    public void testManyLocksHeldAndReleasedInAnyOrder() {
+        StripedLockManager manager = new StripedLockManager(false);
+        AggregateRoot[] aggregates = new AggregateRoot[10];
+        for (int i = 0; i < aggregates.length; i++) {
+            aggregates[i] = mock(AggregateRoot.class);
+            when(aggregates[i].getIdentifier()).thenReturn("aggregate" + i);
+            manager.obtainLock("aggregate" + i);
+        }
+        manager.obtainLock("aggregate0");
+
+        for (int i = 0; i < aggregates.length; i += 2) {
+            manager.releaseLock("aggregate" + i);
+        }
+        for (int i = 0; i < aggregates.length; i++) {
+            assertEquals("Unexpected lock state of aggregate" + i, i == 0 || i % 2 == 1,
+                         manager.validateLock(aggregates[i]));
+        }
+
+        for (int i = aggregates.length - 1; i > 0; i -= 2) {
+            manager.releaseLock("aggregate" + i);
+        }
+        manager.releaseLock("aggregate0");
+        for (AggregateRoot aggregate : aggregates) {
+            assertFalse(manager.validateLock(aggregate));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStripeCountMustBePowerOfTwo() {
+        new StripedLockManager(1000, false);
+    }
+
+    @Test
+    public void testObtainLockTimesOutWhenStripeIsHeldByOtherThread() throws InterruptedException {
+        final StripedLockManager manager = new StripedLockManager(1, false);
+        manager.setTimeout(50, TimeUnit.MILLISECONDS);
+        final CountDownLatch lockHeld = new CountDownLatch(1);
+        final CountDownLatch testDone = new CountDownLatch(1);
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                manager.obtainLock("other");
+                lockHeld.countDown();
+                try {
+                    testDone.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    manager.releaseLock("other");
+                }
+            }
+        });
+        holder.start();
+        assertTrue(lockHeld.await(5, TimeUnit.SECONDS));
+        try {
+            manager.obtainLock("aggregate");
+            fail("Expected a ConcurrencyException");
+        } catch (ConcurrencyException e) {
+            assertTrue(e.getMessage().contains("aggregate"));
+        } finally {
+            testDone.countDown();
+            holder.join();
+        }
+
+        manager.obtainLock("aggregate");
+        manager.releaseLock("aggregate");
+    }
+
+    @Test
+    public void testInterruptedWhileWaitingForLock() throws InterruptedException {
+        StripedLockManager manager = new StripedLockManager(false);
+        manager.setTimeout(1, TimeUnit.SECONDS);
+        Thread.currentThread().interrupt();
+        try {
+            manager.obtainLock(UUID.randomUUID());
+            fail("Expected a ConcurrencyException");
+        } catch (ConcurrencyException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+            assertTrue(Thread.interrupted());
+        }
+    }
+}
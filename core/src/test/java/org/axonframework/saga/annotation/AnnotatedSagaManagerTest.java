@@ -20,7 +20,6 @@ import org.axonframework.domain.GenericEventMessage;
 import org.axonframework.domain.StubDomainEvent;
 import org.axonframework.eventhandling.SimpleEventBus;
 import org.axonframework.saga.AssociationValue;
-import org.axonframework.saga.SagaManager;
 import org.axonframework.saga.SagaRepository;
 import org.axonframework.saga.repository.inmemory.InMemorySagaRepository;
 import org.junit.*;
@@ -38,7 +37,7 @@ import static org.junit.Assert.*;
 public class AnnotatedSagaManagerTest {
 
     private SagaRepository sagaRepository;
-    private SagaManager manager;
+    private AnnotatedSagaManager manager;
 
     @Before
     public void setUp() throws Exception {
@@ -110,6 +109,14 @@ public class AnnotatedSagaManagerTest {
         assertEquals(0, repositoryContents("12").size());
     }
 
+    @Test
+    public void testHandlesPayloadType() {
+        assertTrue(manager.handlesPayloadType(StartingEvent.class));
+        assertTrue(manager.handlesPayloadType(EndingEvent.class));
+        assertFalse(manager.handlesPayloadType(StubDomainEvent.class));
+        assertFalse(manager.handlesPayloadType(MyIdentifierEvent.class));
+    }
+
     private Set<MyTestSaga> repositoryContents(String lookupValue) {
         return sagaRepository.find(MyTestSaga.class, setOf(new AssociationValue("myIdentifier", lookupValue)));
     }
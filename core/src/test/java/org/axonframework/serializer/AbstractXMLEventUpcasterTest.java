@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+import org.dom4j.Document;
+import org.junit.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.XMLEventConsumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class AbstractXMLEventUpcasterTest {
+
+    private XStreamSerializer serializer;
+
+    @Before
+    public void setUp() {
+        serializer = new XStreamSerializer();
+        serializer.addAlias("person", Person.class);
+    }
+
+    @Test
+    public void testDeserializeFromRewrittenEvents() {
+        serializer.setUpcasters(Arrays.<Upcaster>asList(new RenameFieldUpcaster("fullName", "name", 0),
+                                                        new AddFieldUpcaster("age", "42", 1)));
+
+        Person actual = (Person) serializer.deserialize(oldPerson());
+
+        assertEquals("John Doe", actual.name);
+        assertEquals(42, actual.age);
+        assertEquals("Street <1>", actual.address);
+    }
+
+    @Test
+    public void testDeserializeWhenNoUpcasterApplies() {
+        serializer.setUpcasters(Arrays.<Upcaster>asList(new RenameFieldUpcaster("fullName", "name", 0)));
+
+        Person actual = (Person) serializer.deserialize(new SimpleSerializedObject(
+                "<person><name>Jane</name><age>12</age></person>".getBytes(), "person", 2));
+
+        assertEquals("Jane", actual.name);
+        assertEquals(12, actual.age);
+    }
+
+    @Test
+    public void testCombineStreamingUpcastersWithOtherRepresentations() {
+        Upcaster<Document> dom4jUpcaster = new Upcaster<Document>() {
+            @Override
+            public boolean canUpcast(SerializedType serializedType) {
+                return serializedType.getRevision() == 1;
+            }
+
+            @Override
+            public Class<Document> expectedRepresentationType() {
+                return Document.class;
+            }
+
+            @Override
+            public IntermediateRepresentation<?> upcast(IntermediateRepresentation<Document> representation) {
+                representation.getData().getRootElement().addElement("age").setText("7");
+                return new SimpleIntermediateRepresentation<Document>(upcast(representation.getType()),
+                                                                      Document.class, representation.getData());
+            }
+
+            @Override
+            public SerializedType upcast(SerializedType serializedType) {
+                return new SimpleSerializedType(serializedType.getName(), 2);
+            }
+        };
+        serializer.setUpcasters(Arrays.<Upcaster>asList(new RenameFieldUpcaster("fullName", "name", 0),
+                                                        dom4jUpcaster));
+
+        Person actual = (Person) serializer.deserialize(oldPerson());
+
+        assertEquals("John Doe", actual.name);
+        assertEquals(7, actual.age);
+    }
+
+    @Test
+    public void testUpcastTypeIsAppliedToRepresentation() {
+        UpcasterChain chain = new UpcasterChain(new ChainingConverterFactory(),
+                                                Collections.<Upcaster>singletonList(
+                                                        new RenameFieldUpcaster("fullName", "name", 0)));
+
+        IntermediateRepresentation actual = chain.upcast(oldPerson());
+
+        assertEquals(new SimpleSerializedType("person", 1), actual.getType());
+        assertTrue(actual.getData() instanceof XMLEventReader);
+    }
+
+    private SimpleSerializedObject oldPerson() {
+        return new SimpleSerializedObject(
+                "<person><fullName>John Doe</fullName><address>Street &lt;1&gt;</address></person>".getBytes(),
+                "person", 0);
+    }
+
+    public static class Person {
+
+        private String name;
+        private int age;
+        private String address;
+    }
+
+    private abstract static class AbstractPersonUpcaster extends AbstractXMLEventUpcaster {
+
+        private final int revision;
+
+        protected AbstractPersonUpcaster(int revision) {
+            this.revision = revision;
+        }
+
+        @Override
+        public boolean canUpcast(SerializedType serializedType) {
+            return "person".equals(serializedType.getName()) && serializedType.getRevision() == revision;
+        }
+
+        @Override
+        public SerializedType upcast(SerializedType serializedType) {
+            return new SimpleSerializedType(serializedType.getName(), revision + 1);
+        }
+    }
+
+    private static class RenameFieldUpcaster extends AbstractPersonUpcaster {
+
+        private final String oldName;
+        private final String newName;
+
+        private RenameFieldUpcaster(String oldName, String newName, int revision) {
+            super(revision);
+            this.oldName = oldName;
+            this.newName = newName;
+        }
+
+        @Override
+        protected XMLEventRewriter createRewriter(SerializedType serializedType) {
+            return new XMLEventRewriter() {
+                @Override
+                public void rewrite(XMLEvent event, XMLEventConsumer output) throws XMLStreamException {
+                    if (event.isStartElement() && oldName.equals(event.asStartElement().getName().getLocalPart())) {
+                        output.add(EVENT_FACTORY.createStartElement(new QName(newName), null, null));
+                    } else if (event.isEndElement()
+                            && oldName.equals(event.asEndElement().getName().getLocalPart())) {
+                        output.add(EVENT_FACTORY.createEndElement(new QName(newName), null));
+                    } else {
+                        output.add(event);
+                    }
+                }
+            };
+        }
+    }
+
+    private static class AddFieldUpcaster extends AbstractPersonUpcaster {
+
+        private final String fieldName;
+        private final String value;
+
+        private AddFieldUpcaster(String fieldName, String value, int revision) {
+            super(revision);
+            this.fieldName = fieldName;
+            this.value = value;
+        }
+
+        @Override
+        protected XMLEventRewriter createRewriter(SerializedType serializedType) {
+            return new XMLEventRewriter() {
+                private int depth;
+
+                @Override
+                public void rewrite(XMLEvent event, XMLEventConsumer output) throws XMLStreamException {
+                    if (event.isStartElement()) {
+                        depth++;
+                    } else if (event.isEndElement() && --depth == 0) {
+                        StartElement field = EVENT_FACTORY.createStartElement(new QName(fieldName), null, null);
+                        output.add(field);
+                        output.add(EVENT_FACTORY.createCharacters(value));
+                        output.add(EVENT_FACTORY.createEndElement(field.getName(), null));
+                    }
+                    output.add(event);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.EventMessage;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.GenericEventMessage;
+import org.axonframework.domain.MetaData;
+import org.axonframework.domain.StubDomainEvent;
+import org.axonframework.eventstore.LazyDeserializingObject;
+import org.axonframework.eventstore.SerializedDomainEventMessage;
+import org.joda.time.DateTime;
+import org.junit.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class SerializationAwareEventMessageTest {
+
+    private Serializer serializer;
+
+    @Before
+    public void setUp() {
+        serializer = spy(new XStreamSerializer());
+    }
+
+    @Test
+    public void testPayloadAndMetaDataSerializedOncePerSerializer() {
+        EventMessage<StubDomainEvent> message = SerializationAwareEventMessage.wrap(
+                GenericEventMessage.asEventMessage(new StubDomainEvent()));
+
+        SerializedObject payload1 = MessageSerializer.serializePayload(message, serializer);
+        SerializedObject payload2 = MessageSerializer.serializePayload(message, serializer);
+        SerializedObject metaData1 = MessageSerializer.serializeMetaData(message, serializer);
+        SerializedObject metaData2 = MessageSerializer.serializeMetaData(message, serializer);
+
+        assertSame(payload1, payload2);
+        assertSame(metaData1, metaData2);
+        verify(serializer, times(2)).serialize(any());
+
+        Serializer otherSerializer = new XStreamSerializer();
+        assertNotSame(payload1, MessageSerializer.serializePayload(message, otherSerializer));
+    }
+
+    @Test
+    public void testWrapDomainEventMessage() {
+        DomainEventMessage<StubDomainEvent> original = new GenericDomainEventMessage<StubDomainEvent>(
+                UUID.randomUUID(), 1, new StubDomainEvent());
+        EventMessage<StubDomainEvent> wrapped = SerializationAwareEventMessage.wrap(original);
+
+        assertTrue(wrapped instanceof SerializationAwareDomainEventMessage);
+        assertSame(wrapped, SerializationAwareEventMessage.wrap(wrapped));
+        DomainEventMessage<StubDomainEvent> domainEventMessage = (DomainEventMessage<StubDomainEvent>) wrapped;
+        assertEquals(original.getAggregateIdentifier(), domainEventMessage.getAggregateIdentifier());
+        assertEquals(1, domainEventMessage.getSequenceNumber());
+        assertEquals(original.getIdentifier(), wrapped.getIdentifier());
+        assertSame(original.getPayload(), wrapped.getPayload());
+    }
+
+    @Test
+    public void testChangedMetaDataSharesSerializedPayload() {
+        DomainEventMessage<StubDomainEvent> message = SerializationAwareDomainEventMessage.wrap(
+                new GenericDomainEventMessage<StubDomainEvent>(UUID.randomUUID(), 1, new StubDomainEvent()));
+        SerializedObject payload = MessageSerializer.serializePayload(message, serializer);
+        SerializedObject metaData = MessageSerializer.serializeMetaData(message, serializer);
+
+        DomainEventMessage<StubDomainEvent> changed = message.andMetaData(
+                Collections.<String, Object>singletonMap("key", "value"));
+
+        assertTrue(changed instanceof SerializationAware);
+        assertEquals("value", changed.getMetaData().get("key"));
+        assertSame(payload, MessageSerializer.serializePayload(changed, serializer));
+        assertNotSame(metaData, MessageSerializer.serializeMetaData(changed, serializer));
+        assertSame(message, message.andMetaData(MetaData.emptyInstance()));
+    }
+
+    @Test
+    public void testJavaSerializationReplacesWrapperWithMessage() throws Exception {
+        EventMessage<StubDomainEvent> message = SerializationAwareEventMessage.wrap(
+                GenericEventMessage.asEventMessage(new StubDomainEvent()));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(message);
+        oos.close();
+
+        Object actual = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+
+        assertTrue(actual instanceof GenericEventMessage);
+        assertEquals(message.getIdentifier(), ((EventMessage) actual).getIdentifier());
+    }
+
+    @Test
+    public void testSerializedDomainEventMessageReturnsOriginalSerializedForm() {
+        SerializedObject payload = serializer.serialize(new StubDomainEvent());
+        SerializedObject metaData = serializer.serialize(MetaData.emptyInstance());
+        SerializedDomainEventMessage<StubDomainEvent> message = new SerializedDomainEventMessage<StubDomainEvent>(
+                UUID.randomUUID().toString(), UUID.randomUUID(), 0, new DateTime(),
+                new LazyDeserializingObject<StubDomainEvent>(payload, serializer),
+                new LazyDeserializingObject<MetaData>(metaData, serializer));
+        reset(serializer);
+
+        assertSame(payload, MessageSerializer.serializePayload(message, serializer));
+        assertSame(metaData, MessageSerializer.serializeMetaData(message, serializer));
+        verifyZeroInteractions(serializer);
+
+        Serializer otherSerializer = spy(new XStreamSerializer());
+        SerializedObject otherPayload = MessageSerializer.serializePayload(message, otherSerializer);
+        assertSame(otherPayload, MessageSerializer.serializePayload(message, otherSerializer));
+        verify(otherSerializer, times(1)).serialize(any());
+    }
+}
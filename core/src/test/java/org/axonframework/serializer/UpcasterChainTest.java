@@ -139,6 +139,42 @@ public class UpcasterChainTest {
         }
     }
 
+    @Test
+    public void testCanUpcastIsEvaluatedOncePerType() {
+        Upcaster mockUpcaster12 = mock(Upcaster.class, "Type 1 to Type 2 upcaster");
+        Upcaster mockUpcaster23 = mock(Upcaster.class, "Type 2 to Type 3 upcaster");
+        when(mockUpcaster12.canUpcast(object1.getType())).thenReturn(true);
+        when(mockUpcaster12.upcast(object1.getType())).thenReturn(object2.getType());
+        when(mockUpcaster23.canUpcast(object2.getType())).thenReturn(true);
+        when(mockUpcaster23.upcast(object2.getType())).thenReturn(object3.getType());
+
+        UpcasterChain chain = new UpcasterChain(null, mockUpcaster12, mockUpcaster23);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(object3.getType(), chain.upcast(object1.getType()));
+        }
+
+        verify(mockUpcaster12, times(1)).canUpcast(object1.getType());
+        verify(mockUpcaster23, times(1)).canUpcast(object2.getType());
+        verify(mockUpcaster12, times(10)).upcast(object1.getType());
+        verify(mockUpcaster23, times(10)).upcast(object2.getType());
+    }
+
+    @Test
+    public void testUpcastObject_CurrentTypeIsReturnedUntouched() {
+        Upcaster mockUpcaster = mock(Upcaster.class);
+        ConverterFactory mockConverterFactory = mock(ConverterFactory.class);
+        UpcasterChain chain = new UpcasterChain(mockConverterFactory, mockUpcaster);
+
+        IntermediateRepresentation actual1 = chain.upcast(object3);
+        IntermediateRepresentation actual2 = chain.upcast(object3);
+
+        assertEquals(object3.getType(), actual1.getType());
+        assertArrayEquals(object3.getData(), (byte[]) actual2.getData());
+        verify(mockUpcaster, times(1)).canUpcast(object3.getType());
+        verify(mockUpcaster, never()).upcast(any(IntermediateRepresentation.class));
+        verifyZeroInteractions(mockConverterFactory);
+    }
+
     private class MockIntermediateRepresentation implements IntermediateRepresentation {
 
         private final Class<?> contentType;
@@ -0,0 +1,516 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.binary;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.domain.EventContainer;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.MetaData;
+import org.axonframework.domain.StubAggregate;
+import org.axonframework.domain.StubDomainEvent;
+import org.axonframework.saga.AssociationValue;
+import org.axonframework.saga.annotation.AbstractAnnotatedSaga;
+import org.axonframework.serializer.IntermediateRepresentation;
+import org.axonframework.serializer.Revision;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.SerializedType;
+import org.axonframework.serializer.SimpleIntermediateRepresentation;
+import org.axonframework.serializer.SimpleSerializedObject;
+import org.axonframework.serializer.SimpleSerializedType;
+import org.axonframework.serializer.Upcaster;
+import org.axonframework.serializer.XStreamSerializer;
+import org.junit.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class BinarySerializerTest {
+
+    private BinarySerializer testSubject;
+
+    @Before
+    public void setUp() {
+        testSubject = new BinarySerializer();
+    }
+
+    @Test
+    public void testSerializeAndDeserializeDomainEventMessage() {
+        Map<String, Object> metaData = new HashMap<String, Object>();
+        metaData.put("user", "john");
+        metaData.put("attempt", 3);
+        GenericDomainEventMessage<TestEvent> message = new GenericDomainEventMessage<TestEvent>(
+                UUID.randomUUID(), 12L, new TestEvent("name", new BigDecimal("12.50")), MetaData.from(metaData));
+
+        SerializedObject serialized = testSubject.serialize(message);
+        assertEquals(GenericDomainEventMessage.class.getName(), serialized.getType().getName());
+        DomainEventMessage actual = (DomainEventMessage) testSubject.deserialize(serialized);
+
+        assertEquals(message.getIdentifier(), actual.getIdentifier());
+        assertEquals(message.getAggregateIdentifier(), actual.getAggregateIdentifier());
+        assertEquals(12L, actual.getSequenceNumber());
+        assertEquals(message.getTimestamp().getZone(), actual.getTimestamp().getZone());
+        assertEquals(message.getTimestamp(), actual.getTimestamp());
+        assertEquals(TestEvent.class, actual.getPayloadType());
+        assertEquals(message.getPayload(), actual.getPayload());
+        assertEquals(message.getMetaData(), actual.getMetaData());
+        assertTrue(actual.getMetaData() instanceof MetaData);
+    }
+
+    @Test
+    public void testSerializeToStream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SerializedType type = testSubject.serialize(new TestEvent("name", BigDecimal.ONE), out);
+
+        assertEquals(TestEvent.class.getName(), type.getName());
+        assertEquals(new TestEvent("name", BigDecimal.ONE),
+                     testSubject.deserialize(new SimpleSerializedObject(out.toByteArray(), type)));
+    }
+
+    @Test
+    public void testSerializeValuesAndCollections() {
+        ValueHolder holder = new ValueHolder();
+        holder.primitiveInt = -42;
+        holder.primitiveLong = Long.MIN_VALUE;
+        holder.primitiveDouble = 0.5;
+        holder.primitiveFloat = -1.25f;
+        holder.primitiveChar = 'x';
+        holder.primitiveBoolean = true;
+        holder.bytes = new byte[]{1, 2, 3};
+        holder.numbers = new int[]{1, -1, Integer.MAX_VALUE};
+        holder.strings = new String[]{"a", null, "c"};
+        holder.list = new ArrayList<Object>(Arrays.asList("a", 1, 2L, null, TestEnum.SECOND));
+        holder.sortedSet = new TreeSet<String>(Arrays.asList("c", "a", "b"));
+        holder.type = String.class;
+        holder.unmodifiable = Collections.unmodifiableList(Arrays.asList("x", "y"));
+
+        ValueHolder actual = (ValueHolder) testSubject.deserialize(testSubject.serialize(holder));
+
+        assertEquals(-42, actual.primitiveInt);
+        assertEquals(Long.MIN_VALUE, actual.primitiveLong);
+        assertEquals(0.5, actual.primitiveDouble, 0);
+        assertEquals(-1.25f, actual.primitiveFloat, 0);
+        assertEquals('x', actual.primitiveChar);
+        assertTrue(actual.primitiveBoolean);
+        assertArrayEquals(new byte[]{1, 2, 3}, actual.bytes);
+        assertArrayEquals(new int[]{1, -1, Integer.MAX_VALUE}, actual.numbers);
+        assertArrayEquals(new String[]{"a", null, "c"}, actual.strings);
+        assertEquals(holder.list, actual.list);
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<String>(actual.sortedSet));
+        assertEquals(String.class, actual.type);
+        assertEquals(Arrays.asList("x", "y"), actual.unmodifiable);
+        assertEquals("initialized", actual.transientValue);
+    }
+
+    @Test
+    public void testSerializeSharedAndCyclicReferences() {
+        Node first = new Node("first");
+        Node second = new Node("second");
+        first.next = second;
+        second.next = first;
+        List<Node> nodes = new ArrayList<Node>(Arrays.asList(first, second, first));
+
+        @SuppressWarnings({"unchecked"})
+        List<Node> actual = (List<Node>) testSubject.deserialize(testSubject.serialize(nodes));
+
+        assertEquals(3, actual.size());
+        assertSame(actual.get(0), actual.get(2));
+        assertSame(actual.get(1), actual.get(0).next);
+        assertSame(actual.get(0), actual.get(1).next);
+        assertEquals("second", actual.get(0).next.name);
+    }
+
+    @Test
+    public void testSerializeSaga() {
+        TestSaga saga = new TestSaga();
+        saga.associate("orderId", "1234");
+        saga.counter = 5;
+
+        TestSaga actual = (TestSaga) testSubject.deserialize(testSubject.serialize(saga));
+
+        assertEquals(saga.getSagaIdentifier(), actual.getSagaIdentifier());
+        assertTrue(actual.isActive());
+        assertEquals(5, actual.counter);
+        assertEquals(saga.getAssociationValues().size(), actual.getAssociationValues().size());
+        assertTrue(actual.getAssociationValues().contains(new AssociationValue("orderId", "1234")));
+        actual.associate("customerId", "5678");
+        assertTrue(actual.getAssociationValues().contains(new AssociationValue("customerId", "5678")));
+    }
+
+    @Test
+    public void testRegisteredTypesReduceSize() {
+        TestEvent event = new TestEvent("name", BigDecimal.TEN);
+        int unregisteredSize = testSubject.serialize(event).getData().length;
+        testSubject.registerType(TestEvent.class, 100);
+        int registeredSize = testSubject.serialize(event).getData().length;
+
+        assertTrue(registeredSize < unregisteredSize - TestEvent.class.getName().length());
+        assertTrue(registeredSize < new XStreamSerializer().serialize(event).getData().length);
+        assertEquals(event, testSubject.deserialize(testSubject.serialize(event)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterReservedTypeId() {
+        testSubject.registerType(TestEvent.class, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterDuplicateTypeId() {
+        testSubject.registerType(TestEvent.class, 100);
+        testSubject.registerType(Node.class, 100);
+    }
+
+    @Test
+    public void testRevisionIsTakenFromAnnotation() {
+        assertEquals(2, testSubject.serialize(new RevisedEvent()).getType().getRevision());
+    }
+
+    @Test
+    public void testFieldsRemovedFromClassAreIgnored() {
+        SerializedObject serialized = testSubject.serialize(new RevisedEvent());
+        testSubject.setUpcasters(Arrays.<Upcaster>asList(new RenamingUpcaster(RevisedEvent.class.getName())));
+
+        Object actual = testSubject.deserialize(serialized);
+
+        assertTrue(actual instanceof TestEvent);
+        assertEquals("revised", ((TestEvent) actual).name);
+        assertEquals(TestEvent.class, testSubject.classForType(serialized.getType()));
+    }
+
+    @Test
+    public void testUpcastClassThatNoLongerExists() throws Exception {
+        SerializedObject serialized = testSubject.serialize(new RevisedEvent());
+        String removedType = serialized.getType().getName().replace("RevisedEvent", "RemovedEvent");
+        // the data refers to the class by name, which is replaced by the name of a class that does not exist
+        byte[] data = new String(serialized.getData(), "ISO-8859-1")
+                .replace("RevisedEvent", "RemovedEvent").getBytes("ISO-8859-1");
+        testSubject.setUpcasters(Arrays.<Upcaster>asList(new RenamingUpcaster(removedType)));
+
+        Object actual = testSubject.deserialize(new SimpleSerializedObject(data, removedType, 2));
+
+        assertTrue(actual instanceof TestEvent);
+        assertEquals("revised", ((TestEvent) actual).name);
+    }
+
+    @Test
+    public void testUpcastChangedFieldsUsingBinaryGraph() {
+        SerializedObject serialized = testSubject.serialize(new RevisedEvent());
+        testSubject.setUpcasters(Arrays.<Upcaster>asList(new GraphUpcaster(RevisedEvent.class.getName(),
+                                                                           TestEvent.class.getName()) {
+            @Override
+            protected void upcast(BinaryGraph graph) {
+                ObjectNode event = (ObjectNode) graph.getRoot();
+                event.setTypeName(TestEvent.class.getName());
+                long removedValue = (Long) event.removeField("removedField");
+                event.setField("amount", BigDecimal.valueOf(removedValue));
+            }
+        }));
+
+        Object actual = testSubject.deserialize(serialized);
+
+        assertEquals(new TestEvent("revised", BigDecimal.valueOf(42)), actual);
+    }
+
+    @Test
+    public void testUpcastFieldsOfSomeInstancesOfAClassUsingBinaryGraph() {
+        testSubject.registerType(TestEvent.class, BinarySerializer.FIRST_USER_TYPE_ID);
+        TestEvent first = new TestEvent("first", BigDecimal.ONE);
+        List<Object> events = new ArrayList<Object>(Arrays.asList(first, new TestEvent("second", BigDecimal.TEN),
+                                                                  first, TestEnum.SECOND));
+        SerializedObject serialized = testSubject.serialize(events);
+        testSubject.setUpcasters(Arrays.<Upcaster>asList(new GraphUpcaster(ArrayList.class.getName(),
+                                                                           ArrayList.class.getName()) {
+            @Override
+            protected void upcast(BinaryGraph graph) {
+                CollectionNode list = (CollectionNode) graph.getRoot();
+                ObjectNode firstEvent = (ObjectNode) list.getElements().get(0);
+                assertEquals(Arrays.asList("name", "amount"), firstEvent.getFieldKeys());
+                firstEvent.renameField("name", "oldName");
+                firstEvent.setField("name", "changed");
+                assertEquals("SECOND", ((EnumNode) list.getElements().get(3)).getName());
+            }
+        }));
+
+        List<?> actual = (List<?>) testSubject.deserialize(serialized);
+
+        assertEquals(new TestEvent("changed", BigDecimal.ONE), actual.get(0));
+        assertEquals(new TestEvent("second", BigDecimal.TEN), actual.get(1));
+        assertSame(actual.get(0), actual.get(2));
+        assertSame(TestEnum.SECOND, actual.get(3));
+    }
+
+    @Test
+    public void testSerializeEventsAppliedByAggregate() {
+        StubAggregate aggregate = new StubAggregate();
+        aggregate.doSomething();
+        aggregate.doSomething();
+
+        DomainEventStream events = aggregate.getUncommittedEvents();
+        while (events.hasNext()) {
+            DomainEventMessage event = events.next();
+            SerializedObject serialized = testSubject.serialize(event);
+
+            assertEquals(GenericDomainEventMessage.class.getName(), serialized.getType().getName());
+            assertFalse("Expected the event not to be written using Java serialization",
+                        containsJavaSerializedData((byte[]) serialized.getData()));
+            DomainEventMessage actual = (DomainEventMessage) testSubject.deserialize(serialized);
+            assertEquals(event.getIdentifier(), actual.getIdentifier());
+            assertEquals(event.getSequenceNumber(), actual.getSequenceNumber());
+            assertEquals(StubDomainEvent.class, actual.getPayloadType());
+        }
+    }
+
+    @Test
+    public void testSerializeEventWithNonSerializablePayloadAddedToEventContainer() {
+        TestEvent payload = new TestEvent("name", BigDecimal.TEN);
+        DomainEventMessage event = new EventContainer(UUID.randomUUID()).addEvent(MetaData.emptyInstance(), payload);
+
+        DomainEventMessage actual = (DomainEventMessage) testSubject.deserialize(testSubject.serialize(event));
+
+        assertEquals(payload, actual.getPayload());
+        assertEquals(event.getAggregateIdentifier(), actual.getAggregateIdentifier());
+    }
+
+    @Test
+    public void testWriteReplaceAndReadResolveAreHonored() {
+        ReplacedValue value = new ReplacedValue("value");
+        List<Object> list = new ArrayList<Object>(Arrays.asList(value, value));
+
+        SerializedObject serialized = testSubject.serialize(value);
+        assertEquals(ValueProxy.class.getName(), serialized.getType().getName());
+        assertEquals("value", ((ReplacedValue) testSubject.deserialize(serialized)).value);
+
+        List<?> actual = (List<?>) testSubject.deserialize(testSubject.serialize(list));
+        assertEquals("value", ((ReplacedValue) actual.get(0)).value);
+        assertSame(actual.get(0), actual.get(1));
+    }
+
+    @Test
+    public void testClassForType_UnknownClass() {
+        assertNull(testSubject.classForType(new SimpleSerializedType("unknown", 0)));
+    }
+
+    private static boolean containsJavaSerializedData(byte[] data) {
+        for (int i = 0; i < data.length - 1; i++) {
+            if (data[i] == (byte) 0xAC && data[i + 1] == (byte) 0xED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static enum TestEnum {
+        FIRST, SECOND
+    }
+
+    private static class TestEvent {
+
+        private String name;
+        private BigDecimal amount;
+
+        private TestEvent(String name, BigDecimal amount) {
+            this.name = name;
+            this.amount = amount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            TestEvent that = (TestEvent) o;
+            return name.equals(that.name) && amount.equals(that.amount);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    @Revision(2)
+    private static class RevisedEvent {
+
+        private String name = "revised";
+        private long removedField = 42;
+    }
+
+    private static class ValueHolder {
+
+        private int primitiveInt;
+        private long primitiveLong;
+        private double primitiveDouble;
+        private float primitiveFloat;
+        private char primitiveChar;
+        private boolean primitiveBoolean;
+        private byte[] bytes;
+        private int[] numbers;
+        private String[] strings;
+        private List<Object> list;
+        private TreeSet<String> sortedSet;
+        private Class<?> type;
+        private List<String> unmodifiable;
+        private transient String transientValue = "initialized";
+    }
+
+    private static class Node {
+
+        private final String name;
+        private Node next;
+
+        private Node(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class TestSaga extends AbstractAnnotatedSaga {
+
+        private static final long serialVersionUID = -1562911263884220240L;
+
+        private int counter;
+
+        public void associate(String key, String value) {
+            associateWith(key, value);
+        }
+    }
+
+    private static class ReplacedValue implements Serializable {
+
+        private static final long serialVersionUID = 3389196387441926370L;
+
+        private final String value;
+
+        private ReplacedValue(String value) {
+            this.value = value;
+        }
+
+        private Object writeReplace() {
+            return new ValueProxy(value);
+        }
+    }
+
+    private static class ValueProxy implements Serializable {
+
+        private static final long serialVersionUID = -6200834716426290412L;
+
+        private final String proxiedValue;
+
+        private ValueProxy(String proxiedValue) {
+            this.proxiedValue = proxiedValue;
+        }
+
+        private Object readResolve() {
+            return new ReplacedValue(proxiedValue);
+        }
+    }
+
+    private abstract static class GraphUpcaster implements Upcaster<BinaryGraph> {
+
+        private final String upcastType;
+        private final String resultType;
+
+        private GraphUpcaster(String upcastType, String resultType) {
+            this.upcastType = upcastType;
+            this.resultType = resultType;
+        }
+
+        protected abstract void upcast(BinaryGraph graph);
+
+        @Override
+        public boolean canUpcast(SerializedType serializedType) {
+            return upcastType.equals(serializedType.getName());
+        }
+
+        @Override
+        public Class<BinaryGraph> expectedRepresentationType() {
+            return BinaryGraph.class;
+        }
+
+        @Override
+        public IntermediateRepresentation<?> upcast(IntermediateRepresentation<BinaryGraph> representation) {
+            upcast(representation.getData());
+            return new SimpleIntermediateRepresentation<BinaryGraph>(upcast(representation.getType()),
+                                                                     BinaryGraph.class, representation.getData());
+        }
+
+        @Override
+        public SerializedType upcast(SerializedType serializedType) {
+            return new SimpleSerializedType(resultType, serializedType.getRevision() + 1);
+        }
+    }
+
+    private static class RenamingUpcaster implements Upcaster<byte[]> {
+
+        private final String upcastType;
+
+        private RenamingUpcaster(String upcastType) {
+            this.upcastType = upcastType;
+        }
+
+        @Override
+        public boolean canUpcast(SerializedType serializedType) {
+            return upcastType.equals(serializedType.getName());
+        }
+
+        @Override
+        public Class<byte[]> expectedRepresentationType() {
+            return byte[].class;
+        }
+
+        @Override
+        public IntermediateRepresentation<?> upcast(final IntermediateRepresentation<byte[]> representation) {
+            return new IntermediateRepresentation<byte[]>() {
+                @Override
+                public SerializedType getType() {
+                    return upcast(representation.getType());
+                }
+
+                @Override
+                public Class<byte[]> getContentType() {
+                    return byte[].class;
+                }
+
+                @Override
+                public byte[] getData() {
+                    return representation.getData();
+                }
+            };
+        }
+
+        @Override
+        public SerializedType upcast(SerializedType serializedType) {
+            return new SimpleSerializedType(TestEvent.class.getName(), 0);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.serializer.converters;
+
+import org.axonframework.serializer.IntermediateRepresentation;
+import org.axonframework.serializer.SimpleIntermediateRepresentation;
+import org.axonframework.serializer.SimpleSerializedType;
+import org.junit.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import javax.xml.stream.XMLEventReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Allard Buijze
+ */
+public class InputStreamToXMLEventReaderConverterTest {
+
+    private InputStreamToXMLEventReaderConverter testSubject;
+    private SimpleSerializedType type;
+
+    @Before
+    public void setUp() throws Exception {
+        type = new SimpleSerializedType("bla", 0);
+        testSubject = new InputStreamToXMLEventReaderConverter();
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+        InputStream inputStream = new ByteArrayInputStream("<parent><child/></parent>".getBytes());
+        IntermediateRepresentation<XMLEventReader> actual = testSubject
+                .convert(new SimpleIntermediateRepresentation<InputStream>(type, InputStream.class, inputStream));
+
+        assertEquals(type, actual.getType());
+        assertEquals("parent", actual.getData().nextTag().asStartElement().getName().getLocalPart());
+        assertEquals("child", actual.getData().nextTag().asStartElement().getName().getLocalPart());
+    }
+}
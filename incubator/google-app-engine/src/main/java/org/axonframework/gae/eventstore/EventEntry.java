@@ -33,6 +33,9 @@ import org.joda.time.DateTime;
 
 import java.nio.charset.Charset;
 
+import static org.axonframework.serializer.MessageSerializer.serializeMetaData;
+import static org.axonframework.serializer.MessageSerializer.serializePayload;
+
 /**
  * <p>Class that represents an event to store in the google app engine data store. </p>
  *
@@ -74,11 +77,11 @@ public class EventEntry {
         this.aggregateType = aggregateType;
         this.aggregateIdentifier = event.getAggregateIdentifier().toString();
         this.sequenceNumber = event.getSequenceNumber();
-        SerializedObject serializedEvent = eventSerializer.serialize(event.getPayload());
+        SerializedObject serializedEvent = serializePayload(event, eventSerializer);
         this.serializedEvent = new String(serializedEvent.getData(), UTF8);
         this.eventType = serializedEvent.getType().getName();
         this.eventRevision = serializedEvent.getType().getRevision();
-        this.serializedMetaData = new String(eventSerializer.serialize(event.getMetaData()).getData(), UTF8);
+        this.serializedMetaData = new String(serializeMetaData(event, eventSerializer).getData(), UTF8);
         this.timeStamp = event.getTimestamp().toString();
     }
 
@@ -31,6 +31,9 @@ import org.joda.time.DateTime;
 
 import java.nio.charset.Charset;
 
+import static org.axonframework.serializer.MessageSerializer.serializeMetaData;
+import static org.axonframework.serializer.MessageSerializer.serializePayload;
+
 /**
  * Data needed by different types of event logs.
  *
@@ -96,8 +99,8 @@ class EventEntry {
         this.aggregateIdentifier = event.getAggregateIdentifier().toString();
         this.sequenceNumber = event.getSequenceNumber();
         this.eventIdentifier = event.getIdentifier();
-        SerializedObject serializedPayloadObject = eventSerializer.serialize(event.getPayload());
-        SerializedObject serializedMetaDataObject = eventSerializer.serialize(event.getMetaData());
+        SerializedObject serializedPayloadObject = serializePayload(event, eventSerializer);
+        SerializedObject serializedMetaDataObject = serializeMetaData(event, eventSerializer);
         this.serializedPayload = new String(serializedPayloadObject.getData(), UTF8);
         this.payoadType = serializedPayloadObject.getType().getName();
         this.payloadRevision = serializedPayloadObject.getType().getRevision();
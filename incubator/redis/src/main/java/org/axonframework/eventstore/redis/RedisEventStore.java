@@ -16,75 +16,380 @@
 
 package org.axonframework.eventstore.redis;
 
+import org.axonframework.common.Assert;
+import org.axonframework.common.io.BinaryEntryInputStream;
+import org.axonframework.common.io.BinaryEntryOutputStream;
 import org.axonframework.domain.DomainEventMessage;
 import org.axonframework.domain.DomainEventStream;
-import org.axonframework.eventstore.EventStore;
+import org.axonframework.eventstore.EventStoreException;
+import org.axonframework.eventstore.EventStreamNotFoundException;
+import org.axonframework.eventstore.SnapshotEventStore;
 import org.axonframework.repository.ConcurrencyException;
+import org.axonframework.serializer.SerializedObject;
 import org.axonframework.serializer.Serializer;
+import org.axonframework.serializer.SimpleSerializedObject;
+import org.axonframework.serializer.XStreamSerializer;
+import redis.clients.jedis.Client;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Transaction;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.axonframework.serializer.MessageSerializer.serializeMessage;
 
 /**
+ * Implementation of the {@link SnapshotEventStore} that stores events in a Redis key-value store. The events of each
+ * aggregate are stored in a list, with the key <code>[type].[aggregateIdentifier]</code>. Each element of the list
+ * holds a single event, in binary form. The latest snapshot of an aggregate is stored under the key
+ * <code>[type].[aggregateIdentifier].snapshot</code>.
+ * <p/>
+ * Events are appended using a single (variadic) <code>RPUSH</code> command in a transaction, which fails when another
+ * process appended events to the same aggregate concurrently. Events are read using <code>LRANGE</code> commands
+ * that each read a page of events (see {@link #setPageSize(int)}). Several of these commands are sent to Redis in a
+ * single round trip (see {@link #setPipelineDepth(int)}). When a snapshot is available, only the snapshot and the
+ * events that follow it are read. These commands are not executed atomically. When the events read do not directly
+ * follow the snapshot read (or, without a snapshot, do not start at sequence number 0), events were removed
+ * concurrently and the events are read again.
+ * <p/>
+ * By default, events summarized by a snapshot are kept. To save memory in the Redis instance, you can configure the
+ * number of events preceding the latest snapshot to keep (see {@link #setEventsRetainedBeforeSnapshot(int)}). Older
+ * events are removed from the list when a snapshot is appended.
+ *
  * @author Allard Buijze
+ * @since 2.0
  */
-public class RedisEventStore implements EventStore {
+public class RedisEventStore implements SnapshotEventStore {
+
+    /**
+     * The default number of events read using a single <code>LRANGE</code> command.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * The default number of <code>LRANGE</code> commands sent in a single round trip.
+     */
+    public static final int DEFAULT_PIPELINE_DEPTH = 10;
 
-    private Serializer eventSerializer;
     private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SNAPSHOT_KEY_SUFFIX = ".snapshot";
+    private static final int ENTRY_VERSION = 0;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private Serializer eventSerializer = new XStreamSerializer();
     private RedisConnectionProvider redisConnectionProvider;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int pipelineDepth = DEFAULT_PIPELINE_DEPTH;
+    private int eventsRetainedBeforeSnapshot = -1;
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * All events in the given stream must belong to the same aggregate.
+     */
     @Override
-    public void appendEvents(String type, final DomainEventStream events) {
-        Jedis jedis = redisConnectionProvider.newConnection();
+    public void appendEvents(String type, DomainEventStream events) {
+        if (!events.hasNext()) {
+            return;
+        }
         DomainEventMessage firstEvent = events.peek();
-        final byte[] key = (type + "." + firstEvent.getAggregateIdentifier()).getBytes(UTF8);
-        jedis.watch(key);
-        Long eventCount = jedis.llen(key);
-        if ((firstEvent.getSequenceNumber() != 0 && eventCount == null)
-                || firstEvent.getSequenceNumber() != eventCount) {
-            jedis.unwatch();
-            throw new ConcurrencyException(
-                    String.format("Concurrent modification detected for Aggregate identifier [%s], sequence: [%s]",
-                                  firstEvent.getAggregateIdentifier(),
-                                  firstEvent.getSequenceNumber()));
+        List<byte[]> entries = new ArrayList<byte[]>();
+        while (events.hasNext()) {
+            entries.add(toEntry(events.next()));
         }
-
+        byte[] key = eventsKey(type, firstEvent.getAggregateIdentifier());
+        Jedis jedis = redisConnectionProvider.newConnection();
         try {
-//            jedis.pipelined(new PipelineBlock() {
-//                @Override
-//                public void execute() {
-            Transaction multi = jedis.multi();
-            while (events.hasNext()) {
-                DomainEventMessage domainEvent = events.next();
-                multi.rpush(new String(key, UTF8), new String(eventSerializer.serialize(domainEvent).getData(), UTF8));
+            jedis.watch(key);
+            byte[] lastEntry = jedis.lindex(key, -1);
+            long expectedSequenceNumber = lastEntry == null ? 0 : readSequenceNumber(lastEntry) + 1;
+            if (firstEvent.getSequenceNumber() != expectedSequenceNumber) {
+                jedis.unwatch();
+                throw concurrencyException(firstEvent);
+            }
+            if (!pushAtomically(jedis.getClient(), key, entries)) {
+                throw concurrencyException(firstEvent);
             }
-            multi.exec();
-//                }
-//            });
-//            redis.clients.jedis.Transaction transaction = jedis.multi();
-//            while (events.hasNext()) {
-//                DomainEvent domainEvent = events.next();
-//
-//                transaction.rpush(new String(key, UTF8), new String(eventSerializer.serialize(domainEvent), UTF8));
-//            }
-//            transaction.exec();
         } finally {
             redisConnectionProvider.closeConnection(jedis);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The events are read from Redis before this method returns. They are deserialized while the returned stream is
+     * being read.
+     */
     @Override
     public DomainEventStream readEvents(String type, Object identifier) {
-        throw new UnsupportedOperationException("Method not yet implemented");
+        byte[] key = eventsKey(type, identifier);
+        byte[] snapshotKey = snapshotKey(type, identifier);
+        Jedis jedis = redisConnectionProvider.newConnection();
+        try {
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                RedisDomainEventStream eventStream = readEvents(jedis.getClient(), key, snapshotKey);
+                if (eventStream != null) {
+                    if (!eventStream.hasNext()) {
+                        throw new EventStreamNotFoundException(type, identifier);
+                    }
+                    return eventStream;
+                }
+            }
+            throw new EventStoreException(String.format(
+                    "Unable to read a consistent event stream for aggregate [%s] of type [%s]. "
+                            + "Events were removed concurrently.", identifier, type));
+        } finally {
+            redisConnectionProvider.closeConnection(jedis);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The snapshot replaces any snapshot stored earlier for the same aggregate. If configured, events preceding the
+     * snapshot are removed (see {@link #setEventsRetainedBeforeSnapshot(int)}).
+     */
+    @Override
+    public void appendSnapshotEvent(String type, DomainEventMessage snapshotEvent) {
+        byte[] key = eventsKey(type, snapshotEvent.getAggregateIdentifier());
+        byte[] snapshotKey = snapshotKey(type, snapshotEvent.getAggregateIdentifier());
+        byte[] entry = toEntry(snapshotEvent);
+        Jedis jedis = redisConnectionProvider.newConnection();
+        try {
+            if (eventsRetainedBeforeSnapshot < 0) {
+                jedis.set(snapshotKey, entry);
+                return;
+            }
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                jedis.watch(key);
+                byte[] firstEntry = jedis.lindex(key, 0);
+                // the index of the first event to keep. The event summarized last by the snapshot is always kept.
+                long trimIndex = firstEntry == null ? 0 : snapshotEvent.getSequenceNumber()
+                        - readSequenceNumber(firstEntry) - eventsRetainedBeforeSnapshot;
+                if (trimIndex <= 0) {
+                    jedis.unwatch();
+                    jedis.set(snapshotKey, entry);
+                    return;
+                }
+                Transaction transaction = jedis.multi();
+                transaction.set(snapshotKey, entry);
+                transaction.ltrim(key, trimIndex, -1);
+                if (transaction.exec() != null) {
+                    return;
+                }
+            }
+            throw new EventStoreException(String.format(
+                    "Unable to store snapshot for aggregate [%s] of type [%s]. Events were appended concurrently.",
+                    snapshotEvent.getAggregateIdentifier(), type));
+        } finally {
+            redisConnectionProvider.closeConnection(jedis);
+        }
+    }
+
+    /**
+     * Reads the latest snapshot and the events following it. Returns <code>null</code> if the events were trimmed
+     * while they were being read, which is detected by verifying that the first event read directly follows the
+     * snapshot, or is the first event of the aggregate if no snapshot was read.
+     */
+    private RedisDomainEventStream readEvents(Client client, byte[] key, byte[] snapshotKey) {
+        client.get(snapshotKey);
+        client.lindex(key, 0);
+        client.llen(key);
+        byte[] snapshotEntry = client.getBinaryBulkReply();
+        byte[] firstEntry = client.getBinaryBulkReply();
+        long eventCount = client.getIntegerReply();
+
+        long startIndex = 0;
+        long snapshotSequenceNumber = -1;
+        if (snapshotEntry != null && firstEntry != null) {
+            snapshotSequenceNumber = readSequenceNumber(snapshotEntry);
+            startIndex = Math.max(0, snapshotSequenceNumber + 1 - readSequenceNumber(firstEntry));
+        }
+        List<byte[]> entries = new ArrayList<byte[]>();
+        for (long pageStart = startIndex; pageStart < eventCount; pageStart += (long) pageSize * pipelineDepth) {
+            int pages = 0;
+            for (long start = pageStart; start < eventCount && pages < pipelineDepth; start += pageSize) {
+                client.lrange(key, start, Math.min(start + pageSize, eventCount) - 1);
+                pages++;
+            }
+            for (int i = 0; i < pages; i++) {
+                entries.addAll(client.getBinaryMultiBulkReply());
+            }
+        }
+        // without a snapshot, snapshotSequenceNumber is -1 and the events must start at the first event
+        if (!entries.isEmpty() && readSequenceNumber(entries.get(0)) != snapshotSequenceNumber + 1) {
+            return null;
+        }
+        return new RedisDomainEventStream(snapshotEntry, entries);
+    }
+
+    private boolean pushAtomically(Client client, byte[] key, List<byte[]> entries) {
+        client.multi();
+        client.rpush(key, entries.toArray(new byte[entries.size()][]));
+        client.exec();
+        // the replies of MULTI, RPUSH and EXEC. The latter is null when a watched key was modified.
+        List<Object> replies = client.getAll();
+        for (Object reply : replies) {
+            if (reply instanceof Exception) {
+                throw new EventStoreException("Unable to append events to Redis", (Exception) reply);
+            }
+        }
+        return replies.get(replies.size() - 1) != null;
     }
 
+    private byte[] toEntry(DomainEventMessage event) {
+        SerializedObject serializedEvent = serializeMessage(event, eventSerializer);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(serializedEvent.getData().length + 64);
+        BinaryEntryOutputStream out = new BinaryEntryOutputStream(bytes);
+        try {
+            out.writeNumber(ENTRY_VERSION);
+            out.writeNumber(event.getSequenceNumber());
+            out.writeString(serializedEvent.getType().getName());
+            out.writeNumber(serializedEvent.getType().getRevision());
+            out.writeBytes(serializedEvent.getData());
+        } catch (IOException e) {
+            throw new EventStoreException("Unable to serialize event", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private DomainEventMessage fromEntry(byte[] entry) {
+        BinaryEntryInputStream in = new BinaryEntryInputStream(new ByteArrayInputStream(entry));
+        try {
+            in.readNumber();
+            in.readNumber();
+            String type = in.readString();
+            int revision = (int) in.readNumber();
+            byte[] data = in.readBytes();
+            return (DomainEventMessage) eventSerializer.deserialize(new SimpleSerializedObject(data, type, revision));
+        } catch (IOException e) {
+            throw new EventStoreException("Unable to deserialize event", e);
+        }
+    }
+
+    private static long readSequenceNumber(byte[] entry) {
+        BinaryEntryInputStream in = new BinaryEntryInputStream(new ByteArrayInputStream(entry));
+        try {
+            in.readNumber();
+            return in.readNumber();
+        } catch (IOException e) {
+            throw new EventStoreException("Unable to read the sequence number of an event entry", e);
+        }
+    }
+
+    private static ConcurrencyException concurrencyException(DomainEventMessage firstEvent) {
+        return new ConcurrencyException(
+                String.format("Concurrent modification detected for Aggregate identifier [%s], sequence: [%s]",
+                              firstEvent.getAggregateIdentifier(),
+                              firstEvent.getSequenceNumber()));
+    }
+
+    private static byte[] eventsKey(String type, Object identifier) {
+        return (type + "." + identifier).getBytes(UTF8);
+    }
+
+    private static byte[] snapshotKey(String type, Object identifier) {
+        return (type + "." + identifier + SNAPSHOT_KEY_SUFFIX).getBytes(UTF8);
+    }
+
+    /**
+     * Sets the serializer used to serialize events and snapshot events. Defaults to an {@link XStreamSerializer}.
+     *
+     * @param serializer The serializer to serialize events with
+     */
     public void setEventSerializer(Serializer serializer) {
         this.eventSerializer = serializer;
     }
 
+    /**
+     * Sets the provider of the connections to the Redis instance.
+     *
+     * @param redisConnectionProvider The provider of connections to Redis
+     */
     public void setRedisConnectionProvider(RedisConnectionProvider redisConnectionProvider) {
         this.redisConnectionProvider = redisConnectionProvider;
     }
+
+    /**
+     * Sets the number of events read from Redis using a single <code>LRANGE</code> command. Defaults to {@link
+     * #DEFAULT_PAGE_SIZE}.
+     *
+     * @param pageSize The number of events to read per command
+     */
+    public void setPageSize(int pageSize) {
+        Assert.isTrue(pageSize > 0, "The page size must be a positive number");
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Sets the number of <code>LRANGE</code> commands sent to Redis before reading their replies. A higher number
+     * reduces the number of round trips needed to read large event streams. Defaults to {@link
+     * #DEFAULT_PIPELINE_DEPTH}.
+     *
+     * @param pipelineDepth The number of pages to read in a single round trip
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        Assert.isTrue(pipelineDepth > 0, "The pipeline depth must be a positive number");
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * Sets the number of events preceding a snapshot that are kept when the snapshot is appended. Older events are
+     * removed. The last event summarized by the snapshot is always kept. Defaults to -1, meaning that events are never
+     * removed.
+     *
+     * @param eventsRetainedBeforeSnapshot The number of events to keep before a snapshot, or a negative number to keep
+     *                                     all events
+     */
+    public void setEventsRetainedBeforeSnapshot(int eventsRetainedBeforeSnapshot) {
+        this.eventsRetainedBeforeSnapshot = eventsRetainedBeforeSnapshot;
+    }
+
+    /**
+     * DomainEventStream that deserializes the entries read from Redis when they are requested.
+     */
+    private class RedisDomainEventStream implements DomainEventStream {
+
+        private final List<byte[]> entries;
+        private int index;
+        private DomainEventMessage next;
+
+        public RedisDomainEventStream(byte[] snapshotEntry, List<byte[]> eventEntries) {
+            this.entries = new ArrayList<byte[]>(eventEntries.size() + 1);
+            if (snapshotEntry != null) {
+                entries.add(snapshotEntry);
+            }
+            entries.addAll(eventEntries);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < entries.size();
+        }
+
+        @Override
+        public DomainEventMessage next() {
+            DomainEventMessage current = peek();
+            next = null;
+            index++;
+            return current;
+        }
+
+        @Override
+        public DomainEventMessage peek() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more events in this stream");
+            }
+            if (next == null) {
+                next = fromEntry(entries.get(index));
+            }
+            return next;
+        }
+    }
 }
@@ -17,23 +17,62 @@
 package org.axonframework.eventstore.redis;
 
 import org.apache.commons.pool.impl.GenericObjectPool;
+import org.axonframework.domain.DomainEventStream;
 import org.axonframework.integrationtests.eventstore.benchmark.AbstractEventStoreBenchmark;
 import org.axonframework.serializer.XStreamSerializer;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
+ * Benchmark of the RedisEventStore. Appends events to a number of aggregates concurrently, and then reads the events
+ * of these aggregates a number of times. By default, the benchmark connects to a Redis server on localhost. Use the
+ * <code>redis.host</code> system property to use another host.
+ *
  * @author Allard Buijze
  */
 public class RedisEventStoreBenchmark extends AbstractEventStoreBenchmark {
 
+    private static final int READS_PER_AGGREGATE = 10;
+
     private RedisEventStore redisEventStore;
+    private final Queue<UUID> aggregateIdentifiers = new ConcurrentLinkedQueue<UUID>();
 
     public static void main(String[] args) throws Exception {
-        AbstractEventStoreBenchmark benchmark = new RedisEventStoreBenchmark();
+        RedisEventStoreBenchmark benchmark = new RedisEventStoreBenchmark();
         benchmark.startBenchMark();
+        benchmark.startReadBenchmark();
+    }
+
+    private void startReadBenchmark() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < getThreadCount(); t++) {
+            Thread thread = new Thread(new RedisReadBenchmark());
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long end = System.currentTimeMillis();
+
+        long eventCount = (long) getThreadCount() * READS_PER_AGGREGATE * getTransactionCount()
+                * getTransactionSize();
+        System.out.println(String.format(
+                "Result (%s): %s threads concurrently read %s aggregates %s times in %s milliseconds. "
+                        + "That is an average of %.0f events per second",
+                getClass().getSimpleName(),
+                getThreadCount(),
+                getThreadCount(),
+                READS_PER_AGGREGATE,
+                (end - start),
+                ((float) eventCount / ((float) (end - start) / 1000))));
     }
 
     @Override
@@ -61,6 +100,21 @@ public class RedisEventStoreBenchmark extends AbstractEventStoreBenchmark {
             for (int t = 0; t < getTransactionCount(); t++) {
                 eventSequence = saveAndLoadLargeNumberOfEvents(aggregateId, redisEventStore, eventSequence);
             }
+            aggregateIdentifiers.add(aggregateId);
+        }
+    }
+
+    private class RedisReadBenchmark implements Runnable {
+
+        @Override
+        public void run() {
+            UUID aggregateId = aggregateIdentifiers.poll();
+            for (int t = 0; t < READS_PER_AGGREGATE; t++) {
+                DomainEventStream events = redisEventStore.readEvents("benchmark", aggregateId);
+                while (events.hasNext()) {
+                    events.next();
+                }
+            }
         }
     }
 
@@ -72,7 +126,7 @@ public class RedisEventStoreBenchmark extends AbstractEventStoreBenchmark {
             GenericObjectPool.Config poolConfig = new GenericObjectPool.Config();
             poolConfig.maxActive = RedisEventStoreBenchmark.this.getThreadCount();
             poolConfig.minIdle = RedisEventStoreBenchmark.this.getThreadCount();
-            pool = new JedisPool(poolConfig, "192.168.56.101", 6379, 10000);
+            pool = new JedisPool(poolConfig, System.getProperty("redis.host", "localhost"), 6379, 10000);
         }
 
         @Override
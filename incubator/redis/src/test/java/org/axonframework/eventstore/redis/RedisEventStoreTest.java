@@ -17,15 +17,23 @@
 package org.axonframework.eventstore.redis;
 
 import org.apache.commons.pool.impl.GenericObjectPool;
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
 import org.axonframework.domain.GenericDomainEventMessage;
 import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.eventstore.EventStreamNotFoundException;
 import org.axonframework.integrationtests.commandhandling.StubDomainEvent;
+import org.axonframework.repository.ConcurrencyException;
 import org.axonframework.serializer.XStreamSerializer;
 import org.junit.*;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
 
 /**
  * @author Allard Buijze
@@ -59,22 +67,108 @@ public class RedisEventStoreTest {
     }
 
     @Test
-    public void testAppend() {
-        String id = "blabla";
-        String dbKey = "TEST." + id;
-        jedis.del(dbKey);
-        testSubject.appendEvents("TEST", new SimpleDomainEventStream(
-                new GenericDomainEventMessage<StubDomainEvent>(id, 0, new StubDomainEvent()),
-                new GenericDomainEventMessage<StubDomainEvent>(id, 1, new StubDomainEvent()),
-                new GenericDomainEventMessage<StubDomainEvent>(id, 2, new StubDomainEvent()),
-                new GenericDomainEventMessage<StubDomainEvent>(id, 3, new StubDomainEvent()),
-                new GenericDomainEventMessage<StubDomainEvent>(id, 4, new StubDomainEvent()),
-                new GenericDomainEventMessage<StubDomainEvent>(id, 5, new StubDomainEvent())));
-
-        List<String> events = jedis.lrange(dbKey, 0, -1);
-        for (String key : events) {
-            System.out.println(key);
+    public void testAppendAndReadEvents() {
+        String id = UUID.randomUUID().toString();
+        testSubject.appendEvents("TEST", new SimpleDomainEventStream(createEvents(id, 0, 6)));
+
+        assertEquals(6L, (long) jedis.llen("TEST." + id));
+        assertSequence(readAll(testSubject.readEvents("TEST", id)), 0, 6);
+    }
+
+    @Test
+    public void testReadEventsInPages() {
+        testSubject.setPageSize(3);
+        testSubject.setPipelineDepth(2);
+        String id = UUID.randomUUID().toString();
+        for (int i = 0; i < 5; i++) {
+            testSubject.appendEvents("TEST", new SimpleDomainEventStream(createEvents(id, i * 5, 5)));
+        }
+
+        List<DomainEventMessage> events = readAll(testSubject.readEvents("TEST", id));
+        assertSequence(events, 0, 25);
+        assertEquals(StubDomainEvent.class, events.get(24).getPayload().getClass());
+    }
+
+    @Test(expected = EventStreamNotFoundException.class)
+    public void testReadEvents_UnknownAggregate() {
+        testSubject.readEvents("TEST", UUID.randomUUID().toString());
+    }
+
+    @Test
+    public void testAppendEvents_ConcurrentModification() {
+        String id = UUID.randomUUID().toString();
+        testSubject.appendEvents("TEST", new SimpleDomainEventStream(createEvents(id, 0, 3)));
+        try {
+            testSubject.appendEvents("TEST", new SimpleDomainEventStream(createEvents(id, 2, 2)));
+            fail("Expected ConcurrencyException");
+        } catch (ConcurrencyException e) {
+            assertTrue(e.getMessage().contains(id));
+        }
+        assertSequence(readAll(testSubject.readEvents("TEST", id)), 0, 3);
+    }
+
+    @Test
+    public void testReadEventsAfterSnapshot() {
+        String id = UUID.randomUUID().toString();
+        testSubject.appendEvents("TEST", new SimpleDomainEventStream(createEvents(id, 0, 10)));
+        testSubject.appendSnapshotEvent("TEST", new GenericDomainEventMessage<StubDomainEvent>(
+                id, 5, new StubDomainEvent()));
+
+        List<DomainEventMessage> events = readAll(testSubject.readEvents("TEST", id));
+        assertEquals(5, events.size());
+        assertEquals(5L, events.get(0).getSequenceNumber());
+        assertSequence(events.subList(1, 5), 6, 4);
+        assertEquals(10L, (long) jedis.llen("TEST." + id));
+    }
+
+    @Test
+    public void testEventsTrimmedWhenSnapshotAppended() {
+        testSubject.setEventsRetainedBeforeSnapshot(2);
+        String id = UUID.randomUUID().toString();
+        testSubject.appendEvents("TEST", new SimpleDomainEventStream(createEvents(id, 0, 10)));
+        testSubject.appendSnapshotEvent("TEST", new GenericDomainEventMessage<StubDomainEvent>(
+                id, 5, new StubDomainEvent()));
+
+        // events 3 and 4 are retained, as well as the events from the snapshot's sequence number on
+        assertEquals(7L, (long) jedis.llen("TEST." + id));
+        testSubject.appendEvents("TEST", new SimpleDomainEventStream(createEvents(id, 10, 1)));
+        testSubject.appendSnapshotEvent("TEST", new GenericDomainEventMessage<StubDomainEvent>(
+                id, 10, new StubDomainEvent()));
+
+        assertEquals(3L, (long) jedis.llen("TEST." + id));
+        List<DomainEventMessage> events = readAll(testSubject.readEvents("TEST", id));
+        assertEquals(1, events.size());
+        assertEquals(10L, events.get(0).getSequenceNumber());
+        try {
+            testSubject.appendEvents("TEST", new SimpleDomainEventStream(createEvents(id, 10, 1)));
+            fail("Expected ConcurrencyException");
+        } catch (ConcurrencyException e) {
+            // expected
+        }
+    }
+
+    private void assertSequence(List<DomainEventMessage> events, long firstSequenceNumber, int count) {
+        assertEquals(count, events.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(firstSequenceNumber + i, events.get(i).getSequenceNumber());
+        }
+    }
+
+    private List<DomainEventMessage> readAll(DomainEventStream eventStream) {
+        List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
+        while (eventStream.hasNext()) {
+            events.add(eventStream.next());
+        }
+        return events;
+    }
+
+    private List<DomainEventMessage> createEvents(Object identifier, long firstSequenceNumber, int count) {
+        List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
+        for (int i = 0; i < count; i++) {
+            events.add(new GenericDomainEventMessage<StubDomainEvent>(identifier, firstSequenceNumber + i,
+                                                                      new StubDomainEvent()));
         }
+        return events;
     }
 
     private static class PooledRedisConnectionProvider implements RedisConnectionProvider {
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.axonframework.eventstore.redis;
+
+import org.axonframework.common.io.BinaryEntryOutputStream;
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.eventstore.EventStoreException;
+import org.axonframework.integrationtests.commandhandling.StubDomainEvent;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.XStreamSerializer;
+import org.junit.*;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the RedisEventStore against a mocked Redis client, to simulate modifications by other clients in between the
+ * commands sent by the event store.
+ *
+ * @author Allard Buijze
+ */
+public class RedisEventStoreTest_MockedClient {
+
+    private static final byte[] KEY = "TEST.id".getBytes();
+
+    private RedisEventStore testSubject;
+    private XStreamSerializer serializer;
+    private Client client;
+
+    @Before
+    public void setUp() {
+        serializer = new XStreamSerializer();
+        client = mock(Client.class);
+        final Jedis jedis = mock(Jedis.class);
+        when(jedis.getClient()).thenReturn(client);
+        testSubject = new RedisEventStore();
+        testSubject.setEventSerializer(serializer);
+        testSubject.setRedisConnectionProvider(new RedisConnectionProvider() {
+            @Override
+            public Jedis newConnection() {
+                return jedis;
+            }
+
+            @Override
+            public void closeConnection(Jedis toClose) {
+            }
+        });
+    }
+
+    @Test
+    public void testReadEvents() throws IOException {
+        when(client.getBinaryBulkReply()).thenReturn(null, entry(0));
+        when(client.getIntegerReply()).thenReturn(2L);
+        when(client.getBinaryMultiBulkReply()).thenReturn(Arrays.asList(entry(0), entry(1)));
+
+        assertSequence(readAll(testSubject.readEvents("TEST", "id")), 0, 2);
+        verify(client).lrange(KEY, 0, 1);
+    }
+
+    @Test
+    public void testReadEvents_EventsTrimmedAfterReadingSnapshot() throws IOException {
+        // the first attempt finds no snapshot, but the events preceding the snapshot were removed by the time the
+        // events are read. The second attempt finds the snapshot.
+        when(client.getBinaryBulkReply()).thenReturn(null, entry(5), entry(5), entry(5));
+        when(client.getIntegerReply()).thenReturn(3L, 3L);
+        when(client.getBinaryMultiBulkReply()).thenReturn(Arrays.asList(entry(5), entry(6), entry(7)),
+                                                          Arrays.asList(entry(6), entry(7)));
+
+        assertSequence(readAll(testSubject.readEvents("TEST", "id")), 5, 3);
+        verify(client).lrange(KEY, 0, 2);
+        verify(client).lrange(KEY, 1, 2);
+    }
+
+    @Test
+    public void testReadEvents_FailsWhenNoConsistentStreamIsRead() throws IOException {
+        when(client.getBinaryBulkReply()).thenReturn(null, entry(5), null, entry(5), null, entry(5));
+        when(client.getIntegerReply()).thenReturn(1L);
+        when(client.getBinaryMultiBulkReply()).thenReturn(Arrays.asList(entry(5)));
+
+        try {
+            testSubject.readEvents("TEST", "id");
+            fail("Expected an EventStoreException");
+        } catch (EventStoreException e) {
+            assertTrue(e.getMessage().contains("removed concurrently"));
+        }
+        verify(client, times(3)).lrange(any(byte[].class), anyLong(), anyLong());
+    }
+
+    private byte[] entry(long sequenceNumber) throws IOException {
+        DomainEventMessage event = new GenericDomainEventMessage<StubDomainEvent>("id", sequenceNumber,
+                                                                                  new StubDomainEvent());
+        SerializedObject serializedEvent = serializer.serialize(event);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryEntryOutputStream out = new BinaryEntryOutputStream(bytes);
+        out.writeNumber(0);
+        out.writeNumber(sequenceNumber);
+        out.writeString(serializedEvent.getType().getName());
+        out.writeNumber(serializedEvent.getType().getRevision());
+        out.writeBytes(serializedEvent.getData());
+        return bytes.toByteArray();
+    }
+
+    private void assertSequence(List<DomainEventMessage> events, long firstSequenceNumber, int count) {
+        assertEquals(count, events.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(firstSequenceNumber + i, events.get(i).getSequenceNumber());
+        }
+    }
+
+    private List<DomainEventMessage> readAll(DomainEventStream eventStream) {
+        List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
+        while (eventStream.hasNext()) {
+            events.add(eventStream.next());
+        }
+        return events;
+    }
+}
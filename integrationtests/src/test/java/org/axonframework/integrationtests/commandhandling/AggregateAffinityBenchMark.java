@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.commandhandling;
+
+import org.axonframework.commandhandling.AsynchronousCommandBus;
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.CommandCallback;
+import org.axonframework.commandhandling.CommandHandler;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.commandhandling.SimpleCommandBus;
+import org.axonframework.commandhandling.annotation.AnnotationCommandTargetResolver;
+import org.axonframework.commandhandling.annotation.TargetAggregateIdentifier;
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.eventhandling.SimpleEventBus;
+import org.axonframework.eventsourcing.EventSourcingRepository;
+import org.axonframework.eventstore.EventStore;
+import org.axonframework.repository.LockingStrategy;
+import org.axonframework.unitofwork.UnitOfWork;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.axonframework.commandhandling.GenericCommandMessage.asCommandMessage;
+
+/**
+ * Measures the latency of commands that target aggregates following a skewed (Zipfian) distribution, loaded from an
+ * {@link EventSourcingRepository} with pessimistic locking. Each command holds the lock on its aggregate while waiting
+ * for a simulated remote call. Commands are dispatched at a fixed rate, and the latency of each command is measured
+ * from the moment it was due to be dispatched until its result is reported.
+ * <p/>
+ * Pass "simple" as argument to dispatch the commands on a {@link SimpleCommandBus} from a fixed pool of dispatching
+ * threads, like the request threads of a web container. Pass "async" to use an {@link AsynchronousCommandBus} with a
+ * shared queue. Pass "affinity" (the default) to use an AsynchronousCommandBus that schedules commands with affinity
+ * to their target aggregate. Optional second and third arguments override the exponent of the Zipfian distribution
+ * (0.99) and the number of commands dispatched per second (5000). Run each variant in a separate JVM, to prevent the
+ * measurements from influencing each other.
+ *
+ * @author Allard Buijze
+ */
+public class AggregateAffinityBenchMark {
+
+    private static final int THREAD_COUNT = 8;
+    private static final int AGGREGATE_COUNT = 1000;
+    private static final int WARMUP_COMMANDS = 2000;
+    private static final int COMMAND_COUNT = 10000;
+    private static final long REMOTE_CALL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public static void main(String[] args) throws InterruptedException {
+        String mode = args.length > 0 ? args[0] : "affinity";
+        double exponent = args.length > 1 ? Double.parseDouble(args[1]) : 0.99;
+        int commandsPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+
+        final EventSourcingRepository<StubAggregate> repository =
+                new EventSourcingRepository<StubAggregate>(StubAggregate.class, LockingStrategy.PESSIMISTIC);
+        repository.setEventBus(new SimpleEventBus(false));
+        repository.setEventStore(new LatestEventStore(AGGREGATE_COUNT));
+
+        CommandBus commandBus;
+        Dispatcher dispatcher;
+        if ("simple".equals(mode)) {
+            commandBus = new SimpleCommandBus(false);
+            dispatcher = new PooledDispatcher(commandBus, Executors.newFixedThreadPool(THREAD_COUNT));
+        } else if ("async".equals(mode)) {
+            commandBus = new AsynchronousCommandBus(THREAD_COUNT, 1000, AsynchronousCommandBus.SaturationPolicy.BLOCK,
+                                                    false);
+            dispatcher = new DirectDispatcher(commandBus);
+        } else {
+            commandBus = new AsynchronousCommandBus(THREAD_COUNT, 1000, AsynchronousCommandBus.SaturationPolicy.BLOCK,
+                                                    new AnnotationCommandTargetResolver(), false);
+            dispatcher = new DirectDispatcher(commandBus);
+        }
+        commandBus.subscribe(ChangeCommand.class, new CommandHandler<ChangeCommand>() {
+            @Override
+            public Object handle(CommandMessage<ChangeCommand> command, UnitOfWork unitOfWork) throws Throwable {
+                repository.load(command.getPayload().getAggregateId()).makeAChange();
+                LockSupport.parkNanos(REMOTE_CALL_NANOS);
+                return null;
+            }
+        });
+
+        ZipfianDistribution distribution = new ZipfianDistribution(AGGREGATE_COUNT, exponent, new Random(42));
+        run(dispatcher, distribution, commandsPerSecond, WARMUP_COMMANDS);
+        CompletionCallback result = run(dispatcher, distribution, commandsPerSecond, COMMAND_COUNT);
+
+        long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+        System.out.println(String.format("%s (zipf %.2f, %d commands/s): latency p50 %d us, p99 %d us, max %d us, "
+                                                 + "%d failures",
+                                         mode, exponent, commandsPerSecond,
+                                         latencies[latencies.length / 2] / 1000,
+                                         latencies[latencies.length * 99 / 100] / 1000,
+                                         latencies[latencies.length - 1] / 1000,
+                                         result.failures.get()));
+        dispatcher.stop();
+        if (commandBus instanceof AsynchronousCommandBus) {
+            ((AsynchronousCommandBus) commandBus).stop();
+        }
+    }
+
+    private static CompletionCallback run(Dispatcher dispatcher, ZipfianDistribution distribution,
+                                          int commandsPerSecond, int commandCount) throws InterruptedException {
+        CompletionCallback callback = new CompletionCallback(commandCount);
+        long interval = TimeUnit.SECONDS.toNanos(1) / commandsPerSecond;
+        long start = System.nanoTime();
+        for (int i = 0; i < commandCount; i++) {
+            long dueTime = start + i * interval;
+            long delay;
+            while ((delay = dueTime - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            dispatcher.dispatch(asCommandMessage(new ChangeCommand(distribution.next())),
+                                callback.forCommand(i, dueTime));
+        }
+        callback.completed.await();
+        return callback;
+    }
+
+    public static class ChangeCommand {
+
+        @TargetAggregateIdentifier
+        private final Integer aggregateId;
+
+        public ChangeCommand(Integer aggregateId) {
+            this.aggregateId = aggregateId;
+        }
+
+        public Integer getAggregateId() {
+            return aggregateId;
+        }
+    }
+
+    /**
+     * Draws aggregate identifiers from 0 (the most popular) to <code>size</code> - 1 (the least popular), where the
+     * probability of identifier i is proportional to 1 / (i + 1)^exponent.
+     */
+    private static class ZipfianDistribution {
+
+        private final double[] cumulativeProbabilities;
+        private final Random random;
+
+        public ZipfianDistribution(int size, double exponent, Random random) {
+            this.random = random;
+            cumulativeProbabilities = new double[size];
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += 1 / Math.pow(i + 1, exponent);
+                cumulativeProbabilities[i] = sum;
+            }
+            for (int i = 0; i < size; i++) {
+                cumulativeProbabilities[i] /= sum;
+            }
+        }
+
+        public Integer next() {
+            int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+            return index >= 0 ? index : Math.min(-index - 1, cumulativeProbabilities.length - 1);
+        }
+    }
+
+    /**
+     * Event store that only keeps the first and the most recent event of each aggregate, so that loading an aggregate
+     * takes the same time regardless of the number of commands it has handled.
+     */
+    private static class LatestEventStore implements EventStore {
+
+        private final ConcurrentMap<Object, DomainEventMessage[]> events =
+                new ConcurrentHashMap<Object, DomainEventMessage[]>();
+
+        public LatestEventStore(int aggregateCount) {
+            for (int i = 0; i < aggregateCount; i++) {
+                DomainEventMessage created = new GenericDomainEventMessage<StubAggregateCreatedEvent>(
+                        i, 0, new StubAggregateCreatedEvent());
+                events.put(i, new DomainEventMessage[]{created});
+            }
+        }
+
+        @Override
+        public void appendEvents(String type, DomainEventStream stream) {
+            while (stream.hasNext()) {
+                DomainEventMessage event = stream.next();
+                events.put(event.getAggregateIdentifier(),
+                           new DomainEventMessage[]{events.get(event.getAggregateIdentifier())[0], event});
+            }
+        }
+
+        @Override
+        public DomainEventStream readEvents(String type, Object identifier) {
+            return new SimpleDomainEventStream(events.get(identifier));
+        }
+    }
+
+    private interface Dispatcher {
+
+        void dispatch(CommandMessage<?> command, CommandCallback<Object> callback);
+
+        void stop();
+    }
+
+    private static class DirectDispatcher implements Dispatcher {
+
+        private final CommandBus commandBus;
+
+        public DirectDispatcher(CommandBus commandBus) {
+            this.commandBus = commandBus;
+        }
+
+        @Override
+        public void dispatch(CommandMessage<?> command, CommandCallback<Object> callback) {
+            commandBus.dispatch(command, callback);
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+
+    private static class PooledDispatcher implements Dispatcher {
+
+        private final CommandBus commandBus;
+        private final ExecutorService executor;
+
+        public PooledDispatcher(CommandBus commandBus, ExecutorService executor) {
+            this.commandBus = commandBus;
+            this.executor = executor;
+        }
+
+        @Override
+        public void dispatch(final CommandMessage<?> command, final CommandCallback<Object> callback) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    commandBus.dispatch(command, callback);
+                }
+            });
+        }
+
+        @Override
+        public void stop() {
+            executor.shutdown();
+        }
+    }
+
+    private static class CompletionCallback {
+
+        private final CountDownLatch completed;
+        private final AtomicLong failures = new AtomicLong();
+        private final long[] latencies;
+
+        public CompletionCallback(int commandCount) {
+            completed = new CountDownLatch(commandCount);
+            latencies = new long[commandCount];
+        }
+
+        public CommandCallback<Object> forCommand(final int index, final long dueTime) {
+            return new CommandCallback<Object>() {
+                @Override
+                public void onSuccess(Object result) {
+                    complete();
+                }
+
+                @Override
+                public void onFailure(Throwable cause) {
+                    failures.incrementAndGet();
+                    complete();
+                }
+
+                private void complete() {
+                    latencies[index] = System.nanoTime() - dueTime;
+                    completed.countDown();
+                }
+            };
+        }
+    }
+}
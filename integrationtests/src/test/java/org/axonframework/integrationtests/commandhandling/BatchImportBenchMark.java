@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.commandhandling;
+
+import org.axonframework.commandhandling.CommandBatch;
+import org.axonframework.commandhandling.CommandCallback;
+import org.axonframework.commandhandling.SimpleCommandBus;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+import static org.axonframework.commandhandling.GenericCommandMessage.asCommandMessage;
+
+/**
+ * Measures the throughput of an import that creates aggregates using a {@link SimpleCommandBus} with a transactional
+ * interceptor, and a JPA event store on a file based database that writes its transaction log to disk on each commit.
+ * Pass the number of commands to dispatch in each {@link CommandBatch} as argument (100 by default). With a batch size
+ * of 1, each command is dispatched individually. Run each variant in a separate JVM, to prevent the measurements from
+ * influencing each other.
+ *
+ * @author Allard Buijze
+ */
+public class BatchImportBenchMark {
+
+    private static final int WARMUP_COMMANDS = 20000;
+    private static final int COMMAND_COUNT = 100000;
+
+    public static void main(String[] args) {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        deleteDirectory(new File("target/batch-import-benchmark"));
+        ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(
+                "/META-INF/spring/benchmark-batch-import-context.xml");
+        try {
+            new JdbcTemplate(context.getBean(DataSource.class)).execute("SET WRITE_DELAY FALSE");
+            SimpleCommandBus commandBus = context.getBean(SimpleCommandBus.class);
+
+            importAggregates(commandBus, batchSize, WARMUP_COMMANDS);
+            long start = System.nanoTime();
+            long failures = importAggregates(commandBus, batchSize, COMMAND_COUNT);
+            long duration = System.nanoTime() - start;
+
+            System.out.println(String.format("Batch size %d: %d commands/s, %d us/command, %d failures",
+                                             batchSize, COMMAND_COUNT * 1000000000L / duration,
+                                             duration / COMMAND_COUNT / 1000, failures));
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static long importAggregates(SimpleCommandBus commandBus, int batchSize, int commandCount) {
+        FailureCounter failureCounter = new FailureCounter();
+        for (int i = 0; i < commandCount; i += batchSize) {
+            if (batchSize == 1) {
+                commandBus.dispatch(asCommandMessage(new CreateStubAggregateCommand(UUID.randomUUID())),
+                                    failureCounter);
+            } else {
+                CommandBatch batch = new CommandBatch(CommandBatch.FailurePolicy.SPLIT_AND_RETRY);
+                for (int j = i; j < Math.min(i + batchSize, commandCount); j++) {
+                    batch.add(asCommandMessage(new CreateStubAggregateCommand(UUID.randomUUID())), failureCounter);
+                }
+                commandBus.dispatchBatch(batch);
+            }
+        }
+        return failureCounter.failures.get();
+    }
+
+    private static class FailureCounter implements CommandCallback<Object> {
+
+        private final AtomicLong failures = new AtomicLong();
+
+        @Override
+        public void onSuccess(Object result) {
+        }
+
+        @Override
+        public void onFailure(Throwable cause) {
+            failures.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.commandhandling;
+
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.commandhandling.CommandTargetResolver;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.VersionedAggregateIdentifier;
+import org.axonframework.commandhandling.annotation.AnnotationCommandTargetResolver;
+import org.axonframework.commandhandling.annotation.TargetAggregateIdentifier;
+import org.axonframework.commandhandling.annotation.TargetAggregateVersion;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.UUID;
+
+import static org.axonframework.common.ReflectionUtils.*;
+
+/**
+ * Measures the time needed to resolve the target aggregate of a command using the {@link
+ * AnnotationCommandTargetResolver}. Pass "uncached" as argument to measure a resolver that inspects the command
+ * payload for each command, like the AnnotationCommandTargetResolver did before it cached its accessors. Run each
+ * variant in a separate JVM, to prevent the measurements from influencing each other.
+ *
+ * @author Allard Buijze
+ */
+public class CommandTargetResolutionBenchMark {
+
+    private static final int WARMUP_ITERATIONS = 500000;
+    private static final int ITERATIONS = 5000000;
+
+    public static void main(String[] args) {
+        boolean uncached = args.length > 0 && "uncached".equals(args[0]);
+        CommandTargetResolver resolver = uncached
+                ? new UncachedTargetResolver()
+                : new AnnotationCommandTargetResolver();
+        CommandMessage<?>[] commands = new CommandMessage<?>[]{
+                GenericCommandMessage.asCommandMessage(new ShipOrderCommand(UUID.randomUUID().toString(), 3L)),
+                GenericCommandMessage.asCommandMessage(new CancelOrderCommand(UUID.randomUUID().toString(), 7L))};
+
+        resolve(resolver, commands, WARMUP_ITERATIONS);
+        long start = System.nanoTime();
+        long versions = resolve(resolver, commands, ITERATIONS);
+        long duration = System.nanoTime() - start;
+
+        System.out.println(String.format("%s resolver: %d ns/command (checksum %d)",
+                                         uncached ? "Uncached" : "Caching", duration / ITERATIONS, versions));
+    }
+
+    private static long resolve(CommandTargetResolver resolver, CommandMessage<?>[] commands, int iterations) {
+        long versions = 0;
+        for (int i = 0; i < iterations; i++) {
+            VersionedAggregateIdentifier target = resolver.resolveTarget(commands[i % commands.length]);
+            versions += target.getVersion();
+        }
+        return versions;
+    }
+
+    /**
+     * Resolves the target the way the AnnotationCommandTargetResolver used to: by looking up the annotated members
+     * of the payload for each command.
+     */
+    private static class UncachedTargetResolver implements CommandTargetResolver {
+
+        @Override
+        public VersionedAggregateIdentifier resolveTarget(CommandMessage<?> command) {
+            try {
+                Object identifier = find(command, TargetAggregateIdentifier.class);
+                Object version = find(command, TargetAggregateVersion.class);
+                return new VersionedAggregateIdentifier(identifier, version == null
+                        ? null
+                        : ((Number) version).longValue());
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Could not resolve target", e);
+            }
+        }
+
+        private Object find(CommandMessage<?> command, Class<? extends java.lang.annotation.Annotation> annotation)
+                throws Exception {
+            for (Method m : methodsOf(command.getPayloadType())) {
+                if (m.isAnnotationPresent(annotation)) {
+                    ensureAccessible(m);
+                    return m.invoke(command.getPayload());
+                }
+            }
+            for (Field f : fieldsOf(command.getPayloadType())) {
+                if (f.isAnnotationPresent(annotation)) {
+                    return getFieldValue(f, command.getPayload());
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class ShipOrderCommand {
+
+        @TargetAggregateIdentifier
+        private final String orderId;
+        @TargetAggregateVersion
+        private final Long expectedVersion;
+        private final String carrier = "carrier";
+        private final String trackingCode = "tracking";
+
+        public ShipOrderCommand(String orderId, Long expectedVersion) {
+            this.orderId = orderId;
+            this.expectedVersion = expectedVersion;
+        }
+
+        public String getCarrier() {
+            return carrier;
+        }
+
+        public String getTrackingCode() {
+            return trackingCode;
+        }
+    }
+
+    public static class CancelOrderCommand {
+
+        private final String orderId;
+        private final long expectedVersion;
+        private final String reason = "reason";
+
+        public CancelOrderCommand(String orderId, long expectedVersion) {
+            this.orderId = orderId;
+            this.expectedVersion = expectedVersion;
+        }
+
+        @TargetAggregateIdentifier
+        public String getOrderId() {
+            return orderId;
+        }
+
+        @TargetAggregateVersion
+        public long getExpectedVersion() {
+            return expectedVersion;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.eventhandling;
+
+import org.axonframework.common.annotation.CglibHandlerMethodInvokerFactory;
+import org.axonframework.common.annotation.HandlerMethodInvoker;
+import org.axonframework.common.annotation.HandlerMethodInvokerFactory;
+import org.axonframework.common.annotation.ReflectionHandlerMethodInvokerFactory;
+import org.axonframework.domain.MetaData;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares the time and memory needed to invoke handler methods using reflection and using generated invokers. Pass
+ * "reflection" as argument to measure the reflection based invokers. Otherwise, generated invokers are measured. Run
+ * each variant in a separate JVM, to prevent the measurements from influencing each other.
+ * <p/>
+ * Just like in a projection, several handler methods are invoked in turn from the same place.
+ *
+ * @author Allard Buijze
+ */
+public class HandlerInvocationBenchMark {
+
+    private static final int WARMUP_ITERATIONS = 5000000;
+    private static final int ITERATIONS = 50000000;
+
+    public static void main(String[] args) throws Exception {
+        boolean reflection = args.length > 0 && "reflection".equals(args[0]);
+        HandlerMethodInvokerFactory factory = reflection
+                ? new ReflectionHandlerMethodInvokerFactory()
+                : new CglibHandlerMethodInvokerFactory();
+        Handler handler = new Handler();
+        Object[] events = new Object[]{new FirstEvent(), new SecondEvent(), new ThirdEvent(), new FourthEvent()};
+        HandlerMethodInvoker[] singleParameter = new HandlerMethodInvoker[events.length];
+        HandlerMethodInvoker[] multipleParameters = new HandlerMethodInvoker[events.length];
+        Object[][] parameters = new Object[events.length][];
+        for (int i = 0; i < events.length; i++) {
+            Class<?> eventType = events[i].getClass();
+            singleParameter[i] = factory.createInvoker(Handler.class.getMethod("on", eventType));
+            multipleParameters[i] = factory.createInvoker(
+                    Handler.class.getMethod("on", eventType, MetaData.class, long.class));
+            parameters[i] = new Object[]{events[i], MetaData.emptyInstance(), 1L};
+        }
+
+        invokeSingle(singleParameter, handler, events, WARMUP_ITERATIONS);
+        invokeMultiple(multipleParameters, handler, parameters, WARMUP_ITERATIONS);
+
+        System.out.println(reflection ? "Reflection based invokers" : "Generated invokers");
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        invokeSingle(singleParameter, handler, events, ITERATIONS);
+        report("single parameter", start, allocated);
+
+        allocated = allocatedBytes();
+        start = System.nanoTime();
+        invokeMultiple(multipleParameters, handler, parameters, ITERATIONS);
+        report("three parameters", start, allocated);
+        System.out.println("(" + handler.invocationCount + " invocations)");
+    }
+
+    private static void invokeSingle(HandlerMethodInvoker[] invokers, Handler handler, Object[] events,
+                                     int iterations) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            int index = i % invokers.length;
+            invokers[index].invokeWithParameter(handler, events[index]);
+        }
+    }
+
+    private static void invokeMultiple(HandlerMethodInvoker[] invokers, Handler handler, Object[][] parameters,
+                                       int iterations) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            int index = i % invokers.length;
+            invokers[index].invoke(handler, parameters[index]);
+        }
+    }
+
+    private static void report(String description, long start, long allocatedBefore) {
+        long duration = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.println(String.format("%s: %.2f ns/invocation, %.2f bytes/invocation",
+                                         description, (double) duration / ITERATIONS,
+                                         (double) allocated / ITERATIONS));
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static class FirstEvent {
+
+    }
+
+    public static class SecondEvent {
+
+    }
+
+    public static class ThirdEvent {
+
+    }
+
+    public static class FourthEvent {
+
+    }
+
+    public static class Handler {
+
+        private long invocationCount;
+
+        public void on(FirstEvent event) {
+            invocationCount++;
+        }
+
+        public void on(SecondEvent event) {
+            invocationCount++;
+        }
+
+        public void on(ThirdEvent event) {
+            invocationCount++;
+        }
+
+        public void on(FourthEvent event) {
+            invocationCount++;
+        }
+
+        public void on(FirstEvent event, MetaData metaData, long sequenceNumber) {
+            invocationCount += sequenceNumber;
+        }
+
+        public void on(SecondEvent event, MetaData metaData, long sequenceNumber) {
+            invocationCount += sequenceNumber;
+        }
+
+        public void on(ThirdEvent event, MetaData metaData, long sequenceNumber) {
+            invocationCount += sequenceNumber;
+        }
+
+        public void on(FourthEvent event, MetaData metaData, long sequenceNumber) {
+            invocationCount += sequenceNumber;
+        }
+    }
+}
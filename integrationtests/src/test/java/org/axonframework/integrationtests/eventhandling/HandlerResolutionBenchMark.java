@@ -0,0 +1,477 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.eventhandling;
+
+import org.axonframework.domain.EventMessage;
+import org.axonframework.domain.GenericEventMessage;
+import org.axonframework.eventhandling.annotation.AnnotationEventHandlerInvoker;
+import org.axonframework.eventhandling.annotation.EventHandler;
+
+/**
+ * Measures the time needed to find and invoke the event handler of a projection with many handler methods. A fifth
+ * of the events published has no handler in the projection.
+ *
+ * @author Allard Buijze
+ */
+public class HandlerResolutionBenchMark {
+
+    private static final int WARMUP_ITERATIONS = 1000000;
+    private static final int ITERATIONS = 5000000;
+
+    private static final Object[] PAYLOADS = new Object[]{
+            new Event00(), new Event01(), new Event02(), new Event03(), new Event04(),
+            new Event05(), new Event06(), new Event07(), new Event08(), new Event09(),
+            new Event10(), new Event11(), new Event12(), new Event13(), new Event14(),
+            new Event15(), new Event16(), new Event17(), new Event18(), new Event19(),
+            new Event20(), new Event21(), new Event22(), new Event23(), new Event24(),
+            new Event25(), new Event26(), new Event27(), new Event28(), new Event29(),
+            new Event30(), new Event31(), new Event32(), new Event33(), new Event34(),
+            new Event35(), new Event36(), new Event37(), new Event38(), new Event39(),
+            new Event40(), new Event41(), new Event42(), new Event43(), new Event44(),
+            new Event45(), new Event46(), new Event47(), new Event48(), new Event49(),
+            "unhandled", 1, 1L, 1.0d, Boolean.TRUE, 'c', (short) 1, 1.0f, (byte) 1, new Object(), new StringBuilder(),
+            new IllegalStateException()};
+
+    public static void main(String[] args) {
+        EventMessage[] events = new EventMessage[PAYLOADS.length];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new GenericEventMessage<Object>(PAYLOADS[i]);
+        }
+        Projection projection = new Projection();
+        AnnotationEventHandlerInvoker invoker = new AnnotationEventHandlerInvoker(projection);
+
+        dispatch(invoker, events, WARMUP_ITERATIONS);
+        projection.handledCount = 0;
+        long start = System.nanoTime();
+        dispatch(invoker, events, ITERATIONS);
+        long duration = System.nanoTime() - start;
+
+        System.out.println(String.format("%d event types, %d handled: %d ns/event",
+                                         events.length, projection.handledCount, duration / ITERATIONS));
+    }
+
+    private static void dispatch(AnnotationEventHandlerInvoker invoker, EventMessage[] events, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            invoker.invokeEventHandlerMethod(events[i % events.length]);
+        }
+    }
+
+    public static class Projection {
+
+        private int handledCount;
+
+        @EventHandler
+        public void on(Event00 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event01 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event02 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event03 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event04 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event05 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event06 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event07 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event08 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event09 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event10 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event11 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event12 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event13 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event14 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event15 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event16 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event17 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event18 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event19 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event20 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event21 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event22 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event23 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event24 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event25 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event26 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event27 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event28 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event29 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event30 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event31 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event32 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event33 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event34 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event35 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event36 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event37 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event38 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event39 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event40 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event41 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event42 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event43 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event44 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event45 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event46 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event47 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event48 event) {
+            handledCount++;
+        }
+
+        @EventHandler
+        public void on(Event49 event) {
+            handledCount++;
+        }
+    }
+
+    public static class Event00 {
+    }
+
+    public static class Event01 {
+    }
+
+    public static class Event02 {
+    }
+
+    public static class Event03 {
+    }
+
+    public static class Event04 {
+    }
+
+    public static class Event05 {
+    }
+
+    public static class Event06 {
+    }
+
+    public static class Event07 {
+    }
+
+    public static class Event08 {
+    }
+
+    public static class Event09 {
+    }
+
+    public static class Event10 {
+    }
+
+    public static class Event11 {
+    }
+
+    public static class Event12 {
+    }
+
+    public static class Event13 {
+    }
+
+    public static class Event14 {
+    }
+
+    public static class Event15 {
+    }
+
+    public static class Event16 {
+    }
+
+    public static class Event17 {
+    }
+
+    public static class Event18 {
+    }
+
+    public static class Event19 {
+    }
+
+    public static class Event20 {
+    }
+
+    public static class Event21 {
+    }
+
+    public static class Event22 {
+    }
+
+    public static class Event23 {
+    }
+
+    public static class Event24 {
+    }
+
+    public static class Event25 {
+    }
+
+    public static class Event26 {
+    }
+
+    public static class Event27 {
+    }
+
+    public static class Event28 {
+    }
+
+    public static class Event29 {
+    }
+
+    public static class Event30 {
+    }
+
+    public static class Event31 {
+    }
+
+    public static class Event32 {
+    }
+
+    public static class Event33 {
+    }
+
+    public static class Event34 {
+    }
+
+    public static class Event35 {
+    }
+
+    public static class Event36 {
+    }
+
+    public static class Event37 {
+    }
+
+    public static class Event38 {
+    }
+
+    public static class Event39 {
+    }
+
+    public static class Event40 {
+    }
+
+    public static class Event41 {
+    }
+
+    public static class Event42 {
+    }
+
+    public static class Event43 {
+    }
+
+    public static class Event44 {
+    }
+
+    public static class Event45 {
+    }
+
+    public static class Event46 {
+    }
+
+    public static class Event47 {
+    }
+
+    public static class Event48 {
+    }
+
+    public static class Event49 {
+    }
+}
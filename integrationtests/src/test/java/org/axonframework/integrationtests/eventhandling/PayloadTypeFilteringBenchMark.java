@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.eventhandling;
+
+import org.axonframework.domain.EventMessage;
+import org.axonframework.domain.MetaData;
+import org.axonframework.eventhandling.EventListener;
+import org.axonframework.eventhandling.SimpleCluster;
+import org.axonframework.eventhandling.annotation.AnnotationEventListenerAdapter;
+import org.axonframework.eventhandling.annotation.EventHandler;
+import org.axonframework.eventstore.LazyDeserializingObject;
+import org.axonframework.eventstore.SerializedDomainEventMessage;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.Serializer;
+import org.axonframework.serializer.XStreamSerializer;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Simulates a replay of serialized events to a cluster of projections, where each projection handles 5% of the
+ * events. Compares dispatching to listeners that hide their handled payload types with dispatching to {@link
+ * AnnotationEventListenerAdapter} instances, which the cluster skips for events they have no handler for.
+ * <p/>
+ * Pass "unfiltered" as argument to measure the former. Run both variants in a separate JVM, to prevent one from
+ * influencing the code the JIT compiler generates for the other.
+ *
+ * @author Allard Buijze
+ */
+public class PayloadTypeFilteringBenchMark {
+
+    private static final int PROJECTION_COUNT = 20;
+    private static final int EVENT_COUNT = 200000;
+    private static final int ROUNDS = 8;
+
+    private static final Object[] PAYLOADS = new Object[]{
+            new Event00(), new Event01(), new Event02(), new Event03(), new Event04(),
+            new Event05(), new Event06(), new Event07(), new Event08(), new Event09(),
+            new Event10(), new Event11(), new Event12(), new Event13(), new Event14(),
+            new Event15(), new Event16(), new Event17(), new Event18(), new Event19()};
+
+    public static void main(String[] args) {
+        Serializer serializer = new XStreamSerializer();
+        SerializedObject[] serializedPayloads = new SerializedObject[PAYLOADS.length];
+        for (int i = 0; i < PAYLOADS.length; i++) {
+            serializedPayloads[i] = serializer.serialize(PAYLOADS[i]);
+        }
+        SerializedObject serializedMetaData = serializer.serialize(MetaData.emptyInstance());
+
+        boolean filtering = args.length == 0 || !"unfiltered".equals(args[0]);
+        SimpleCluster cluster = new SimpleCluster();
+        for (int i = 0; i < PROJECTION_COUNT; i++) {
+            final AnnotationEventListenerAdapter adapter = new AnnotationEventListenerAdapter(new Projection(), null);
+            if (filtering) {
+                cluster.subscribe(adapter);
+            } else {
+                cluster.subscribe(new EventListener() {
+                    @Override
+                    public void handle(EventMessage event) {
+                        adapter.handle(event);
+                    }
+                });
+            }
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            replay(filtering ? "filtered" : "unfiltered", cluster, serializer, serializedPayloads, serializedMetaData);
+        }
+    }
+
+    private static void replay(String name, SimpleCluster cluster, Serializer serializer,
+                               SerializedObject[] serializedPayloads, SerializedObject serializedMetaData) {
+        List<LazyDeserializingObject<Object>> payloads = new ArrayList<LazyDeserializingObject<Object>>(EVENT_COUNT);
+        List<EventMessage> events = new ArrayList<EventMessage>(EVENT_COUNT);
+        String aggregateIdentifier = UUID.randomUUID().toString();
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            LazyDeserializingObject<Object> payload = new LazyDeserializingObject<Object>(
+                    serializedPayloads[i % serializedPayloads.length], serializer);
+            payloads.add(payload);
+            events.add(new SerializedDomainEventMessage<Object>(
+                    UUID.randomUUID().toString(), aggregateIdentifier, i, new DateTime(), payload,
+                    new LazyDeserializingObject<MetaData>(serializedMetaData, serializer)));
+        }
+
+        long start = System.nanoTime();
+        for (EventMessage event : events) {
+            cluster.publish(event);
+        }
+        long duration = System.nanoTime() - start;
+
+        int deserialized = 0;
+        for (LazyDeserializingObject<Object> payload : payloads) {
+            if (payload.isDeserialized()) {
+                deserialized++;
+            }
+        }
+        System.out.println(String.format("%-12s %6d ns/event, %6d of %d payloads deserialized",
+                                         name, duration / EVENT_COUNT, deserialized, EVENT_COUNT));
+    }
+
+    public static class Projection {
+
+        private int handledCount;
+
+        @EventHandler
+        public void handle(Event00 event) {
+            handledCount++;
+        }
+    }
+
+    public static class Event00 {
+
+    }
+
+    public static class Event01 {
+
+    }
+
+    public static class Event02 {
+
+    }
+
+    public static class Event03 {
+
+    }
+
+    public static class Event04 {
+
+    }
+
+    public static class Event05 {
+
+    }
+
+    public static class Event06 {
+
+    }
+
+    public static class Event07 {
+
+    }
+
+    public static class Event08 {
+
+    }
+
+    public static class Event09 {
+
+    }
+
+    public static class Event10 {
+
+    }
+
+    public static class Event11 {
+
+    }
+
+    public static class Event12 {
+
+    }
+
+    public static class Event13 {
+
+    }
+
+    public static class Event14 {
+
+    }
+
+    public static class Event15 {
+
+    }
+
+    public static class Event16 {
+
+    }
+
+    public static class Event17 {
+
+    }
+
+    public static class Event18 {
+
+    }
+
+    public static class Event19 {
+
+    }
+}
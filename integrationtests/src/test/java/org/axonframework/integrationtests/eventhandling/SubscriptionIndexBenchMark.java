@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.eventhandling;
+
+import org.axonframework.domain.EventMessage;
+import org.axonframework.domain.GenericEventMessage;
+import org.axonframework.eventhandling.SimpleEventBus;
+import org.axonframework.eventhandling.annotation.AnnotationEventListenerAdapter;
+import org.axonframework.eventhandling.annotation.EventHandler;
+
+/**
+ * Measures the time needed to publish an event on a {@link SimpleEventBus} with 300 subscribed projections. Each
+ * projection handles a single type of event, so each event is handled by 5% of the projections.
+ *
+ * @author Allard Buijze
+ */
+public class SubscriptionIndexBenchMark {
+
+    private static final int INSTANCES_PER_PROJECTION = 15;
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int ITERATIONS = 2000000;
+
+    private static final Class<?>[] PROJECTIONS = new Class<?>[]{
+            Projection00.class,
+            Projection01.class,
+            Projection02.class,
+            Projection03.class,
+            Projection04.class,
+            Projection05.class,
+            Projection06.class,
+            Projection07.class,
+            Projection08.class,
+            Projection09.class,
+            Projection10.class,
+            Projection11.class,
+            Projection12.class,
+            Projection13.class,
+            Projection14.class,
+            Projection15.class,
+            Projection16.class,
+            Projection17.class,
+            Projection18.class,
+            Projection19.class
+};
+
+    private static final Object[] PAYLOADS = new Object[]{
+            new Event00(), new Event01(), new Event02(), new Event03(), new Event04(),
+            new Event05(), new Event06(), new Event07(), new Event08(), new Event09(),
+            new Event10(), new Event11(), new Event12(), new Event13(), new Event14(),
+            new Event15(), new Event16(), new Event17(), new Event18(), new Event19()
+};
+
+    public static void main(String[] args) throws Exception {
+        SimpleEventBus eventBus = new SimpleEventBus(false);
+        for (Class<?> projectionType : PROJECTIONS) {
+            for (int i = 0; i < INSTANCES_PER_PROJECTION; i++) {
+                AnnotationEventListenerAdapter.subscribe(projectionType.newInstance(), eventBus);
+            }
+        }
+        EventMessage[] events = new EventMessage[PAYLOADS.length];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new GenericEventMessage<Object>(PAYLOADS[i]);
+        }
+
+        publish(eventBus, events, WARMUP_ITERATIONS);
+        Projection.handledCount = 0;
+        long start = System.nanoTime();
+        publish(eventBus, events, ITERATIONS);
+        long duration = System.nanoTime() - start;
+
+        System.out.println(String.format("%d projections, %d events handled: %d ns/event",
+                                         PROJECTIONS.length * INSTANCES_PER_PROJECTION, Projection.handledCount,
+                                         duration / ITERATIONS));
+    }
+
+    private static void publish(SimpleEventBus eventBus, EventMessage[] events, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            eventBus.publish(events[i % events.length]);
+        }
+    }
+
+    public abstract static class Projection {
+
+        private static long handledCount;
+
+        protected void handled() {
+            handledCount++;
+        }
+    }
+
+    public static class Projection00 extends Projection {
+
+        @EventHandler
+        public void on(Event00 event) {
+            handled();
+        }
+    }
+
+    public static class Projection01 extends Projection {
+
+        @EventHandler
+        public void on(Event01 event) {
+            handled();
+        }
+    }
+
+    public static class Projection02 extends Projection {
+
+        @EventHandler
+        public void on(Event02 event) {
+            handled();
+        }
+    }
+
+    public static class Projection03 extends Projection {
+
+        @EventHandler
+        public void on(Event03 event) {
+            handled();
+        }
+    }
+
+    public static class Projection04 extends Projection {
+
+        @EventHandler
+        public void on(Event04 event) {
+            handled();
+        }
+    }
+
+    public static class Projection05 extends Projection {
+
+        @EventHandler
+        public void on(Event05 event) {
+            handled();
+        }
+    }
+
+    public static class Projection06 extends Projection {
+
+        @EventHandler
+        public void on(Event06 event) {
+            handled();
+        }
+    }
+
+    public static class Projection07 extends Projection {
+
+        @EventHandler
+        public void on(Event07 event) {
+            handled();
+        }
+    }
+
+    public static class Projection08 extends Projection {
+
+        @EventHandler
+        public void on(Event08 event) {
+            handled();
+        }
+    }
+
+    public static class Projection09 extends Projection {
+
+        @EventHandler
+        public void on(Event09 event) {
+            handled();
+        }
+    }
+
+    public static class Projection10 extends Projection {
+
+        @EventHandler
+        public void on(Event10 event) {
+            handled();
+        }
+    }
+
+    public static class Projection11 extends Projection {
+
+        @EventHandler
+        public void on(Event11 event) {
+            handled();
+        }
+    }
+
+    public static class Projection12 extends Projection {
+
+        @EventHandler
+        public void on(Event12 event) {
+            handled();
+        }
+    }
+
+    public static class Projection13 extends Projection {
+
+        @EventHandler
+        public void on(Event13 event) {
+            handled();
+        }
+    }
+
+    public static class Projection14 extends Projection {
+
+        @EventHandler
+        public void on(Event14 event) {
+            handled();
+        }
+    }
+
+    public static class Projection15 extends Projection {
+
+        @EventHandler
+        public void on(Event15 event) {
+            handled();
+        }
+    }
+
+    public static class Projection16 extends Projection {
+
+        @EventHandler
+        public void on(Event16 event) {
+            handled();
+        }
+    }
+
+    public static class Projection17 extends Projection {
+
+        @EventHandler
+        public void on(Event17 event) {
+            handled();
+        }
+    }
+
+    public static class Projection18 extends Projection {
+
+        @EventHandler
+        public void on(Event18 event) {
+            handled();
+        }
+    }
+
+    public static class Projection19 extends Projection {
+
+        @EventHandler
+        public void on(Event19 event) {
+            handled();
+        }
+    }
+
+    public static class Event00 {
+
+    }
+
+    public static class Event01 {
+
+    }
+
+    public static class Event02 {
+
+    }
+
+    public static class Event03 {
+
+    }
+
+    public static class Event04 {
+
+    }
+
+    public static class Event05 {
+
+    }
+
+    public static class Event06 {
+
+    }
+
+    public static class Event07 {
+
+    }
+
+    public static class Event08 {
+
+    }
+
+    public static class Event09 {
+
+    }
+
+    public static class Event10 {
+
+    }
+
+    public static class Event11 {
+
+    }
+
+    public static class Event12 {
+
+    }
+
+    public static class Event13 {
+
+    }
+
+    public static class Event14 {
+
+    }
+
+    public static class Event15 {
+
+    }
+
+    public static class Event16 {
+
+    }
+
+    public static class Event17 {
+
+    }
+
+    public static class Event18 {
+
+    }
+
+    public static class Event19 {
+
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.eventsourcing;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.eventhandling.annotation.EventHandler;
+import org.axonframework.eventsourcing.AggregateInitializer;
+import org.axonframework.eventsourcing.GenericAggregateFactory;
+import org.axonframework.eventsourcing.annotation.AbstractAnnotatedAggregateRoot;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Measures the number of annotated aggregates that can be loaded per second. Each load creates a new aggregate
+ * instance using the {@link GenericAggregateFactory} and initializes its state from a short stream of events.
+ *
+ * @author Allard Buijze
+ */
+public class AggregateLoadingBenchMark {
+
+    private static final int WARMUP_ITERATIONS = 100000;
+    private static final int ITERATIONS = 500000;
+
+    public static void main(String[] args) {
+        GenericAggregateFactory<OrderAggregate> factory =
+                new GenericAggregateFactory<OrderAggregate>(OrderAggregate.class);
+        String orderId = UUID.randomUUID().toString();
+        List<DomainEventMessage> events = new ArrayList<DomainEventMessage>();
+        events.add(new GenericDomainEventMessage<OrderCreatedEvent>(orderId, 0, new OrderCreatedEvent(orderId)));
+        for (int i = 1; i <= 3; i++) {
+            events.add(new GenericDomainEventMessage<OrderLineAddedEvent>(
+                    orderId, i, new OrderLineAddedEvent("product-" + i, new BigDecimal("9.95"))));
+        }
+        events.add(new GenericDomainEventMessage<OrderConfirmedEvent>(orderId, 4, new OrderConfirmedEvent()));
+
+        load(factory, orderId, events, WARMUP_ITERATIONS);
+        long start = System.nanoTime();
+        load(factory, orderId, events, ITERATIONS);
+        long duration = System.nanoTime() - start;
+
+        System.out.println(String.format("Loaded %d aggregates of %d events each: %d ns/aggregate, %d aggregates/s",
+                                         ITERATIONS, events.size(), duration / ITERATIONS,
+                                         ITERATIONS * 1000000000L / duration));
+    }
+
+    private static void load(GenericAggregateFactory<OrderAggregate> factory, String orderId,
+                             List<DomainEventMessage> events, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            OrderAggregate aggregate = factory.createAggregate(orderId, events.get(0));
+            aggregate.initializeState(new SimpleDomainEventStream(events));
+            if (!aggregate.confirmed) {
+                throw new IllegalStateException("Aggregate was not initialized correctly");
+            }
+        }
+    }
+
+    public static class OrderAggregate extends AbstractAnnotatedAggregateRoot {
+
+        private String orderId;
+        private BigDecimal total = BigDecimal.ZERO;
+        private int lineCount;
+        private boolean confirmed;
+        private boolean cancelled;
+        private String shippingAddress;
+
+        @AggregateInitializer
+        public OrderAggregate(String orderId) {
+            this.orderId = orderId;
+        }
+
+        @Override
+        public Object getIdentifier() {
+            return orderId;
+        }
+
+        @EventHandler
+        public void on(OrderCreatedEvent event) {
+            this.orderId = event.orderId;
+        }
+
+        @EventHandler
+        public void on(OrderLineAddedEvent event) {
+            lineCount++;
+            total = total.add(event.price);
+        }
+
+        @EventHandler
+        public void on(OrderLineRemovedEvent event) {
+            lineCount--;
+            total = total.subtract(event.price);
+        }
+
+        @EventHandler
+        public void on(ShippingAddressChangedEvent event) {
+            this.shippingAddress = event.address;
+        }
+
+        @EventHandler
+        public void on(OrderConfirmedEvent event) {
+            this.confirmed = true;
+        }
+
+        @EventHandler
+        public void on(OrderCancelledEvent event) {
+            this.cancelled = true;
+        }
+    }
+
+    public static class OrderCreatedEvent {
+
+        private final String orderId;
+
+        public OrderCreatedEvent(String orderId) {
+            this.orderId = orderId;
+        }
+    }
+
+    public static class OrderLineAddedEvent {
+
+        private final String productId;
+        private final BigDecimal price;
+
+        public OrderLineAddedEvent(String productId, BigDecimal price) {
+            this.productId = productId;
+            this.price = price;
+        }
+    }
+
+    public static class OrderLineRemovedEvent {
+
+        private final BigDecimal price;
+
+        public OrderLineRemovedEvent(BigDecimal price) {
+            this.price = price;
+        }
+    }
+
+    public static class ShippingAddressChangedEvent {
+
+        private final String address;
+
+        public ShippingAddressChangedEvent(String address) {
+            this.address = address;
+        }
+    }
+
+    public static class OrderConfirmedEvent {
+
+    }
+
+    public static class OrderCancelledEvent {
+
+    }
+}
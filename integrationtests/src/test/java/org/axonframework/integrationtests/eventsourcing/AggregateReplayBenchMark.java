@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.eventsourcing;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.eventsourcing.AbstractEventSourcedAggregateRoot;
+import org.axonframework.eventsourcing.AbstractEventSourcedEntity;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Measures the time and memory needed to replay a long event stream on an aggregate. Pass "entities" as argument to
+ * replay on an aggregate that keeps its lines in a collection of child entities. Otherwise, the events are replayed on
+ * an aggregate without child entities. Run each variant in a separate JVM, to prevent the measurements from
+ * influencing each other.
+ * <p/>
+ * The event streams are created before the measurement starts, as creating them copies all the events.
+ *
+ * @author Allard Buijze
+ */
+public class AggregateReplayBenchMark {
+
+    private static final int EVENT_COUNT = 50000;
+    private static final int LINE_COUNT = 10;
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 100;
+
+    public static void main(String[] args) {
+        boolean withEntities = args.length > 0 && "entities".equals(args[0]);
+        String aggregateId = UUID.randomUUID().toString();
+        List<DomainEventMessage> events = new ArrayList<DomainEventMessage>(EVENT_COUNT);
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            events.add(new GenericDomainEventMessage<QuantityChangedEvent>(
+                    aggregateId, i, new QuantityChangedEvent(i % LINE_COUNT, 1)));
+        }
+
+        replay(withEntities, aggregateId, streamsOf(events, WARMUP_ITERATIONS));
+        DomainEventStream[] streams = streamsOf(events, ITERATIONS);
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        replay(withEntities, aggregateId, streams);
+        long duration = System.nanoTime() - start;
+        allocated = allocatedBytes() - allocated;
+
+        long replayedEvents = (long) ITERATIONS * EVENT_COUNT;
+        System.out.println(String.format("%s: %.1f ns/event, %.1f bytes/event, %.2f ms per %d events",
+                                         withEntities ? "Aggregate with child entities" : "Aggregate without entities",
+                                         (double) duration / replayedEvents, (double) allocated / replayedEvents,
+                                         duration / ITERATIONS / 1000000d, EVENT_COUNT));
+    }
+
+    private static DomainEventStream[] streamsOf(List<DomainEventMessage> events, int count) {
+        DomainEventStream[] streams = new DomainEventStream[count];
+        for (int i = 0; i < count; i++) {
+            streams[i] = new SimpleDomainEventStream(events);
+        }
+        return streams;
+    }
+
+    private static void replay(boolean withEntities, String aggregateId, DomainEventStream[] streams) {
+        for (DomainEventStream stream : streams) {
+            AbstractEventSourcedAggregateRoot aggregate = withEntities
+                    ? new InventoryWithEntities(aggregateId)
+                    : new Inventory(aggregateId);
+            aggregate.initializeState(stream);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static class Inventory extends AbstractEventSourcedAggregateRoot {
+
+        private final String identifier;
+        private final int[] quantities = new int[LINE_COUNT];
+        private String description;
+
+        public Inventory(String identifier) {
+            this.identifier = identifier;
+        }
+
+        @Override
+        protected void handle(DomainEventMessage event) {
+            QuantityChangedEvent payload = (QuantityChangedEvent) event.getPayload();
+            quantities[payload.line] += payload.delta;
+        }
+
+        @Override
+        public Object getIdentifier() {
+            return identifier;
+        }
+    }
+
+    public static class InventoryWithEntities extends AbstractEventSourcedAggregateRoot {
+
+        private final String identifier;
+        private final List<InventoryLine> lines = new ArrayList<InventoryLine>();
+        private final Map<String, InventoryLine> linesByProduct = new HashMap<String, InventoryLine>();
+
+        public InventoryWithEntities(String identifier) {
+            this.identifier = identifier;
+            for (int i = 0; i < LINE_COUNT; i++) {
+                InventoryLine line = new InventoryLine(i);
+                lines.add(line);
+                linesByProduct.put("product-" + i, line);
+            }
+        }
+
+        @Override
+        protected void handle(DomainEventMessage event) {
+        }
+
+        @Override
+        public Object getIdentifier() {
+            return identifier;
+        }
+    }
+
+    public static class InventoryLine extends AbstractEventSourcedEntity {
+
+        private final int line;
+        private int quantity;
+
+        public InventoryLine(int line) {
+            this.line = line;
+        }
+
+        @Override
+        protected void handle(DomainEventMessage event) {
+            QuantityChangedEvent payload = (QuantityChangedEvent) event.getPayload();
+            if (payload.line == line) {
+                quantity += payload.delta;
+            }
+        }
+    }
+
+    public static class QuantityChangedEvent {
+
+        private final int line;
+        private final int delta;
+
+        public QuantityChangedEvent(int line, int delta) {
+            this.line = line;
+            this.delta = delta;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.eventstore.benchmark.fs;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.DomainEventStream;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.MetaData;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.eventstore.EventStore;
+import org.axonframework.eventstore.fs.FileSystemEventStore;
+import org.axonframework.eventstore.fs.SegmentedLogEventStore;
+import org.axonframework.eventstore.fs.SimpleEventFileResolver;
+import org.axonframework.eventstore.fs.SyncPolicy;
+import org.axonframework.integrationtests.commandhandling.StubDomainEvent;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark that compares the append throughput of the SegmentedLogEventStore with that of the FileSystemEventStore
+ * for a large number of aggregates, and measures the time it takes to reopen the SegmentedLogEventStore and read
+ * aggregates from it. It also compares the append throughput of the SegmentedLogEventStore with and without group
+ * commit, when each append is forced to disk.
+ * <p/>
+ * The event stores write to a new directory in the system's temporary directory, or in the directory given as first
+ * argument.
+ *
+ * @author Allard Buijze
+ */
+public class SegmentedLogEventStoreBenchMark {
+
+    private static final int THREAD_COUNT = 10;
+    private static final int AGGREGATE_COUNT = 20000;
+    private static final int TRANSACTION_SIZE = 5;
+    private static final int READ_COUNT = 1000;
+    private static final int SYNCED_AGGREGATE_COUNT = 2000;
+    private static final long MAX_SEGMENT_SIZE = 4L * 1024 * 1024;
+
+    private final File baseDir;
+    private final Object[] aggregateIdentifiers = new Object[AGGREGATE_COUNT];
+
+    public static void main(String[] args) throws Exception {
+        File baseDir = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"),
+                                "segmented-log-benchmark-" + UUID.randomUUID());
+        new SegmentedLogEventStoreBenchMark(baseDir).startBenchMark();
+    }
+
+    public SegmentedLogEventStoreBenchMark(File baseDir) {
+        this.baseDir = baseDir;
+        for (int t = 0; t < AGGREGATE_COUNT; t++) {
+            aggregateIdentifiers[t] = UUID.randomUUID();
+        }
+    }
+
+    public void startBenchMark() throws InterruptedException {
+        FileSystemEventStore fileSystemEventStore = new FileSystemEventStore();
+        fileSystemEventStore.setEventFileResolver(new SimpleEventFileResolver(new File(baseDir, "files")));
+        report("FileSystemEventStore", AGGREGATE_COUNT, appendEvents(fileSystemEventStore, AGGREGATE_COUNT));
+
+        SegmentedLogEventStore segmentedLogEventStore = openSegmentedLog(new File(baseDir, "synced"));
+        segmentedLogEventStore.setSyncPolicy(SyncPolicy.ALWAYS);
+        report("SegmentedLogEventStore, sync always", SYNCED_AGGREGATE_COUNT,
+               appendEvents(segmentedLogEventStore, SYNCED_AGGREGATE_COUNT));
+        segmentedLogEventStore.close();
+
+        segmentedLogEventStore = openSegmentedLog(new File(baseDir, "group-commit"));
+        segmentedLogEventStore.setSyncPolicy(SyncPolicy.ALWAYS);
+        segmentedLogEventStore.setGroupCommit(true);
+        report("SegmentedLogEventStore, sync always, group commit", SYNCED_AGGREGATE_COUNT,
+               appendEvents(segmentedLogEventStore, SYNCED_AGGREGATE_COUNT));
+        segmentedLogEventStore.close();
+
+        File logDir = new File(baseDir, "log");
+        segmentedLogEventStore = openSegmentedLog(logDir);
+        report("SegmentedLogEventStore", AGGREGATE_COUNT, appendEvents(segmentedLogEventStore, AGGREGATE_COUNT));
+        segmentedLogEventStore.close();
+
+        long start = System.currentTimeMillis();
+        segmentedLogEventStore = openSegmentedLog(logDir);
+        System.out.println(String.format("Result (SegmentedLogEventStore): reopened a log of %s bytes in %s segments "
+                                                 + "in %s milliseconds",
+                                         logSize(logDir), segmentCount(logDir), System.currentTimeMillis() - start));
+
+        start = System.currentTimeMillis();
+        for (int t = 0; t < READ_COUNT; t++) {
+            DomainEventStream events = segmentedLogEventStore.readEvents(
+                    "benchmark", aggregateIdentifiers[(t * 7919) % AGGREGATE_COUNT]);
+            while (events.hasNext()) {
+                events.next();
+            }
+        }
+        System.out.println(String.format("Result (SegmentedLogEventStore): read %s aggregates after reopening "
+                                                 + "in %s milliseconds",
+                                         READ_COUNT, System.currentTimeMillis() - start));
+        segmentedLogEventStore.close();
+
+        for (File file : logDir.listFiles()) {
+            if (file.getName().endsWith("." + SegmentedLogEventStore.FILE_EXTENSION_INDEX)) {
+                file.delete();
+            }
+        }
+        start = System.currentTimeMillis();
+        openSegmentedLog(logDir).close();
+        System.out.println(String.format("Result (SegmentedLogEventStore): reopened the log without index files, "
+                                                 + "reading all segments, in %s milliseconds",
+                                         System.currentTimeMillis() - start));
+    }
+
+    private SegmentedLogEventStore openSegmentedLog(File logDir) {
+        SegmentedLogEventStore eventStore = new SegmentedLogEventStore(logDir);
+        eventStore.setMaxSegmentSize(MAX_SEGMENT_SIZE);
+        return eventStore;
+    }
+
+    private long appendEvents(final EventStore eventStore, final int aggregateCount) throws InterruptedException {
+        final AtomicInteger nextAggregate = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        long start = System.currentTimeMillis();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int aggregate = nextAggregate.getAndIncrement();
+                    while (aggregate < aggregateCount) {
+                        List<DomainEventMessage<StubDomainEvent>> events =
+                                new ArrayList<DomainEventMessage<StubDomainEvent>>(TRANSACTION_SIZE);
+                        for (int sequenceNumber = 0; sequenceNumber < TRANSACTION_SIZE; sequenceNumber++) {
+                            events.add(new GenericDomainEventMessage<StubDomainEvent>(
+                                    aggregateIdentifiers[aggregate], sequenceNumber, new StubDomainEvent(),
+                                    MetaData.emptyInstance()));
+                        }
+                        eventStore.appendEvents("benchmark", new SimpleDomainEventStream(events));
+                        aggregate = nextAggregate.getAndIncrement();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private long logSize(File logDir) {
+        long size = 0;
+        for (File file : logDir.listFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    private int segmentCount(File logDir) {
+        int count = 0;
+        for (File file : logDir.listFiles()) {
+            if (file.getName().endsWith("." + SegmentedLogEventStore.FILE_EXTENSION_SEGMENT)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void report(String name, int aggregateCount, long duration) {
+        System.out.println(String.format(
+                "Result (%s): %s threads appended %s events for %s aggregates in %s milliseconds. "
+                        + "That is an average of %.0f events per second",
+                name,
+                THREAD_COUNT,
+                aggregateCount * TRANSACTION_SIZE,
+                aggregateCount,
+                duration,
+                ((float) aggregateCount * TRANSACTION_SIZE) / ((float) duration / 1000)));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.eventstore.benchmark.jpa;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.MetaData;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.eventstore.jpa.JpaEventStore;
+import org.axonframework.integrationtests.commandhandling.StubDomainEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Benchmark that compares the append throughput of a JpaEventStore using the default (JPA based) EventEntryStore with
+ * one that uses the JdbcEventEntryStore, for aggregates that generate a large number of events per transaction.
+ *
+ * @author Allard Buijze
+ */
+public class JdbcEventEntryStoreBenchMark {
+
+    private static final int TRANSACTION_COUNT = 2000;
+    private static final int TRANSACTION_SIZE = 50;
+    private static final int WARMUP_TRANSACTION_COUNT = 200;
+
+    private final JpaEventStore defaultEventStore;
+    private final JpaEventStore jdbcEventStore;
+    private final PlatformTransactionManager transactionManager;
+
+    public static void main(String[] args) throws Exception {
+        ApplicationContext context = new ClassPathXmlApplicationContext(
+                "META-INF/spring/benchmark-jdbc-entrystore-context.xml");
+        context.getBean(JdbcEventEntryStoreBenchMark.class).startBenchMark();
+    }
+
+    public JdbcEventEntryStoreBenchMark(JpaEventStore defaultEventStore, JpaEventStore jdbcEventStore,
+                                        PlatformTransactionManager transactionManager) {
+        this.defaultEventStore = defaultEventStore;
+        this.jdbcEventStore = jdbcEventStore;
+        this.transactionManager = transactionManager;
+    }
+
+    public void startBenchMark() {
+        appendEvents(defaultEventStore, WARMUP_TRANSACTION_COUNT);
+        appendEvents(jdbcEventStore, WARMUP_TRANSACTION_COUNT);
+
+        report("DefaultEventEntryStore", appendEvents(defaultEventStore, TRANSACTION_COUNT));
+        report("JdbcEventEntryStore", appendEvents(jdbcEventStore, TRANSACTION_COUNT));
+    }
+
+    private long appendEvents(final JpaEventStore eventStore, int transactionCount) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        long start = System.currentTimeMillis();
+        for (int t = 0; t < transactionCount; t++) {
+            template.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    Object aggregateId = UUID.randomUUID();
+                    List<DomainEventMessage<StubDomainEvent>> events =
+                            new ArrayList<DomainEventMessage<StubDomainEvent>>(TRANSACTION_SIZE);
+                    for (int sequenceNumber = 0; sequenceNumber < TRANSACTION_SIZE; sequenceNumber++) {
+                        events.add(new GenericDomainEventMessage<StubDomainEvent>(aggregateId,
+                                                                                  sequenceNumber,
+                                                                                  new StubDomainEvent(),
+                                                                                  MetaData.emptyInstance()));
+                    }
+                    eventStore.appendEvents("benchmark", new SimpleDomainEventStream(events));
+                }
+            });
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private void report(String name, long duration) {
+        System.out.println(String.format(
+                "Result (%s): %s transactions of %s events each in %s milliseconds. "
+                        + "That is an average of %.0f events per second",
+                name,
+                TRANSACTION_COUNT,
+                TRANSACTION_SIZE,
+                duration,
+                ((float) TRANSACTION_COUNT * TRANSACTION_SIZE) / ((float) duration / 1000)));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.eventstore.benchmark.jpa;
+
+import org.axonframework.domain.DomainEventMessage;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.MetaData;
+import org.axonframework.domain.SimpleDomainEventStream;
+import org.axonframework.eventstore.EventVisitor;
+import org.axonframework.eventstore.jpa.JpaEventStore;
+import org.axonframework.integrationtests.commandhandling.StubDomainEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Benchmark that measures the time it takes to fetch each batch of events while replaying the entire contents of a
+ * JpaEventStore. The average latency of the batches is reported for each tenth of the event store. These numbers
+ * should remain roughly the same for the entire replay, regardless of the number of events in the event store.
+ *
+ * @author Allard Buijze
+ */
+public class JpaEventStoreReplayBenchMark {
+
+    private static final int EVENT_COUNT = 200000;
+    private static final int EVENTS_PER_AGGREGATE = 20;
+    private static final int BATCH_SIZE = 1000;
+    private static final int SEGMENT_COUNT = 10;
+
+    private final JpaEventStore eventStore;
+    private final PlatformTransactionManager transactionManager;
+
+    public static void main(String[] args) throws Exception {
+        ApplicationContext context = new ClassPathXmlApplicationContext(
+                "META-INF/spring/benchmark-jpa-replay-context.xml");
+        context.getBean(JpaEventStoreReplayBenchMark.class).startBenchMark();
+    }
+
+    public JpaEventStoreReplayBenchMark(JpaEventStore eventStore, PlatformTransactionManager transactionManager) {
+        this.eventStore = eventStore;
+        this.transactionManager = transactionManager;
+    }
+
+    public void startBenchMark() {
+        prepareEventStore();
+        eventStore.setBatchSize(BATCH_SIZE);
+        final BatchTimingVisitor visitor = new BatchTimingVisitor();
+        long start = System.currentTimeMillis();
+        new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                eventStore.visitEvents(visitor);
+            }
+        });
+        long end = System.currentTimeMillis();
+
+        System.out.println(String.format("Result (%s): replayed %s events in batches of %s in %s milliseconds.",
+                                         getClass().getSimpleName(),
+                                         visitor.eventCount,
+                                         BATCH_SIZE,
+                                         (end - start)));
+        List<Long> batchTimes = visitor.batchTimes;
+        int batchesPerSegment = Math.max(1, batchTimes.size() / SEGMENT_COUNT);
+        for (int segment = 0; segment * batchesPerSegment < batchTimes.size(); segment++) {
+            List<Long> segmentTimes = batchTimes.subList(segment * batchesPerSegment,
+                                                         Math.min(batchTimes.size(),
+                                                                  (segment + 1) * batchesPerSegment));
+            long total = 0;
+            for (Long batchTime : segmentTimes) {
+                total += batchTime;
+            }
+            System.out.println(String.format("Batches %s to %s: average of %.2f milliseconds per batch",
+                                             segment * batchesPerSegment,
+                                             segment * batchesPerSegment + segmentTimes.size() - 1,
+                                             ((double) total / segmentTimes.size()) / 1000000));
+        }
+    }
+
+    private void prepareEventStore() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        for (int t = 0; t < EVENT_COUNT / EVENTS_PER_AGGREGATE; t++) {
+            template.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    Object aggregateId = UUID.randomUUID();
+                    List<DomainEventMessage<StubDomainEvent>> events =
+                            new ArrayList<DomainEventMessage<StubDomainEvent>>(EVENTS_PER_AGGREGATE);
+                    for (int sequenceNumber = 0; sequenceNumber < EVENTS_PER_AGGREGATE; sequenceNumber++) {
+                        events.add(new GenericDomainEventMessage<StubDomainEvent>(aggregateId,
+                                                                                  sequenceNumber,
+                                                                                  new StubDomainEvent(),
+                                                                                  MetaData.emptyInstance()));
+                    }
+                    eventStore.appendEvents("benchmark", new SimpleDomainEventStream(events));
+                }
+            });
+        }
+    }
+
+    private static class BatchTimingVisitor implements EventVisitor {
+
+        private final List<Long> batchTimes = new ArrayList<Long>();
+        private long batchStart = System.nanoTime();
+        private int eventCount;
+
+        @Override
+        public void doWithEvent(DomainEventMessage domainEvent) {
+            eventCount++;
+            if (eventCount % BATCH_SIZE == 0) {
+                long now = System.nanoTime();
+                batchTimes.add(now - batchStart);
+                batchStart = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.axonframework.integrationtests.repository;
+
+import org.axonframework.domain.AbstractAggregateRoot;
+import org.axonframework.eventhandling.SimpleEventBus;
+import org.axonframework.repository.LockingRepository;
+import org.axonframework.repository.LockingStrategy;
+import org.axonframework.unitofwork.DefaultUnitOfWork;
+import org.axonframework.unitofwork.UnitOfWork;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the number of aggregates that can be loaded and saved per second by a number of concurrent threads, using
+ * a {@link LockingRepository} with a pessimistic or striped locking strategy. Each operation loads an aggregate in a
+ * Unit of Work and commits it, so that the lock on the aggregate is obtained and released once. Loading and saving
+ * the aggregate itself takes virtually no time, leaving the lock manager as the main cost.
+ * <p/>
+ * The first argument selects the locking strategy: "pessimistic" (the default), "striped" or "striped_fair". The
+ * second argument selects the workload: "distinct" (the default) uses a new aggregate identifier for each operation,
+ * while "skewed" picks one of 1000 aggregates following a Zipfian distribution, so that threads regularly contend for
+ * the same lock. An optional third argument overrides the number of threads (8). Run each variant in a separate JVM.
+ *
+ * @author Allard Buijze
+ */
+public class LockManagerContentionBenchMark {
+
+    private static final int AGGREGATE_COUNT = 1000;
+    private static final double EXPONENT = 0.99;
+    private static final long WARMUP_MILLIS = 5000;
+    private static final long MEASURE_MILLIS = 10000;
+
+    private static final AtomicLong identifierSequence = new AtomicLong();
+
+    public static void main(String[] args) throws InterruptedException {
+        String strategyName = args.length > 0 ? args[0] : "pessimistic";
+        String workload = args.length > 1 ? args[1] : "distinct";
+        int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        StubRepository repository = new StubRepository(LockingStrategy.valueOf(strategyName.toUpperCase()));
+        repository.setEventBus(new SimpleEventBus());
+
+        run(repository, workload, threadCount, WARMUP_MILLIS);
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long operations = run(repository, workload, threadCount, MEASURE_MILLIS);
+
+        System.out.println(String.format("%s (%s, %d threads): %d operations/s, %.1f collections (%.1f ms) "
+                                                 + "per million operations",
+                                         strategyName, workload, threadCount,
+                                         operations * 1000 / MEASURE_MILLIS,
+                                         (gcCount() - gcCountBefore) * 1000000d / operations,
+                                         (gcTime() - gcTimeBefore) * 1000000d / operations));
+    }
+
+    private static long run(final StubRepository repository, final String workload, int threadCount,
+                            long durationMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + durationMillis;
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch finished = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            final ZipfianDistribution distribution = new ZipfianDistribution(AGGREGATE_COUNT, EXPONENT,
+                                                                              new Random(t));
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long count = 0;
+                    while ((count & 255) != 0 || System.currentTimeMillis() < deadline) {
+                        Object identifier = "skewed".equals(workload)
+                                ? distribution.next()
+                                : identifierSequence.incrementAndGet();
+                        UnitOfWork uow = DefaultUnitOfWork.startAndGet();
+                        repository.load(identifier);
+                        uow.commit();
+                        count++;
+                    }
+                    operations.addAndGet(count);
+                    finished.countDown();
+                }
+            }).start();
+        }
+        finished.await();
+        return operations.get();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += bean.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += bean.getCollectionTime();
+        }
+        return time;
+    }
+
+    /**
+     * Draws aggregate identifiers from 0 (the most popular) to <code>size</code> - 1 (the least popular), where the
+     * probability of identifier i is proportional to 1 / (i + 1)^exponent.
+     */
+    private static class ZipfianDistribution {
+
+        private final double[] cumulativeProbabilities;
+        private final Random random;
+
+        public ZipfianDistribution(int size, double exponent, Random random) {
+            this.random = random;
+            cumulativeProbabilities = new double[size];
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += 1 / Math.pow(i + 1, exponent);
+                cumulativeProbabilities[i] = sum;
+            }
+            for (int i = 0; i < size; i++) {
+                cumulativeProbabilities[i] /= sum;
+            }
+        }
+
+        public Integer next() {
+            int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+            return index >= 0 ? index : Math.min(-index - 1, cumulativeProbabilities.length - 1);
+        }
+    }
+
+    /**
+     * Repository that creates a new aggregate for each load, and discards aggregates when they are saved.
+     */
+    private static class StubRepository extends LockingRepository<StubAggregate> {
+
+        public StubRepository(LockingStrategy lockingStrategy) {
+            super(lockingStrategy);
+        }
+
+        @Override
+        protected StubAggregate doLoad(Object aggregateIdentifier, Long expectedVersion) {
+            return new StubAggregate(aggregateIdentifier);
+        }
+
+        @Override
+        protected void doSaveWithLock(StubAggregate aggregate) {
+        }
+
+        @Override
+        protected void doDeleteWithLock(StubAggregate aggregate) {
+        }
+    }
+
+    private static class StubAggregate extends AbstractAggregateRoot {
+
+        private final Object identifier;
+
+        public StubAggregate(Object identifier) {
+            this.identifier = identifier;
+        }
+
+        @Override
+        public Object getIdentifier() {
+            return identifier;
+        }
+    }
+}
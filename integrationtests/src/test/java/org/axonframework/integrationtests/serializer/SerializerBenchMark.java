@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.serializer;
+
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.domain.MetaData;
+import org.axonframework.serializer.JavaSerializer;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.Serializer;
+import org.axonframework.serializer.XStreamSerializer;
+import org.axonframework.serializer.binary.BinarySerializer;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compares the time needed to serialize and deserialize domain event messages, and the size of the serialized form,
+ * of the XStreamSerializer, the JavaSerializer and the BinarySerializer.
+ *
+ * @author Allard Buijze
+ */
+public class SerializerBenchMark {
+
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 100000;
+
+    public static void main(String[] args) {
+        BinarySerializer binarySerializer = new BinarySerializer();
+        binarySerializer.registerType(OrderPlacedEvent.class, 64);
+        binarySerializer.registerType(OrderLine.class, 65);
+
+        GenericDomainEventMessage<OrderPlacedEvent> message = createMessage();
+        benchmark("XStreamSerializer", new XStreamSerializer(), message);
+        benchmark("JavaSerializer", new JavaSerializer(), message);
+        benchmark("BinarySerializer", binarySerializer, message);
+    }
+
+    private static void benchmark(String name, Serializer serializer, Object message) {
+        SerializedObject serialized = null;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            serialized = serializer.serialize(message);
+            serializer.deserialize(serialized);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            serialized = serializer.serialize(message);
+        }
+        long serializeTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            serializer.deserialize(serialized);
+        }
+        long deserializeTime = System.nanoTime() - start;
+
+        System.out.println(String.format("%-20s size: %5d bytes, serialize: %6d ns/op, deserialize: %6d ns/op",
+                                         name, serialized.getData().length,
+                                         serializeTime / ITERATIONS, deserializeTime / ITERATIONS));
+    }
+
+    private static GenericDomainEventMessage<OrderPlacedEvent> createMessage() {
+        List<OrderLine> lines = new ArrayList<OrderLine>();
+        for (int i = 0; i < 5; i++) {
+            lines.add(new OrderLine("product-" + i, i + 1, new BigDecimal("9.95")));
+        }
+        return new GenericDomainEventMessage<OrderPlacedEvent>(
+                UUID.randomUUID(), 42, new OrderPlacedEvent(UUID.randomUUID().toString(), "customer-1", lines),
+                MetaData.from(Collections.<String, Object>singletonMap("user", "john")));
+    }
+
+    private static class OrderPlacedEvent implements Serializable {
+
+        private static final long serialVersionUID = 6617224925416785417L;
+
+        private final String orderId;
+        private final String customerId;
+        private final List<OrderLine> lines;
+
+        private OrderPlacedEvent(String orderId, String customerId, List<OrderLine> lines) {
+            this.orderId = orderId;
+            this.customerId = customerId;
+            this.lines = lines;
+        }
+    }
+
+    private static class OrderLine implements Serializable {
+
+        private static final long serialVersionUID = -3409347624853234513L;
+
+        private final String productId;
+        private final int quantity;
+        private final BigDecimal price;
+
+        private OrderLine(String productId, int quantity, BigDecimal price) {
+            this.productId = productId;
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.serializer;
+
+import org.axonframework.serializer.ChainingConverterFactory;
+import org.axonframework.serializer.IntermediateRepresentation;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.SerializedType;
+import org.axonframework.serializer.SimpleIntermediateRepresentation;
+import org.axonframework.serializer.SimpleSerializedObject;
+import org.axonframework.serializer.SimpleSerializedType;
+import org.axonframework.serializer.Upcaster;
+import org.axonframework.serializer.UpcasterChain;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the time needed to pass the events of a replay through an UpcasterChain with many upcasters. Each upcaster
+ * upcasts revision 0 of a single event type. Most events in the replay are of the current revision, and some of the
+ * upcasters require their input as an InputStream, forcing a content type conversion.
+ *
+ * @author Allard Buijze
+ */
+public class UpcasterChainBenchMark {
+
+    private static final int UPCASTER_COUNT = 40;
+    private static final int EVENT_TYPE_COUNT = 50;
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int ITERATIONS = 1000000;
+
+    public static void main(String[] args) {
+        List<Upcaster> upcasters = new ArrayList<Upcaster>();
+        for (int i = 0; i < UPCASTER_COUNT; i++) {
+            upcasters.add(i % 10 == 0 ? new StreamUpcaster("event" + i) : new ByteArrayUpcaster("event" + i));
+        }
+        UpcasterChain upcasterChain = new UpcasterChain(new ChainingConverterFactory(), upcasters);
+
+        SerializedObject[] events = new SerializedObject[EVENT_TYPE_COUNT * 4];
+        byte[] data = "<event><name>value</name></event>".getBytes();
+        for (int i = 0; i < events.length; i++) {
+            // one in four events is of an old revision
+            int revision = i % 4 == 0 ? 0 : 1;
+            events[i] = new SimpleSerializedObject(data, "event" + (i % EVENT_TYPE_COUNT), revision);
+        }
+
+        replay(upcasterChain, events, WARMUP_ITERATIONS);
+        long start = System.nanoTime();
+        int upcastCount = replay(upcasterChain, events, ITERATIONS);
+        long time = System.nanoTime() - start;
+
+        System.out.println(String.format("%s upcasters, %s events (%s upcast): %s ns/event",
+                                         UPCASTER_COUNT, ITERATIONS, upcastCount, time / ITERATIONS));
+    }
+
+    private static int replay(UpcasterChain upcasterChain, SerializedObject[] events, int iterations) {
+        int upcastCount = 0;
+        for (int i = 0; i < iterations; i++) {
+            SerializedObject event = events[i % events.length];
+            IntermediateRepresentation result = upcasterChain.upcast(event);
+            if (result.getType().getRevision() != event.getType().getRevision()) {
+                upcastCount++;
+            }
+        }
+        return upcastCount;
+    }
+
+    private abstract static class AbstractRevisionUpcaster<T> implements Upcaster<T> {
+
+        private final String typeName;
+
+        protected AbstractRevisionUpcaster(String typeName) {
+            this.typeName = typeName;
+        }
+
+        @Override
+        public boolean canUpcast(SerializedType serializedType) {
+            return typeName.equals(serializedType.getName()) && serializedType.getRevision() == 0;
+        }
+
+        @Override
+        public IntermediateRepresentation<?> upcast(IntermediateRepresentation<T> intermediateRepresentation) {
+            return new SimpleIntermediateRepresentation(upcast(intermediateRepresentation.getType()),
+                                                        expectedRepresentationType(),
+                                                        intermediateRepresentation.getData());
+        }
+
+        @Override
+        public SerializedType upcast(SerializedType serializedType) {
+            return new SimpleSerializedType(serializedType.getName(), 1);
+        }
+    }
+
+    private static class ByteArrayUpcaster extends AbstractRevisionUpcaster<byte[]> {
+
+        private ByteArrayUpcaster(String typeName) {
+            super(typeName);
+        }
+
+        @Override
+        public Class<byte[]> expectedRepresentationType() {
+            return byte[].class;
+        }
+    }
+
+    private static class StreamUpcaster extends AbstractRevisionUpcaster<InputStream> {
+
+        private StreamUpcaster(String typeName) {
+            super(typeName);
+        }
+
+        @Override
+        public Class<InputStream> expectedRepresentationType() {
+            return InputStream.class;
+        }
+    }
+}
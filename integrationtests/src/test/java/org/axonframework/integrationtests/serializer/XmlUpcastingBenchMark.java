@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2010-2011. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.axonframework.integrationtests.serializer;
+
+import org.axonframework.serializer.AbstractXMLEventUpcaster;
+import org.axonframework.serializer.IntermediateRepresentation;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.SerializedType;
+import org.axonframework.serializer.SimpleIntermediateRepresentation;
+import org.axonframework.serializer.SimpleSerializedObject;
+import org.axonframework.serializer.SimpleSerializedType;
+import org.axonframework.serializer.Upcaster;
+import org.axonframework.serializer.XMLEventRewriter;
+import org.axonframework.serializer.XStreamSerializer;
+import org.dom4j.Document;
+import org.dom4j.Element;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.XMLEventConsumer;
+
+/**
+ * Compares the time and memory needed to deserialize a large snapshot that needs upcasting, using an upcaster working
+ * on a dom4j Document and using a streaming upcaster. Both upcasters rename a field of each of the items in the
+ * snapshot. The memory allocated by the deserializing thread is measured using the ThreadMXBean of the Sun JVM.
+ *
+ * @author Allard Buijze
+ */
+public class XmlUpcastingBenchMark {
+
+    private static final int ITEM_COUNT = 10000;
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int ITERATIONS = 200;
+
+    public static void main(String[] args) {
+        XStreamSerializer serializer = new XStreamSerializer();
+        serializer.addAlias("snapshot", Snapshot.class);
+        serializer.addAlias("item", Item.class);
+        String xml = new String(serializer.serialize(createSnapshot()).getData()).replaceAll("name>", "title>");
+        SerializedObject oldSnapshot = new SimpleSerializedObject(xml.getBytes(), "snapshot", 0);
+
+        benchmark("No upcasting", serializer, Arrays.<Upcaster>asList(),
+                  serializer.serialize(createSnapshot()));
+        benchmark("dom4j upcaster", serializer, Arrays.<Upcaster>asList(new Dom4jRenamingUpcaster()), oldSnapshot);
+        benchmark("Streaming upcaster", serializer, Arrays.<Upcaster>asList(new StreamingRenamingUpcaster()),
+                  oldSnapshot);
+    }
+
+    private static void benchmark(String name, XStreamSerializer serializer, List<Upcaster> upcasters,
+                                  SerializedObject serializedObject) {
+        serializer.setUpcasters(upcasters);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            verify((Snapshot) serializer.deserialize(serializedObject));
+        }
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            serializer.deserialize(serializedObject);
+        }
+        long time = System.nanoTime() - start;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.println(String.format("%-20s %7d us/op, %6d KB allocated/op", name,
+                                         time / ITERATIONS / 1000, allocated / ITERATIONS / 1024));
+    }
+
+    private static void verify(Snapshot snapshot) {
+        if (snapshot.items.size() != ITEM_COUNT || !"item-1".equals(snapshot.items.get(1).name)) {
+            throw new IllegalStateException("Snapshot was not upcast correctly");
+        }
+    }
+
+    private static Snapshot createSnapshot() {
+        Snapshot snapshot = new Snapshot();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            snapshot.items.add(new Item("item-" + i, i));
+        }
+        return snapshot;
+    }
+
+    public static class Snapshot {
+
+        private List<Item> items = new ArrayList<Item>();
+    }
+
+    public static class Item {
+
+        private String name;
+        private int quantity;
+
+        public Item() {
+        }
+
+        public Item(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+
+    private static class Dom4jRenamingUpcaster implements Upcaster<Document> {
+
+        @Override
+        public boolean canUpcast(SerializedType serializedType) {
+            return serializedType.getRevision() == 0;
+        }
+
+        @Override
+        public Class<Document> expectedRepresentationType() {
+            return Document.class;
+        }
+
+        @Override
+        public IntermediateRepresentation<?> upcast(IntermediateRepresentation<Document> representation) {
+            Document document = representation.getData();
+            for (Object item : document.getRootElement().element("items").elements()) {
+                ((Element) item).element("title").setName("name");
+            }
+            return new SimpleIntermediateRepresentation<Document>(upcast(representation.getType()), Document.class,
+                                                                  document);
+        }
+
+        @Override
+        public SerializedType upcast(SerializedType serializedType) {
+            return new SimpleSerializedType(serializedType.getName(), 1);
+        }
+    }
+
+    private static class StreamingRenamingUpcaster extends AbstractXMLEventUpcaster {
+
+        private static final QName NEW_NAME = new QName("name");
+
+        @Override
+        public boolean canUpcast(SerializedType serializedType) {
+            return serializedType.getRevision() == 0;
+        }
+
+        @Override
+        public SerializedType upcast(SerializedType serializedType) {
+            return new SimpleSerializedType(serializedType.getName(), 1);
+        }
+
+        @Override
+        protected XMLEventRewriter createRewriter(SerializedType serializedType) {
+            return new XMLEventRewriter() {
+                @Override
+                public void rewrite(XMLEvent event, XMLEventConsumer output) throws XMLStreamException {
+                    if (event.isStartElement() && "title".equals(event.asStartElement().getName().getLocalPart())) {
+                        output.add(EVENT_FACTORY.createStartElement(NEW_NAME, null, null));
+                    } else if (event.isEndElement()
+                            && "title".equals(event.asEndElement().getName().getLocalPart())) {
+                        output.add(EVENT_FACTORY.createEndElement(NEW_NAME, null));
+                    } else {
+                        output.add(event);
+                    }
+                }
+            };
+        }
+    }
+}
@@ -16,31 +16,38 @@
 
 package org.axonframework.migration.eventstore;
 
-import org.axonframework.domain.DomainEventMessage;
-import org.axonframework.serializer.ContentType;
-import org.axonframework.serializer.IntermediateRepresentation;
+import com.thoughtworks.xstream.io.naming.NameCoder;
+import com.thoughtworks.xstream.io.xml.XmlFriendlyNameCoder;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.serializer.AbstractXMLEventUpcaster;
 import org.axonframework.serializer.SerializedType;
-import org.axonframework.serializer.Upcaster;
-import org.dom4j.Document;
-import org.dom4j.Element;
-import org.dom4j.tree.DefaultDocument;
+import org.axonframework.serializer.SimpleSerializedType;
+import org.axonframework.serializer.XMLEventRewriter;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.XMLEventConsumer;
 
 /**
  * Event preprocessor that upcasts events serialized by the XStreamEventSerializer in versions 0.6 and prior of
  * AxonFramework, to the event format supported since 0.7.
  * <p/>
- * This upcaster uses dom4j Document as event representation, which is supported by the {@link
- * org.axonframework.serializer.XStreamSerializer}.
+ * This upcaster rewrites the XML of the event while it is being read, which is supported by the {@link
+ * org.axonframework.serializer.XStreamSerializer}. The fields of the payload are streamed as they are read, meaning
+ * that only the message properties (such as timestamp, identifier and meta data) are held in memory while upcasting.
  *
  * @author Allard Buijze
  * @since 0.7
  */
-public class LegacyAxonEventUpcaster implements Upcaster {
+public class LegacyAxonEventUpcaster extends AbstractXMLEventUpcaster {
+
+    private static final SerializedType UPCAST_TYPE = new SimpleSerializedType(
+            GenericDomainEventMessage.class.getName(), 0);
 
     @Override
     public boolean canUpcast(SerializedType serializedType) {
@@ -48,69 +55,217 @@ public class LegacyAxonEventUpcaster implements Upcaster {
     }
 
     @Override
-    public ContentType expectedContentType() {
-        return ContentType.DOM4J;
+    public SerializedType upcast(SerializedType serializedType) {
+        return UPCAST_TYPE;
     }
 
-    @SuppressWarnings({"unchecked"})
     @Override
-    public IntermediateRepresentation upcast(IntermediateRepresentation event) {
-        Element rootNode = ((Document) event.getContents()).getRootElement();
-        if (rootNode.attribute("eventRevision") == null) {
-            rootNode.addAttribute("eventRevision", "0");
-            Element metaData = rootNode.addElement("metaData").addElement("values");
-            Iterator<Element> children = rootNode.elementIterator();
-            while (children.hasNext()) {
-                Element childNode = children.next();
-                String childName = childNode.getName();
-                if ("eventIdentifier".equals(childName)) {
-                    addMetaDataEntry(metaData, "_identifier", childNode.getTextTrim(), "uuid");
-                    rootNode.remove(childNode);
-                } else if ("timestamp".equals(childName)) {
-                    addMetaDataEntry(metaData, "_timestamp", childNode.getTextTrim(), "localDateTime");
-                    rootNode.remove(childNode);
+    protected XMLEventRewriter createRewriter(SerializedType serializedType) {
+        return new LegacyEventRewriter();
+    }
+
+    /**
+     * Rewrites a single legacy event. The root element of the legacy event is replaced by a "domain-event" element,
+     * its payload fields are moved into a "payload" element, and the message properties are added after the payload.
+     */
+    private static final class LegacyEventRewriter implements XMLEventRewriter {
+
+        private static final NameCoder NAME_CODER = new XmlFriendlyNameCoder();
+
+        private final List<XMLEvent> messageFields = new ArrayList<XMLEvent>();
+        private final List<XMLEvent> metaDataEntries = new ArrayList<XMLEvent>();
+        private final List<XMLEvent> currentEntry = new ArrayList<XMLEvent>();
+        private final StringBuilder text = new StringBuilder();
+        private Section section = Section.NONE;
+        private int depth;
+        private String timestamp;
+        private String identifier;
+
+        @Override
+        public void rewrite(XMLEvent event, XMLEventConsumer output) throws XMLStreamException {
+            if (event.isStartDocument() || event.isEndDocument()) {
+                output.add(event);
+            } else if (event.isStartElement()) {
+                depth++;
+                if (depth == 1) {
+                    startMessage(event.asStartElement(), output);
+                } else if (depth == 2) {
+                    section = sectionOf(event.asStartElement().getName().getLocalPart());
+                    startSection(event.asStartElement(), output);
+                } else {
+                    handleContent(event, output);
+                }
+            } else if (event.isEndElement()) {
+                if (depth == 1) {
+                    endMessage(output);
+                } else if (depth == 2) {
+                    endSection(event, output);
+                    section = Section.NONE;
+                } else {
+                    handleContent(event, output);
                 }
+                depth--;
+            } else if (depth > 1) {
+                handleContent(event, output);
             }
         }
-        Document document = new DefaultDocument();
-        Element newRoot = document.addElement("domain-event");
-        Element payload = newRoot.addElement("payload");
-        String objectType = rootNode.getName().replaceAll("\\_\\-", "\\$");
-        payload.addAttribute("class", objectType);
-        Set<String> forbiddenPayloadElements = new HashSet<String>(Arrays.asList("metaData",
-                                                                                 "aggregateIdentifier",
-                                                                                 "sequenceNumber",
-                                                                                 "timestamp"));
-        for (Object node : rootNode.elements()) {
-            Element element = (Element) node;
-            if (!forbiddenPayloadElements.contains(element.getName())) {
-                payload.add(element.createCopy());
-            } else {
-                newRoot.add(element.createCopy());
+
+        private void startMessage(StartElement rootElement, XMLEventConsumer output) throws XMLStreamException {
+            String payloadType = NAME_CODER.decodeNode(rootElement.getName().getLocalPart());
+            output.add(EVENT_FACTORY.createStartElement(new QName("domain-event"), null, null));
+            addElement(output, "payloadType", payloadType);
+            output.add(EVENT_FACTORY.createStartElement(
+                    new QName("payload"),
+                    Collections.singletonList(EVENT_FACTORY.createAttribute("class", payloadType)).iterator(),
+                    null));
+        }
+
+        private void startSection(StartElement element, XMLEventConsumer output) throws XMLStreamException {
+            switch (section) {
+                case PAYLOAD:
+                    output.add(element);
+                    break;
+                case AGGREGATE_IDENTIFIER:
+                    messageFields.add(EVENT_FACTORY.createStartElement(
+                            element.getName(),
+                            Collections.singletonList(EVENT_FACTORY.createAttribute("class", "string")).iterator(),
+                            null));
+                    break;
+                case MESSAGE_FIELD:
+                    messageFields.add(element);
+                    break;
+                default:
+                    text.setLength(0);
+            }
+        }
+
+        private void handleContent(XMLEvent event, XMLEventConsumer output) throws XMLStreamException {
+            switch (section) {
+                case PAYLOAD:
+                    output.add(event);
+                    break;
+                case AGGREGATE_IDENTIFIER:
+                case MESSAGE_FIELD:
+                    messageFields.add(event);
+                    break;
+                case META_DATA:
+                    handleMetaData(event);
+                    break;
+                default:
+                    if (event.isCharacters()) {
+                        text.append(event.asCharacters().getData());
+                    }
+            }
+        }
+
+        /**
+         * Handles the contents of the legacy meta data element, which is structured as
+         * <code>&lt;metaData&gt;&lt;values&gt;&lt;entry&gt;...&lt;/entry&gt;&lt;/values&gt;&lt;/metaData&gt;</code>.
+         * The "values" element is dropped, and each entry is collected before it is inspected.
+         *
+         * @param event The event within the meta data element
+         */
+        private void handleMetaData(XMLEvent event) {
+            if (depth < 4) {
+                return;
+            }
+            currentEntry.add(event);
+            if (depth == 4 && event.isEndElement()) {
+                List<String> keyAndValue = childTexts(currentEntry);
+                String key = keyAndValue.isEmpty() ? null : keyAndValue.get(0).trim();
+                if ("_timestamp".equals(key)) {
+                    timestamp = keyAndValue.get(1).trim();
+                } else if ("_identifier".equals(key)) {
+                    identifier = keyAndValue.get(1).trim();
+                } else {
+                    metaDataEntries.addAll(currentEntry);
+                }
+                currentEntry.clear();
+            }
+        }
+
+        private void endSection(XMLEvent event, XMLEventConsumer output) throws XMLStreamException {
+            switch (section) {
+                case PAYLOAD:
+                    output.add(event);
+                    break;
+                case AGGREGATE_IDENTIFIER:
+                case MESSAGE_FIELD:
+                    messageFields.add(event);
+                    break;
+                case TIMESTAMP:
+                    timestamp = text.toString().trim();
+                    break;
+                case IDENTIFIER:
+                    identifier = text.toString().trim();
+                    break;
+                default:
             }
         }
-        newRoot.addElement("timestamp").addText(extractMetaDataValue(newRoot, "_timestamp"));
-        newRoot.addElement("eventIdentifier").addText(extractMetaDataValue(newRoot, "_identifier"));
-        String eventRevision = rootNode.attribute("eventRevision").getValue();
-        payload.addAttribute("eventRevision", eventRevision);
-        return new Dom4jRepresentation(document, DomainEventMessage.class.getName(), Integer.parseInt(eventRevision));
-    }
 
-    private String extractMetaDataValue(Element newRoot, String metaDataKey) {
-        for (Object entry : newRoot.element("metaData").element("values").elements()) {
-            Element element = (Element) entry;
-            String key = element.elementTextTrim("string");
-            if (metaDataKey.equals(key)) {
-                element.detach();
-                return (element.node(1).getText());
+        private void endMessage(XMLEventConsumer output) throws XMLStreamException {
+            output.add(EVENT_FACTORY.createEndElement(new QName("payload"), null));
+            for (XMLEvent messageField : messageFields) {
+                output.add(messageField);
+            }
+            if (identifier != null) {
+                addElement(output, "identifier", identifier);
+            }
+            if (timestamp != null) {
+                addElement(output, "timestamp", timestamp);
+            }
+            output.add(EVENT_FACTORY.createStartElement(new QName("metaData"), null, null));
+            for (XMLEvent entryEvent : metaDataEntries) {
+                output.add(entryEvent);
+            }
+            output.add(EVENT_FACTORY.createEndElement(new QName("metaData"), null));
+            output.add(EVENT_FACTORY.createEndElement(new QName("domain-event"), null));
+        }
+
+        private void addElement(XMLEventConsumer output, String name, String value) throws XMLStreamException {
+            QName qName = new QName(name);
+            output.add(EVENT_FACTORY.createStartElement(qName, null, null));
+            output.add(EVENT_FACTORY.createCharacters(value));
+            output.add(EVENT_FACTORY.createEndElement(qName, null));
+        }
+
+        private Section sectionOf(String elementName) {
+            if ("metaData".equals(elementName)) {
+                return Section.META_DATA;
+            } else if ("timestamp".equals(elementName)) {
+                return Section.TIMESTAMP;
+            } else if ("eventIdentifier".equals(elementName)) {
+                return Section.IDENTIFIER;
+            } else if ("aggregateIdentifier".equals(elementName)) {
+                return Section.AGGREGATE_IDENTIFIER;
+            } else if ("sequenceNumber".equals(elementName)) {
+                return Section.MESSAGE_FIELD;
+            }
+            return Section.PAYLOAD;
+        }
+
+        private static List<String> childTexts(List<XMLEvent> element) {
+            List<String> texts = new ArrayList<String>();
+            StringBuilder childText = new StringBuilder();
+            int level = 0;
+            for (XMLEvent event : element) {
+                if (event.isStartElement()) {
+                    level++;
+                } else if (event.isEndElement()) {
+                    if (level == 2) {
+                        texts.add(childText.toString());
+                        childText.setLength(0);
+                    }
+                    level--;
+                } else if (level == 2 && event.isCharacters()) {
+                    childText.append(event.asCharacters().getData());
+                }
             }
+            return texts;
         }
-        return null;
     }
 
-    private void addMetaDataEntry(Element metaData, String key, String value, String keyType) {
-        Element entry = metaData.addElement("entry");
-        entry.addElement("string").setText(key);
-        entry.addElement(keyType).setText(value);
+    private static enum Section {
+        NONE, PAYLOAD, MESSAGE_FIELD, AGGREGATE_IDENTIFIER, META_DATA, TIMESTAMP, IDENTIFIER
     }
 }
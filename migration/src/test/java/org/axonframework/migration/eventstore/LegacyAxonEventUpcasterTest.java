@@ -17,8 +17,16 @@
 package org.axonframework.migration.eventstore;
 
 import org.axonframework.domain.DomainEventMessage;
-import org.axonframework.eventstore.EventUpcaster;
+import org.axonframework.domain.GenericDomainEventMessage;
+import org.axonframework.serializer.ChainingConverterFactory;
+import org.axonframework.serializer.IntermediateRepresentation;
+import org.axonframework.serializer.SerializedObject;
+import org.axonframework.serializer.SimpleSerializedObject;
+import org.axonframework.serializer.SimpleSerializedType;
+import org.axonframework.serializer.Upcaster;
+import org.axonframework.serializer.UpcasterChain;
 import org.axonframework.serializer.XStreamSerializer;
+import org.axonframework.serializer.converters.XMLEventReaderToByteArrayConverter;
 import org.dom4j.Attribute;
 import org.dom4j.Document;
 import org.dom4j.Element;
@@ -33,6 +41,7 @@ import java.io.ByteArrayInputStream;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import javax.xml.stream.XMLEventReader;
 
 import static org.junit.Assert.*;
 
@@ -43,7 +52,7 @@ public class LegacyAxonEventUpcasterTest {
 
     private XStreamSerializer serializer;
     private static final String AXON_ONE_MESSAGE =
-            "<org.axonframework.eventstore.legacy.LegacyAxonEventUpcasterTest_-TestEvent eventRevision=\"0\">"
+            "<org.axonframework.migration.eventstore.LegacyAxonEventUpcasterTest_-TestEvent eventRevision=\"0\">"
                     + "<metaData><values>"
                     + "<entry><string>_timestamp</string><localDateTime>2010-09-15T21:43:01.000</localDateTime></entry>"
                     + "<entry><string>_identifier</string><uuid>36f20a77-cdba-4e63-8c02-825486aad301</uuid></entry>"
@@ -54,22 +63,25 @@ public class LegacyAxonEventUpcasterTest {
                     + "<date>2010-09-15T00:00:00.000+02:00</date>"
                     + "<dateTime>2010-09-15T21:43:01.078+02:00</dateTime>"
                     + "<period>PT0.100S</period>"
-                    + "</org.axonframework.eventstore.legacy.LegacyAxonEventUpcasterTest_-TestEvent>";
+                    + "</org.axonframework.migration.eventstore.LegacyAxonEventUpcasterTest_-TestEvent>";
     private static final String AXON_TWO_MESSAGE =
-            "<domain-event><payload eventRevision=\"0\" class=\"org.axonframework.migration.eventstore.LegacyAxonEventUpcasterTest$TestEvent\">"
+            "<domain-event>"
+                    + "<payloadType>org.axonframework.migration.eventstore.LegacyAxonEventUpcasterTest$TestEvent"
+                    + "</payloadType>"
+                    + "<payload class=\"org.axonframework.migration.eventstore.LegacyAxonEventUpcasterTest$TestEvent\">"
                     + "<name>oldskool</name>"
                     + "<date>2010-09-15T00:00:00.000+02:00</date>"
                     + "<dateTime>2010-09-15T21:43:01.078+02:00</dateTime>"
                     + "<period>PT0.100S</period>"
                     + "</payload>"
                     + "<sequenceNumber>0</sequenceNumber>"
-                    + "<aggregateIdentifier>62daf7f6-c3ab-4179-a212-6b1da2a6ec72</aggregateIdentifier>"
-                    + "<metaData><values/></metaData>"
+                    + "<aggregateIdentifier class=\"string\">62daf7f6-c3ab-4179-a212-6b1da2a6ec72</aggregateIdentifier>"
+                    + "<identifier>36f20a77-cdba-4e63-8c02-825486aad301</identifier>"
                     + "<timestamp>2010-09-15T21:43:01.000</timestamp>"
-                    + "<eventIdentifier>36f20a77-cdba-4e63-8c02-825486aad301</eventIdentifier>"
+                    + "<metaData/>"
                     + "</domain-event>";
     private static final String AXON_ONE_MESSAGE_WITH_ADDITIONAL_METADATA =
-            "<org.axonframework.eventstore.legacy.LegacyAxonEventUpcasterTest_-TestEvent eventRevision=\"0\">"
+            "<org.axonframework.migration.eventstore.LegacyAxonEventUpcasterTest_-TestEvent eventRevision=\"0\">"
                     + "<metaData><values>"
                     + "<entry><string>_timestamp</string><localDateTime>2010-09-15T21:43:01.000</localDateTime></entry>"
                     + "<entry><string>_identifier</string><uuid>36f20a77-cdba-4e63-8c02-825486aad301</uuid></entry>"
@@ -81,9 +93,9 @@ public class LegacyAxonEventUpcasterTest {
                     + "<date>2010-09-15T00:00:00.000+02:00</date>"
                     + "<dateTime>2010-09-15T21:43:01.078+02:00</dateTime>"
                     + "<period>PT0.100S</period>"
-                    + "</org.axonframework.eventstore.legacy.LegacyAxonEventUpcasterTest_-TestEvent>";
+                    + "</org.axonframework.migration.eventstore.LegacyAxonEventUpcasterTest_-TestEvent>";
     private static final String AXON_O_DOT_SIX_MESSAGE =
-            "<org.axonframework.eventstore.legacy.LegacyAxonEventUpcasterTest_-TestEvent>"
+            "<org.axonframework.migration.eventstore.LegacyAxonEventUpcasterTest_-TestEvent>"
                     + "<timestamp>2010-09-15T21:43:01.000</timestamp>"
                     + "<eventIdentifier>36f20a77-cdba-4e63-8c02-825486aad301</eventIdentifier>"
                     + "<sequenceNumber>0</sequenceNumber>"
@@ -92,13 +104,13 @@ public class LegacyAxonEventUpcasterTest {
                     + "<date>2010-09-15T00:00:00.000+02:00</date>"
                     + "<dateTime>2010-09-15T21:43:01.078+02:00</dateTime>"
                     + "<period>PT0.100S</period>"
-                    + "</org.axonframework.eventstore.legacy.LegacyAxonEventUpcasterTest_-TestEvent>";
+                    + "</org.axonframework.migration.eventstore.LegacyAxonEventUpcasterTest_-TestEvent>";
 
     @Before
     public void setUp() {
         this.serializer = new XStreamSerializer();
         LegacyAxonEventUpcaster testSubject = new LegacyAxonEventUpcaster();
-        serializer.setEventUpcasters(Arrays.<EventUpcaster<Document>>asList(testSubject));
+        serializer.setUpcasters(Arrays.<Upcaster>asList(testSubject));
     }
 
     /**
@@ -108,12 +120,17 @@ public class LegacyAxonEventUpcasterTest {
      * @throws java.io.UnsupportedEncodingException
      *
      */
+    @SuppressWarnings({"unchecked"})
     @Test
     public void testDeserializeVeryOldStyleEvent() throws Exception {
         byte[] oldskoolEvent = (AXON_O_DOT_SIX_MESSAGE).getBytes("utf-8");
-        DomainEventMessage<TestEvent> testEvent = (DomainEventMessage<TestEvent>) serializer.deserialize(oldskoolEvent);
-        Assert.assertEquals("62daf7f6-c3ab-4179-a212-6b1da2a6ec72", testEvent.getAggregateIdentifier().asString());
-        Assert.assertEquals(new DateTime("2010-09-15T21:43:01.000"), testEvent.getTimestamp());
+        DomainEventMessage<TestEvent> testEvent =
+                (DomainEventMessage<TestEvent>) serializer.deserialize(legacyEvent(oldskoolEvent));
+        assertEquals("62daf7f6-c3ab-4179-a212-6b1da2a6ec72", testEvent.getAggregateIdentifier());
+        assertEquals(new DateTime("2010-09-15T21:43:01.000"), testEvent.getTimestamp());
+        assertEquals("36f20a77-cdba-4e63-8c02-825486aad301", testEvent.getIdentifier());
+        assertEquals(TestEvent.class, testEvent.getPayloadType());
+        assertEquals("oldskool", testEvent.getPayload().getName());
         assertNull(testEvent.getMetaData().get("someValueThatDoesNotExist"));
         assertNotNull(testEvent.hashCode());
     }
@@ -124,67 +141,78 @@ public class LegacyAxonEventUpcasterTest {
      * @throws java.io.UnsupportedEncodingException
      *
      */
+    @SuppressWarnings({"unchecked"})
     @Test
     public void testDeserializeOldStyleEvent() throws Exception {
         byte[] newskoolEvent = (AXON_ONE_MESSAGE_WITH_ADDITIONAL_METADATA).getBytes("utf-8");
-        DomainEventMessage<TestEvent> testEvent = (DomainEventMessage<TestEvent>) serializer.deserialize(newskoolEvent);
-        assertEquals("62daf7f6-c3ab-4179-a212-6b1da2a6ec72", testEvent.getAggregateIdentifier().asString());
+        DomainEventMessage<TestEvent> testEvent =
+                (DomainEventMessage<TestEvent>) serializer.deserialize(legacyEvent(newskoolEvent));
+        assertEquals("62daf7f6-c3ab-4179-a212-6b1da2a6ec72", testEvent.getAggregateIdentifier());
         assertEquals(new DateTime("2010-09-15T21:43:01.000"), testEvent.getTimestamp());
         assertEquals("someValue", testEvent.getMetaData().get("someKey"));
+        assertEquals(1, testEvent.getMetaData().size());
         assertNotNull(testEvent.hashCode());
     }
 
     @Test
-    public void testLegacyUpcasterAddsRevisionAttributeToDocument() throws Exception {
-        SAXReader reader = new SAXReader();
-        Document oldDoc = reader.read(new ByteArrayInputStream(AXON_O_DOT_SIX_MESSAGE.getBytes("utf-8")));
-        Document newDoc = reader.read(new ByteArrayInputStream(AXON_ONE_MESSAGE.getBytes("utf-8")));
-
-        Document upcastedOldDoc = new LegacyAxonEventUpcaster().upcast(oldDoc);
-        Document upcastedNewDoc = new LegacyAxonEventUpcaster().upcast(newDoc);
+    public void testLegacyUpcasterUpcastsToDomainEventMessage() throws Exception {
+        LegacyAxonEventUpcaster testSubject = new LegacyAxonEventUpcaster();
 
-        Assert.assertEquals(newDoc.getRootElement().attribute("eventRevision").getText(),
-                            upcastedOldDoc.getRootElement().element("payload").attribute("eventRevision").getText());
-        Assert.assertEquals(newDoc.getRootElement().attribute("eventRevision").getText(),
-                            upcastedNewDoc.getRootElement().element("payload").attribute("eventRevision").getText());
+        assertTrue(testSubject.canUpcast(new SimpleSerializedType("anything", -1)));
+        assertFalse(testSubject.canUpcast(new SimpleSerializedType("anything", 0)));
+        assertEquals(GenericDomainEventMessage.class,
+                     serializer.classForType(legacyEvent(AXON_ONE_MESSAGE.getBytes("utf-8")).getType()));
     }
 
     @SuppressWarnings({"unchecked"})
     @Test
     public void testUpcastedOldskoolDocumentEqualsNewskoolDocument() throws Exception {
-
         SAXReader reader = new SAXReader();
-        Document oldDoc = reader.read(new ByteArrayInputStream(AXON_O_DOT_SIX_MESSAGE.getBytes("utf-8")));
         Document newDoc = reader.read(new ByteArrayInputStream(AXON_TWO_MESSAGE.getBytes("utf-8")));
-        Document upcastedDoc = new LegacyAxonEventUpcaster().upcast(oldDoc);
-
-        // Check if root element is the same
-        Assert.assertEquals(newDoc.getRootElement().getName(), upcastedDoc.getRootElement().getName());
-        // and has the same attributes
-        Set<Attribute> attributes = new HashSet<Attribute>(newDoc.getRootElement().attributes());
-        attributes.addAll(upcastedDoc.getRootElement().attributes());
-        for (Attribute attribute : attributes) {
-            Assert.assertEquals(newDoc.getRootElement().attribute(attribute.getName()).getText(),
-                                upcastedDoc.getRootElement().attribute(attribute.getName()).getText());
-        }
 
-        // check if all root's children are identical
-        Set<String> childNames = new HashSet<String>();
-        for (Object element : newDoc.getRootElement().elements()) {
-            childNames.add(((Element) element).getName());
+        for (String oldMessage : Arrays.asList(AXON_O_DOT_SIX_MESSAGE, AXON_ONE_MESSAGE)) {
+            Document upcastedDoc = reader.read(new ByteArrayInputStream(upcast(oldMessage.getBytes("utf-8"))));
+
+            // Check if root element is the same
+            assertEquals(newDoc.getRootElement().getName(), upcastedDoc.getRootElement().getName());
+            // and has the same attributes
+            Set<Attribute> attributes = new HashSet<Attribute>(newDoc.getRootElement().attributes());
+            attributes.addAll(upcastedDoc.getRootElement().attributes());
+            for (Attribute attribute : attributes) {
+                assertEquals(newDoc.getRootElement().attribute(attribute.getName()).getText(),
+                             upcastedDoc.getRootElement().attribute(attribute.getName()).getText());
+            }
+
+            // check if all root's children are identical
+            Set<String> childNames = new HashSet<String>();
+            for (Object element : newDoc.getRootElement().elements()) {
+                childNames.add(((Element) element).getName());
+            }
+
+            for (Object element : upcastedDoc.getRootElement().elements()) {
+                childNames.add(((Element) element).getName());
+            }
+
+            NodeComparator nodeComparator = new NodeComparator();
+            for (String childName : childNames) {
+                assertEquals("Error comparing element " + childName,
+                             0,
+                             nodeComparator.compare(newDoc.getRootElement().element(childName),
+                                                    upcastedDoc.getRootElement().element(childName)));
+            }
         }
+    }
 
-        for (Object element : upcastedDoc.getRootElement().elements()) {
-            childNames.add(((Element) element).getName());
-        }
+    @SuppressWarnings({"unchecked"})
+    private byte[] upcast(byte[] legacyEvent) {
+        UpcasterChain chain = new UpcasterChain(new ChainingConverterFactory(), new LegacyAxonEventUpcaster());
+        IntermediateRepresentation<XMLEventReader> upcast = chain.upcast(legacyEvent(legacyEvent));
+        assertEquals(XMLEventReader.class, upcast.getContentType());
+        return new XMLEventReaderToByteArrayConverter().convert(upcast).getData();
+    }
 
-        NodeComparator nodeComparator = new NodeComparator();
-        for (String childName : childNames) {
-            Assert.assertEquals("Error comparing element " + childName,
-                                0,
-                                nodeComparator.compare(newDoc.getRootElement().element(childName),
-                                                       upcastedDoc.getRootElement().element(childName)));
-        }
+    private SerializedObject legacyEvent(byte[] data) {
+        return new SimpleSerializedObject(data, "legacy-event", -1);
     }
 
     public static class TestEvent {
@@ -195,6 +223,10 @@ public class LegacyAxonEventUpcasterTest {
         private DateTime dateTime;
         private Period period;
 
+        public TestEvent() {
+            this("default");
+        }
+
         public TestEvent(String name) {
             this.name = name;
             this.date = new DateMidnight();